@@ -3,6 +3,7 @@ plugins {
     id("org.springframework.boot") version "3.1.5"
     id("io.spring.dependency-management") version "1.1.3"
     id("jacoco")
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "org.develop"
@@ -71,6 +72,9 @@ dependencies {
 
     // Test seguridad
     testImplementation("org.springframework.security:spring-security-test")
+
+    // Peticiones simuladas para el benchmark del filtro JWT
+    jmh("org.springframework:spring-test")
 }
 
 tasks.withType<Test> {
@@ -82,7 +86,19 @@ tasks.test {
     // para ahorranos hacer esto
     //./gradlew test -Pspring.profiles.active=dev
     systemProperty("spring.profiles.active", project.findProperty("spring.profiles.active") ?: "dev")
+    // El benchmark de importación solo se ejecuta si se pide
+    //./gradlew test -Pfunkos.import.benchmark=true -Pfunkos.import.benchmark.filas=1000000
+    listOf("funkos.import.benchmark", "funkos.import.benchmark.filas").forEach { nombre ->
+        project.findProperty(nombre)?.let { systemProperty(nombre, it) }
+    }
 }
+// Benchmarks de src/jmh
+//./gradlew jmh
+jmh {
+    jmhVersion = "1.37"
+    resultFormat = "JSON"
+}
+
 tasks.jacocoTestReport {
     dependsOn(tasks.test) // tests are required to run before generating the report
 }
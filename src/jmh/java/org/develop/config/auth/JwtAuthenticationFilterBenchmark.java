@@ -0,0 +1,116 @@
+package org.develop.config.auth;
+
+import jakarta.servlet.FilterChain;
+import org.develop.notifications.bus.LocalNotificationBus;
+import org.develop.rest.auth.repositories.AuthUsersRepository;
+import org.develop.rest.auth.services.jwt.JwtService;
+import org.develop.rest.auth.services.jwt.JwtServiceImpl;
+import org.develop.rest.auth.services.users.UserVersionRegistry;
+import org.develop.rest.users.models.Role;
+import org.develop.rest.users.models.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filtro de autenticación con un token que no se ha visto (verificar la firma y leer el usuario de la base de datos)
+ * frente a un token ya verificado cuyo usuario está guardado.
+ * Con cache=0 el token verificado y el usuario caducan al momento, así cada petición es la primera de su token.
+ * El usuario está en una H2 en memoria.
+ * <p>
+ * ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthenticationFilterBenchmark {
+    // Segundos que se guardan el token verificado y el usuario
+    @Param({"0", "300"})
+    private long cache;
+
+    private ConfigurableApplicationContext context;
+    private JwtAuthenticationFilter filter;
+    private MockHttpServletRequest request;
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+    private final FilterChain filterChain = (request, response) -> {
+    };
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = User.class)
+    @EnableJpaRepositories(basePackageClasses = AuthUsersRepository.class)
+    @Import({JwtServiceImpl.class, UserVersionRegistry.class, LocalNotificationBus.class, JwtAuthenticationFilter.class})
+    static class Config {
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(Config.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        // Sin application.properties: ni perfil dev ni data.sql
+                        "spring.config.name=benchmark",
+                        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create",
+                        "spring.jpa.show-sql=false",
+                        "spring.sql.init.mode=never",
+                        "logging.level.root=WARN",
+                        "jwt.secret=MeGustanLosPeinosdeLeganesPorqueSonGrandesYHermosos!",
+                        "jwt.expiration=86400",
+                        "jwt.cache.ttl=" + cache,
+                        "jwt.users.ttl=" + cache)
+                .run();
+        filter = context.getBean(JwtAuthenticationFilter.class);
+
+        AuthUsersRepository authUsersRepository = context.getBean(AuthUsersRepository.class);
+        authUsersRepository.save(User.builder().nombre("Benchmark").apellidos("Benchmark").username("benchmark")
+                .email("benchmark@prueba.net").password("benchmark").roles(Set.of(Role.USER)).build());
+        // El token con la versión del usuario tal y como está guardado
+        String token = context.getBean(JwtService.class).generateToken(authUsersRepository.findByUsername("benchmark").orElseThrow());
+
+        request = new MockHttpServletRequest("GET", "/v1/funkos");
+        request.addHeader("Authorization", "Bearer " + token);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Authentication doFilter() throws Exception {
+        filter.doFilter(request, response, filterChain);
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        // Cada petición llega sin autenticar
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+}
@@ -0,0 +1,152 @@
+package org.develop.funkos;
+
+import jakarta.persistence.criteria.Join;
+import org.develop.rest.categorias.models.Categoria;
+import org.develop.rest.funkos.models.Funko;
+import org.develop.rest.funkos.repositories.FunkosRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Búsqueda del catálogo con los criterios anteriores (los cinco criterios siempre, con literal(true) para
+ * los filtros ausentes y join con CATEGORIAS por LIKE) frente a la consulta compilada por combinación de filtros.
+ * Carga la tabla FUNKOS en una H2 en memoria con el número de filas del parámetro.
+ * <p>
+ * ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FunkoSearchBenchmark {
+    private static final int CATEGORIAS = 5;
+
+    @Param("1000000")
+    private int filas;
+
+    @Param({"ninguno", "nombre", "categoria", "todos"})
+    private String filtros;
+
+    private ConfigurableApplicationContext context;
+    private FunkosRepository funkosRepository;
+    private TransactionTemplate transactionTemplate;
+    private final Pageable pageable = PageRequest.of(3, 20, Sort.by("id"));
+
+    private Optional<String> nombre;
+    private Optional<String> categoria;
+    private Long categoriaId;
+    private Optional<Double> precioMax;
+    private Optional<Integer> cantidadMin;
+    private Optional<Boolean> isActivo;
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = {Funko.class, Categoria.class})
+    @EnableJpaRepositories(basePackageClasses = FunkosRepository.class)
+    static class Config {
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(Config.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        // Sin application.properties: ni perfil dev ni data.sql
+                        "spring.config.name=benchmark",
+                        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create",
+                        "spring.jpa.show-sql=false",
+                        "spring.sql.init.mode=never",
+                        "logging.level.root=WARN")
+                .run();
+        funkosRepository = context.getBean(FunkosRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        for (int i = 1; i <= CATEGORIAS; i++) {
+            jdbc.update("INSERT INTO CATEGORIAS (nombre, fecha_creacion, fecha_actualizacion, is_activo) VALUES (?, NOW(), NOW(), TRUE)", "CATEGORIA-" + i);
+        }
+        jdbc.update("INSERT INTO FUNKOS (nombre, precio, cantidad, imagen, fecha_creacion, fecha_actualizacion, is_activo, categoria_id, version) " +
+                "SELECT 'FUNKO-' || X, MOD(X, 100) + 0.99, MOD(X, 500), 'imagen.png', NOW(), NOW(), MOD(X, 10) <> 0, MOD(X, " + CATEGORIAS + ") + 1, 0 " +
+                "FROM SYSTEM_RANGE(1, " + filas + ")");
+        categoriaId = jdbc.queryForObject("SELECT id FROM CATEGORIAS WHERE nombre = 'CATEGORIA-2'", Long.class);
+
+        boolean todos = filtros.equals("todos");
+        nombre = filtros.equals("nombre") || todos ? Optional.of("funko-12") : Optional.empty();
+        categoria = filtros.equals("categoria") || todos ? Optional.of("CATEGORIA-2") : Optional.empty();
+        precioMax = todos ? Optional.of(50.0) : Optional.empty();
+        cantidadMin = todos ? Optional.of(10) : Optional.empty();
+        isActivo = todos ? Optional.of(true) : Optional.empty();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<Funko> criteriaAnterior() {
+        return transactionTemplate.execute(status -> funkosRepository.findAll(criteriosAnteriores(), pageable));
+    }
+
+    @Benchmark
+    public Page<Funko> consultaCompilada() {
+        // La categoria ya resuelta a su id, como hace el servicio con el registro de categorias
+        return transactionTemplate.execute(status -> funkosRepository.buscar(
+                categoria.isPresent() ? categoriaId : null, nombre.orElse(null), precioMax.orElse(null),
+                cantidadMin.orElse(null), isActivo.orElse(null), pageable));
+    }
+
+    // Los criterios tal y como se construían antes en FunkosServiceImpl.findAll
+    private Specification<Funko> criteriosAnteriores() {
+        Specification<Funko> specNombre = (root, query, cb) ->
+                nombre.map(n -> cb.like(cb.lower(root.get("nombre")), "%" + n.toLowerCase() + "%"))
+                        .orElseGet(() -> cb.isTrue(cb.literal(true)));
+        Specification<Funko> specCategoria = (root, query, cb) ->
+                categoria.map(c -> {
+                    Join<Funko, Categoria> categoriaJoin = root.join("categoria");
+                    return cb.like(cb.lower(categoriaJoin.get("nombre")), "%" + c.toLowerCase() + "%");
+                }).orElseGet(() -> cb.isTrue(cb.literal(true)));
+        Specification<Funko> specPrecioMax = (root, query, cb) ->
+                precioMax.map(p -> cb.lessThanOrEqualTo(root.get("precio"), p))
+                        .orElseGet(() -> cb.isTrue(cb.literal(true)));
+        Specification<Funko> specCantidadMin = (root, query, cb) ->
+                cantidadMin.map(c -> cb.greaterThanOrEqualTo(root.get("cantidad"), c))
+                        .orElseGet(() -> cb.isTrue(cb.literal(true)));
+        Specification<Funko> specIsActivo = (root, query, cb) ->
+                isActivo.map(a -> cb.equal(root.get("isActivo"), a))
+                        .orElseGet(() -> cb.isTrue(cb.literal(true)));
+        return Specification.where(specNombre).and(specCategoria).and(specPrecioMax).and(specCantidadMin).and(specIsActivo);
+    }
+}
@@ -0,0 +1,124 @@
+package org.develop.funkos;
+
+import org.develop.rest.categorias.models.Categoria;
+import org.develop.rest.funkos.models.Funko;
+import org.develop.rest.funkos.repositories.FunkosRepository;
+import org.develop.rest.funkos.repositories.FunkosSpecifications;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listado de Funkos con total (Page: la página más un COUNT) frente a sin total (withTotal=false:
+ * la página con un elemento más para saber si hay siguiente, sin COUNT).
+ * Los dos usan los mismos criterios, así la diferencia es la consulta del total.
+ * Carga la tabla FUNKOS en una H2 en memoria con el número de filas del parámetro.
+ * <p>
+ * ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FunkoSliceBenchmark {
+    private static final int CATEGORIAS = 5;
+
+    @Param("1000000")
+    private int filas;
+
+    // Sin filtros el COUNT puede recorrer solo el índice; filtrando por nombre tiene que leer todas las filas
+    @Param({"ninguno", "nombre"})
+    private String filtros;
+
+    @Param({"0", "100"})
+    private int pagina;
+
+    private ConfigurableApplicationContext context;
+    private FunkosRepository funkosRepository;
+    private TransactionTemplate transactionTemplate;
+    private Pageable pageable;
+    private Specification<Funko> criterios;
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = {Funko.class, Categoria.class})
+    @EnableJpaRepositories(basePackageClasses = FunkosRepository.class)
+    static class Config {
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(Config.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        // Sin application.properties: ni perfil dev ni data.sql
+                        "spring.config.name=benchmark",
+                        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create",
+                        "spring.jpa.show-sql=false",
+                        "spring.sql.init.mode=never",
+                        "logging.level.root=WARN")
+                .run();
+        funkosRepository = context.getBean(FunkosRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        for (int i = 1; i <= CATEGORIAS; i++) {
+            jdbc.update("INSERT INTO CATEGORIAS (nombre, fecha_creacion, fecha_actualizacion, is_activo) VALUES (?, NOW(), NOW(), TRUE)", "CATEGORIA-" + i);
+        }
+        jdbc.update("INSERT INTO FUNKOS (nombre, precio, cantidad, imagen, fecha_creacion, fecha_actualizacion, is_activo, categoria_id, version) " +
+                "SELECT 'FUNKO-' || X, MOD(X, 100) + 0.99, MOD(X, 500), 'imagen.png', NOW(), NOW(), MOD(X, 10) <> 0, MOD(X, " + CATEGORIAS + ") + 1, 0 " +
+                "FROM SYSTEM_RANGE(1, " + filas + ")");
+
+        pageable = PageRequest.of(pagina, 20, Sort.by("id"));
+        criterios = FunkosSpecifications.filtros(null, filtros.equals("nombre") ? "funko-1" : null, null, null, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<Funko> conTotal() {
+        return transactionTemplate.execute(status -> funkosRepository.findAll(criterios, pageable));
+    }
+
+    @Benchmark
+    public Window<Funko> sinTotal() {
+        // Como FunkosServiceImpl.findSlice
+        return transactionTemplate.execute(status -> funkosRepository.findBy(criterios, query -> query.sortBy(pageable.getSort())
+                .limit(pageable.getPageSize()).scroll(ScrollPosition.offset(pageable.getOffset()))));
+    }
+}
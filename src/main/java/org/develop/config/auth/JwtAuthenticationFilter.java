@@ -1,12 +1,15 @@
 package org.develop.config.auth;
 
+import com.auth0.jwt.exceptions.JWTDecodeException;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.develop.rest.auth.services.jwt.JwtService;
-import org.develop.rest.auth.services.users.AuthUsersService;
+import org.develop.rest.auth.services.users.UserVersionRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -24,12 +27,12 @@ import java.io.IOException;
 @Slf4j
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtService jwtService;
-    private final AuthUsersService authUsersService;
+    private final UserVersionRegistry userVersionRegistry;
 
     @Autowired
-    public JwtAuthenticationFilter(JwtService jwtService, AuthUsersService authUsersService) {
+    public JwtAuthenticationFilter(JwtService jwtService, UserVersionRegistry userVersionRegistry) {
         this.jwtService = jwtService;
-        this.authUsersService = authUsersService;
+        this.userVersionRegistry = userVersionRegistry;
     }
 
     @Override
@@ -52,29 +55,34 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         log.info("Se ha encontrado cabecera de autenticación, se procesa");
         // Si tenemos cabecera, la extraemos y comprobamos que sea válida
         jwt = authHeader.substring(7);
-        // Lo primero que debemos ver es que el token es válido
+        // Lo primero que debemos ver es que el token es válido: se decodifica y verifica una sola vez
+        DecodedJWT decodedJWT = null;
         try {
-            userName = jwtService.extractUserName(jwt);
-        } catch (Exception e) {
+            decodedJWT = jwtService.verifyToken(jwt);
+            userName = decodedJWT.getSubject();
+        } catch (JWTDecodeException e) {
             log.info("Token no válido");
             response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Token no autorizado o no válido");
             return;
+        } catch (JWTVerificationException e) {
+            // Firma incorrecta o token caducado: la petición sigue sin autenticar
+            log.info("Token no verificado: {}", e.getMessage());
         }
         log.info("Usuario autenticado: {}", userName);
         if (StringUtils.hasText(userName)
                 && SecurityContextHolder.getContext().getAuthentication() == null) {
-            // Comprobamos que el usuario existe y que el token es válido
-            log.info("Comprobando usuario y token");
-            try {
-                userDetails = authUsersService.loadUserByUsername(userName);
-            } catch (Exception e) {
+            // Comprobamos que el usuario existe y no está borrado, el token ya está verificado.
+            // Se lee de la base de datos solo si no está guardado o el token es de una versión posterior
+            log.info("Comprobando usuario");
+            Long version = decodedJWT.getClaim(JwtService.VERSION_CLAIM).asLong();
+            userDetails = userVersionRegistry.current(userName, version == null ? 0L : version).orElse(null);
+            if (userDetails == null) {
                 log.info("Usuario no encontrado: {}", userName);
                 response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Usuario no autorizado");
                 return;
             }
-            authUsersService.loadUserByUsername(userName);
             log.info("Usuario encontrado: {}", userDetails);
-            if (jwtService.isTokenValid(jwt, userDetails)) {
+            if (userName.equals(userDetails.getUsername())) {
                 log.info("JWT válido");
                 // Si es válido, lo autenticamos en el contexto de seguridad
                 SecurityContext context = SecurityContextHolder.createEmptyContext();
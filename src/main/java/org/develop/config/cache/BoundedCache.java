@@ -0,0 +1,262 @@
+package org.develop.config.cache;
+
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Caché acotada en memoria para Spring Cache.
+ * Guarda como mucho maximumSize entradas y al pasarse expulsa la usada hace más tiempo (LRU).
+ * Las entradas se reparten por el hash de la clave en segmentos con su propio LRU y su propio cerrojo,
+ * así las lecturas de claves de distintos segmentos no se esperan entre sí; cada segmento tiene su
+ * parte del máximo, con lo que el orden LRU es exacto dentro de cada segmento y aproximado en el total.
+ * Cada entrada caduca expireAfterWrite milisegundos después de escribirse.
+ * Con refreshAfterWrite, la primera lectura de una entrada que lo ha superado cuenta como fallo para que
+ * ese llamante la recargue, mientras el resto sigue leyendo el valor anterior hasta que llega el nuevo.
+ * Si esa recarga no llega en otros refreshAfterWrite milisegundos la puede intentar otro llamante.
+ * get(key, loader) carga cada clave una sola vez aunque la pidan varios hilos a la vez.
+ * Lleva la cuenta de aciertos, fallos y expulsiones.
+ */
+public class BoundedCache extends AbstractValueAdaptingCache {
+    // Por debajo de este máximo un único segmento, para que el LRU sea exacto en las cachés pequeñas
+    private static final long MINIMO_POR_SEGMENTO = 64;
+    private static final int SEGMENTOS_MAX = 16;
+
+    private final String name;
+    private final long maximumSize;
+    private final long expireAfterWrite;
+    private final long refreshAfterWrite;
+    private final LongSupplier ticker;
+
+    private final Segmento[] segmentos;
+    // Cargas en curso de get(key, loader), el resto de llamantes de la misma clave esperan a la primera
+    private final Map<Object, CompletableFuture<Object>> cargando = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param name              nombre de la caché
+     * @param maximumSize       entradas como máximo
+     * @param expireAfterWrite  milisegundos de vida de cada entrada, 0 para que no caduquen
+     * @param refreshAfterWrite milisegundos tras los que se recarga la entrada al leerla, 0 para no recargar
+     */
+    public BoundedCache(String name, long maximumSize, long expireAfterWrite, long refreshAfterWrite) {
+        this(name, maximumSize, expireAfterWrite, refreshAfterWrite, System::currentTimeMillis);
+    }
+
+    BoundedCache(String name, long maximumSize, long expireAfterWrite, long refreshAfterWrite, LongSupplier ticker) {
+        super(true);
+        this.name = name;
+        this.maximumSize = maximumSize;
+        this.expireAfterWrite = expireAfterWrite;
+        this.refreshAfterWrite = refreshAfterWrite;
+        this.ticker = ticker;
+        int numero = Math.max(1, Math.min(SEGMENTOS_MAX, Integer.highestOneBit((int) Math.min(Integer.MAX_VALUE, maximumSize / MINIMO_POR_SEGMENTO))));
+        this.segmentos = new Segmento[numero];
+        for (int i = 0; i < numero; i++) {
+            // El resto de la división se reparte entre los primeros para que la suma sea maximumSize
+            segmentos[i] = new Segmento(maximumSize / numero + (i < maximumSize % numero ? 1 : 0));
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return List.of(segmentos);
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        long ahora = ticker.getAsLong();
+        Segmento segmento = segmento(key);
+        synchronized (segmento) {
+            Entrada entrada = segmento.store.get(key);
+            if (entrada == null) {
+                misses.increment();
+                return null;
+            }
+            long edad = ahora - entrada.escrita;
+            if (expireAfterWrite > 0 && edad >= expireAfterWrite) {
+                segmento.store.remove(key);
+                evictions.increment();
+                misses.increment();
+                return null;
+            }
+            // Una recarga que no ha terminado en refreshAfterWrite se da por fallida
+            if (refreshAfterWrite > 0 && edad >= refreshAfterWrite
+                    && (entrada.recargandoDesde < 0 || ahora - entrada.recargandoDesde >= refreshAfterWrite)) {
+                // Solo este llamante recarga, los demás siguen con el valor que hay
+                entrada.recargandoDesde = ahora;
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entrada.valor;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object valor = lookup(key);
+        if (valor != null) {
+            return (T) fromStoreValue(valor);
+        }
+        CompletableFuture<Object> carga = new CompletableFuture<>();
+        CompletableFuture<Object> enCurso = cargando.putIfAbsent(key, carga);
+        if (enCurso != null) {
+            return (T) fromStoreValue(esperar(enCurso, key, valueLoader));
+        }
+        try {
+            // Otro hilo ha podido terminar su carga entre la lectura y el putIfAbsent
+            Object reciente = vigente(key);
+            if (reciente != null) {
+                carga.complete(reciente);
+                return (T) fromStoreValue(reciente);
+            }
+            T cargado = valueLoader.call();
+            put(key, cargado);
+            carga.complete(toStoreValue(cargado));
+            return cargado;
+        } catch (Exception e) {
+            recargaFallida(key);
+            carga.completeExceptionally(e);
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } finally {
+            cargando.remove(key, carga);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        Entrada entrada = new Entrada(toStoreValue(value), ticker.getAsLong());
+        Segmento segmento = segmento(key);
+        synchronized (segmento) {
+            segmento.store.put(key, entrada);
+            Iterator<Map.Entry<Object, Entrada>> it = segmento.store.entrySet().iterator();
+            while (segmento.store.size() > segmento.maximo && it.hasNext()) {
+                it.next();
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        Segmento segmento = segmento(key);
+        synchronized (segmento) {
+            segmento.store.remove(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Segmento segmento : segmentos) {
+            synchronized (segmento) {
+                segmento.store.clear();
+            }
+        }
+    }
+
+    public long size() {
+        long total = 0;
+        for (Segmento segmento : segmentos) {
+            synchronized (segmento) {
+                total += segmento.store.size();
+            }
+        }
+        return total;
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(name, size(), maximumSize, hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    private Segmento segmento(Object key) {
+        int h = key.hashCode();
+        return segmentos[(h ^ (h >>> 16)) & (segmentos.length - 1)];
+    }
+
+    /**
+     * Valor guardado que no está caducado ni pendiente de recargar, sin contar en las estadísticas
+     */
+    private Object vigente(Object key) {
+        long ahora = ticker.getAsLong();
+        Segmento segmento = segmento(key);
+        synchronized (segmento) {
+            Entrada entrada = segmento.store.get(key);
+            if (entrada == null) {
+                return null;
+            }
+            long edad = ahora - entrada.escrita;
+            boolean caducada = expireAfterWrite > 0 && edad >= expireAfterWrite;
+            boolean porRecargar = refreshAfterWrite > 0 && edad >= refreshAfterWrite;
+            return caducada || porRecargar ? null : entrada.valor;
+        }
+    }
+
+    /**
+     * Si la carga era una recarga, la siguiente lectura la puede volver a intentar
+     */
+    private void recargaFallida(Object key) {
+        Segmento segmento = segmento(key);
+        synchronized (segmento) {
+            Entrada entrada = segmento.store.get(key);
+            if (entrada != null) {
+                entrada.recargandoDesde = -1;
+            }
+        }
+    }
+
+    private Object esperar(CompletableFuture<Object> carga, Object key, Callable<?> valueLoader) {
+        try {
+            return carga.get();
+        } catch (ExecutionException e) {
+            throw new ValueRetrievalException(key, valueLoader, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+    }
+
+    /**
+     * Parte de la caché con su propio orden de acceso, se protege con su monitor
+     */
+    private static class Segmento {
+        private final long maximo;
+        // Orden de acceso: la primera entrada es la usada hace más tiempo
+        private final LinkedHashMap<Object, Entrada> store = new LinkedHashMap<>(16, 0.75f, true);
+
+        private Segmento(long maximo) {
+            this.maximo = maximo;
+        }
+    }
+
+    private static class Entrada {
+        private final Object valor;
+        private final long escrita;
+        // Instante en el que un llamante empezó a recargarla, -1 si nadie la está recargando
+        private long recargandoDesde = -1;
+
+        private Entrada(Object valor, long escrita) {
+            this.valor = valor;
+            this.escrita = escrita;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.develop.config.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.env.Environment;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Crea una BoundedCache por cada nombre de caché que se usa.
+ * Los límites de cada una se leen de cache.{nombre}.maximum-size, expire-after-write y refresh-after-write,
+ * y si no están se usan los de cache.default.
+ */
+public class BoundedCacheManager implements CacheManager {
+    private static final String PREFIX = "cache.";
+
+    private final Environment environment;
+    private final Map<String, BoundedCache> caches = new ConcurrentHashMap<>();
+
+    public BoundedCacheManager(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::create);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    public List<CacheStats> stats() {
+        return caches.values().stream()
+                .map(BoundedCache::stats)
+                .sorted(Comparator.comparing(CacheStats::name))
+                .toList();
+    }
+
+    private BoundedCache create(String name) {
+        return new BoundedCache(
+                name,
+                property(name, "maximum-size", 1000),
+                property(name, "expire-after-write", 0),
+                property(name, "refresh-after-write", 0)
+        );
+    }
+
+    private long property(String name, String key, long defaultValue) {
+        Long valor = environment.getProperty(PREFIX + name + "." + key, Long.class);
+        if (valor != null) {
+            return valor;
+        }
+        return environment.getProperty(PREFIX + "default." + key, Long.class, defaultValue);
+    }
+}
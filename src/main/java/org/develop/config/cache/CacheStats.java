@@ -0,0 +1,25 @@
+package org.develop.config.cache;
+
+/**
+ * Métricas de una caché
+ *
+ * @param name        nombre de la caché
+ * @param size        entradas guardadas
+ * @param maximumSize entradas como máximo
+ * @param hits        lecturas que encontraron el valor
+ * @param misses      lecturas que no lo encontraron, caducado o pendiente de recargar
+ * @param evictions   entradas expulsadas por tamaño o caducidad
+ */
+public record CacheStats(
+        String name,
+        long size,
+        long maximumSize,
+        long hits,
+        long misses,
+        long evictions
+) {
+    public double hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 1.0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,17 @@
+package org.develop.config.cache;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * Cachés acotadas para @Cacheable, sustituyen al ConcurrentMapCacheManager por defecto que crece sin límite
+ */
+@Configuration
+public class CachingConfig {
+
+    @Bean
+    public BoundedCacheManager cacheManager(Environment environment) {
+        return new BoundedCacheManager(environment);
+    }
+}
@@ -16,6 +16,9 @@ public class StorageConfig {
     @Value("${upload.delete}")
     private String deleteAll;
 
+    @Value("${upload.migrate:false}")
+    private boolean migrate;
+
     @Autowired
     public StorageConfig(StorageService storageService) {
         this.storageService = storageService;
@@ -29,5 +32,10 @@ public class StorageConfig {
         }
 
         storageService.init(); // inicializamos
+
+        if (migrate) {
+            // Los ficheros de antes del reparto por subdirectorios
+            storageService.migrate();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,88 @@
+package org.develop.config.websockets;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Agrupa las notificaciones que llegan dentro de una ventana de tiempo en un único lote.
+ * Si la misma clave (el id del Funko) cambia varias veces en la ventana solo se queda el último estado.
+ * Al cerrar la ventana se entrega el lote como un array JSON con las notificaciones en el orden de su último cambio.
+ */
+@Slf4j
+public class WebSocketCoalescer {
+    private final long window;
+    private final Consumer<String> sink;
+
+    // Notificaciones de la ventana abierta, se protege con el monitor de la instancia
+    private Map<String, String> pendientes = new LinkedHashMap<>();
+    private boolean scheduled;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ws-coalescer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param window milisegundos que se esperan para agrupar, con 0 cada notificación sale en su propio lote
+     * @param sink   recibe cada lote ya montado
+     */
+    public WebSocketCoalescer(long window, Consumer<String> sink) {
+        this.window = window;
+        this.sink = sink;
+    }
+
+    /**
+     * Añade una notificación a la ventana abierta, sustituyendo la anterior de la misma clave
+     *
+     * @param key  clave de la entidad notificada
+     * @param json notificación ya serializada
+     */
+    public void add(String key, String json) {
+        if (window <= 0) {
+            sink.accept("[" + json + "]");
+            return;
+        }
+        synchronized (this) {
+            // Se quita antes para que pase al final del orden
+            pendientes.remove(key);
+            pendientes.put(key, json);
+            if (!scheduled) {
+                scheduled = true;
+                scheduler.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Cierra la ventana y entrega el lote si tiene algo
+     */
+    public void flush() {
+        Map<String, String> lote;
+        synchronized (this) {
+            lote = pendientes;
+            pendientes = new LinkedHashMap<>();
+            scheduled = false;
+        }
+        if (lote.isEmpty()) {
+            return;
+        }
+        log.debug("Enviando lote de " + lote.size() + " notificaciones");
+        try {
+            sink.accept("[" + String.join(",", lote.values()) + "]");
+        } catch (RuntimeException e) {
+            log.error("Error al enviar el lote de notificaciones", e);
+        }
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+        flush();
+    }
+}
@@ -16,14 +16,45 @@ public class WebSocketConfig implements WebSocketConfigurer {
     @Value("${api.version}")
     private String apiVersion;
 
+    @Value("${websockets.dispatcher.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${websockets.dispatcher.senders:4}")
+    private int senders;
+
+    @Value("${websockets.dispatcher.send-time-limit:5000}")
+    private int sendTimeLimit;
+
+    @Value("${websockets.dispatcher.buffer-size-limit:524288}")
+    private int bufferSizeLimit;
+
+    @Value("${websockets.dispatcher.overflow:DROP}")
+    private WebSocketDispatcher.OverflowPolicy overflowPolicy;
+
+    @Value("${websockets.coalescing-window:50}")
+    private long coalescingWindow;
+
+    @Value("${websockets.heartbeat-interval:1000}")
+    private long heartbeatInterval;
+
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         registry.addHandler(webSocketFunkosHandler(), "/ws/" + apiVersion + "/funkos");
     }
 
-    @Bean
+    @Bean(destroyMethod = "shutdown")
     public WebSocketHandler webSocketFunkosHandler() {
-        return new WebSocketHandler("Funkos");
+        return new WebSocketHandler("Funkos", webSocketFunkosDispatcher(), webSocketFunkosCoalescer(), heartbeatInterval);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public WebSocketCoalescer webSocketFunkosCoalescer() {
+        return new WebSocketCoalescer(coalescingWindow, webSocketFunkosDispatcher()::broadcastBatch);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public WebSocketDispatcher webSocketFunkosDispatcher() {
+        return new WebSocketDispatcher(queueCapacity, senders, sendTimeLimit, bufferSizeLimit, overflowPolicy);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,355 @@
+package org.develop.config.websockets;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reparte los mensajes a las sesiones WebSocket sin bloquear a quien los publica.
+ * Los mensajes entran en una cola acotada y un hilo los copia al buffer de salida de cada sesión.
+ * Un pool pequeño de hilos vacía los buffers; cada sesión la escribe un solo hilo a la vez y en orden.
+ * Cada mensaje se convierte una sola vez en un TextMessage y esa misma instancia se comparte entre todas las sesiones;
+ * el contenedor sigue codificando el texto al escribir el frame de cada sesión.
+ * Igual que ConcurrentWebSocketSessionDecorator, cada sesión tiene un límite de tiempo de envío y de tamaño
+ * del buffer: si un cliente lento lo supera se descartan sus mensajes más antiguos o se cierra la sesión.
+ * Un vigilante revisa los envíos en curso y cierra las sesiones bloqueadas más del límite de tiempo,
+ * interrumpiendo al hilo que las escribe para que no se quede retenido aunque no lleguen más mensajes.
+ * Las sesiones que negocian el subprotocolo de lotes reciben los lotes y no cada evento por separado.
+ */
+@Slf4j
+public class WebSocketDispatcher {
+
+    /**
+     * Qué hacer con una sesión cuyo buffer de salida está lleno
+     */
+    public enum OverflowPolicy {DROP, CLOSE}
+
+    private final int queueCapacity;
+    private final int sendTimeLimit;
+    private final int bufferSizeLimit;
+    private final OverflowPolicy overflowPolicy;
+
+    private final BlockingQueue<Envio> queue;
+    private final Map<String, Outbox> outboxes = new ConcurrentHashMap<>();
+    private final ExecutorService senders;
+    private final Thread dispatcherThread;
+    private final ScheduledExecutorService watchdog;
+    // Solo puede haber un latido esperando en la cola, los demás se agrupan con él
+    private final AtomicBoolean heartbeatPending = new AtomicBoolean();
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder droppedQueueFull = new LongAdder();
+    private final LongAdder droppedSlowConsumer = new LongAdder();
+    private final LongAdder closedSlowConsumer = new LongAdder();
+
+    /**
+     * @param queueCapacity   mensajes pendientes de repartir como máximo
+     * @param senders         hilos que escriben en las sesiones
+     * @param sendTimeLimit   milisegundos que puede durar un envío antes de cerrar la sesión
+     * @param bufferSizeLimit bytes pendientes por sesión como máximo
+     * @param overflowPolicy  qué hacer cuando se supera el buffer de una sesión
+     */
+    public WebSocketDispatcher(int queueCapacity, int senders, int sendTimeLimit, int bufferSizeLimit, OverflowPolicy overflowPolicy) {
+        this.queueCapacity = queueCapacity;
+        this.sendTimeLimit = sendTimeLimit;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.overflowPolicy = overflowPolicy;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicInteger contador = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senders, r -> {
+            Thread thread = new Thread(r, "ws-sender-" + contador.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dispatcherThread = new Thread(this::dispatch, "ws-dispatcher");
+        this.dispatcherThread.setDaemon(true);
+        this.dispatcherThread.start();
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ws-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long periodo = Math.max(sendTimeLimit / 2, 10);
+        this.watchdog.scheduleWithFixedDelay(this::closeStuckSessions, periodo, periodo, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Añade una sesión a las que reciben los mensajes
+     */
+    public void register(WebSocketSession session) {
+        boolean lotes = WebSocketHandler.BATCH_SUBPROTOCOL.equals(session.getAcceptedProtocol());
+        outboxes.put(session.getId(), new Outbox(session, lotes));
+    }
+
+    /**
+     * Quita una sesión, lo que tuviera pendiente se descarta
+     */
+    public void unregister(WebSocketSession session) {
+        Outbox outbox = outboxes.remove(session.getId());
+        if (outbox != null) {
+            outbox.buffer.clear();
+        }
+    }
+
+    /**
+     * Encola un mensaje para todas las sesiones. No bloquea.
+     *
+     * @return false si la cola está llena y el mensaje se ha descartado
+     */
+    public boolean broadcast(String message) {
+        return broadcast(encode(message));
+    }
+
+    /**
+     * Encola un frame ya codificado para todas las sesiones. No bloquea.
+     *
+     * @return false si la cola está llena y el mensaje se ha descartado
+     */
+    public boolean broadcast(TextMessage frame) {
+        return enqueue(new Envio(frame, Destino.EVENTOS));
+    }
+
+    /**
+     * Encola un lote para las sesiones que han negociado el subprotocolo de lotes. No bloquea.
+     *
+     * @return false si la cola está llena y el lote se ha descartado
+     */
+    public boolean broadcastBatch(String batch) {
+        return enqueue(new Envio(encode(batch), Destino.LOTES));
+    }
+
+    /**
+     * Encola un latido para las sesiones que no tienen nada pendiente de enviar,
+     * a las que están recibiendo mensajes no les hace falta.
+     * Si ya hay un latido esperando en la cola este se descarta.
+     *
+     * @return false si se ha agrupado con otro latido o la cola está llena
+     */
+    public boolean heartbeat(String message) {
+        if (!heartbeatPending.compareAndSet(false, true)) {
+            return false;
+        }
+        if (!queue.offer(new Envio(encode(message), Destino.LATIDO))) {
+            heartbeatPending.set(false);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Crea el TextMessage que se comparte entre todas las sesiones. Se construye desde los bytes UTF-8
+     * para que el tamaño que se descuenta del buffer de cada sesión sea el de los bytes y no se calcule
+     * una vez por sesión. El envío no aprovecha estos bytes: el contenedor vuelve a codificar el texto.
+     */
+    public static TextMessage encode(String message) {
+        return new TextMessage(message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Envía un mensaje solo a una sesión, respetando el orden de lo que ya tenga pendiente
+     */
+    public void send(WebSocketSession session, String message) {
+        Outbox outbox = outboxes.get(session.getId());
+        if (outbox != null) {
+            outbox.add(encode(message));
+        }
+    }
+
+    public WebSocketStats stats() {
+        return new WebSocketStats(
+                outboxes.size(),
+                queue.size(),
+                queueCapacity,
+                sent.sum(),
+                droppedQueueFull.sum(),
+                droppedSlowConsumer.sum(),
+                closedSlowConsumer.sum()
+        );
+    }
+
+    private boolean enqueue(Envio envio) {
+        if (!queue.offer(envio)) {
+            droppedQueueFull.increment();
+            log.warn("Cola de notificaciones WebSocket llena, se descarta el mensaje");
+            return false;
+        }
+        return true;
+    }
+
+    public void shutdown() {
+        watchdog.shutdownNow();
+        dispatcherThread.interrupt();
+        senders.shutdown();
+        try {
+            senders.awaitTermination(sendTimeLimit, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Cierra las sesiones cuyo envío en curso dura más del límite
+     */
+    private void closeStuckSessions() {
+        long ahora = System.currentTimeMillis();
+        for (Outbox outbox : outboxes.values()) {
+            long inicio = outbox.sendStartTime;
+            if (inicio > 0 && ahora - inicio > sendTimeLimit) {
+                outbox.close("Envío bloqueado más de " + sendTimeLimit + " ms");
+            }
+        }
+    }
+
+    private void dispatch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Envio envio = queue.take();
+                switch (envio.destino()) {
+                    case EVENTOS -> outboxes.values().stream()
+                            .filter(outbox -> !outbox.lotes)
+                            .forEach(outbox -> outbox.add(envio.frame()));
+                    case LOTES -> outboxes.values().stream()
+                            .filter(outbox -> outbox.lotes)
+                            .forEach(outbox -> outbox.add(envio.frame()));
+                    case LATIDO -> {
+                        heartbeatPending.set(false);
+                        outboxes.values().stream()
+                                .filter(outbox -> outbox.buffer.isEmpty())
+                                .forEach(outbox -> outbox.add(envio.frame()));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("Error al repartir el mensaje a las sesiones WebSocket", e);
+            }
+        }
+    }
+
+    private enum Destino {EVENTOS, LOTES, LATIDO}
+
+    private record Envio(TextMessage frame, Destino destino) {
+    }
+
+    /**
+     * Buffer de salida de una sesión
+     */
+    private class Outbox {
+        private final WebSocketSession session;
+        private final boolean lotes;
+        private final Queue<TextMessage> buffer = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger bufferSize = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile long sendStartTime;
+        // Hilo que está escribiendo en la sesión, para interrumpirlo si se cierra por lenta
+        private Thread sender;
+
+        private Outbox(WebSocketSession session, boolean lotes) {
+            this.session = session;
+            this.lotes = lotes;
+        }
+
+        private void add(TextMessage message) {
+            if (closed.get()) {
+                return;
+            }
+            long inicio = sendStartTime;
+            if (inicio > 0 && System.currentTimeMillis() - inicio > sendTimeLimit) {
+                close("Envío de más de " + sendTimeLimit + " ms");
+                return;
+            }
+            if (bufferSize.get() + message.getPayloadLength() > bufferSizeLimit) {
+                if (overflowPolicy == OverflowPolicy.CLOSE) {
+                    close("Buffer de salida de más de " + bufferSizeLimit + " bytes");
+                    return;
+                }
+                // Se descartan los más antiguos hasta que quepa el nuevo
+                while (bufferSize.get() + message.getPayloadLength() > bufferSizeLimit) {
+                    TextMessage descartado = buffer.poll();
+                    if (descartado == null) {
+                        break;
+                    }
+                    bufferSize.addAndGet(-descartado.getPayloadLength());
+                    droppedSlowConsumer.increment();
+                }
+            }
+            buffer.add(message);
+            bufferSize.addAndGet(message.getPayloadLength());
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                senders.execute(this::flush);
+            }
+        }
+
+        private void flush() {
+            do {
+                TextMessage message;
+                while (!closed.get() && (message = buffer.poll()) != null) {
+                    bufferSize.addAndGet(-message.getPayloadLength());
+                    synchronized (this) {
+                        sender = Thread.currentThread();
+                    }
+                    sendStartTime = System.currentTimeMillis();
+                    try {
+                        if (session.isOpen()) {
+                            session.sendMessage(message);
+                            sent.increment();
+                        }
+                    } catch (Exception e) {
+                        log.info("Error al enviar a la sesión WebSocket " + session.getId() + ": " + e.getMessage());
+                    } finally {
+                        sendStartTime = 0;
+                        synchronized (this) {
+                            sender = null;
+                            // Una interrupción del vigilante no puede llegar al siguiente buffer que vacíe este hilo
+                            Thread.interrupted();
+                        }
+                    }
+                }
+                scheduled.set(false);
+                // Si ha llegado algo mientras se liberaba, lo recoge este mismo hilo
+            } while (!closed.get() && !buffer.isEmpty() && scheduled.compareAndSet(false, true));
+        }
+
+        private void close(String motivo) {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            log.warn("Cerrando sesión WebSocket lenta " + session.getId() + ": " + motivo);
+            closedSlowConsumer.increment();
+            outboxes.remove(session.getId(), this);
+            buffer.clear();
+            synchronized (this) {
+                if (sender != null) {
+                    sender.interrupt();
+                }
+            }
+            try {
+                session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException e) {
+                log.info("Error al cerrar la sesión WebSocket " + session.getId() + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package org.develop.config.websockets;
 
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
@@ -11,52 +10,88 @@ import org.springframework.web.socket.handler.TextWebSocketHandler;
 import java.io.IOException;
 import java.time.LocalTime;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public class WebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable, WebSocketSender {
+    // Los clientes que lo negocian reciben las notificaciones agrupadas en arrays JSON
+    public static final String BATCH_SUBPROTOCOL = "batch.funkos.websocket";
+
     private final String entity;
-    private final Set<WebSocketSession> sessions = new CopyOnWriteArraySet<>();
+    // Las sesiones y sus envíos los gestiona el dispatcher, así un cliente lento no bloquea al resto
+    private final WebSocketDispatcher dispatcher;
+    private final WebSocketCoalescer coalescer;
+    // El latido tiene su propio hilo, así no hace falta activar @EnableScheduling en toda la aplicación
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ws-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-    public WebSocketHandler(String entity) {
+    /**
+     * @param heartbeatInterval milisegundos entre latidos, con 0 no se envían
+     */
+    public WebSocketHandler(String entity, WebSocketDispatcher dispatcher, WebSocketCoalescer coalescer, long heartbeatInterval) {
         this.entity = entity;
+        this.dispatcher = dispatcher;
+        this.coalescer = coalescer;
+        if (heartbeatInterval > 0) {
+            heartbeat.scheduleAtFixedRate(this::sendHeartbeat, heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void shutdown() {
+        heartbeat.shutdownNow();
     }
 
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         log.info("Conexión establecida con el servidor");
         log.info("Sesión: " + session);
-        sessions.add(session);
-        TextMessage message = new TextMessage("Updates Web socket: " + entity + " - Funkos API SPRINT BOOT");
+        dispatcher.register(session);
+        String message = "Updates Web socket: " + entity + " - Funkos API SPRINT BOOT";
         log.info("Servidor envía: {}", message);
-        session.sendMessage(message);
+        dispatcher.send(session, message);
     }
 
 
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
         log.info("Conexión cerrada con el servidor: " + status);
-        sessions.remove(session);
+        dispatcher.unregister(session);
     }
 
+    /**
+     * Encola el mensaje para todas las sesiones, no espera a que se envíe
+     */
     public void sendMessage(String message) throws IOException {
         log.info("Enviar mensaje de cambios en la entidad: " + entity + " : " + message);
-        for (WebSocketSession session : sessions) {
-            if (session.isOpen()) {
-                log.info("Servidor WS envía: " + message);
-                session.sendMessage(new TextMessage(message));
-            }
-        }
+        dispatcher.broadcast(message);
+    }
+
+    /**
+     * Como sendMessage(message), pero además lo añade al lote abierto con su clave,
+     * donde sustituye a cualquier mensaje anterior de la misma clave
+     */
+    public void sendMessage(String key, String message) throws IOException {
+        sendMessage(message);
+        coalescer.add(key, message);
     }
 
-    @Scheduled(fixedRate = 1000) // Cada segundo
     @Override
     public void sendPeriodicMessages() throws IOException {
-        for (WebSocketSession session : sessions) {
-            if (session.isOpen()) {
-                String broadcast = "server periodic message " + LocalTime.now();
-                log.info("Server sends: " + broadcast);
-                session.sendMessage(new TextMessage(broadcast));
-            }
+        // Un único mensaje por tick compartido por todas las sesiones
+        String broadcast = "server periodic message " + LocalTime.now();
+        log.debug("Server sends: " + broadcast);
+        dispatcher.heartbeat(broadcast);
+    }
+
+    private void sendHeartbeat() {
+        // Una excepción cancelaría los latidos siguientes
+        try {
+            sendPeriodicMessages();
+        } catch (IOException | RuntimeException e) {
+            log.error("Error al enviar el latido WebSocket", e);
         }
     }
 
@@ -77,11 +112,12 @@ public class WebSocketHandler extends TextWebSocketHandler implements SubProtoco
     @Override
     public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
         log.info("Error de transporte con el servidor: " + exception.getMessage());
+        dispatcher.unregister(session);
     }
 
     @Override
     public List<String> getSubProtocols() {
-        return List.of("subprotocol.demo.websocket");
+        return List.of("subprotocol.demo.websocket", BATCH_SUBPROTOCOL);
     }
 
 
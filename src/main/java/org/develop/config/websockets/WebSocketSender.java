@@ -6,5 +6,7 @@ public interface WebSocketSender {
 
     void sendMessage(String message) throws IOException;
 
+    void sendMessage(String key, String message) throws IOException;
+
     void sendPeriodicMessages() throws IOException;
 }
\ No newline at end of file
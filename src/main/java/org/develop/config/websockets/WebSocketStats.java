@@ -0,0 +1,23 @@
+package org.develop.config.websockets;
+
+/**
+ * Métricas del reparto de mensajes WebSocket
+ *
+ * @param sessions            sesiones conectadas
+ * @param queueDepth          mensajes en cola pendientes de repartir
+ * @param queueCapacity       capacidad de la cola
+ * @param sent                mensajes escritos en las sesiones
+ * @param droppedQueueFull    mensajes descartados por tener la cola llena
+ * @param droppedSlowConsumer mensajes descartados del buffer de clientes lentos
+ * @param closedSlowConsumer  sesiones cerradas por superar los límites
+ */
+public record WebSocketStats(
+        int sessions,
+        int queueDepth,
+        int queueCapacity,
+        long sent,
+        long droppedQueueFull,
+        long droppedSlowConsumer,
+        long closedSlowConsumer
+) {
+}
@@ -0,0 +1,36 @@
+package org.develop.notifications.bus;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Bus dentro del propio proceso, para cuando solo hay un nodo.
+ * Entrega los eventos en el hilo que publica, en el mismo orden.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "notifications.bus.type", havingValue = "local", matchIfMissing = true)
+public class LocalNotificationBus implements NotificationBus {
+    private final List<Consumer<NotificationEvent>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(NotificationEvent event) {
+        for (Consumer<NotificationEvent> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                log.error("Error al entregar la notificación " + event.entity() + " " + event.key(), e);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<NotificationEvent> listener) {
+        listeners.add(listener);
+    }
+}
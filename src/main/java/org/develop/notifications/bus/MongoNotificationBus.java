@@ -0,0 +1,146 @@
+package org.develop.notifications.bus;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.MessageListener;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.TailableCursorRequest;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Bus entre nodos sobre una colección capped de MongoDB.
+ * Publicar es insertar en la colección y cada nodo, también el que publica, la sigue con un cursor tailable.
+ * La colección capped mantiene el orden de inserción, así todos los nodos ven los eventos en el mismo orden.
+ * Funciona con un Mongo sin replica set, que los change streams sí necesitarían.
+ * Se activa con notifications.bus.type=mongo
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "notifications.bus.type", havingValue = "mongo")
+public class MongoNotificationBus implements NotificationBus {
+    // Ids ya entregados que se recuerdan, por si el cursor se reabre y vuelve a leer los últimos
+    private static final int ENTREGADOS_MAX = 10_000;
+
+    private final MongoTemplate mongoTemplate;
+    private final String collection;
+    private final long cappedSize;
+    private final Duration clockSkew;
+
+    private final List<Consumer<NotificationEvent>> listeners = new CopyOnWriteArrayList<>();
+    private final Map<ObjectId, Boolean> entregados = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ObjectId, Boolean> eldest) {
+            return size() > ENTREGADOS_MAX;
+        }
+    };
+    private MessageListenerContainer container;
+
+    public MongoNotificationBus(MongoTemplate mongoTemplate,
+                                @Value("${notifications.bus.collection:notificaciones}") String collection,
+                                @Value("${notifications.bus.capped-size:1048576}") long cappedSize,
+                                @Value("${notifications.bus.clock-skew:5s}") Duration clockSkew) {
+        this.mongoTemplate = mongoTemplate;
+        this.collection = collection;
+        this.cappedSize = cappedSize;
+        this.clockSkew = clockSkew;
+    }
+
+    /**
+     * Crea la colección capped si no existe y empieza a seguirla desde este momento,
+     * con el margen de clock-skew para los eventos que otros nodos publican con el reloj atrasado
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!mongoTemplate.collectionExists(collection)) {
+            log.info("Creando la colección capped " + collection + " para el bus de notificaciones");
+            mongoTemplate.createCollection(collection, CollectionOptions.empty().capped().size(cappedSize));
+        }
+        // El instante se toma antes de suscribirse; lo que se lea repetido por el margen lo descarta entregados
+        Query desdeAhora = Query.query(where("_id").gte(primerId(Instant.now().minus(clockSkew))));
+        MessageListener<Document, Document> listener = message -> deliver(message.getBody());
+        container = new DefaultMessageListenerContainer(mongoTemplate);
+        // builder() sin argumentos devuelve el builder sin tipo, con el listener queda tipado
+        TailableCursorRequest.TailableCursorRequestBuilder<Document> request = TailableCursorRequest.builder(listener);
+        container.register(request
+                .collection(collection)
+                .filter(desdeAhora)
+                .build(), Document.class);
+        container.start();
+    }
+
+    /**
+     * El menor ObjectId del segundo del instante. Los ids generados en un mismo segundo no siguen el orden
+     * de inserción (el resto del id es aleatorio por proceso), así que no vale con new ObjectId(fecha).
+     */
+    static ObjectId primerId(Instant instante) {
+        return new ObjectId(ByteBuffer.allocate(12).putInt((int) instante.getEpochSecond()).array());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (container != null) {
+            container.stop();
+        }
+    }
+
+    @Override
+    public void publish(NotificationEvent event) {
+        Document document = new Document("_id", new ObjectId())
+                .append("entity", event.entity())
+                .append("key", event.key())
+                .append("payload", event.payload());
+        mongoTemplate.insert(document, collection);
+    }
+
+    @Override
+    public void subscribe(Consumer<NotificationEvent> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Entrega a los suscriptores un documento leído de la colección, una sola vez por id
+     */
+    void deliver(Document document) {
+        if (document == null) {
+            return;
+        }
+        synchronized (entregados) {
+            if (entregados.put(document.getObjectId("_id"), Boolean.TRUE) != null) {
+                return;
+            }
+        }
+        NotificationEvent event = new NotificationEvent(
+                document.getString("entity"),
+                document.getString("key"),
+                document.getString("payload")
+        );
+        for (Consumer<NotificationEvent> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                log.error("Error al entregar la notificación " + event.entity() + " " + event.key(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package org.develop.notifications.bus;
+
+import java.util.function.Consumer;
+
+/**
+ * Bus por el que se publican las notificaciones de cambios.
+ * Cada nodo se suscribe y entrega a sus clientes WebSocket lo que llega por el bus,
+ * así un cambio hecho en un nodo llega a los clientes conectados a cualquier otro.
+ * Se elige la implementación con notifications.bus.type (local o mongo).
+ */
+public interface NotificationBus {
+
+    /**
+     * Publica un evento para todos los nodos, incluido este
+     */
+    void publish(NotificationEvent event);
+
+    /**
+     * Registra un suscriptor que recibirá cada evento una sola vez
+     */
+    void subscribe(Consumer<NotificationEvent> listener);
+}
@@ -0,0 +1,14 @@
+package org.develop.notifications.bus;
+
+/**
+ * Notificación ya serializada que viaja por el bus
+ *
+ * @param entity  entidad notificada, por ejemplo FUNKOS
+ * @param key     clave de la entidad, los eventos de la misma clave llegan en el orden en el que se publicaron
+ * @param payload notificación en JSON tal y como se envía a los clientes
+ */
+public record NotificationEvent(
+        String entity,
+        String key,
+        String payload) {
+}
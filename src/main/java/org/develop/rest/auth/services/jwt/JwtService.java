@@ -1,11 +1,17 @@
 package org.develop.rest.auth.services.jwt;
 
+import com.auth0.jwt.interfaces.DecodedJWT;
 import org.springframework.security.core.userdetails.UserDetails;
 
 public interface JwtService {
+    // Versión del usuario con la que se firmó el token
+    String VERSION_CLAIM = "ver";
+
     String extractUserName(String token);
 
     String generateToken(UserDetails userDetails);
 
     boolean isTokenValid(String token, UserDetails userDetails);
+
+    DecodedJWT verifyToken(String token);
 }
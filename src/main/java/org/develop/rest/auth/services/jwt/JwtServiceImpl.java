@@ -1,17 +1,26 @@
 package org.develop.rest.auth.services.jwt;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.develop.rest.auth.services.users.UserVersionRegistry;
+import org.develop.rest.users.models.User;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 
@@ -24,6 +33,29 @@ public class JwtServiceImpl implements JwtService {
     @Value("${jwt.expiration}")
     private Long jwtExpiration;
 
+    // Tiempo máximo en segundos que se recuerda un token ya verificado, nunca más allá de su expiración
+    @Value("${jwt.cache.ttl:300}")
+    private Long verifiedTokenTtl;
+
+    @Value("${jwt.cache.max-size:10000}")
+    private Integer verifiedTokenMaxSize;
+
+    // El algoritmo y el verificador son inmutables y seguros entre hilos, se crean una vez
+    private Algorithm algorithm;
+    private JWTVerifier verifier;
+
+    // Tokens ya verificados por el hash del token, así no guardamos los tokens en claro
+    private final Map<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+
+    private record VerifiedToken(DecodedJWT jwt, long validUntil) {
+    }
+
+    @PostConstruct
+    void init() {
+        algorithm = Algorithm.HMAC512(getSigningKey());
+        verifier = JWT.require(algorithm).build();
+    }
+
 
     @Override
     public String extractUserName(String token) {
@@ -42,8 +74,39 @@ public class JwtServiceImpl implements JwtService {
     @Override
     public boolean isTokenValid(String token, UserDetails userDetails) {
         log.info("Validating token " + token + " for user " + userDetails.getUsername());
-        final String userName = extractUserName(token);
-        return (userName.equals(userDetails.getUsername())) && !isTokenExpired(token);
+        try {
+            return verifyToken(token).getSubject().equals(userDetails.getUsername());
+        } catch (JWTVerificationException e) {
+            return false;
+        }
+    }
+
+
+    /**
+     * Decodifica el token comprobando la firma y la expiración.
+     * Los tokens ya verificados se recuerdan hasta su expiración, así cada token se verifica una vez.
+     *
+     * @throws JWTVerificationException si el token no es válido
+     */
+    @Override
+    public DecodedJWT verifyToken(String token) {
+        String key = hash(token);
+        long now = System.currentTimeMillis();
+        VerifiedToken cached = verifiedTokens.get(key);
+        if (cached != null) {
+            if (cached.validUntil() > now) {
+                return cached.jwt();
+            }
+            verifiedTokens.remove(key, cached);
+        }
+
+        DecodedJWT jwt = verifier.verify(token);
+        long validUntil = Math.min(jwt.getExpiresAt().getTime(), now + verifiedTokenTtl * 1000);
+        if (verifiedTokens.size() >= verifiedTokenMaxSize) {
+            evictExpired(now);
+        }
+        verifiedTokens.put(key, new VerifiedToken(jwt, validUntil));
+        return jwt;
     }
 
 
@@ -56,28 +119,39 @@ public class JwtServiceImpl implements JwtService {
 
     private String generateToken(Map<String, Object> extraClaims, UserDetails userDetails) {
         // Preparamos el token
-        Algorithm algorithm = Algorithm.HMAC512(getSigningKey());
         Date now = new Date();
         Date expirationDate = new Date(now.getTime() + (1000 * jwtExpiration));
 
-        return JWT.create()
+        var builder = JWT.create()
                 .withHeader(createHeader())
                 .withSubject(userDetails.getUsername())
                 .withIssuedAt(now)
                 .withExpiresAt(expirationDate)
-                .withClaim("extraClaims", extraClaims)
-                .sign(algorithm);
+                .withClaim("extraClaims", extraClaims);
+        // Con la versión del usuario el filtro sabe si el usuario que tiene guardado es anterior al token
+        if (userDetails instanceof User user) {
+            builder.withClaim(VERSION_CLAIM, UserVersionRegistry.versionOf(user));
+        }
+        return builder.sign(algorithm);
     }
 
 
-    private boolean isTokenExpired(String token) {
-        Date expirationDate = extractExpiration(token);
-        return expirationDate.before(new Date());
+    private void evictExpired(long now) {
+        verifiedTokens.values().removeIf(token -> token.validUntil() <= now);
+        // Si siguen sin caber es que hay demasiados tokens vivos, empezamos de cero
+        if (verifiedTokens.size() >= verifiedTokenMaxSize) {
+            verifiedTokens.clear();
+        }
     }
 
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, DecodedJWT::getExpiresAt);
+    private String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
     }
 
 
@@ -92,4 +166,4 @@ public class JwtServiceImpl implements JwtService {
         return Base64.getEncoder().encode(jwtSigningKey.getBytes());
 
     }
-}
\ No newline at end of file
+}
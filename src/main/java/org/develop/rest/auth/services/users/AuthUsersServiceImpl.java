@@ -3,6 +3,7 @@ package org.develop.rest.auth.services.users;
 import org.develop.rest.auth.repositories.AuthUsersRepository;
 import org.develop.rest.users.exceptions.UserNotFound;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
@@ -17,7 +18,10 @@ public class AuthUsersServiceImpl implements AuthUsersService {
     }
 
 
+    // Se cachea para no ir a la base de datos en cada petición autenticada,
+    // UsersServiceImpl la vacía al modificar o borrar usuarios
     @Override
+    @Cacheable(cacheNames = "userDetails")
     public UserDetails loadUserByUsername(String username) throws UserNotFound {
         return authUsersRepository.findByUsername(username)
                 .orElseThrow(() -> new UserNotFound("Usuario con username " + username + " no encontrado"));
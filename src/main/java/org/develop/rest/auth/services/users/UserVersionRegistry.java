@@ -0,0 +1,125 @@
+package org.develop.rest.auth.services.users;
+
+import lombok.extern.slf4j.Slf4j;
+import org.develop.notifications.bus.NotificationBus;
+import org.develop.notifications.bus.NotificationEvent;
+import org.develop.rest.auth.repositories.AuthUsersRepository;
+import org.develop.rest.users.models.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Usuarios vigentes con los que se autentican los tokens, leídos de la base de datos y guardados poco tiempo.
+ * Los tokens llevan la versión del usuario con la que se firmaron (su updatedAt); si es posterior a la guardada
+ * el usuario se vuelve a leer. Los roles salen siempre de aquí, nunca del token.
+ * Cuando un usuario cambia o se borra se publica en el bus y todos los nodos lo descartan;
+ * si algún nodo no recibe el aviso, como mucho sigue con el usuario anterior hasta que caduca.
+ */
+@Component
+@Slf4j
+public class UserVersionRegistry {
+    public static final String INVALIDATION_ENTITY = "USERS";
+
+    private final AuthUsersRepository authUsersRepository;
+    private final NotificationBus notificationBus;
+    private final long ttl;
+    private final int maxSize;
+
+    private final Map<String, Vigente> usuarios = new ConcurrentHashMap<>();
+
+    // Usuario leído de la base de datos, null si no existe o está borrado
+    private record Vigente(User user, long validUntil) {
+    }
+
+    /**
+     * @param ttl     segundos que se guarda un usuario leído
+     * @param maxSize usuarios guardados como máximo
+     */
+    public UserVersionRegistry(AuthUsersRepository authUsersRepository, NotificationBus notificationBus,
+                               @Value("${jwt.users.ttl:30}") long ttl,
+                               @Value("${jwt.users.max-size:10000}") int maxSize) {
+        this.authUsersRepository = authUsersRepository;
+        this.notificationBus = notificationBus;
+        this.ttl = ttl * 1000;
+        this.maxSize = maxSize;
+        notificationBus.subscribe(this::onNotification);
+    }
+
+    /**
+     * Versión de un usuario: el instante de su última actualización en milisegundos
+     */
+    public static long versionOf(User user) {
+        return user.getUpdatedAt() == null ? 0L : user.getUpdatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Usuario vigente para un token
+     *
+     * @param username usuario del token
+     * @param version  versión del usuario guardada en el token, 0 si no la lleva
+     * @return vacío si el usuario ya no existe o está borrado
+     */
+    public Optional<User> current(String username, long version) {
+        long now = System.currentTimeMillis();
+        Vigente vigente = usuarios.get(username);
+        // Si el token es de una versión posterior a la guardada, lo guardado está desfasado
+        if (vigente == null || vigente.validUntil() <= now || (vigente.user() != null && versionOf(vigente.user()) < version)) {
+            vigente = load(username, now);
+        }
+        return Optional.ofNullable(vigente.user());
+    }
+
+    /**
+     * Descarta el usuario en todos los nodos, sus tokens se vuelven a comprobar contra la base de datos.
+     * Dentro de una transacción se avisa al terminarla, para que nadie lea el usuario anterior al commit.
+     */
+    public void changed(String username) {
+        usuarios.remove(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    publish(username);
+                }
+            });
+        } else {
+            publish(username);
+        }
+    }
+
+    private Vigente load(String username, long now) {
+        User user = authUsersRepository.findByUsername(username).filter(User::isEnabled).orElse(null);
+        if (usuarios.size() >= maxSize) {
+            usuarios.values().removeIf(v -> v.validUntil() <= now);
+            // Si siguen sin caber empezamos de cero
+            if (usuarios.size() >= maxSize) {
+                usuarios.clear();
+            }
+        }
+        Vigente vigente = new Vigente(user, now + ttl);
+        usuarios.put(username, vigente);
+        return vigente;
+    }
+
+    private void publish(String username) {
+        try {
+            notificationBus.publish(new NotificationEvent(INVALIDATION_ENTITY, username, null));
+        } catch (RuntimeException e) {
+            // El resto de nodos lo volverán a leer al caducar
+            log.error("No se ha podido publicar el cambio del usuario " + username, e);
+        }
+    }
+
+    private void onNotification(NotificationEvent event) {
+        if (INVALIDATION_ENTITY.equals(event.entity())) {
+            usuarios.remove(event.key());
+        }
+    }
+}
@@ -5,13 +5,16 @@ import lombok.extern.slf4j.Slf4j;
 import org.develop.rest.categorias.dto.CategoriaDto;
 import org.develop.rest.categorias.models.Categoria;
 import org.develop.rest.categorias.services.CategoriasService;
+import org.develop.utils.http.ConditionalRequestUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.HashMap;
 import java.util.List;
@@ -23,24 +26,36 @@ import java.util.Map;
 @PreAuthorize("hasRole('USER')")
 public class CategoriasRestControllers {
     private final CategoriasService categoriasService;
+    private final ConditionalRequestUtils conditionalRequestUtils;
 
     @Autowired
-    public CategoriasRestControllers(CategoriasService categoriasService) {
+    public CategoriasRestControllers(CategoriasService categoriasService, ConditionalRequestUtils conditionalRequestUtils) {
         this.categoriasService = categoriasService;
+        this.conditionalRequestUtils = conditionalRequestUtils;
     }
 
     @GetMapping()
     public ResponseEntity<List<Categoria>> getAllCategorias(
-            @RequestParam (required = false) String nombre)
+            @RequestParam (required = false) String nombre,
+            WebRequest request)
     {
         log.info("Buscando todas las categorias con nombre: " + nombre);
-        return ResponseEntity.ok(categoriasService.findAll(nombre));
+        var categorias = categoriasService.findAll(nombre);
+        if (request.checkNotModified(conditionalRequestUtils.etag(categorias, categorias.size(), Categoria::getId, Categoria::getFechaActualizacion))) {
+            return null;
+        }
+        return ResponseEntity.ok(categorias);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity <Categoria> getCategoriaById(@PathVariable Long id){
+    public ResponseEntity <Categoria> getCategoriaById(@PathVariable Long id, WebRequest request){
         log.info("Buscando la categoria con id: " + id);
-        return ResponseEntity.ok(categoriasService.findById(id));
+        var categoria = categoriasService.findById(id);
+        if (request.checkNotModified(conditionalRequestUtils.etag(categoria.getId(), categoria.getFechaActualizacion()),
+                conditionalRequestUtils.lastModified(categoria.getFechaActualizacion()))) {
+            return null;
+        }
+        return ResponseEntity.ok(categoria);
     }
 
     @PostMapping()
@@ -52,9 +67,17 @@ public class CategoriasRestControllers {
 
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Categoria> updateCategory(@PathVariable Long id, @Valid @RequestBody CategoriaDto categoriaUpdateDto) {
+    public ResponseEntity<Categoria> updateCategory(@PathVariable Long id, @Valid @RequestBody CategoriaDto categoriaUpdateDto, WebRequest request) {
         log.info("Actualizando categoria por id: " + id + " con categoria: " + categoriaUpdateDto);
-        return ResponseEntity.ok(categoriasService.update(id, categoriaUpdateDto));
+        // Con If-Match solo se actualiza si la categoria no ha cambiado, si no checkNotModified pone el 412
+        if (request.getHeader(HttpHeaders.IF_MATCH) != null) {
+            var actual = categoriasService.findById(id);
+            if (request.checkNotModified(conditionalRequestUtils.etag(actual.getId(), actual.getFechaActualizacion()))) {
+                return null;
+            }
+        }
+        var categoria = categoriasService.update(id, categoriaUpdateDto);
+        return ResponseEntity.ok().eTag(conditionalRequestUtils.etag(categoria.getId(), categoria.getFechaActualizacion())).body(categoria);
     }
 
     @DeleteMapping("/{id}")
@@ -0,0 +1,194 @@
+package org.develop.rest.categorias.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.develop.notifications.bus.NotificationBus;
+import org.develop.notifications.bus.NotificationEvent;
+import org.develop.rest.categorias.models.Categoria;
+import org.develop.rest.categorias.repositories.CategoriasRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Todas las categorías en memoria, indexadas por id y por nombre sin distinguir mayúsculas.
+ * Son pocas y casi nunca cambian, así resolver la categoría de un Funko no consulta la base de datos.
+ * Se cargan al arrancar y cualquier escritura las invalida de golpe en todos los nodos; la siguiente lectura las vuelve a cargar.
+ * Lo que no está en memoria se busca en la base de datos, por si otro nodo la ha creado y el aviso no ha llegado.
+ * Lo que tampoco está en la base de datos se recuerda unos segundos, así una importación con muchas filas
+ * de una categoría que no existe no hace una consulta por fila.
+ */
+@Component
+@Slf4j
+public class CategoriasRegistry {
+    public static final String INVALIDATION_ENTITY = "CATEGORIAS";
+    // Lo que se recuerda una categoría que no existe, y cuántas como mucho
+    private static final long AUSENTE_MS = 5_000;
+    private static final int MAX_AUSENTES = 10_000;
+
+    private final CategoriasRepository categoriasRepository;
+    private final NotificationBus notificationBus;
+
+    // Se sustituye entera, nunca se modifica
+    private volatile Indice indice;
+    // Cuenta las invalidaciones, una carga que empezó antes de la última no se publica
+    private long version;
+    // Ids y nombres en minúsculas que no están en la base de datos, con el instante en el que se olvidan
+    private final Map<Long, Long> idsAusentes = new ConcurrentHashMap<>();
+    private final Map<String, Long> nombresAusentes = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CategoriasRegistry(CategoriasRepository categoriasRepository, NotificationBus notificationBus) {
+        this.categoriasRepository = categoriasRepository;
+        this.notificationBus = notificationBus;
+        notificationBus.subscribe(this::onNotification);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        log.info("Cargando las categorías en memoria");
+        indice();
+    }
+
+    public Optional<Categoria> findById(Long id) {
+        Categoria categoria = indice().porId().get(id);
+        if (categoria != null || id == null) {
+            return Optional.ofNullable(categoria);
+        }
+        return enBaseDeDatos(idsAusentes, id, () -> categoriasRepository.findById(id));
+    }
+
+    /**
+     * Busca sin distinguir mayúsculas. El índice compara sin crear un nombre nuevo en minúsculas.
+     */
+    public Optional<Categoria> findByNombre(String nombre) {
+        if (nombre == null) {
+            return Optional.empty();
+        }
+        Categoria categoria = indice().porNombre().get(nombre);
+        if (categoria != null) {
+            return Optional.of(categoria);
+        }
+        return enBaseDeDatos(nombresAusentes, nombre.toLowerCase(Locale.ROOT), () -> categoriasRepository.findByNombreEqualsIgnoreCase(nombre));
+    }
+
+    /**
+     * Descarta las categorías en memoria de todos los nodos. Dentro de una transacción se vuelve a descartar
+     * y se avisa al resto al confirmarla, así nadie vuelve a cargar los datos antiguos antes de que se vean los nuevos.
+     */
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    clear();
+                    publish();
+                }
+            });
+            clear();
+        } else {
+            clear();
+            publish();
+        }
+    }
+
+    /**
+     * Una categoría que está en la base de datos pero no en memoria indica que el índice está desfasado,
+     * se descarta para que la siguiente lectura lo vuelva a cargar. La que no está se recuerda como ausente
+     */
+    private <K> Optional<Categoria> enBaseDeDatos(Map<K, Long> ausentes, K clave, Supplier<Optional<Categoria>> consulta) {
+        Long olvidar = ausentes.get(clave);
+        if (olvidar != null) {
+            if (System.currentTimeMillis() < olvidar) {
+                return Optional.empty();
+            }
+            ausentes.remove(clave, olvidar);
+        }
+        long inicio;
+        synchronized (this) {
+            inicio = version;
+        }
+        Optional<Categoria> categoria = consulta.get();
+        if (categoria.isPresent()) {
+            clear();
+        } else {
+            ausente(ausentes, clave, inicio);
+        }
+        return categoria;
+    }
+
+    // Si ha habido una invalidación durante la consulta la categoría puede existir ya, no se recuerda
+    private synchronized <K> void ausente(Map<K, Long> ausentes, K clave, long inicio) {
+        if (version != inicio) {
+            return;
+        }
+        if (ausentes.size() >= MAX_AUSENTES) {
+            ausentes.clear();
+        }
+        ausentes.put(clave, System.currentTimeMillis() + AUSENTE_MS);
+    }
+
+    private void publish() {
+        try {
+            notificationBus.publish(new NotificationEvent(INVALIDATION_ENTITY, "", ""));
+        } catch (RuntimeException e) {
+            // El resto de nodos las encuentran igualmente en la base de datos al no tenerlas en memoria
+            log.error("No se ha podido publicar el cambio de las categorías", e);
+        }
+    }
+
+    private void onNotification(NotificationEvent event) {
+        if (INVALIDATION_ENTITY.equals(event.entity())) {
+            clear();
+        }
+    }
+
+    private synchronized void clear() {
+        version++;
+        indice = null;
+        idsAusentes.clear();
+        nombresAusentes.clear();
+    }
+
+    private Indice indice() {
+        Indice actual = indice;
+        if (actual != null) {
+            return actual;
+        }
+        long inicio;
+        synchronized (this) {
+            inicio = version;
+        }
+        Indice cargado = Indice.of(categoriasRepository.findAll());
+        synchronized (this) {
+            if (version == inicio && indice == null) {
+                indice = cargado;
+            }
+        }
+        return cargado;
+    }
+
+    private record Indice(Map<Long, Categoria> porId, Map<String, Categoria> porNombre) {
+        private static Indice of(List<Categoria> categorias) {
+            Map<Long, Categoria> porId = new HashMap<>();
+            Map<String, Categoria> porNombre = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (Categoria categoria : categorias) {
+                porId.put(categoria.getId(), categoria);
+                porNombre.put(categoria.getNombre(), categoria);
+            }
+            return new Indice(Collections.unmodifiableMap(porId), Collections.unmodifiableMap(porNombre));
+        }
+    }
+}
@@ -10,25 +10,22 @@ import org.develop.rest.categorias.mappers.CategoriasMapper;
 import org.develop.rest.categorias.dto.CategoriaDto;
 import org.develop.rest.categorias.models.Categoria;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheConfig;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.CachePut;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 
 @Service
 @Slf4j
-@CacheConfig(cacheNames = {"categorias"})
 public class CategoriasServiceImpl implements CategoriasService{
     private final CategoriasRepository categoriasRepository;
     private final CategoriasMapper categoriasMapper;
+    private final CategoriasRegistry categoriasRegistry;
 
     @Autowired
-    public CategoriasServiceImpl(CategoriasRepository categoriasRepository, CategoriasMapper categoriasMapper) {
+    public CategoriasServiceImpl(CategoriasRepository categoriasRepository, CategoriasMapper categoriasMapper, CategoriasRegistry categoriasRegistry) {
         this.categoriasRepository = categoriasRepository;
         this.categoriasMapper = categoriasMapper;
+        this.categoriasRegistry = categoriasRegistry;
     }
 
 
@@ -43,41 +40,40 @@ public class CategoriasServiceImpl implements CategoriasService{
     }
 
     @Override
-    @Cacheable
     public Categoria findByNombre(String nombre) {
         log.info("Buscando categoria por su nombre: " + nombre);
-        return categoriasRepository.findByNombreEqualsIgnoreCase(nombre).orElseThrow(() -> new CategoriaNotFound(nombre));
+        return categoriasRegistry.findByNombre(nombre).orElseThrow(() -> new CategoriaNotFound(nombre));
     }
 
     @Override
-    @Cacheable
     public Categoria findById(Long id) {
         log.info("Buscando categoria por su i" +
                 "d: " + id);
-        return categoriasRepository.findById(id).orElseThrow(() -> new CategoriaNotFound(id));
+        return categoriasRegistry.findById(id).orElseThrow(() -> new CategoriaNotFound(id));
     }
 
     @Override
-    @CachePut
     public Categoria save(CategoriaDto categoriaDto) {
         log.info("Guardando categoría: " + categoriaDto);
-        if(categoriasRepository.findByNombreEqualsIgnoreCase(categoriaDto.getNombre()).isPresent()){
+        if(categoriasRegistry.findByNombre(categoriaDto.getNombre()).isPresent()){
             throw new CategoriaNotSave(categoriaDto.getNombre());
         }
-        return categoriasRepository.save(categoriasMapper.toCategoria(categoriaDto));
+        var categoriaSaved = categoriasRepository.save(categoriasMapper.toCategoria(categoriaDto));
+        categoriasRegistry.invalidate();
+        return categoriaSaved;
     }
 
 
     @Override
-    @CachePut
     public Categoria update(Long id, CategoriaDto categoriaDto) {
         log.info("Actualizando categoria: " + categoriaDto);
         Categoria categoriaActual = findById(id);
-        return categoriasRepository.save(categoriasMapper.toCategoria(categoriaDto, categoriaActual));
+        var categoriaUpdated = categoriasRepository.save(categoriasMapper.toCategoria(categoriaDto, categoriaActual));
+        categoriasRegistry.invalidate();
+        return categoriaUpdated;
     }
 
     @Override
-    @CacheEvict
     @Transactional
     public void deleteById(Long id) {
         log.info("Borrando categoría con id: " + id);
@@ -87,6 +83,7 @@ public class CategoriasServiceImpl implements CategoriasService{
             throw new CategoriaConflict("No se puede borrar la categoría con id " + id + " porque tiene funkos asociados");
         } else {
             categoriasRepository.deleteById(id);
+            categoriasRegistry.invalidate();
         }
     }
 }
@@ -0,0 +1,195 @@
+package org.develop.rest.funkos.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.develop.notifications.bus.NotificationBus;
+import org.develop.notifications.bus.NotificationEvent;
+import org.develop.rest.funkos.models.Funko;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Caché de Funkos por id en dos niveles: la caché acotada "funkos" del propio nodo y,
+ * si está configurado, un segundo nivel compartido por todos los nodos.
+ * Las entradas llevan la versión de la caché con la que se leyeron: cualquier invalidación sube la versión,
+ * y lo que se leyó de la base de datos antes de ella ya no se guarda, así una lectura lenta no deja datos antiguos.
+ * Las invalidaciones se publican en el bus de notificaciones para que todos los nodos las apliquen.
+ * Los Funkos que devuelve son compartidos y no se deben modificar.
+ */
+@Component
+@Slf4j
+public class FunkoNearCache {
+    public static final String CACHE_NAME = "funkos";
+    public static final String INVALIDATION_ENTITY = "FUNKOS_CACHE";
+
+    private final Cache local;
+    private final NotificationBus notificationBus;
+    // Opcional, sin él solo se usa la caché del nodo
+    private final FunkoSharedCache shared;
+
+    private long version;
+
+    @Autowired
+    public FunkoNearCache(CacheManager cacheManager, NotificationBus notificationBus, @Nullable FunkoSharedCache shared) {
+        this.local = cacheManager.getCache(CACHE_NAME);
+        this.notificationBus = notificationBus;
+        this.shared = shared;
+        notificationBus.subscribe(this::onNotification);
+    }
+
+    /**
+     * Busca el Funko en la caché y si no está lo carga y lo guarda
+     *
+     * @param id     id del Funko
+     * @param loader lectura de la base de datos
+     */
+    public Optional<Funko> findById(Long id, Function<Long, Optional<Funko>> loader) {
+        Funko funko = local.get(id, Funko.class);
+        if (funko != null) {
+            return Optional.of(funko);
+        }
+        long inicio = version();
+        if (shared != null) {
+            Optional<Funko> compartido = shared.get(id);
+            if (compartido.isPresent()) {
+                store(compartido.get(), inicio, false);
+                return compartido;
+            }
+        }
+        Optional<Funko> cargado = loader.apply(id).map(FunkoNearCache::copia);
+        cargado.ifPresent(f -> store(f, inicio, true));
+        return cargado;
+    }
+
+    /**
+     * Busca varios Funkos, los que no están en caché se cargan con una sola lectura
+     *
+     * @param ids    ids de los Funkos
+     * @param loader lectura de la base de datos de los que faltan
+     */
+    public List<Funko> findAllById(Collection<Long> ids, Function<Collection<Long>, List<Funko>> loader) {
+        List<Funko> funkos = new ArrayList<>(ids.size());
+        List<Long> faltan = new ArrayList<>();
+        for (Long id : ids) {
+            Funko funko = local.get(id, Funko.class);
+            if (funko != null) {
+                funkos.add(funko);
+            } else {
+                faltan.add(id);
+            }
+        }
+        if (faltan.isEmpty()) {
+            return funkos;
+        }
+        long inicio = version();
+        for (Funko funko : loader.apply(faltan)) {
+            Funko copia = copia(funko);
+            store(copia, inicio, true);
+            funkos.add(copia);
+        }
+        return funkos;
+    }
+
+    /**
+     * Descarta el Funko de la caché de todos los nodos.
+     * Dentro de una transacción se descarta también al terminarla, por si alguien lo vuelve a leer antes del commit.
+     */
+    public void invalidate(Long id) {
+        invalidate(List.of(id));
+    }
+
+    public void invalidate(Collection<Long> ids) {
+        List<Long> copia = List.copyOf(ids);
+        evict(copia);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    publish(copia);
+                }
+            });
+        } else {
+            publish(copia);
+        }
+    }
+
+    /**
+     * Versión actual de la caché, para guardar después con warm lo leído a partir de ahora
+     */
+    public synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Guarda en el nivel local los Funkos que se han leído por otra vía, como una consulta del catálogo
+     *
+     * @param funkos Funkos leídos de la base de datos
+     * @param inicio versión de la caché antes de empezar a leerlos
+     */
+    public void warm(Collection<Funko> funkos, long inicio) {
+        funkos.forEach(funko -> store(copia(funko), inicio, false));
+    }
+
+    // Solo se guarda si no ha habido ninguna invalidación desde que se empezó a leer
+    private synchronized void store(Funko funko, long inicio, boolean compartir) {
+        if (version != inicio) {
+            log.debug("Funko con id " + funko.getId() + " invalidado mientras se leía, no se guarda en caché");
+            return;
+        }
+        local.put(funko.getId(), funko);
+        if (compartir && shared != null) {
+            shared.put(funko);
+        }
+    }
+
+    private void evict(Collection<Long> ids) {
+        synchronized (this) {
+            version++;
+            ids.forEach(local::evict);
+        }
+        if (shared != null) {
+            ids.forEach(shared::evict);
+        }
+    }
+
+    private void publish(List<Long> ids) {
+        try {
+            ids.forEach(id -> notificationBus.publish(new NotificationEvent(INVALIDATION_ENTITY, String.valueOf(id), "")));
+        } catch (RuntimeException e) {
+            log.error("Error al publicar la invalidación de la caché de Funkos", e);
+        }
+    }
+
+    private void onNotification(NotificationEvent event) {
+        if (!event.entity().equals(INVALIDATION_ENTITY)) {
+            return;
+        }
+        evict(List.of(Long.valueOf(event.key())));
+    }
+
+    // Copia desligada de la sesión de JPA en la que se leyó
+    private static Funko copia(Funko funko) {
+        return new Funko(
+                funko.getId(),
+                funko.getNombre(),
+                funko.getPrecio(),
+                funko.getCantidad(),
+                funko.getImagen(),
+                funko.getFechaCreacion(),
+                funko.getFechaActualizacion(),
+                funko.getIsActivo(),
+                funko.getCategoria(),
+                funko.getVersion()
+        );
+    }
+}
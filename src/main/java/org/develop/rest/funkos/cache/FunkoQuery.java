@@ -0,0 +1,43 @@
+package org.develop.rest.funkos.cache;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Clave normalizada de una consulta del catálogo: los filtros presentes y la página pedida.
+ * La categoría va por id, así un cambio de nombre de la categoría no reutiliza resultados antiguos.
+ */
+public record FunkoQuery(
+        Long categoriaId,
+        String nombre,
+        Double precioMax,
+        Integer cantidadMin,
+        Boolean isActivo,
+        int page,
+        int size,
+        Sort sort
+) {
+    public static FunkoQuery of(Long categoriaId, Optional<String> nombre, Optional<Double> precioMax, Optional<Integer> cantidadMin, Optional<Boolean> isActivo, Pageable pageable) {
+        return new FunkoQuery(
+                categoriaId,
+                // El filtro por nombre no distingue mayúsculas
+                nombre.map(n -> n.toLowerCase(Locale.ROOT)).orElse(null),
+                precioMax.orElse(null),
+                cantidadMin.orElse(null),
+                isActivo.orElse(null),
+                pageable.getPageNumber(),
+                pageable.getPageSize(),
+                pageable.getSort()
+        );
+    }
+
+    /**
+     * Las consultas por stock cambian con cada pedido, se guardan menos tiempo
+     */
+    public boolean dependeDelStock() {
+        return cantidadMin != null || sort.getOrderFor("cantidad") != null;
+    }
+}
@@ -0,0 +1,169 @@
+package org.develop.rest.funkos.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.develop.notifications.bus.NotificationBus;
+import org.develop.notifications.bus.NotificationEvent;
+import org.develop.rest.funkos.models.Funko;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Caché de resultados de las consultas del catálogo.
+ * Solo guarda los ids de la página y el total; los Funkos se sacan de la FunkoNearCache.
+ * Cada categoría tiene un contador de versión y las consultas sin categoría usan uno global.
+ * Un resultado guarda la versión con la que se calculó y deja de valer en cuanto cambia un Funko de su categoría,
+ * sin tener que buscar qué claves borrar. Las consultas que dependen del stock caducan antes.
+ */
+@Component
+@Slf4j
+public class FunkoQueryCache {
+    public static final String CACHE_NAME = "funkos-consultas";
+    public static final String INVALIDATION_ENTITY = "FUNKOS_QUERY";
+    // Clave en el bus para las consultas de todas las categorías
+    private static final String TODAS = "*";
+
+    private final Cache resultados;
+    private final FunkoNearCache funkoCache;
+    private final NotificationBus notificationBus;
+    private final long ttl;
+    private final long stockTtl;
+
+    private final AtomicLong global = new AtomicLong();
+    private final Map<Long, AtomicLong> porCategoria = new ConcurrentHashMap<>();
+
+    @Autowired
+    public FunkoQueryCache(CacheManager cacheManager,
+                           FunkoNearCache funkoCache,
+                           NotificationBus notificationBus,
+                           @Value("${funkos.cache.query.ttl:30000}") long ttl,
+                           @Value("${funkos.cache.query.stock-ttl:2000}") long stockTtl) {
+        this.resultados = cacheManager.getCache(CACHE_NAME);
+        this.funkoCache = funkoCache;
+        this.notificationBus = notificationBus;
+        this.ttl = ttl;
+        this.stockTtl = stockTtl;
+        notificationBus.subscribe(this::onNotification);
+    }
+
+    /**
+     * Devuelve la página de la consulta desde la caché o la calcula y la guarda
+     *
+     * @param query  clave de la consulta
+     * @param loader consulta a la base de datos
+     * @param reader lectura de los Funkos que no estén en la FunkoNearCache
+     */
+    public Page<Funko> findAll(FunkoQuery query, Supplier<Page<Funko>> loader, Function<Collection<Long>, List<Funko>> reader) {
+        Resultado resultado = resultados.get(query, Resultado.class);
+        if (resultado != null && vigente(query, resultado)) {
+            Page<Funko> page = hidratar(query, resultado, reader);
+            if (page != null) {
+                return page;
+            }
+        }
+        long inicio = version(query);
+        long inicioFunkos = funkoCache.version();
+        Page<Funko> page = loader.get();
+        long caduca = System.currentTimeMillis() + (query.dependeDelStock() ? stockTtl : ttl);
+        resultados.put(query, new Resultado(page.getContent().stream().map(Funko::getId).toList(), page.getTotalElements(), inicio, caduca));
+        funkoCache.warm(page.getContent(), inicioFunkos);
+        return page;
+    }
+
+    /**
+     * Invalida los resultados de las categorías de los Funkos que han cambiado, en todos los nodos.
+     * Dentro de una transacción se vuelve a invalidar al terminarla.
+     *
+     * @param categoriaIds ids de las categorías afectadas, un null es un Funko sin categoría
+     */
+    public void invalidate(Collection<Long> categoriaIds) {
+        List<String> claves = new ArrayList<>();
+        claves.add(TODAS);
+        categoriaIds.stream().filter(Objects::nonNull).distinct().map(String::valueOf).forEach(claves::add);
+        claves.forEach(this::bump);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    publish(claves);
+                }
+            });
+        } else {
+            publish(claves);
+        }
+    }
+
+    private long version(FunkoQuery query) {
+        return query.categoriaId() == null ? global.get() : contador(query.categoriaId()).get();
+    }
+
+    private boolean vigente(FunkoQuery query, Resultado resultado) {
+        return resultado.version() == version(query) && resultado.caduca() > System.currentTimeMillis();
+    }
+
+    // Null si algún Funko ya no existe, entonces se repite la consulta
+    private Page<Funko> hidratar(FunkoQuery query, Resultado resultado, Function<Collection<Long>, List<Funko>> reader) {
+        Map<Long, Funko> funkos = funkoCache.findAllById(resultado.ids(), reader).stream()
+                .collect(Collectors.toMap(Funko::getId, Function.identity()));
+        List<Funko> contenido = new ArrayList<>(resultado.ids().size());
+        for (Long id : resultado.ids()) {
+            Funko funko = funkos.get(id);
+            if (funko == null) {
+                return null;
+            }
+            contenido.add(funko);
+        }
+        return new PageImpl<>(contenido, PageRequest.of(query.page(), query.size(), query.sort()), resultado.total());
+    }
+
+    private AtomicLong contador(Long categoriaId) {
+        return porCategoria.computeIfAbsent(categoriaId, id -> new AtomicLong());
+    }
+
+    // Las consultas sin categoría incluyen Funkos de todas, cualquier cambio las invalida
+    private void bump(String clave) {
+        if (clave.equals(TODAS)) {
+            global.incrementAndGet();
+        } else {
+            contador(Long.valueOf(clave)).incrementAndGet();
+        }
+    }
+
+    private void publish(List<String> claves) {
+        try {
+            claves.forEach(clave -> notificationBus.publish(new NotificationEvent(INVALIDATION_ENTITY, clave, "")));
+        } catch (RuntimeException e) {
+            log.error("Error al publicar la invalidación de las consultas de Funkos", e);
+        }
+    }
+
+    private void onNotification(NotificationEvent event) {
+        if (event.entity().equals(INVALIDATION_ENTITY)) {
+            bump(event.key());
+        }
+    }
+
+    /**
+     * Ids de una página con el total de la consulta, la versión con la que se calculó y cuándo caduca
+     */
+    private record Resultado(List<Long> ids, long total, long version, long caduca) {
+    }
+}
@@ -0,0 +1,16 @@
+package org.develop.rest.funkos.cache;
+
+import org.develop.rest.funkos.models.Funko;
+
+import java.util.Optional;
+
+/**
+ * Segundo nivel de la caché de Funkos, compartido por todos los nodos
+ */
+public interface FunkoSharedCache {
+    Optional<Funko> get(Long id);
+
+    void put(Funko funko);
+
+    void evict(Long id);
+}
@@ -0,0 +1,34 @@
+package org.develop.rest.funkos.cache;
+
+import org.develop.rest.funkos.models.Funko;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Segundo nivel en la memoria del propio nodo, para pruebas y desarrollo.
+ * Se activa con funkos.cache.shared.type=local
+ */
+@Component
+@ConditionalOnProperty(name = "funkos.cache.shared.type", havingValue = "local")
+public class LocalFunkoSharedCache implements FunkoSharedCache {
+    private final Map<Long, Funko> funkos = new ConcurrentHashMap<>();
+
+    @Override
+    public Optional<Funko> get(Long id) {
+        return Optional.ofNullable(funkos.get(id));
+    }
+
+    @Override
+    public void put(Funko funko) {
+        funkos.put(funko.getId(), funko);
+    }
+
+    @Override
+    public void evict(Long id) {
+        funkos.remove(id);
+    }
+}
@@ -0,0 +1,86 @@
+package org.develop.rest.funkos.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.develop.rest.funkos.models.Funko;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Segundo nivel en una colección de MongoDB que comparten todos los nodos.
+ * Cada Funko se guarda como JSON con una fecha de caducidad; un índice TTL borra los caducados.
+ * Se activa con funkos.cache.shared.type=mongo
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "funkos.cache.shared.type", havingValue = "mongo")
+public class MongoFunkoSharedCache implements FunkoSharedCache {
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper mapper;
+    private final String collection;
+    private final long ttl;
+
+    public MongoFunkoSharedCache(MongoTemplate mongoTemplate,
+                                 ObjectMapper mapper,
+                                 @Value("${funkos.cache.shared.collection:funkos_cache}") String collection,
+                                 @Value("${funkos.cache.shared.ttl:60}") long ttl) {
+        this.mongoTemplate = mongoTemplate;
+        this.mapper = mapper;
+        this.collection = collection;
+        this.ttl = ttl;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        log.info("Creando el índice TTL de la caché compartida de Funkos " + collection);
+        mongoTemplate.indexOps(collection).ensureIndex(new Index().on("expiresAt", Sort.Direction.ASC).expire(0, TimeUnit.SECONDS));
+    }
+
+    @Override
+    public Optional<Funko> get(Long id) {
+        Document document = mongoTemplate.findById(id, Document.class, collection);
+        // El índice TTL no borra en el acto, se comprueba también al leer
+        if (document == null || document.getDate("expiresAt").before(new Date())) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(mapper.readValue(document.getString("funko"), Funko.class));
+        } catch (JsonProcessingException e) {
+            log.warn("Funko con id " + id + " ilegible en la caché compartida, se descarta");
+            evict(id);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void put(Funko funko) {
+        try {
+            Document document = new Document("_id", funko.getId())
+                    .append("funko", mapper.writeValueAsString(funko))
+                    .append("expiresAt", new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttl)));
+            mongoTemplate.save(document, collection);
+        } catch (JsonProcessingException e) {
+            log.error("Error al convertir el Funko con id " + funko.getId() + " a JSON", e);
+        }
+    }
+
+    @Override
+    public void evict(Long id) {
+        mongoTemplate.remove(Query.query(where("_id").is(id)), collection);
+    }
+}
@@ -6,18 +6,31 @@ import io.swagger.v3.oas.annotations.Parameters;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.develop.rest.funkos.dto.FunkoCreateDto;
+import org.develop.rest.funkos.dto.FunkoImportResult;
 import org.develop.rest.funkos.dto.FunkoUpdateDto;
+import org.develop.rest.funkos.exceptions.FunkoPreconditionFailed;
 import org.develop.rest.funkos.models.Funko;
+import org.develop.rest.funkos.services.FunkoExportService;
+import org.develop.rest.funkos.services.FunkoImportService;
 import org.develop.rest.funkos.services.FunkosService;
+import org.develop.rest.storage.dto.UploadStatus;
+import org.develop.rest.storage.services.ChunkedUploadService;
+import org.develop.utils.export.ExportFormat;
+import org.develop.utils.http.ConditionalRequestUtils;
+import org.develop.utils.pagination.CursorPageResponse;
 import org.develop.utils.pagination.PageResponse;
+import org.develop.utils.pagination.PaginationCursorUtils;
+import org.develop.utils.pagination.PaginationLinksUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.repository.query.Param;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -25,9 +38,14 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -38,10 +56,22 @@ import java.util.Optional;
 @Tag(name = "Funkos", description = "Endpoint de Funkos de nuestra tienda")
 public class FunkoRestController {
     private  final FunkosService funkosService;
+    private final PaginationLinksUtils paginationLinksUtils;
+    private final PaginationCursorUtils paginationCursorUtils;
+    private final ConditionalRequestUtils conditionalRequestUtils;
+    private final FunkoImportService funkoImportService;
+    private final FunkoExportService funkoExportService;
+    private final ChunkedUploadService chunkedUploadService;
 
     @Autowired
-    public FunkoRestController(FunkosService funkosService) {
+    public FunkoRestController(FunkosService funkosService, PaginationLinksUtils paginationLinksUtils, PaginationCursorUtils paginationCursorUtils, ConditionalRequestUtils conditionalRequestUtils, FunkoImportService funkoImportService, FunkoExportService funkoExportService, ChunkedUploadService chunkedUploadService) {
         this.funkosService = funkosService;
+        this.paginationLinksUtils = paginationLinksUtils;
+        this.paginationCursorUtils = paginationCursorUtils;
+        this.conditionalRequestUtils = conditionalRequestUtils;
+        this.funkoImportService = funkoImportService;
+        this.funkoExportService = funkoExportService;
+        this.chunkedUploadService = chunkedUploadService;
     }
 
     @Operation(summary = "Obtiene todos los funkos", description = "Obtiene una lista de funkos")
@@ -49,7 +79,7 @@ public class FunkoRestController {
             @Parameter(name = "nombre", description = "Nombre del funko", example = ""),
             @Parameter(name = "categoria", description = "Categoria del funko", example =""),
             @Parameter(name = "precioMax", description = "Precio máximo del funko", example = "100"),
-            @Parameter(name = "cantidadMin", description = "Cantidad minima del funko", example = "20"),
+            @Parameter(name = "cantidadMin", description = "Cantidad minima del funko, incluida", example = "20"),
             @Parameter(name = "isActivo", description = "Si esta activo o no", example = "true"),
             @Parameter(name = "page", description = "Número de página", example = "0"),
             @Parameter(name = "size", description = "Tamaño de la página", example = "10"),
@@ -58,6 +88,7 @@ public class FunkoRestController {
     })
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Página de funkos"),
+            @ApiResponse(responseCode = "304", description = "La página no ha cambiado desde el ETag de If-None-Match"),
     })
     @GetMapping()
     public ResponseEntity<PageResponse<Funko>> getAllFunks(
@@ -69,12 +100,86 @@ public class FunkoRestController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
-            @RequestParam(defaultValue = "asc") String direction
+            @RequestParam(defaultValue = "asc") String direction,
+            WebRequest request
     ) {
         log.info("Buscando todos los productos con las siguientes opciones: " + nombre + " " + categoria + " " + precioMax + " " + cantidadMin + " " + isActivo);
         Sort sort = direction.equalsIgnoreCase(Sort.Direction.ASC.name()) ? Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
              Pageable pageable = PageRequest.of(page, size, sort);
-        return ResponseEntity.ok(PageResponse.of(funkosService.findAll(nombre, categoria, precioMax, cantidadMin, isActivo, pageable), sortBy, direction));
+        var funkos = funkosService.findAll(nombre, categoria, precioMax, cantidadMin, isActivo, pageable);
+        // En los listados solo ETag: un borrado no cambia la última fecha de actualización
+        if (request.checkNotModified(conditionalRequestUtils.etag(funkos.getContent(), funkos.getTotalElements(), Funko::getId, FunkoRestController::ultimaActualizacion))) {
+            return null;
+        }
+        return ResponseEntity.ok(PageResponse.of(funkos, sortBy, direction));
+    }
+
+    @Operation(summary = "Obtiene los funkos sin total", description = "Igual que el listado paginado pero sin contar los elementos, para scroll infinito")
+    @Parameters({
+            @Parameter(name = "withTotal", description = "false para no calcular totalPages ni totalElements", example = "false"),
+            @Parameter(name = "page", description = "Número de página", example = "0"),
+            @Parameter(name = "size", description = "Tamaño de la página", example = "10"),
+            @Parameter(name = "sortBy", description = "Campo de ordenación", example = "id"),
+            @Parameter(name = "direction", description = "Dirección de ordenación", example = "asc")
+    })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Página de funkos sin total"),
+    })
+    @GetMapping(params = {"withTotal=false", "!after"})
+    public ResponseEntity<PageResponse<Funko>> getAllFunksWithoutTotal(
+            @RequestParam(required = false) Optional<String> nombre,
+            @RequestParam(required = false) Optional<String> categoria,
+            @RequestParam(required = false) Optional<Double> precioMax,
+            @RequestParam(required = false) Optional<Integer> cantidadMin,
+            @RequestParam(required = false) Optional<Boolean> isActivo,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String direction,
+            WebRequest request
+    ) {
+        log.info("Buscando todos los productos sin total con las siguientes opciones: " + nombre + " " + categoria + " " + precioMax + " " + cantidadMin + " " + isActivo);
+        Sort sort = direction.equalsIgnoreCase(Sort.Direction.ASC.name()) ? Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
+        Pageable pageable = PageRequest.of(page, size, sort);
+        var funkos = funkosService.findSlice(nombre, categoria, precioMax, cantidadMin, isActivo, pageable);
+        if (request.checkNotModified(conditionalRequestUtils.etag(funkos.getContent(), funkos.hasNext() ? 1 : 0, Funko::getId, FunkoRestController::ultimaActualizacion))) {
+            return null;
+        }
+        return ResponseEntity.ok(PageResponse.of(funkos, sortBy, direction));
+    }
+
+    @Operation(summary = "Obtiene los funkos por cursor", description = "Paginación por keyset: el coste de cada página no depende de su posición y no se cuentan los elementos")
+    @Parameters({
+            @Parameter(name = "after", description = "Cursor devuelto en nextCursor por la página anterior, vacío para la primera página", example = ""),
+            @Parameter(name = "size", description = "Tamaño de la página", example = "10"),
+            @Parameter(name = "sortBy", description = "Campo de ordenación", example = "id"),
+            @Parameter(name = "direction", description = "Dirección de ordenación", example = "asc")
+    })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Página de funkos"),
+            @ApiResponse(responseCode = "400", description = "Cursor no válido"),
+    })
+    @GetMapping(params = "after")
+    public ResponseEntity<CursorPageResponse<Funko>> getAllFunksByCursor(
+            @RequestParam(required = false) Optional<String> nombre,
+            @RequestParam(required = false) Optional<String> categoria,
+            @RequestParam(required = false) Optional<Double> precioMax,
+            @RequestParam(required = false) Optional<Integer> cantidadMin,
+            @RequestParam(required = false) Optional<Boolean> isActivo,
+            @RequestParam String after,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String direction,
+            HttpServletRequest request
+    ) {
+        log.info("Buscando todos los productos por cursor con las siguientes opciones: " + nombre + " " + categoria + " " + precioMax + " " + cantidadMin + " " + isActivo);
+        var position = paginationCursorUtils.decode(after, Funko.class);
+        var window = funkosService.scroll(nombre, categoria, precioMax, cantidadMin, isActivo, position, size, paginationCursorUtils.keysetSort(sortBy, direction));
+        var nextCursor = paginationCursorUtils.encode(window);
+        UriComponentsBuilder uriBuilder = paginationLinksUtils.fromRequest(request);
+        return ResponseEntity.ok()
+                .header("link", paginationLinksUtils.createCursorLinkHeader(nextCursor, size, uriBuilder))
+                .body(CursorPageResponse.of(window, size, nextCursor, sortBy, direction));
     }
 
     @Operation(summary = "Obtiene un funko por su id", description = "Obtiene un funko por su id")
@@ -83,12 +188,18 @@ public class FunkoRestController {
     })
     @ApiResponses( value = {
             @ApiResponse(responseCode = "200", description = "Funko"),
+            @ApiResponse(responseCode = "304", description = "El funko no ha cambiado desde If-None-Match o If-Modified-Since"),
             @ApiResponse(responseCode = "404", description = "Funko no encontrado"),
     })
     @GetMapping("/{id}")
-    public ResponseEntity <Funko> getFunkoById(@PathVariable Long id){
+    public ResponseEntity <Funko> getFunkoById(@PathVariable Long id, WebRequest request){
         log.info("Buscando funko por id: " + id);
-        return ResponseEntity.ok(funkosService.findById(id));
+        var funko = funkosService.findById(id);
+        // checkNotModified pone el 304 y las cabeceras ETag y Last-Modified, no hace falta cuerpo
+        if (request.checkNotModified(etag(funko), conditionalRequestUtils.lastModified(ultimaActualizacion(funko)))) {
+            return null;
+        }
+        return ResponseEntity.ok(funko);
     }
 
     @Operation(summary = "Crea un funko", description = "Crea un funko")
@@ -104,6 +215,42 @@ public class FunkoRestController {
         return ResponseEntity.status(HttpStatus.CREATED).body(funkosService.save(funkoCreateDto));
     }
 
+    @Operation(summary = "Exporta todos los funkos", description = "Exporta el catálogo completo ordenado por id en NDJSON o CSV, escribiendo los funkos según se leen")
+    @Parameters({
+            @Parameter(name = "formato", description = "ndjson o csv, si no se indica se elige por la cabecera Accept", example = "ndjson")
+    })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Catálogo de funkos"),
+            @ApiResponse(responseCode = "400", description = "Formato no admitido"),
+    })
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportFunkos(
+            @RequestParam(required = false) Optional<String> formato,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) Optional<String> accept
+    ) {
+        ExportFormat exportFormato = ExportFormat.resolve(formato, accept);
+        log.info("Exportando funkos en formato: " + exportFormato);
+        StreamingResponseBody body = out -> funkoExportService.exportar(out, exportFormato);
+        return ResponseEntity.ok()
+                .contentType(exportFormato.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + exportFormato.fileName("funkos"))
+                .body(body);
+    }
+
+    @Operation(summary = "Importa funkos en bloque", description = "Importa funkos desde un CSV, NDJSON o array JSON de funkos a crear, leyendo la entrada según llega")
+    @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "Funkos a crear. El CSV puede llevar cabecera, si no las columnas son nombre,precio,cantidad,imagen,categoria", required = true)
+    @ApiResponses( value = {
+            @ApiResponse(responseCode = "200", description = "Importación terminada, con las filas descartadas y sus motivos"),
+            @ApiResponse(responseCode = "415", description = "Formato no admitido"),
+    })
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<FunkoImportResult> importFunkos(HttpServletRequest request) throws IOException {
+        log.info("Importando funkos de tipo: " + request.getContentType());
+        MediaType tipo = MediaType.parseMediaType(request.getContentType());
+        return ResponseEntity.ok(funkoImportService.importar(request.getInputStream(), tipo));
+    }
+
     @Operation( summary = "Actualiza un funko", description = "Actualiza un funko")
     @Parameters({
             @Parameter( name = "id", description = "Identificador del funko", example = "1", required = true)
@@ -113,12 +260,14 @@ public class FunkoRestController {
             @ApiResponse(responseCode = "200", description = "Funko actualizado"),
             @ApiResponse(responseCode = "400", description = "Funko no valido"),
             @ApiResponse(responseCode = "404", description = "Funko no encontrado"),
+            @ApiResponse(responseCode = "412", description = "El funko ha cambiado desde el ETag de If-Match"),
     })
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Funko> updateFunko(@PathVariable Long id, @Valid @RequestBody FunkoUpdateDto funkoUpdateDto){
+    public ResponseEntity<Funko> updateFunko(@PathVariable Long id, @Valid @RequestBody FunkoUpdateDto funkoUpdateDto, WebRequest request){
         log.info("Actualizando funko por id: "+ id + " con funko: " + funkoUpdateDto);
-        return ResponseEntity.ok(funkosService.update(id, funkoUpdateDto));
+        var funko = actualizar(id, funkoUpdateDto, request);
+        return ResponseEntity.ok().eTag(etag(funko)).body(funko);
     }
 
     @Operation(summary = "Actualiza parcialmente un funko", description = "Actualiza parcialmente un funko")
@@ -130,12 +279,14 @@ public class FunkoRestController {
             @ApiResponse(responseCode = "200", description = "Funko actualizado"),
             @ApiResponse(responseCode = "400", description = "Funko no valido"),
             @ApiResponse(responseCode = "404", description = "Funko no encontrado"),
+            @ApiResponse(responseCode = "412", description = "El funko ha cambiado desde el ETag de If-Match"),
     })
     @PatchMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Funko> updatePartialFunko(@PathVariable Long id, @Valid @RequestBody FunkoUpdateDto funkoUpdateDto){
+    public ResponseEntity<Funko> updatePartialFunko(@PathVariable Long id, @Valid @RequestBody FunkoUpdateDto funkoUpdateDto, WebRequest request){
         log.info("Actualizando funko por id: "+ id + " con funko: " + funkoUpdateDto);
-        return ResponseEntity.ok(funkosService.update(id, funkoUpdateDto));
+        var funko = actualizar(id, funkoUpdateDto, request);
+        return ResponseEntity.ok().eTag(etag(funko)).body(funko);
     }
 
     @Operation(summary = "Borra un funko", description = "Borra un funko")
@@ -155,6 +306,33 @@ public class FunkoRestController {
     }
 
 
+    // Con If-Match solo se actualiza si el funko sigue como lo vio el cliente, si no es un 412.
+    // Se guarda con la versión comprobada, así la base de datos rechaza también lo que cambie entre medias
+    private Funko actualizar(Long id, FunkoUpdateDto funkoUpdateDto, WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_MATCH) == null) {
+            return funkosService.update(id, funkoUpdateDto);
+        }
+        var actual = funkosService.findById(id);
+        if (request.checkNotModified(etag(actual))) {
+            throw new FunkoPreconditionFailed(id);
+        }
+        return funkosService.update(id, funkoUpdateDto, actual.getVersion());
+    }
+
+    private String etag(Funko funko) {
+        return conditionalRequestUtils.etag(funko.getId(), funko.getVersion(), ultimaActualizacion(funko));
+    }
+
+    // Un cambio en la categoría cambia lo que se devuelve aunque el funko no se haya tocado
+    private static LocalDateTime ultimaActualizacion(Funko funko) {
+        LocalDateTime fecha = funko.getFechaActualizacion();
+        if (funko.getCategoria() == null || funko.getCategoria().getFechaActualizacion() == null) {
+            return fecha;
+        }
+        LocalDateTime fechaCategoria = funko.getCategoria().getFechaActualizacion();
+        return fecha == null || fechaCategoria.isAfter(fecha) ? fechaCategoria : fecha;
+    }
+
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public Map<String, String> handleValidationExceptions(
@@ -195,4 +373,88 @@ public class FunkoRestController {
         }
     }
 
+    @Operation(summary = "Inicia la subida por trozos de la imagen de un funko", description = "Inicia una subida que se puede reanudar: los trozos se envían después con su offset y al final se completa")
+    @Parameters({
+            @Parameter(name = "id", description = "Identificador del funko", example = "1", required = true),
+            @Parameter(name = "nombre", description = "Nombre original del fichero", example = "funko.png", required = true),
+            @Parameter(name = "tamano", description = "Tamaño total del fichero en bytes", example = "5242880", required = true)
+    })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Subida iniciada"),
+            @ApiResponse(responseCode = "400", description = "Nombre o tamaño no válidos"),
+            @ApiResponse(responseCode = "404", description = "Funko no encontrado"),
+    })
+    @PostMapping("/imagen/{id}/subidas")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<UploadStatus> initImageUpload(@PathVariable Long id, @RequestParam String nombre, @RequestParam long tamano,
+                                                       HttpServletRequest request) {
+        log.info("Iniciando subida por trozos de la imagen del funko por id: " + id);
+        funkosService.findById(id);
+        UploadStatus subida = chunkedUploadService.iniciar(id, nombre, tamano);
+        UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromHttpUrl(request.getRequestURL().toString());
+        return ResponseEntity.created(uriBuilder.path("/{subida}").buildAndExpand(subida.id()).toUri())
+                .body(subida);
+    }
+
+    @Operation(summary = "Estado de una subida por trozos", description = "Devuelve el offset desde el que seguir enviando la imagen")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Estado de la subida"),
+            @ApiResponse(responseCode = "404", description = "Subida no encontrada"),
+    })
+    @GetMapping("/imagen/{id}/subidas/{subida}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<UploadStatus> getImageUpload(@PathVariable Long id, @PathVariable String subida) {
+        return ResponseEntity.ok(chunkedUploadService.estado(id, subida));
+    }
+
+    @Operation(summary = "Envía un trozo de la imagen", description = "Escribe el cuerpo de la petición en el offset indicado, que debe ser el de la subida")
+    @Parameters({
+            @Parameter(name = "offset", description = "Posición del trozo en el fichero", example = "0", required = true),
+            @Parameter(name = "X-Upload-Sha256", description = "SHA-256 en hexadecimal de todo lo enviado hasta el final de este trozo, si se quiere comprobar")
+    })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Trozo recibido, con el nuevo offset"),
+            @ApiResponse(responseCode = "400", description = "El trozo pasa del tamaño o no coincide el SHA-256, se descarta"),
+            @ApiResponse(responseCode = "404", description = "Subida no encontrada"),
+            @ApiResponse(responseCode = "409", description = "El offset no es el de la subida o ya se está recibiendo otro trozo"),
+    })
+    @PutMapping(value = "/imagen/{id}/subidas/{subida}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<UploadStatus> appendImageUpload(@PathVariable Long id, @PathVariable String subida, @RequestParam long offset,
+                                                         @RequestHeader(value = "X-Upload-Sha256", required = false) String sha256,
+                                                         HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(chunkedUploadService.anadir(id, subida, offset, request.getInputStream(), sha256));
+    }
+
+    @Operation(summary = "Completa la subida por trozos", description = "Guarda la imagen subida y la pone al funko")
+    @Parameters({
+            @Parameter(name = "sha256", description = "SHA-256 en hexadecimal del fichero entero, si se quiere comprobar")
+    })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Funko actualizado"),
+            @ApiResponse(responseCode = "400", description = "No coincide el SHA-256, se cancela la subida"),
+            @ApiResponse(responseCode = "404", description = "Funko o subida no encontrados"),
+            @ApiResponse(responseCode = "409", description = "Aún faltan bytes por enviar"),
+    })
+    @PostMapping("/imagen/{id}/subidas/{subida}/completar")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Funko> completeImageUpload(@PathVariable Long id, @PathVariable String subida,
+                                                     @RequestParam Optional<String> sha256) {
+        log.info("Completando subida por trozos de la imagen del funko por id: " + id);
+        String imagen = chunkedUploadService.completar(id, subida, sha256.orElse(null));
+        return ResponseEntity.ok(funkosService.updateImage(id, imagen));
+    }
+
+    @Operation(summary = "Cancela una subida por trozos", description = "Cancela la subida y borra lo recibido")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Subida cancelada"),
+            @ApiResponse(responseCode = "404", description = "Subida no encontrada"),
+    })
+    @DeleteMapping("/imagen/{id}/subidas/{subida}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Void> cancelImageUpload(@PathVariable Long id, @PathVariable String subida) {
+        chunkedUploadService.cancelar(id, subida);
+        return ResponseEntity.noContent().build();
+    }
+
 }
@@ -0,0 +1,27 @@
+package org.develop.rest.funkos.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Resultado de una importación masiva de funkos")
+public record FunkoImportResult(
+        @Schema(description = "Filas leídas", example = "1000")
+        long leidas,
+        @Schema(description = "Funkos insertados", example = "998")
+        long importadas,
+        @Schema(description = "Filas descartadas, por no ser válidas o por fallar su bloque", example = "2")
+        long fallidas,
+        @Schema(description = "Duración de la importación en milisegundos", example = "350")
+        long milisegundos,
+        @Schema(description = "Primeros errores encontrados")
+        List<Error> errores
+) {
+    /**
+     * @param fila   número de la fila, en CSV y NDJSON la línea y en JSON la posición en el array
+     * @param hasta  última fila afectada cuando falla un bloque entero, si no es la misma que fila
+     * @param motivo por qué se ha descartado
+     */
+    public record Error(long fila, long hasta, String motivo) {
+    }
+}
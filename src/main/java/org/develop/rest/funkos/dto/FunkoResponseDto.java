@@ -23,6 +23,8 @@ public class FunkoResponseDto {
     private Integer cantidad;
     @Schema(description = "Imagen del funko", example = Funko.IMAGE_DEFAULT)
     private String imagen;
+    @Schema(description = "Imagen reducida del funko para los listados", example = Funko.IMAGE_DEFAULT)
+    private String miniatura;
     @Schema(description = "Categoria del funko", example = "SUPERHEROES")
     private String categoria;
     @Schema(description = "Fecha de creacion del funko", example = "2021-01-01T00:00:00.000Z")
@@ -35,8 +35,8 @@ public class FunkoUpdateDto {
     @JsonCreator
     public FunkoUpdateDto(
             @JsonProperty("nombre") String nombre,
-            @JsonProperty("precio") double precio,
-            @JsonProperty("cantidad") int cantidad,
+            @JsonProperty("precio") Double precio,
+            @JsonProperty("cantidad") Integer cantidad,
             @JsonProperty("imagen") String imagen,
             @JsonProperty("categoria") String categoria,
             @JsonProperty("isActivo") Boolean isActivo
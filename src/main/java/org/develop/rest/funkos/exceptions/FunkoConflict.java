@@ -0,0 +1,11 @@
+package org.develop.rest.funkos.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class FunkoConflict extends FunkoException {
+    public FunkoConflict(Long id) {
+        super("El funko con id " + id + " se está modificando a la vez desde otro sitio, vuelva a intentarlo");
+    }
+}
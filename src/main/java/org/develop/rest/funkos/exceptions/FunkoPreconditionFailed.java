@@ -0,0 +1,11 @@
+package org.develop.rest.funkos.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+public class FunkoPreconditionFailed extends FunkoException {
+    public FunkoPreconditionFailed(Long id) {
+        super("El funko con id " + id + " ha cambiado desde que se leyó, vuelva a leerlo antes de modificarlo");
+    }
+}
@@ -5,6 +5,7 @@ import org.develop.rest.funkos.dto.FunkoCreateDto;
 import org.develop.rest.funkos.dto.FunkoResponseDto;
 import org.develop.rest.funkos.dto.FunkoUpdateDto;
 import org.develop.rest.funkos.models.Funko;
+import org.develop.rest.storage.services.ImageVariants;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
@@ -37,7 +38,8 @@ public class FunkoMapper {
                  funko.getFechaCreacion(),
                  LocalDateTime.now(),
                  dto.getIsActivo() != null ? dto.getIsActivo() : funko.getIsActivo(),
-                 categoria);
+                 categoria,
+                 funko.getVersion());
     }
 
     public FunkoResponseDto toFunkoResponseDto(Funko funko) {
@@ -47,7 +49,8 @@ public class FunkoMapper {
                 funko.getPrecio(),
                 funko.getCantidad(),
                 funko.getImagen(),
-                funko.getCategoria().getNombre(),
+                ImageVariants.url(funko.getImagen(), ImageVariants.ANCHO_MINIATURA),
+                funko.getCategoria() != null ? funko.getCategoria().getNombre() : null,
                 funko.getFechaCreacion(),
                 funko.getFechaActualizacion());
     }
@@ -1,5 +1,6 @@
 package org.develop.rest.funkos.models;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -7,6 +8,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.develop.rest.categorias.models.Categoria;
+import org.develop.rest.storage.services.ImageVariants;
 
 import java.time.LocalDateTime;
 
@@ -49,4 +51,20 @@ public class Funko {
     @JoinColumn(name = "categoria_id")
     @Schema(description = "Categoria del funko", example = "SUPERHEROES")
     private Categoria categoria;
+    // Cada escritura la incrementa, también las de stock, así un guardado que parte de una lectura antigua falla
+    @Version
+    @Column(columnDefinition = "bigint default 0")
+    @Schema(description = "Version del funko para el control de concurrencia", example = "0")
+    private Long version;
+
+    public Funko(Long id, String nombre, Double precio, Integer cantidad, String imagen, LocalDateTime fechaCreacion, LocalDateTime fechaActualizacion, Boolean isActivo, Categoria categoria) {
+        this(id, nombre, precio, cantidad, imagen, fechaCreacion, fechaActualizacion, isActivo, categoria, null);
+    }
+
+    // Solo sale en el JSON, así los listados que devuelven Funkos llevan la imagen reducida
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Schema(description = "Imagen reducida del funko para los listados", example = IMAGE_DEFAULT)
+    public String getMiniatura() {
+        return ImageVariants.url(imagen, ImageVariants.ANCHO_MINIATURA);
+    }
 }
@@ -0,0 +1,154 @@
+package org.develop.rest.funkos.repositories;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.develop.rest.funkos.models.Funko;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Filtros del catálogo: el atributo de Funko que mira cada uno y cómo lo compara.
+ * Es la única definición de los filtros: de aquí salen la JPQL compilada del listado paginado
+ * ({@link FunkosSearchRepositoryImpl}) y los criterios de los listados sin total y por keyset ({@link FunkosSpecifications}),
+ * así los listados no pueden filtrar distinto.
+ */
+enum FunkoFiltro {
+    NOMBRE("nombre", Comparacion.CONTIENE),
+    // Se compara la clave ajena, sin join con CATEGORIAS
+    CATEGORIA("categoria.id", Comparacion.IGUAL),
+    PRECIO_MAX("precio", Comparacion.MENOR_O_IGUAL),
+    CANTIDAD_MIN("cantidad", Comparacion.MAYOR_O_IGUAL),
+    ACTIVO("isActivo", Comparacion.IGUAL);
+
+    private final String atributo;
+    private final Comparacion comparacion;
+
+    FunkoFiltro(String atributo, Comparacion comparacion) {
+        this.atributo = atributo;
+        this.comparacion = comparacion;
+    }
+
+    /**
+     * Los filtros presentes con su valor, los null no filtran. Se recorren en el orden en el que están declarados,
+     * así cada combinación de filtros genera siempre la misma consulta
+     */
+    static Map<FunkoFiltro, Object> presentes(Long categoriaId, String nombre, Double precioMax, Integer cantidadMin, Boolean isActivo) {
+        Map<FunkoFiltro, Object> filtros = new EnumMap<>(FunkoFiltro.class);
+        if (nombre != null) {
+            filtros.put(NOMBRE, nombre);
+        }
+        if (categoriaId != null) {
+            filtros.put(CATEGORIA, categoriaId);
+        }
+        if (precioMax != null) {
+            filtros.put(PRECIO_MAX, precioMax);
+        }
+        if (cantidadMin != null) {
+            filtros.put(CANTIDAD_MIN, cantidadMin);
+        }
+        if (isActivo != null) {
+            filtros.put(ACTIVO, isActivo);
+        }
+        return filtros;
+    }
+
+    /**
+     * Condición JPQL sobre el alias f, con el valor como parámetro con el nombre del filtro
+     */
+    String jpql() {
+        return comparacion.jpql("f." + atributo, ":" + name());
+    }
+
+    /**
+     * Valor que se pasa como parámetro a la condición JPQL
+     */
+    Object parametro(Object valor) {
+        return comparacion.parametro(valor);
+    }
+
+    /**
+     * El mismo filtro como criterio
+     */
+    Specification<Funko> criterio(Object valor) {
+        Object parametro = comparacion.parametro(valor);
+        return (root, query, criteriaBuilder) -> comparacion.criterio(criteriaBuilder, ruta(root), parametro);
+    }
+
+    private Path<?> ruta(Root<Funko> root) {
+        Path<?> ruta = root;
+        for (String parte : atributo.split("\\.")) {
+            ruta = ruta.get(parte);
+        }
+        return ruta;
+    }
+
+    private enum Comparacion {
+        IGUAL {
+            @Override
+            String jpql(String ruta, String parametro) {
+                return ruta + " = " + parametro;
+            }
+
+            @Override
+            Predicate criterio(CriteriaBuilder criteriaBuilder, Path<?> ruta, Object valor) {
+                return criteriaBuilder.equal(ruta, valor);
+            }
+        },
+        // Parte del texto sin distinguir mayúsculas
+        CONTIENE {
+            @Override
+            String jpql(String ruta, String parametro) {
+                return "lower(" + ruta + ") LIKE " + parametro;
+            }
+
+            @Override
+            Object parametro(Object valor) {
+                return "%" + valor.toString().toLowerCase(Locale.ROOT) + "%";
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            Predicate criterio(CriteriaBuilder criteriaBuilder, Path<?> ruta, Object valor) {
+                return criteriaBuilder.like(criteriaBuilder.lower((Expression<String>) ruta), (String) valor);
+            }
+        },
+        MENOR_O_IGUAL {
+            @Override
+            String jpql(String ruta, String parametro) {
+                return ruta + " <= " + parametro;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            Predicate criterio(CriteriaBuilder criteriaBuilder, Path<?> ruta, Object valor) {
+                return criteriaBuilder.lessThanOrEqualTo((Expression<Comparable<Object>>) ruta, (Comparable<Object>) valor);
+            }
+        },
+        MAYOR_O_IGUAL {
+            @Override
+            String jpql(String ruta, String parametro) {
+                return ruta + " >= " + parametro;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            Predicate criterio(CriteriaBuilder criteriaBuilder, Path<?> ruta, Object valor) {
+                return criteriaBuilder.greaterThanOrEqualTo((Expression<Comparable<Object>>) ruta, (Comparable<Object>) valor);
+            }
+        };
+
+        abstract String jpql(String ruta, String parametro);
+
+        abstract Predicate criterio(CriteriaBuilder criteriaBuilder, Path<?> ruta, Object valor);
+
+        Object parametro(Object valor) {
+            return valor;
+        }
+    }
+}
@@ -1,20 +1,50 @@
 package org.develop.rest.funkos.repositories;
 
+import jakarta.persistence.QueryHint;
 import org.develop.rest.funkos.models.Funko;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
-public interface FunkosRepository  extends JpaRepository<Funko, Long>, JpaSpecificationExecutor<Funko> {
+public interface FunkosRepository  extends JpaRepository<Funko, Long>, JpaSpecificationExecutor<Funko>, FunkosSearchRepository {
     List<Funko> findByIsActivo(Boolean isActivo);
 
     @Modifying
     @Query("UPDATE Funko f SET f.isActivo = false WHERE f.id = :id")
     void updateIsActivoToFalseById(Long id);
+
+    // Solo tocan la cantidad, pero suben la versión y la fecha de actualización para que un guardado
+    // hecho a partir de una lectura anterior falle en vez de pisar el stock, y para que cambie el ETag
+
+    // Descuenta el stock solo si hay suficiente, devuelve 0 si no se ha podido reservar
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE FUNKOS SET cantidad = cantidad - :cantidad, version = version + 1, fecha_actualizacion = CURRENT_TIMESTAMP WHERE id = :id AND cantidad >= :cantidad", nativeQuery = true)
+    int decrementStock(Long id, Integer cantidad);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE FUNKOS SET cantidad = cantidad + :cantidad, version = version + 1, fecha_actualizacion = CURRENT_TIMESTAMP WHERE id = :id", nativeQuery = true)
+    int incrementStock(Long id, Integer cantidad);
+
+    // Suma el cambio solo si la cantidad no queda en negativo, devuelve 0 si no se ha podido aplicar
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE FUNKOS SET cantidad = cantidad + :cantidad, version = version + 1, fecha_actualizacion = CURRENT_TIMESTAMP WHERE id = :id AND cantidad + :cantidad >= 0", nativeQuery = true)
+    int adjustStock(Long id, Integer cantidad);
+
+    // Todo el catálogo por orden de id, leído del cursor de la base de datos en bloques y sin snapshots.
+    // Hay que consumirlo dentro de una transacción y cerrarlo al terminar
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT f FROM Funko f LEFT JOIN FETCH f.categoria ORDER BY f.id")
+    Stream<Funko> streamAll();
 }
@@ -0,0 +1,22 @@
+package org.develop.rest.funkos.repositories;
+
+import org.develop.rest.funkos.models.Funko;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Búsqueda paginada del catálogo con la consulta ya compilada para cada combinación de filtros
+ */
+public interface FunkosSearchRepository {
+
+    /**
+     * Busca los Funkos que cumplen los filtros presentes, los null no filtran
+     *
+     * @param categoriaId id de la categoria
+     * @param nombre      parte del nombre, sin distinguir mayúsculas
+     * @param precioMax   precio máximo, incluido
+     * @param cantidadMin cantidad mínima, incluida
+     * @param isActivo    si está activo
+     */
+    Page<Funko> buscar(Long categoriaId, String nombre, Double precioMax, Integer cantidadMin, Boolean isActivo, Pageable pageable);
+}
@@ -0,0 +1,105 @@
+package org.develop.rest.funkos.repositories;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.develop.rest.funkos.models.Funko;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.PropertyPath;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * La JPQL de cada combinación de filtros presentes y orden se construye una sola vez y se guarda.
+ * Hibernate guarda el plan de cada JPQL por su texto, así que cada combinación se compila solo la primera vez;
+ * con la API de criteria Hibernate 6.2 vuelve a interpretar el árbol de la consulta en cada búsqueda.
+ * Los valores de los filtros van siempre como parámetros. Las condiciones salen de {@link FunkoFiltro},
+ * igual que los criterios de los listados sin total y por keyset.
+ */
+class FunkosSearchRepositoryImpl implements FunkosSearchRepository {
+    // Los órdenes vienen de la petición, a partir de aquí no se guardan más planes
+    private static final int MAX_PLANES = 512;
+
+    private final EntityManager entityManager;
+    private final Map<Clave, Plan> planes = new ConcurrentHashMap<>();
+
+    private record Clave(Set<FunkoFiltro> filtros, Sort sort) {
+    }
+
+    private record Plan(String select, String count) {
+    }
+
+    FunkosSearchRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Page<Funko> buscar(Long categoriaId, String nombre, Double precioMax, Integer cantidadMin, Boolean isActivo, Pageable pageable) {
+        Map<FunkoFiltro, Object> filtros = FunkoFiltro.presentes(categoriaId, nombre, precioMax, cantidadMin, isActivo);
+        Plan plan = plan(new Clave(Set.copyOf(filtros.keySet()), pageable.getSort()));
+
+        TypedQuery<Funko> query = entityManager.createQuery(plan.select(), Funko.class);
+        parametros(query, filtros);
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+        List<Funko> contenido = query.getResultList();
+        return PageableExecutionUtils.getPage(contenido, pageable, () -> {
+            TypedQuery<Long> count = entityManager.createQuery(plan.count(), Long.class);
+            parametros(count, filtros);
+            return count.getSingleResult();
+        });
+    }
+
+    private Plan plan(Clave clave) {
+        Plan plan = planes.get(clave);
+        if (plan != null) {
+            return plan;
+        }
+        plan = compilar(clave);
+        if (planes.size() < MAX_PLANES) {
+            planes.putIfAbsent(clave, plan);
+        }
+        return plan;
+    }
+
+    private static Plan compilar(Clave clave) {
+        StringBuilder where = new StringBuilder();
+        for (FunkoFiltro filtro : FunkoFiltro.values()) {
+            if (clave.filtros().contains(filtro)) {
+                where.append(where.isEmpty() ? " WHERE " : " AND ").append(filtro.jpql());
+            }
+        }
+        return new Plan(
+                "SELECT f FROM Funko f LEFT JOIN FETCH f.categoria" + where + orden(clave.sort()),
+                "SELECT count(f) FROM Funko f" + where
+        );
+    }
+
+    // Cada propiedad se comprueba contra Funko, así en la JPQL solo entran nombres de atributos
+    private static String orden(Sort sort) {
+        if (sort.isUnsorted()) {
+            return "";
+        }
+        StringBuilder orden = new StringBuilder(" ORDER BY ");
+        for (Sort.Order order : sort) {
+            if (orden.length() > " ORDER BY ".length()) {
+                orden.append(", ");
+            }
+            String propiedad = "f." + PropertyPath.from(order.getProperty(), Funko.class).toDotPath();
+            orden.append(order.isIgnoreCase() ? "lower(" + propiedad + ")" : propiedad)
+                    .append(order.isAscending() ? " ASC" : " DESC");
+        }
+        return orden.toString();
+    }
+
+    private static void parametros(TypedQuery<?> query, Map<FunkoFiltro, Object> filtros) {
+        filtros.forEach((filtro, valor) -> query.setParameter(filtro.name(), filtro.parametro(valor)));
+    }
+}
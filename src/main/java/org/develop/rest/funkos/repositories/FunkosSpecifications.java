@@ -0,0 +1,51 @@
+package org.develop.rest.funkos.repositories;
+
+import org.develop.rest.funkos.models.Funko;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Criterios de búsqueda de Funkos.
+ * Solo se añaden a la consulta los criterios de los filtros presentes, así cada combinación de filtros
+ * genera siempre la misma SQL con los valores como parámetros.
+ * Se usan en los listados sin total y por keyset; el listado paginado usa {@link FunkosSearchRepository}.
+ * Los dos salen de {@link FunkoFiltro}.
+ */
+public final class FunkosSpecifications {
+
+    private FunkosSpecifications() {
+    }
+
+    /**
+     * Los criterios de los filtros presentes, los null no filtran
+     */
+    public static Specification<Funko> filtros(Long categoriaId, String nombre, Double precioMax, Integer cantidadMin, Boolean isActivo) {
+        return Specification.allOf(FunkoFiltro.presentes(categoriaId, nombre, precioMax, cantidadMin, isActivo).entrySet().stream()
+                .map(filtro -> filtro.getKey().criterio(filtro.getValue()))
+                .toList());
+    }
+
+    // Criterio de búsqueda por nombre
+    public static Specification<Funko> nombreContiene(String nombre) {
+        return FunkoFiltro.NOMBRE.criterio(nombre);
+    }
+
+    // Criterio de búsqueda por categoria, compara directamente la clave ajena sin join
+    public static Specification<Funko> categoriaIgual(Long idCategoria) {
+        return FunkoFiltro.CATEGORIA.criterio(idCategoria);
+    }
+
+    // Criterio de búsqueda por precio
+    public static Specification<Funko> precioMaximo(Double precioMax) {
+        return FunkoFiltro.PRECIO_MAX.criterio(precioMax);
+    }
+
+    // Criterio de búsqueda por cantidad
+    public static Specification<Funko> cantidadMinima(Integer cantidadMin) {
+        return FunkoFiltro.CANTIDAD_MIN.criterio(cantidadMin);
+    }
+
+    // Criterio de búsqueda por isActivo
+    public static Specification<Funko> isActivo(Boolean isActivo) {
+        return FunkoFiltro.ACTIVO.criterio(isActivo);
+    }
+}
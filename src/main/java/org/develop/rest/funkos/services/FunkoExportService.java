@@ -0,0 +1,95 @@
+package org.develop.rest.funkos.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.develop.rest.funkos.dto.FunkoResponseDto;
+import org.develop.rest.funkos.mappers.FunkoMapper;
+import org.develop.rest.funkos.models.Funko;
+import org.develop.rest.funkos.repositories.FunkosRepository;
+import org.develop.utils.export.CsvWriter;
+import org.develop.utils.export.ExportFormat;
+import org.develop.utils.export.NdjsonWriter;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Exportación del catálogo completo de funkos.
+ * Los funkos se leen del cursor de la base de datos y se escriben según llegan, cada uno se saca del contexto
+ * de persistencia en cuanto se ha escrito: la memoria usada no depende del número de funkos.
+ */
+@Service
+@Slf4j
+public class FunkoExportService {
+    // Cada cuántos funkos se vacía el buffer hacia el cliente
+    private static final int FLUSH_CADA = 1000;
+    private static final String[] CABECERA_CSV = {"id", "nombre", "precio", "cantidad", "imagen", "categoria", "fechaCreacion", "fechaActualizacion"};
+
+    private final FunkosRepository funkosRepository;
+    private final FunkoMapper funkoMapper;
+    private final ObjectMapper mapper;
+    private final EntityManager entityManager;
+
+    public FunkoExportService(FunkosRepository funkosRepository, FunkoMapper funkoMapper, ObjectMapper mapper, EntityManager entityManager) {
+        this.funkosRepository = funkosRepository;
+        this.funkoMapper = funkoMapper;
+        this.mapper = mapper;
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Escribe todos los funkos en la salida, ordenados por id. No cierra la salida.
+     *
+     * @return número de funkos escritos
+     */
+    @Transactional(readOnly = true)
+    public long exportar(OutputStream out, ExportFormat formato) throws IOException {
+        log.info("Exportando el catálogo de funkos en formato " + formato);
+        NdjsonWriter ndjson = formato == ExportFormat.NDJSON ? new NdjsonWriter(mapper, out) : null;
+        CsvWriter csv = formato == ExportFormat.CSV ? new CsvWriter(out, CABECERA_CSV) : null;
+        long filas = 0;
+        try (Stream<Funko> funkos = funkosRepository.streamAll()) {
+            for (Iterator<Funko> it = funkos.iterator(); it.hasNext(); ) {
+                Funko funko = it.next();
+                FunkoResponseDto dto = funkoMapper.toFunkoResponseDto(funko);
+                if (ndjson != null) {
+                    ndjson.write(dto);
+                } else {
+                    fila(csv, dto);
+                }
+                entityManager.detach(funko);
+                if (++filas % FLUSH_CADA == 0) {
+                    flush(ndjson, csv);
+                }
+            }
+        }
+        flush(ndjson, csv);
+        log.info("Exportados " + filas + " funkos");
+        return filas;
+    }
+
+    private static void fila(CsvWriter csv, FunkoResponseDto funko) throws IOException {
+        csv.field(funko.getId())
+                .field(funko.getNombre())
+                .field(funko.getPrecio())
+                .field(funko.getCantidad())
+                .field(funko.getImagen())
+                .field(funko.getCategoria())
+                .field(funko.getFechaCreacion())
+                .field(funko.getFechaActualizacion())
+                .endRow();
+    }
+
+    private static void flush(NdjsonWriter ndjson, CsvWriter csv) throws IOException {
+        if (ndjson != null) {
+            ndjson.flush();
+        } else {
+            csv.flush();
+        }
+    }
+}
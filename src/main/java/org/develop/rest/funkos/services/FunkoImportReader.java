@@ -0,0 +1,254 @@
+package org.develop.rest.funkos.services;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.develop.rest.funkos.dto.FunkoCreateDto;
+import org.develop.utils.export.CsvWriter;
+import org.springframework.http.MediaType;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Lee los funkos a importar de uno en uno según llegan, sin cargar la entrada entera en memoria.
+ * Admite CSV (con o sin cabecera, separado por comas y con comillas dobles), NDJSON y un array JSON.
+ * Lee el CSV que escribe la exportación: campos entre comillas con saltos de línea y fórmulas protegidas con comilla simple.
+ * Una fila que no se puede interpretar se devuelve con su error y se sigue con la siguiente.
+ */
+class FunkoImportReader implements Closeable {
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
+    // Orden de las columnas del CSV cuando no trae cabecera
+    private static final List<String> COLUMNAS = List.of("nombre", "precio", "cantidad", "imagen", "categoria");
+
+    /**
+     * Una fila de la entrada: el funko leído o el motivo por el que no se ha podido leer
+     */
+    record Fila(long numero, FunkoCreateDto dto, String error) {
+    }
+
+    private enum Formato {CSV, NDJSON, JSON}
+
+    private final Formato formato;
+    private final ObjectMapper mapper;
+    private final BufferedReader reader;
+    private final JsonParser parser;
+    private int[] posiciones;
+    private long numero;
+
+    private FunkoImportReader(Formato formato, InputStream in, ObjectMapper mapper) throws IOException {
+        this.formato = formato;
+        this.mapper = mapper;
+        if (formato == Formato.JSON) {
+            this.reader = null;
+            this.parser = mapper.getFactory().createParser(in);
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Se esperaba un array JSON de funkos");
+            }
+        } else {
+            this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            this.parser = null;
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException si el tipo de contenido no es ninguno de los admitidos
+     */
+    static FunkoImportReader of(InputStream in, MediaType tipo, ObjectMapper mapper) throws IOException {
+        if (TEXT_CSV.includes(tipo)) {
+            return new FunkoImportReader(Formato.CSV, in, mapper);
+        }
+        if (MediaType.APPLICATION_NDJSON.includes(tipo)) {
+            return new FunkoImportReader(Formato.NDJSON, in, mapper);
+        }
+        if (MediaType.APPLICATION_JSON.includes(tipo)) {
+            return new FunkoImportReader(Formato.JSON, in, mapper);
+        }
+        throw new IllegalArgumentException("Formato de importación no admitido: " + tipo);
+    }
+
+    /**
+     * Devuelve la siguiente fila o null si se ha terminado la entrada
+     *
+     * @throws IOException si la entrada está rota y no se puede seguir leyendo
+     */
+    Fila next() throws IOException {
+        return switch (formato) {
+            case CSV -> nextCsv();
+            case NDJSON -> nextNdjson();
+            case JSON -> nextJson();
+        };
+    }
+
+    private Fila nextCsv() throws IOException {
+        String linea;
+        while ((linea = reader.readLine()) != null) {
+            numero++;
+            if (linea.isBlank()) {
+                continue;
+            }
+            // La fila se identifica por su primera línea
+            long inicio = numero;
+            List<String> campos = campos(registro(linea));
+            if (posiciones == null) {
+                posiciones = cabecera(campos);
+                if (posiciones != null) {
+                    continue;
+                }
+                posiciones = new int[]{0, 1, 2, 3, 4};
+            }
+            try {
+                return new Fila(inicio, FunkoCreateDto.builder()
+                        .nombre(campo(campos, posiciones[0]))
+                        .precio(numero(campo(campos, posiciones[1]), Double::valueOf, "precio"))
+                        .cantidad(numero(campo(campos, posiciones[2]), Integer::valueOf, "cantidad"))
+                        .imagen(campo(campos, posiciones[3]))
+                        .categoria(campo(campos, posiciones[4]))
+                        .build(), null);
+            } catch (IllegalArgumentException e) {
+                return new Fila(inicio, null, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    // Un campo entre comillas puede llevar saltos de línea: se juntan las líneas hasta cerrar las comillas.
+    // Las comillas escapadas van por pares, así que quedan abiertas mientras el total sea impar
+    private String registro(String linea) throws IOException {
+        int comillas = comillas(linea);
+        if (comillas % 2 == 0) {
+            return linea;
+        }
+        StringBuilder registro = new StringBuilder(linea);
+        String siguiente;
+        while (comillas % 2 != 0 && (siguiente = reader.readLine()) != null) {
+            numero++;
+            registro.append('\n').append(siguiente);
+            comillas += comillas(siguiente);
+        }
+        return registro.toString();
+    }
+
+    private static int comillas(String linea) {
+        int total = 0;
+        for (int i = 0; i < linea.length(); i++) {
+            if (linea.charAt(i) == '"') {
+                total++;
+            }
+        }
+        return total;
+    }
+
+    private Fila nextNdjson() throws IOException {
+        String linea;
+        while ((linea = reader.readLine()) != null) {
+            numero++;
+            if (linea.isBlank()) {
+                continue;
+            }
+            try {
+                return new Fila(numero, mapper.readValue(linea, FunkoCreateDto.class), null);
+            } catch (JsonProcessingException e) {
+                return new Fila(numero, null, "JSON no válido: " + e.getOriginalMessage());
+            }
+        }
+        return null;
+    }
+
+    private Fila nextJson() throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == null || token == JsonToken.END_ARRAY) {
+            return null;
+        }
+        numero++;
+        // Se lee el elemento entero antes de convertirlo, así un campo erróneo no deja el parser a medias
+        JsonNode elemento = mapper.readTree(parser);
+        try {
+            return new Fila(numero, mapper.treeToValue(elemento, FunkoCreateDto.class), null);
+        } catch (JsonProcessingException e) {
+            return new Fila(numero, null, "JSON no válido: " + e.getOriginalMessage());
+        }
+    }
+
+    // Si la primera línea nombra las columnas se usan sus posiciones, si no es que ya son datos
+    private static int[] cabecera(List<String> campos) {
+        List<String> nombres = campos.stream().map(c -> c.trim().toLowerCase(Locale.ROOT)).toList();
+        if (!nombres.contains("nombre")) {
+            return null;
+        }
+        return COLUMNAS.stream().mapToInt(nombres::indexOf).toArray();
+    }
+
+    private static String campo(List<String> campos, int posicion) {
+        if (posicion < 0 || posicion >= campos.size()) {
+            return null;
+        }
+        String valor = campos.get(posicion).trim();
+        // Quita la comilla simple con la que la exportación protege las fórmulas
+        if (valor.startsWith("'") && CsvWriter.isFormula(valor.substring(1))) {
+            valor = valor.substring(1);
+        }
+        return valor.isEmpty() ? null : valor;
+    }
+
+    private static <T> T numero(String valor, Function<String, T> parse, String nombre) {
+        if (valor == null) {
+            return null;
+        }
+        try {
+            return parse.apply(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("El campo " + nombre + " no es un número: " + valor);
+        }
+    }
+
+    // Separa una línea CSV por comas respetando las comillas dobles, "" dentro de comillas es una comilla
+    static List<String> campos(String linea) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c != '"') {
+                    actual.append(c);
+                } else if (i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    actual.append('"');
+                    i++;
+                } else {
+                    entreComillas = false;
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == ',') {
+                campos.add(actual.toString());
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        campos.add(actual.toString());
+        return campos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (parser != null) {
+            parser.close();
+        }
+        if (reader != null) {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package org.develop.rest.funkos.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.develop.rest.categorias.models.Categoria;
+import org.develop.rest.categorias.services.CategoriasRegistry;
+import org.develop.rest.funkos.cache.FunkoQueryCache;
+import org.develop.rest.funkos.dto.FunkoCreateDto;
+import org.develop.rest.funkos.dto.FunkoImportResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.develop.rest.funkos.models.Funko.IMAGE_DEFAULT;
+
+/**
+ * Importación masiva de funkos.
+ * La entrada se lee en streaming y se inserta en bloques, cada bloque en su propia transacción y con
+ * inserciones JDBC por lotes, sin pasar por el contexto de persistencia de JPA: con el id IDENTITY
+ * Hibernate inserta de uno en uno y guarda cada entidad en memoria hasta el final de la transacción.
+ * Las filas no válidas se descartan y si un bloque falla se descarta solo ese bloque, los demás siguen.
+ */
+@Service
+@Slf4j
+public class FunkoImportService {
+    private static final String INSERT = "INSERT INTO FUNKOS (nombre, precio, cantidad, imagen, fecha_creacion, fecha_actualizacion, is_activo, categoria_id, version) " +
+            "VALUES (?, ?, ?, ?, ?, ?, true, ?, 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CategoriasRegistry categoriasRegistry;
+    private final FunkoQueryCache funkoQueryCache;
+    private final Validator validator;
+    private final ObjectMapper mapper;
+    private final int chunkSize;
+    private final int batchSize;
+    private final int maxErrors;
+
+    public FunkoImportService(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              CategoriasRegistry categoriasRegistry,
+                              FunkoQueryCache funkoQueryCache,
+                              Validator validator,
+                              ObjectMapper mapper,
+                              @Value("${funkos.import.chunk-size:5000}") int chunkSize,
+                              @Value("${funkos.import.batch-size:500}") int batchSize,
+                              @Value("${funkos.import.max-errors:100}") int maxErrors) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.categoriasRegistry = categoriasRegistry;
+        this.funkoQueryCache = funkoQueryCache;
+        this.validator = validator;
+        this.mapper = mapper;
+        this.chunkSize = chunkSize;
+        this.batchSize = batchSize;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Importa los funkos de la entrada
+     *
+     * @param in   CSV, NDJSON o array JSON de FunkoCreateDto
+     * @param tipo tipo de contenido de la entrada
+     * @throws IllegalArgumentException si el tipo de contenido no es ninguno de los admitidos
+     */
+    public FunkoImportResult importar(InputStream in, MediaType tipo) {
+        log.info("Importando funkos en formato " + tipo);
+        Resumen resumen = new Resumen(System.currentTimeMillis());
+        List<Nuevo> bloque = new ArrayList<>(chunkSize);
+
+        try (FunkoImportReader reader = FunkoImportReader.of(in, tipo, mapper)) {
+            FunkoImportReader.Fila fila;
+            while ((fila = reader.next()) != null) {
+                resumen.leidas++;
+                String error = fila.error() != null ? fila.error() : validar(fila.dto());
+                Optional<Categoria> categoria = error == null ? categoriasRegistry.findByNombre(fila.dto().getCategoria()) : Optional.empty();
+                if (error == null && categoria.isEmpty()) {
+                    error = "Categoría " + fila.dto().getCategoria() + " no encontrada";
+                }
+                if (error != null) {
+                    resumen.error(fila.numero(), fila.numero(), error, 1);
+                    continue;
+                }
+                bloque.add(nuevo(fila.numero(), fila.dto(), categoria.get()));
+                if (bloque.size() >= chunkSize) {
+                    insertar(bloque, resumen);
+                    bloque.clear();
+                }
+            }
+        } catch (IOException e) {
+            // Entrada rota: no se puede seguir leyendo, pero lo ya leído sí se guarda
+            log.warn("Entrada de importación no válida: " + e.getMessage());
+            resumen.error(resumen.leidas + 1, resumen.leidas + 1, "Entrada no válida, se detiene la importación: " + e.getMessage(), 0);
+        }
+        insertar(bloque, resumen);
+
+        if (!resumen.categorias.isEmpty()) {
+            funkoQueryCache.invalidate(resumen.categorias);
+        }
+        FunkoImportResult result = resumen.result();
+        log.info("Importación terminada: " + result.importadas() + " funkos insertados y " + result.fallidas() +
+                " filas descartadas en " + result.milisegundos() + " ms");
+        return result;
+    }
+
+    private String validar(FunkoCreateDto dto) {
+        Set<ConstraintViolation<FunkoCreateDto>> violaciones = validator.validate(dto);
+        if (violaciones.isEmpty()) {
+            return null;
+        }
+        return violaciones.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining(", "));
+    }
+
+    private static Nuevo nuevo(long numero, FunkoCreateDto dto, Categoria categoria) {
+        return new Nuevo(
+                numero,
+                dto.getNombre(),
+                Optional.ofNullable(dto.getPrecio()).orElse(0.0),
+                Optional.ofNullable(dto.getCantidad()).orElse(0),
+                dto.getImagen() != null ? dto.getImagen() : IMAGE_DEFAULT,
+                categoria.getId()
+        );
+    }
+
+    private void insertar(List<Nuevo> bloque, Resumen resumen) {
+        if (bloque.isEmpty()) {
+            return;
+        }
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT, bloque, batchSize, (ps, funko) -> {
+                        ps.setString(1, funko.nombre());
+                        ps.setDouble(2, funko.precio());
+                        ps.setInt(3, funko.cantidad());
+                        ps.setString(4, funko.imagen());
+                        ps.setTimestamp(5, ahora);
+                        ps.setTimestamp(6, ahora);
+                        ps.setLong(7, funko.categoriaId());
+                    }));
+            resumen.importadas += bloque.size();
+            bloque.forEach(funko -> resumen.categorias.add(funko.categoriaId()));
+        } catch (DataAccessException e) {
+            long desde = bloque.get(0).numero();
+            long hasta = bloque.get(bloque.size() - 1).numero();
+            log.warn("Error al insertar el bloque de las filas " + desde + " a " + hasta + ": " + e.getMostSpecificCause().getMessage());
+            resumen.error(desde, hasta, "No se ha podido insertar el bloque: " + e.getMostSpecificCause().getMessage(), bloque.size());
+        }
+    }
+
+    // Funko ya validado y con la categoría resuelta, listo para insertar
+    private record Nuevo(long numero, String nombre, double precio, int cantidad, String imagen, long categoriaId) {
+    }
+
+    // Contadores de una importación, solo los usa el hilo que la hace
+    private class Resumen {
+        private final long inicio;
+        private final List<FunkoImportResult.Error> errores = new ArrayList<>();
+        private final Set<Long> categorias = new HashSet<>();
+        private long leidas;
+        private long importadas;
+        private long fallidas;
+
+        private Resumen(long inicio) {
+            this.inicio = inicio;
+        }
+
+        private void error(long desde, long hasta, String motivo, long filas) {
+            fallidas += filas;
+            if (errores.size() < maxErrors) {
+                errores.add(new FunkoImportResult.Error(desde, hasta, motivo));
+            }
+        }
+
+        private FunkoImportResult result() {
+            return new FunkoImportResult(leidas, importadas, fallidas, System.currentTimeMillis() - inicio, List.copyOf(errores));
+        }
+    }
+}
@@ -2,35 +2,58 @@ package org.develop.rest.funkos.services;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import jakarta.persistence.criteria.Join;
 import lombok.extern.slf4j.Slf4j;
+import org.develop.rest.categorias.exceptions.CategoriaNotFound;
 import org.develop.rest.categorias.models.Categoria;
 import org.develop.rest.categorias.services.CategoriasService;
+import org.develop.rest.funkos.cache.FunkoNearCache;
+import org.develop.rest.funkos.cache.FunkoQuery;
+import org.develop.rest.funkos.cache.FunkoQueryCache;
 import org.develop.rest.funkos.dto.FunkoCreateDto;
 import org.develop.rest.funkos.dto.FunkoUpdateDto;
+import org.develop.rest.funkos.exceptions.FunkoConflict;
 import org.develop.rest.funkos.exceptions.FunkoNotFound;
+import org.develop.rest.funkos.exceptions.FunkoPreconditionFailed;
 import org.develop.rest.funkos.mappers.FunkoMapper;
 import org.develop.rest.funkos.models.Funko;
 import org.develop.rest.funkos.repositories.FunkosRepository;
+import org.develop.rest.funkos.repositories.FunkosSpecifications;
 import org.develop.config.websockets.WebSocketConfig;
 import org.develop.config.websockets.WebSocketHandler;
+import org.develop.notifications.bus.NotificationBus;
+import org.develop.notifications.bus.NotificationEvent;
 import org.develop.notifications.dto.FunkoNotificationDto;
 import org.develop.notifications.mappers.FunkoNotificationMapper;
 import org.develop.notifications.models.Notificacion;
 import org.develop.rest.storage.services.StorageService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Service
 @Slf4j
 public class FunkosServiceImpl implements FunkosService {
+    // Intentos de guardar un Funko cuando otro lo ha cambiado a la vez y espera antes del segundo
+    private static final int MAX_INTENTOS = 5;
+    private static final long ESPERA_INICIAL = 10;
+
     private final FunkosRepository funkosRepository;
     private final CategoriasService categoriasService;
     private final FunkoMapper funkoMapper;
@@ -39,10 +62,13 @@ public class FunkosServiceImpl implements FunkosService {
     private final WebSocketConfig webSocketConfig;
     private final ObjectMapper mapper;
     private final FunkoNotificationMapper funkoNotificationMapper;
+    private final NotificationBus notificationBus;
+    private final FunkoNearCache funkoCache;
+    private final FunkoQueryCache funkoQueryCache;
     private WebSocketHandler webSocketService;
 
     @Autowired
-    public FunkosServiceImpl(FunkosRepository funkosRepository, CategoriasService categoriasService, FunkoMapper funkoMapper, StorageService storageService,  WebSocketConfig webSocketConfig, FunkoNotificationMapper funkoNotificationMapper) {
+    public FunkosServiceImpl(FunkosRepository funkosRepository, CategoriasService categoriasService, FunkoMapper funkoMapper, StorageService storageService,  WebSocketConfig webSocketConfig, FunkoNotificationMapper funkoNotificationMapper, NotificationBus notificationBus, FunkoNearCache funkoCache, FunkoQueryCache funkoQueryCache) {
         this.funkosRepository = funkosRepository;
         this.categoriasService = categoriasService;
         this.funkoMapper = funkoMapper;
@@ -51,49 +77,63 @@ public class FunkosServiceImpl implements FunkosService {
         webSocketService = webSocketConfig.webSocketFunkosHandler();
         this.mapper = new ObjectMapper();
         this.funkoNotificationMapper = funkoNotificationMapper;
+        this.notificationBus = notificationBus;
+        this.funkoCache = funkoCache;
+        this.funkoQueryCache = funkoQueryCache;
+        // Los cambios de cualquier nodo llegan por el bus y se envían a los clientes ws de este
+        notificationBus.subscribe(this::onNotification);
     }
 
     @Override
     public Page<Funko> findAll(Optional<String> nombre, Optional<String> categoria, Optional<Double> precioMax, Optional<Integer> cantidadMin, Optional<Boolean> isActivo, Pageable pageable) {
-        // Criteerio de búsqueda por nombre
-        Specification<Funko> specNombreFunko = (root, query, criteriaBuilder) ->
-                nombre.map(n -> criteriaBuilder.like(criteriaBuilder.lower(root.get("nombre")), "%" + n.toLowerCase() + "%"))
-                        .orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true)));
-
-        // Criterio de busqueda por categoria
-        Specification<Funko> specCategoriaFunjo = (root, query, criteriaBuilder) ->
-            categoria.map(c ->{
-                Join<Funko, Categoria> categoriaJoin = root.join("categoria");
-                return criteriaBuilder.like(criteriaBuilder.lower(categoriaJoin.get("nombre")), "%" + c.toLowerCase() + "%");
-            }).orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true)));
-
-        // Criterio de busqueda por precio
-        Specification<Funko> specPrecioMaxFunko = (root, query, criteriaBuilder) ->
-                precioMax.map(p -> criteriaBuilder.lessThanOrEqualTo(root.get("precio"), p))
-                        .orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true)));
-
-        // Criterio de busqueda por Cantidad
-        Specification<Funko> specCantidadMinFunko = (root, query, criteriaBuilder) ->
-                cantidadMin.map(c -> criteriaBuilder.lessThanOrEqualTo(root.get("cantidad"),c))
-                        .orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true)));
-
-        // Criterio de busqueda por isActivo
-        Specification<Funko> specIsActivo = (root, query, criteriaBuilder) ->
-                isActivo.map(a -> criteriaBuilder.equal(root.get("isActivo"), a))
-                        .orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true)));
-
-        Specification<Funko> critero = Specification.where(specNombreFunko)
-                .and(specCategoriaFunjo)
-                .and(specPrecioMaxFunko)
-                .and(specCantidadMinFunko)
-                .and(specIsActivo);
-        return funkosRepository.findAll(critero, pageable);
+        // El resultado se cachea por el id de la categoria, si no existe no hay nada que buscar
+        Long categoriaId;
+        try {
+            categoriaId = categoria.map(c -> categoriasService.findByNombre(c).getId()).orElse(null);
+        } catch (CategoriaNotFound e) {
+            return Page.empty(pageable);
+        }
+        return funkoQueryCache.findAll(
+                FunkoQuery.of(categoriaId, nombre, precioMax, cantidadMin, isActivo, pageable),
+                () -> funkosRepository.buscar(categoriaId, nombre.orElse(null), precioMax.orElse(null), cantidadMin.orElse(null), isActivo.orElse(null), pageable),
+                funkosRepository::findAllById
+        );
+    }
+
+    @Override
+    public Slice<Funko> findSlice(Optional<String> nombre, Optional<String> categoria, Optional<Double> precioMax, Optional<Integer> cantidadMin, Optional<Boolean> isActivo, Pageable pageable) {
+        // Sin COUNT: se pide un elemento más de la página para saber si hay siguiente
+        return criterios(nombre, categoria, precioMax, cantidadMin, isActivo)
+                .map(criterio -> funkosRepository.findBy(criterio, query -> query.sortBy(pageable.getSort()).limit(pageable.getPageSize())
+                        .scroll(ScrollPosition.offset(pageable.getOffset()))))
+                .map(window -> (Slice<Funko>) new SliceImpl<>(window.getContent(), pageable, window.hasNext()))
+                .orElseGet(() -> new SliceImpl<>(List.of(), pageable, false));
+    }
+
+    @Override
+    public Window<Funko> scroll(Optional<String> nombre, Optional<String> categoria, Optional<Double> precioMax, Optional<Integer> cantidadMin, Optional<Boolean> isActivo, KeysetScrollPosition position, int size, Sort sort) {
+        log.info("Buscando funkos por keyset desde la posición: " + position);
+        return criterios(nombre, categoria, precioMax, cantidadMin, isActivo)
+                .map(criterio -> funkosRepository.findBy(criterio, query -> query.sortBy(sort).limit(size).scroll(position)))
+                .orElseGet(() -> Window.from(List.of(), i -> position));
+    }
+
+    // Solo se añaden los criterios de los filtros presentes, vacío si la categoria no existe
+    private Optional<Specification<Funko>> criterios(Optional<String> nombre, Optional<String> categoria, Optional<Double> precioMax, Optional<Integer> cantidadMin, Optional<Boolean> isActivo) {
+        // La categoria se resuelve por nombre (en memoria) y se filtra por su id
+        Long categoriaId;
+        try {
+            categoriaId = categoria.map(c -> categoriasService.findByNombre(c).getId()).orElse(null);
+        } catch (CategoriaNotFound e) {
+            return Optional.empty();
+        }
+        return Optional.of(FunkosSpecifications.filtros(categoriaId, nombre.orElse(null), precioMax.orElse(null), cantidadMin.orElse(null), isActivo.orElse(null)));
     }
 
     @Override
     public Funko findById(Long id) {
         log.info("Buscando funko por id: " + id);
-        return funkosRepository.findById(id).orElseThrow(() -> new FunkoNotFound(id));
+        return funkoCache.findById(id, funkosRepository::findById).orElseThrow(() -> new FunkoNotFound(id));
     }
 
     @Override
@@ -101,6 +141,8 @@ public class FunkosServiceImpl implements FunkosService {
         log.info("Guardando funko: " + funkoCreateDto);
         Categoria categoria = categoriasService.findByNombre(funkoCreateDto.getCategoria());
         var funkoSaved = funkosRepository.save(funkoMapper.toFunko(funkoCreateDto, categoria));
+        funkoCache.invalidate(funkoSaved.getId());
+        funkoQueryCache.invalidate(Arrays.asList(idCategoria(categoria)));
         onChange(Notificacion.Tipo.CREATE, funkoSaved);
         return funkoSaved;
     }
@@ -109,13 +151,54 @@ public class FunkosServiceImpl implements FunkosService {
     public Funko update(Long id, FunkoUpdateDto funkoUpdateDto) {
         log.info("Actualizando funko por id: " + id);
         Funko funkoActual = this.findById(id);
-        Categoria categoria = null;
+        Categoria categoriaNueva = null;
+        if(funkoUpdateDto.getCategoria() != null && !funkoUpdateDto.getCategoria().isEmpty()){
+            categoriaNueva = categoriasService.findByNombre(funkoUpdateDto.getCategoria());
+        }
+        for (int intento = 1; ; intento++) {
+            if (intento > 1) {
+                funkoActual = this.findById(id);
+            }
+            try {
+                return guardar(id, funkoUpdateDto, funkoActual, categoriaNueva);
+            } catch (OptimisticLockingFailureException e) {
+                esperarReintento(id, intento);
+            }
+        }
+    }
+
+    /**
+     * Actualiza el Funko solo si sigue en la versión que vio el cliente, la de su If-Match.
+     * La versión se comprueba también al guardar, así que si cambia entre medias lo rechaza la base de datos.
+     * No se reintenta: el cliente tiene que volver a leerlo
+     *
+     * @throws FunkoPreconditionFailed si el Funko ya no está en esa versión
+     */
+    @Override
+    public Funko update(Long id, FunkoUpdateDto funkoUpdateDto, Long version) {
+        log.info("Actualizando funko por id: " + id + " en la versión: " + version);
+        Funko funkoActual = this.findById(id);
+        if (!Objects.equals(version, funkoActual.getVersion())) {
+            throw new FunkoPreconditionFailed(id);
+        }
+        Categoria categoriaNueva = null;
         if(funkoUpdateDto.getCategoria() != null && !funkoUpdateDto.getCategoria().isEmpty()){
-            categoria = categoriasService.findByNombre(funkoUpdateDto.getCategoria());
-        } else {
-            categoria = funkoActual.getCategoria();
+            categoriaNueva = categoriasService.findByNombre(funkoUpdateDto.getCategoria());
         }
+        try {
+            return guardar(id, funkoUpdateDto, funkoActual, categoriaNueva);
+        } catch (OptimisticLockingFailureException e) {
+            funkoCache.invalidate(id);
+            throw new FunkoPreconditionFailed(id);
+        }
+    }
+
+    private Funko guardar(Long id, FunkoUpdateDto funkoUpdateDto, Funko funkoActual, Categoria categoriaNueva) {
+        Categoria categoria = categoriaNueva != null ? categoriaNueva : funkoActual.getCategoria();
         var funkoUpdated = funkosRepository.save(funkoMapper.toFunko(funkoUpdateDto, funkoActual, categoria));
+        funkoCache.invalidate(id);
+        // Si cambia de categoria cambian los resultados de las dos
+        funkoQueryCache.invalidate(Arrays.asList(idCategoria(funkoActual.getCategoria()), idCategoria(categoria)));
 
         onChange(Notificacion.Tipo.UPDATE, funkoUpdated);
 
@@ -127,6 +210,8 @@ public class FunkosServiceImpl implements FunkosService {
         log.debug("Borrando funko por id: " + id);
         var funk = this.findById(id);
         funkosRepository.deleteById(id);
+        funkoCache.invalidate(id);
+        funkoQueryCache.invalidate(Arrays.asList(idCategoria(funk.getCategoria())));
 
         if(funk.getImagen() != null && !funk.getImagen().equals(Funko.IMAGE_DEFAULT)){
             storageService.delete(funk.getImagen());
@@ -138,34 +223,111 @@ public class FunkosServiceImpl implements FunkosService {
     public Funko updateImage(Long id, MultipartFile image) {
         log.info("Actualizando imagen de Funko por id: " + id);
         var funkoActual = this.findById(id);
-        if (funkoActual.getImagen() != null && !funkoActual.getImagen().equals(Funko.IMAGE_DEFAULT)) {
-            storageService.delete(funkoActual.getImagen());
-        }
+        // Primero se guarda la nueva: si es la misma imagen no llega a quedarse sin referencias
         String imageStored = storageService.store(image);
-        String imageUrl = storageService.getUrl(imageStored);
-        var funkoActualizado = new Funko(
-                funkoActual.getId(),
-                funkoActual.getNombre(),
-                funkoActual.getPrecio(),
-                funkoActual.getCantidad(),
-                imageUrl,
-                funkoActual.getFechaCreacion(),
-                LocalDateTime.now(),
-                funkoActual.getIsActivo(),
-                funkoActual.getCategoria()
-        );
-        var funkoUpdated = funkosRepository.save(funkoActualizado);
-        onChange(Notificacion.Tipo.UPDATE, funkoUpdated);
-        return funkoUpdated;
+        return guardarImagen(id, funkoActual, imageStored);
     }
 
-    public void onChange(Notificacion.Tipo tipo, Funko data) {
-        log.debug("Servicio de funkos onChange con tipo: " + tipo + " y datos: " + data);
+    /**
+     * Pone al Funko una imagen que ya está en el almacenamiento, la de una subida por trozos.
+     * Si el Funko no existe o no se puede guardar se suelta la imagen
+     */
+    @Override
+    public Funko updateImage(Long id, String imageStored) {
+        log.info("Actualizando imagen de Funko por id: " + id + " con la imagen almacenada " + imageStored);
+        Funko funkoActual;
+        try {
+            funkoActual = this.findById(id);
+        } catch (RuntimeException e) {
+            soltarImagen(imageStored, e);
+            throw e;
+        }
+        return guardarImagen(id, funkoActual, imageStored);
+    }
 
-        if (webSocketService == null) {
-            log.warn("No se ha podido enviar la notificación a los clientes ws, no se ha encontrado el servicio");
-            webSocketService = this.webSocketConfig.webSocketFunkosHandler();
+    /**
+     * Pone la imagen al Funko y suelta la que tenía. Si falla algo antes de que el Funko apunte
+     * a la nueva, conflictos agotados incluidos, se suelta la nueva para no dejarla sin dueño
+     */
+    private Funko guardarImagen(Long id, Funko funkoActual, String imageStored) {
+        boolean guardada = false;
+        try {
+            String imageUrl = storageService.getUrl(imageStored);
+            for (int intento = 1; ; intento++) {
+                if (intento > 1) {
+                    funkoActual = this.findById(id);
+                }
+                var funkoActualizado = new Funko(
+                        funkoActual.getId(),
+                        funkoActual.getNombre(),
+                        funkoActual.getPrecio(),
+                        funkoActual.getCantidad(),
+                        imageUrl,
+                        funkoActual.getFechaCreacion(),
+                        LocalDateTime.now(),
+                        funkoActual.getIsActivo(),
+                        funkoActual.getCategoria(),
+                        funkoActual.getVersion()
+                );
+                try {
+                    var funkoUpdated = funkosRepository.save(funkoActualizado);
+                    guardada = true;
+                    funkoCache.invalidate(id);
+                    // La imagen que se ha sustituido, la de la última lectura
+                    if (funkoActual.getImagen() != null && !funkoActual.getImagen().equals(Funko.IMAGE_DEFAULT)) {
+                        storageService.delete(funkoActual.getImagen());
+                    }
+                    onChange(Notificacion.Tipo.UPDATE, funkoUpdated);
+                    return funkoUpdated;
+                } catch (OptimisticLockingFailureException e) {
+                    esperarReintento(id, intento);
+                }
+            }
+        } catch (RuntimeException e) {
+            if (!guardada) {
+                soltarImagen(imageStored, e);
+            }
+            throw e;
+        }
+    }
+
+    private void soltarImagen(String imageStored, RuntimeException causa) {
+        try {
+            storageService.delete(imageStored);
+        } catch (RuntimeException e) {
+            causa.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Otro ha cambiado el Funko entre la lectura y el guardado, un pedido o un administrador.
+     * Se descarta la copia cacheada y se espera antes de volver a leer y aplicar los cambios,
+     * el doble en cada intento y con algo de azar para que los que han chocado no vuelvan a coincidir.
+     *
+     * @throws FunkoConflict si ya se han agotado los intentos
+     */
+    private void esperarReintento(Long id, int intento) {
+        funkoCache.invalidate(id);
+        if (intento >= MAX_INTENTOS) {
+            log.warn("Conflicto de versión al guardar el funko " + id + ", se agotan los " + MAX_INTENTOS + " intentos");
+            throw new FunkoConflict(id);
         }
+        long espera = ESPERA_INICIAL << (intento - 1);
+        log.info("Conflicto de versión al guardar el funko " + id + ", se reintenta en " + espera + " ms");
+        try {
+            Thread.sleep(espera + ThreadLocalRandom.current().nextLong(espera));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FunkoConflict(id);
+        }
+    }
+
+    private static Long idCategoria(Categoria categoria) {
+        return categoria == null ? null : categoria.getId();
+    }
+
+    public void onChange(Notificacion.Tipo tipo, Funko data) {
+        log.debug("Servicio de funkos onChange con tipo: " + tipo + " y datos: " + data);
 
         try {
             Notificacion<FunkoNotificationDto> notificacion = new Notificacion<>(
@@ -177,17 +339,30 @@ public class FunkosServiceImpl implements FunkosService {
 
             String json = mapper.writeValueAsString((notificacion));
 
-            log.info("Enviando mensaje a los clientes ws");
-            Thread senderThread = new Thread(() -> {
-                try {
-                    webSocketService.sendMessage(json);
-                } catch (Exception e) {
-                    log.error("Error al enviar el mensaje a través del servicio WebSocket", e);
-                }
-            });
-            senderThread.start();
+            log.info("Publicando la notificación en el bus");
+            notificationBus.publish(new NotificationEvent("FUNKOS", String.valueOf(data.getId()), json));
         } catch (JsonProcessingException e) {
             log.error("Error al convertir la notificación a JSON", e);
+        } catch (Exception e) {
+            log.error("Error al publicar la notificación en el bus", e);
+        }
+    }
+
+    private void onNotification(NotificationEvent event) {
+        if (!event.entity().equals("FUNKOS")) {
+            return;
+        }
+        if (webSocketService == null) {
+            log.warn("No se ha podido enviar la notificación a los clientes ws, no se ha encontrado el servicio");
+            webSocketService = this.webSocketConfig.webSocketFunkosHandler();
+        }
+
+        try {
+            log.info("Enviando mensaje a los clientes ws");
+            // El envío solo encola el mensaje, el reparto a las sesiones lo hace el dispatcher
+            webSocketService.sendMessage(event.key(), event.payload());
+        } catch (Exception e) {
+            log.error("Error al enviar el mensaje a través del servicio WebSocket", e);
         }
     }
 
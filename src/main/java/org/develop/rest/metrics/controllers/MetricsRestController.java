@@ -0,0 +1,42 @@
+package org.develop.rest.metrics.controllers;
+
+import lombok.extern.slf4j.Slf4j;
+import org.develop.config.cache.BoundedCacheManager;
+import org.develop.config.cache.CacheStats;
+import org.develop.config.websockets.WebSocketDispatcher;
+import org.develop.config.websockets.WebSocketStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@Slf4j
+@RestController
+@RequestMapping("${api.version}/metrics")
+@PreAuthorize("hasRole('ADMIN')")
+public class MetricsRestController {
+    private final WebSocketDispatcher webSocketDispatcher;
+    private final BoundedCacheManager cacheManager;
+
+    @Autowired
+    public MetricsRestController(WebSocketDispatcher webSocketDispatcher, BoundedCacheManager cacheManager) {
+        this.webSocketDispatcher = webSocketDispatcher;
+        this.cacheManager = cacheManager;
+    }
+
+    @GetMapping("/websockets")
+    public ResponseEntity<WebSocketStats> getWebSocketStats() {
+        log.info("Obteniendo métricas de las notificaciones WebSocket");
+        return ResponseEntity.ok(webSocketDispatcher.stats());
+    }
+
+    @GetMapping("/caches")
+    public ResponseEntity<List<CacheStats>> getCacheStats() {
+        log.info("Obteniendo métricas de las cachés");
+        return ResponseEntity.ok(cacheManager.stats());
+    }
+}
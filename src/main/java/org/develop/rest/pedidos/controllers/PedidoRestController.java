@@ -1,24 +1,36 @@
 package org.develop.rest.pedidos.controllers;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.bson.types.ObjectId;
 import org.develop.rest.pedidos.models.Pedido;
+import org.develop.rest.pedidos.services.PedidoExportService;
 import org.develop.rest.pedidos.services.PedidoService;
+import org.develop.utils.export.ExportFormat;
+import org.develop.utils.pagination.CursorPageResponse;
 import org.develop.utils.pagination.PageResponse;
+import org.develop.utils.pagination.PaginationCursorUtils;
+import org.develop.utils.pagination.PaginationLinksUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("${api.version}/pedidos")
@@ -26,10 +38,16 @@ import java.util.Map;
 @PreAuthorize("hasRole('ADMIN')")
 public class PedidoRestController {
     private final PedidoService pedidoService;
+    private final PaginationLinksUtils paginationLinksUtils;
+    private final PaginationCursorUtils paginationCursorUtils;
+    private final PedidoExportService pedidoExportService;
 
     @Autowired
-    public PedidoRestController(PedidoService pedidoService) {
+    public PedidoRestController(PedidoService pedidoService, PaginationLinksUtils paginationLinksUtils, PaginationCursorUtils paginationCursorUtils, PedidoExportService pedidoExportService) {
         this.pedidoService = pedidoService;
+        this.paginationLinksUtils = paginationLinksUtils;
+        this.paginationCursorUtils = paginationCursorUtils;
+        this.pedidoExportService = pedidoExportService;
     }
 
     @GetMapping
@@ -45,6 +63,54 @@ public class PedidoRestController {
         return ResponseEntity.ok(PageResponse.of(pedidoService.findAll(pageable), sortBy, direction));
     }
 
+    @GetMapping(params = {"withTotal=false", "!after"})
+    public ResponseEntity<PageResponse<Pedido>> getAllPedidosWithoutTotal(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String direction
+    ){
+        log.info("Obteniendo todos los pedidos sin total");
+        Sort sort = direction.equalsIgnoreCase(Sort.Direction.ASC.name()) ? Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
+        Pageable pageable = PageRequest.of(page, size, sort);
+        return ResponseEntity.ok(PageResponse.of(pedidoService.findSlice(pageable), sortBy, direction));
+    }
+
+    @GetMapping(params = "after")
+    public ResponseEntity<CursorPageResponse<Pedido>> getAllPedidosByCursor(
+            @RequestParam String after,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String direction,
+            HttpServletRequest request
+    ){
+        log.info("Obteniendo todos los pedidos por cursor");
+        var position = paginationCursorUtils.decode(after, Pedido.class);
+        var window = pedidoService.scroll(position, size, paginationCursorUtils.keysetSort(sortBy, direction));
+        var nextCursor = paginationCursorUtils.encode(window);
+        UriComponentsBuilder uriBuilder = paginationLinksUtils.fromRequest(request);
+        return ResponseEntity.ok()
+                .header("link", paginationLinksUtils.createCursorLinkHeader(nextCursor, size, uriBuilder))
+                .body(CursorPageResponse.of(window, size, nextCursor, sortBy, direction));
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportPedidos(
+            @RequestParam(required = false) Optional<String> formato,
+            @RequestParam(required = false) Optional<Long> idUsuario,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Optional<LocalDateTime> desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Optional<LocalDateTime> hasta,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) Optional<String> accept
+    ) {
+        ExportFormat exportFormato = ExportFormat.resolve(formato, accept);
+        log.info("Exportando pedidos en formato: " + exportFormato);
+        StreamingResponseBody body = out -> pedidoExportService.exportar(out, exportFormato, idUsuario, desde, hasta);
+        return ResponseEntity.ok()
+                .contentType(exportFormato.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + exportFormato.fileName("pedidos"))
+                .body(body);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Pedido> getPedido(@PathVariable("id")ObjectId idPedido) {
         log.info("Obteniendo pedido con id: " + idPedido);
@@ -4,6 +4,7 @@ import org.bson.types.ObjectId;
 import org.develop.rest.pedidos.models.Pedido;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
@@ -13,6 +14,9 @@ import java.util.List;
 public interface PedidoRepository extends MongoRepository<Pedido, ObjectId> {
     Page<Pedido> findByIdUsuario(Long idUsuario, Pageable pageable);
 
+    // Slice no lanza la consulta de conteo
+    Slice<Pedido> findAllBy(Pageable pageable);
+
     List<Pedido> findPedidosIdsByIdUsuario(Long idUsuario);
 
     boolean existsByIdUsuario(Long idUsuario);
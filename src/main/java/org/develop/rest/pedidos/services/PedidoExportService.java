@@ -0,0 +1,174 @@
+package org.develop.rest.pedidos.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.develop.rest.pedidos.models.LineaPedido;
+import org.develop.rest.pedidos.models.Pedido;
+import org.develop.utils.export.CsvWriter;
+import org.develop.utils.export.ExportFormat;
+import org.develop.utils.export.NdjsonWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.CompoundIndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Exportación del histórico de pedidos para conciliación.
+ * Los pedidos se leen de un cursor de MongoDB que trae los documentos en bloques de batch-size
+ * y se escriben según llegan, así la memoria usada no depende de cuántos pedidos se exporten.
+ * Se ordenan por fecha de creación e id y los filtros van sobre índices con ese mismo orden,
+ * así Mongo no tiene que ordenar en memoria.
+ * Los dos formatos llevan solo los importes del pedido, los datos personales del cliente no se leen ni se exportan.
+ */
+@Service
+@Slf4j
+public class PedidoExportService {
+    // Cada cuántos pedidos se vacía el buffer hacia el cliente
+    private static final int FLUSH_CADA = 1000;
+    private static final String[] CABECERA_CSV = {"idPedido", "idUsuario", "fechaCreacion", "isActivo", "totalItems", "total",
+            "idFunko", "cantidad", "precioFunko", "totalLinea"};
+    // Sin el cliente
+    private static final String[] CAMPOS = {"id", "idUsuario", "fechaCreacion", "fechaActualizacion", "isActivo", "totalItems", "total", "lineasPedido"};
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper mapper;
+    private final int batchSize;
+    private final AtomicBoolean indices = new AtomicBoolean();
+
+    public PedidoExportService(MongoTemplate mongoTemplate,
+                               ObjectMapper mapper,
+                               @Value("${pedidos.export.batch-size:1000}") int batchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.mapper = mapper;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Escribe los pedidos que cumplen los filtros en la salida. No cierra la salida.
+     * En CSV sale una fila por cada línea de pedido.
+     *
+     * @param idUsuario solo los pedidos de este usuario
+     * @param desde     creados desde esta fecha, incluida
+     * @param hasta     creados antes de esta fecha
+     * @return número de pedidos escritos
+     */
+    public long exportar(OutputStream out, ExportFormat formato, Optional<Long> idUsuario,
+                         Optional<LocalDateTime> desde, Optional<LocalDateTime> hasta) throws IOException {
+        log.info("Exportando pedidos en formato " + formato + " del usuario " + idUsuario.orElse(null) +
+                " desde " + desde.orElse(null) + " hasta " + hasta.orElse(null));
+        crearIndices();
+
+        Query query = query(idUsuario, desde, hasta)
+                .with(Sort.by(Sort.Direction.ASC, "fechaCreacion", "id"))
+                .cursorBatchSize(batchSize);
+        query.fields().include(CAMPOS);
+
+        NdjsonWriter ndjson = formato == ExportFormat.NDJSON ? new NdjsonWriter(mapper, out) : null;
+        CsvWriter csv = formato == ExportFormat.CSV ? new CsvWriter(out, CABECERA_CSV) : null;
+        long filas = 0;
+        try (Stream<Pedido> pedidos = mongoTemplate.stream(query, Pedido.class)) {
+            for (Iterator<Pedido> it = pedidos.iterator(); it.hasNext(); ) {
+                Pedido pedido = it.next();
+                if (ndjson != null) {
+                    ndjson.write(PedidoExportado.of(pedido));
+                } else {
+                    escribirCsv(csv, pedido);
+                }
+                if (++filas % FLUSH_CADA == 0) {
+                    flush(ndjson, csv);
+                }
+            }
+        }
+        flush(ndjson, csv);
+        log.info("Exportados " + filas + " pedidos");
+        return filas;
+    }
+
+    Query query(Optional<Long> idUsuario, Optional<LocalDateTime> desde, Optional<LocalDateTime> hasta) {
+        Query query = new Query();
+        idUsuario.ifPresent(id -> query.addCriteria(Criteria.where("idUsuario").is(id)));
+        if (desde.isPresent() || hasta.isPresent()) {
+            Criteria fecha = Criteria.where("fechaCreacion");
+            desde.ifPresent(fecha::gte);
+            hasta.ifPresent(fecha::lt);
+            query.addCriteria(fecha);
+        }
+        return query;
+    }
+
+    /**
+     * Índices para los filtros de la exportación, con el orden de la exportación al final.
+     * El de usuario también sirve a la consulta de pedidos por usuario.
+     * Se crean la primera vez que se exporta, si ya existen Mongo no hace nada.
+     */
+    private void crearIndices() {
+        if (!indices.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            IndexOperations indexOps = mongoTemplate.indexOps(Pedido.class);
+            indexOps.ensureIndex(new CompoundIndexDefinition(new Document("fechaCreacion", 1).append("_id", 1)));
+            indexOps.ensureIndex(new CompoundIndexDefinition(new Document("idUsuario", 1).append("fechaCreacion", 1).append("_id", 1)));
+        } catch (RuntimeException e) {
+            indices.set(false);
+            log.warn("No se han podido crear los índices de la exportación de pedidos: " + e.getMessage());
+        }
+    }
+
+    private static void escribirCsv(CsvWriter csv, Pedido pedido) throws IOException {
+        List<LineaPedido> lineas = pedido.getLineasPedido() != null ? pedido.getLineasPedido() : List.of();
+        if (lineas.isEmpty()) {
+            datosPedido(csv, pedido).field(null).field(null).field(null).field(null).endRow();
+        }
+        for (LineaPedido linea : lineas) {
+            datosPedido(csv, pedido)
+                    .field(linea.getIdFunko())
+                    .field(linea.getCantidad())
+                    .field(linea.getPrecioFunko())
+                    .field(linea.getTotal())
+                    .endRow();
+        }
+    }
+
+    private static CsvWriter datosPedido(CsvWriter csv, Pedido pedido) throws IOException {
+        return csv.field(pedido.get_id())
+                .field(pedido.getIdUsuario())
+                .field(pedido.getFechaCreacion())
+                .field(pedido.getIsActivo())
+                .field(pedido.getTotalItems())
+                .field(pedido.getTotal());
+    }
+
+    /**
+     * Pedido tal y como sale en NDJSON, sin el cliente
+     */
+    record PedidoExportado(String id, Long idUsuario, LocalDateTime fechaCreacion, LocalDateTime fechaActualizacion,
+                           Boolean isActivo, Integer totalItems, Double total, List<LineaPedido> lineasPedido) {
+        static PedidoExportado of(Pedido pedido) {
+            return new PedidoExportado(pedido.get_id(), pedido.getIdUsuario(), pedido.getFechaCreacion(), pedido.getFechaActualizacion(),
+                    pedido.getIsActivo(), pedido.getTotalItems(), pedido.getTotal(), pedido.getLineasPedido());
+        }
+    }
+
+    private static void flush(NdjsonWriter ndjson, CsvWriter csv) throws IOException {
+        if (ndjson != null) {
+            ndjson.flush();
+        } else {
+            csv.flush();
+        }
+    }
+}
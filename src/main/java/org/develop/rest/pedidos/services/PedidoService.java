@@ -2,12 +2,20 @@ package org.develop.rest.pedidos.services;
 
 import org.bson.types.ObjectId;
 import org.develop.rest.pedidos.models.Pedido;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 
 public interface PedidoService {
     Page<Pedido> findAll(Pageable pageable);
 
+    Slice<Pedido> findSlice(Pageable pageable);
+
+    Window<Pedido> scroll(KeysetScrollPosition position, int size, Sort sort);
+
     Pedido findById(ObjectId idPedido);
 
     Page<Pedido> findByIdUsuario(Long idUsuario, Pageable pageable);
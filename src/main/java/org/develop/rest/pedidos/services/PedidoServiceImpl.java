@@ -2,7 +2,9 @@ package org.develop.rest.pedidos.services;
 
 import lombok.extern.slf4j.Slf4j;
 import org.bson.types.ObjectId;
+import org.develop.rest.funkos.cache.FunkoNearCache;
 import org.develop.rest.funkos.exceptions.FunkoNotFound;
+import org.develop.rest.funkos.models.Funko;
 import org.develop.rest.funkos.repositories.FunkosRepository;
 import org.develop.rest.pedidos.exceptions.*;
 import org.develop.rest.pedidos.models.LineaPedido;
@@ -12,12 +14,23 @@ import org.springframework.cache.annotation.CacheConfig;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -25,10 +38,17 @@ import java.time.LocalDateTime;
 public class PedidoServiceImpl implements PedidoService {
     private final PedidoRepository pedidoRepository;
     private final FunkosRepository funkosRepository;
+    private final MongoTemplate mongoTemplate;
+    private final FunkoNearCache funkoCache;
+    // Opcional, si está activo el stock se reserva en memoria y se vuelca a la base de datos en diferido
+    private final StockLedger stockLedger;
 
-    public PedidoServiceImpl(PedidoRepository pedidoRepository, FunkosRepository funkosRepository) {
+    public PedidoServiceImpl(PedidoRepository pedidoRepository, FunkosRepository funkosRepository, MongoTemplate mongoTemplate, FunkoNearCache funkoCache, @Nullable StockLedger stockLedger) {
         this.pedidoRepository = pedidoRepository;
         this.funkosRepository = funkosRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.funkoCache = funkoCache;
+        this.stockLedger = stockLedger;
     }
 
     @Override
@@ -37,6 +57,20 @@ public class PedidoServiceImpl implements PedidoService {
         return pedidoRepository.findAll(pageable);
     }
 
+    @Override
+    public Slice<Pedido> findSlice(Pageable pageable) {
+        log.info("Obteniendo todos los pedidos sin total con {}", pageable);
+        return pedidoRepository.findAllBy(pageable);
+    }
+
+    @Override
+    public Window<Pedido> scroll(KeysetScrollPosition position, int size, Sort sort) {
+        log.info("Obteniendo pedidos por keyset desde la posición: {}", position);
+        // Con el orden por id es una consulta por rango de ObjectId sobre el índice de _id
+        Query query = new Query().with(position).with(sort).limit(size);
+        return mongoTemplate.scroll(query, Pedido.class);
+    }
+
     @Override
     @Cacheable(key = "#idPedido")
     public Pedido findById(ObjectId idPedido) {
@@ -64,7 +98,7 @@ public class PedidoServiceImpl implements PedidoService {
         pedidoToSave.setFechaCreacion(LocalDateTime.now());
         pedidoToSave.setFechaActualizacion(LocalDateTime.now());
 
-        return pedidoRepository.save(pedidoToSave);
+        return saveOrReleaseStock(pedidoToSave);
     }
 
     Pedido reserveStockPedidos(Pedido pedido){
@@ -74,19 +108,21 @@ public class PedidoServiceImpl implements PedidoService {
             throw new PedidoNotItems(pedido.getId().toHexString());
         }
 
-        pedido.getLineasPedido().forEach(lineaPedido -> {
-            var funko = funkosRepository.findById(lineaPedido.getIdFunko()).get();
-
-            funko.setCantidad(funko.getCantidad() - lineaPedido.getCantidad());
-
-            if(funko.getCantidad() < 0){
-                throw new FunkoNotStock(lineaPedido.getIdFunko());
-            }
-
-            funkosRepository.save(funko);
+        if(stockLedger != null){
+            stockLedger.reserve(cantidadesPorFunko(pedido));
+        } else {
+            // Una única UPDATE condicional por Funko, si alguna falla se hace rollback de todo el pedido
+            var cantidades = cantidadesPorFunko(pedido);
+            cantidades.forEach((idFunko, cantidad) -> {
+                if(funkosRepository.decrementStock(idFunko, cantidad) == 0){
+                    throw new FunkoNotStock(idFunko);
+                }
+            });
+            funkoCache.invalidate(cantidades.keySet());
+        }
 
-            lineaPedido.setTotal(lineaPedido.getCantidad() * lineaPedido.getPrecioFunko());
-        });
+        pedido.getLineasPedido().forEach(lineaPedido ->
+                lineaPedido.setTotal(lineaPedido.getCantidad() * lineaPedido.getPrecioFunko()));
 
         var total = pedido.getLineasPedido().stream()
                 .map(lineaPedido -> lineaPedido.getCantidad() * lineaPedido.getPrecioFunko())
@@ -108,23 +144,37 @@ public class PedidoServiceImpl implements PedidoService {
     public void deleteById(ObjectId idPedido) {
         log.info("Borrando pedido: " + idPedido);
         var pedidoDelete = this.findById(idPedido);
-        returnStockPedidos(pedidoDelete);
         pedidoRepository.deleteById(idPedido);
+        returnStockPedidos(pedidoDelete);
     }
 
 
     Pedido returnStockPedidos(Pedido pedido){
         log.info("Retornando stock del pedido: {}", pedido);
         if(pedido.getLineasPedido() != null) {
-            pedido.getLineasPedido().forEach(lineaPedido -> {
-                var funko = funkosRepository.findById(lineaPedido.getIdFunko()).get();
-                funko.setCantidad(funko.getCantidad() + lineaPedido.getCantidad());
-                funkosRepository.save(funko);
-            });
+            if(stockLedger != null){
+                stockLedger.release(cantidadesPorFunko(pedido));
+            } else {
+                var cantidades = cantidadesPorFunko(pedido);
+                cantidades.forEach(funkosRepository::incrementStock);
+                funkoCache.invalidate(cantidades.keySet());
+            }
         }
         return pedido;
     }
 
+    // Con el libro de stock la reserva no forma parte de la transacción, la deshacemos a mano si falla el guardado
+    private Pedido saveOrReleaseStock(Pedido pedido){
+        try {
+            return pedidoRepository.save(pedido);
+        } catch (RuntimeException e) {
+            if(stockLedger != null){
+                stockLedger.release(cantidadesPorFunko(pedido));
+            }
+            throw e;
+        }
+    }
+
     @Override
     @Transactional
     @CachePut(key = "#idPedido")
@@ -132,11 +182,24 @@ public class PedidoServiceImpl implements PedidoService {
         log.info("Actualizando pedido con id: " + idPedido);
         var pedidoFound = this.findById(idPedido);
         returnStockPedidos(pedidoFound);
-        checkPedido(pedido);
-        var pedidoToSave = reserveStockPedidos(pedido);
-        pedidoToSave.setId(idPedido);
-        pedidoToSave.setFechaActualizacion(LocalDateTime.now());
-        return pedidoRepository.save(pedidoToSave);
+        try {
+            checkPedido(pedido);
+            var pedidoToSave = reserveStockPedidos(pedido);
+            pedidoToSave.setId(idPedido);
+            pedidoToSave.setFechaActualizacion(LocalDateTime.now());
+            return saveOrReleaseStock(pedidoToSave);
+        } catch (RuntimeException e) {
+            // Con el libro de stock volvemos a reservar lo del pedido original, en base de datos lo hace el rollback
+            // Sin comprobar el stock, lo que se devolvió ya era del pedido y el error original es el que importa
+            if(stockLedger != null && pedidoFound.getLineasPedido() != null){
+                try {
+                    stockLedger.restore(cantidadesPorFunko(pedidoFound));
+                } catch (RuntimeException restoreError) {
+                    e.addSuppressed(restoreError);
+                }
+            }
+            throw e;
+        }
     }
 
 
@@ -149,10 +212,21 @@ public class PedidoServiceImpl implements PedidoService {
             if(lineaPedido.getIdFunko() == null){
                 throw new FunkoBadRequest();
             }
+        });
+
+        // Cargamos todos los Funkos del pedido, los que no estén en caché en una sola consulta
+        var cantidades = cantidadesPorFunko(pedido);
+        Map<Long, Funko> funkos = funkoCache.findAllById(cantidades.keySet(), funkosRepository::findAllById).stream()
+                .collect(Collectors.toMap(Funko::getId, Function.identity()));
 
-            var funko = funkosRepository.findById(lineaPedido.getIdFunko()).orElseThrow(() -> new FunkoNotFound(lineaPedido.getIdFunko()));
+        pedido.getLineasPedido().forEach(lineaPedido -> {
+            var funko = funkos.get(lineaPedido.getIdFunko());
+            if(funko == null){
+                throw new FunkoNotFound(lineaPedido.getIdFunko());
+            }
 
-            if(funko.getCantidad() < lineaPedido.getCantidad() && lineaPedido.getCantidad() > 0){
+            // Con el libro de stock la base de datos va por detrás, el stock lo comprueba la reserva
+            if(stockLedger == null && funko.getCantidad() < cantidades.get(funko.getId()) && lineaPedido.getCantidad() > 0){
                 throw new FunkoNotStock(lineaPedido.getIdFunko());
             }
 
@@ -162,4 +236,10 @@ public class PedidoServiceImpl implements PedidoService {
         });
 
     }
+
+    // Agrupa las lineas por Funko y las ordena por id para bloquear siempre las filas en el mismo orden
+    private Map<Long, Integer> cantidadesPorFunko(Pedido pedido){
+        return pedido.getLineasPedido().stream()
+                .collect(Collectors.toMap(LineaPedido::getIdFunko, LineaPedido::getCantidad, Integer::sum, TreeMap::new));
+    }
 }
\ No newline at end of file
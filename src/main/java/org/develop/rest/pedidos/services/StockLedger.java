@@ -0,0 +1,285 @@
+package org.develop.rest.pedidos.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.develop.notifications.bus.NotificationBus;
+import org.develop.notifications.bus.NotificationEvent;
+import org.develop.rest.funkos.cache.FunkoNearCache;
+import org.develop.rest.funkos.repositories.FunkosRepository;
+import org.develop.rest.pedidos.exceptions.FunkoNotStock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Libro de stock en memoria para los pedidos.
+ * Reserva y devuelve stock con contadores atómicos por Funko, sin bloquear la fila en la base de datos,
+ * y vuelca periódicamente los cambios acumulados a FUNKOS en lotes.
+ * Cuando un administrador cambia un Funko (llega su notificación por el bus, desde cualquier nodo)
+ * se vuelca lo pendiente de ese Funko y su stock se vuelve a leer de la base de datos.
+ * Los cambios son relativos, lo reservado antes de ese cambio se descuenta después sobre la nueva cantidad.
+ * Con varios nodos cada uno reserva contra su propio contador, así que dos nodos pueden vender las últimas unidades.
+ * El volcado solo aplica un cambio si la cantidad no queda en negativo; el que no se aplica se avisa como error
+ * y el stock de ese Funko se vuelve a leer de la base de datos.
+ * Se activa con pedidos.stock-ledger.enabled=true
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "pedidos.stock-ledger.enabled", havingValue = "true")
+public class StockLedger {
+    private final FunkosRepository funkosRepository;
+    private final FunkoNearCache funkoCache;
+    private final TransactionTemplate transactionTemplate;
+    private final long flushInterval;
+    private final int batchSize;
+
+    // Stock disponible por Funko y cambios pendientes de volcar a la base de datos
+    private final Map<Long, AtomicLong> disponibles = new ConcurrentHashMap<>();
+    private final Map<Long, LongAdder> pendientes = new ConcurrentHashMap<>();
+    // Las reservas y devoluciones cogen el de lectura; rehacer el libro o un Funko, el de escritura
+    private final ReadWriteLock cerrojo = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "stock-ledger-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public StockLedger(FunkosRepository funkosRepository,
+                       FunkoNearCache funkoCache,
+                       NotificationBus notificationBus,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${pedidos.stock-ledger.flush-interval:1000}") long flushInterval,
+                       @Value("${pedidos.stock-ledger.batch-size:100}") int batchSize) {
+        this.funkosRepository = funkosRepository;
+        this.funkoCache = funkoCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.flushInterval = flushInterval;
+        this.batchSize = batchSize;
+        notificationBus.subscribe(this::onNotification);
+    }
+
+    /**
+     * Carga el stock actual de todos los Funkos y arranca el volcado periódico
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        reconcile();
+        scheduler.scheduleWithFixedDelay(this::flushSafely, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Vuelca lo pendiente y rehace el libro a partir de la base de datos
+     */
+    public void reconcile() {
+        log.info("Reconciliando el libro de stock con la base de datos");
+        cerrojo.writeLock().lock();
+        try {
+            flush(pendientes.keySet());
+            disponibles.clear();
+            funkosRepository.findAll().forEach(funko -> disponibles.put(funko.getId(), new AtomicLong(funko.getCantidad())));
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Vuelca lo pendiente de un Funko y descarta su stock, la siguiente reserva lo vuelve a leer de la base de datos.
+     * Se usa cuando su cantidad se ha cambiado fuera de los pedidos
+     */
+    public void refresh(Long idFunko) {
+        cerrojo.writeLock().lock();
+        try {
+            flush(List.of(idFunko));
+            disponibles.remove(idFunko);
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reserva las cantidades de cada Funko. O se reservan todas o ninguna.
+     *
+     * @param cantidades cantidad a reservar por id de Funko
+     * @throws FunkoNotStock si algún Funko no tiene stock suficiente
+     */
+    public void reserve(Map<Long, Integer> cantidades) {
+        cerrojo.readLock().lock();
+        try {
+            List<Map.Entry<Long, Integer>> reservadas = new ArrayList<>(cantidades.size());
+            for (var entry : cantidades.entrySet()) {
+                if (!tryReserve(entry.getKey(), entry.getValue())) {
+                    reservadas.forEach(r -> release(r.getKey(), r.getValue()));
+                    throw new FunkoNotStock(entry.getKey());
+                }
+                reservadas.add(entry);
+            }
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Vuelve a reservar unas cantidades que se habían devuelto, para deshacer un cambio que ha fallado.
+     * No comprueba el stock: esas unidades ya eran del pedido, aunque el disponible quede en negativo
+     *
+     * @param cantidades cantidad a reservar por id de Funko
+     */
+    public void restore(Map<Long, Integer> cantidades) {
+        cerrojo.readLock().lock();
+        try {
+            cantidades.forEach((idFunko, cantidad) -> {
+                contador(idFunko).addAndGet(-cantidad);
+                pendiente(idFunko).add(-cantidad);
+            });
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Devuelve al stock las cantidades de cada Funko
+     *
+     * @param cantidades cantidad a devolver por id de Funko
+     */
+    public void release(Map<Long, Integer> cantidades) {
+        cerrojo.readLock().lock();
+        try {
+            cantidades.forEach(this::release);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stock disponible de un Funko según el libro
+     */
+    public long available(Long idFunko) {
+        return contador(idFunko).get();
+    }
+
+    /**
+     * Vuelca a la base de datos los cambios acumulados, en transacciones de como mucho batchSize Funkos.
+     * Los Funkos cuyo cambio no se ha podido aplicar se vuelven a leer de la base de datos
+     */
+    public void flush() {
+        flush(pendientes.keySet()).forEach(this::refresh);
+    }
+
+    /**
+     * @return los Funkos cuyo cambio no se ha aplicado porque no existen o la cantidad quedaría en negativo
+     */
+    private synchronized Set<Long> flush(Collection<Long> pendientesIds) {
+        List<Long> ids = pendientesIds.stream().filter(pendientes::containsKey).toList();
+        Set<Long> rechazados = new HashSet<>();
+        for (int i = 0; i < ids.size(); i += batchSize) {
+            Map<Long, Long> lote = new HashMap<>();
+            ids.subList(i, Math.min(i + batchSize, ids.size())).forEach(id -> {
+                long delta = pendientes.get(id).sumThenReset();
+                if (delta != 0) {
+                    lote.put(id, delta);
+                }
+            });
+            Set<Long> sinAplicar = new HashSet<>();
+            try {
+                transactionTemplate.executeWithoutResult(status -> lote.forEach((id, delta) -> {
+                    if (funkosRepository.adjustStock(id, (int) delta.longValue()) == 0) {
+                        sinAplicar.add(id);
+                    }
+                }));
+            } catch (RuntimeException e) {
+                // No perdemos los cambios, se volverán a intentar en el siguiente volcado
+                lote.forEach((id, delta) -> pendiente(id).add(delta));
+                throw e;
+            }
+            // No se vuelven a intentar: sin stock en la base de datos fallarían siempre
+            sinAplicar.forEach(id -> log.error("No se ha podido volcar un cambio de " + lote.get(id) + " en el stock del Funko " + id
+                    + ": no existe o se quedaría en negativo, se han aceptado pedidos sin stock. Se vuelve a leer de la base de datos"));
+            rechazados.addAll(sinAplicar);
+            // Lo que hubiera en caché de estos Funkos tiene el stock anterior al volcado
+            if (!lote.isEmpty()) {
+                funkoCache.invalidate(lote.keySet());
+            }
+        }
+        return rechazados;
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdown();
+        flushSafely();
+    }
+
+    private boolean tryReserve(Long idFunko, int cantidad) {
+        AtomicLong disponible = contador(idFunko);
+        long actual;
+        do {
+            actual = disponible.get();
+            if (actual < cantidad) {
+                return false;
+            }
+        } while (!disponible.compareAndSet(actual, actual - cantidad));
+        pendiente(idFunko).add(-cantidad);
+        return true;
+    }
+
+    private void release(Long idFunko, Integer cantidad) {
+        contador(idFunko).addAndGet(cantidad);
+        pendiente(idFunko).add(cantidad);
+    }
+
+    // Se lee de la base de datos fuera del mapa, para no bloquear a los demás Funkos mientras tanto.
+    // Los Funkos que no existen no se guardan, así se ven si se crean después
+    private AtomicLong contador(Long idFunko) {
+        AtomicLong contador = disponibles.get(idFunko);
+        if (contador != null) {
+            return contador;
+        }
+        var funko = funkosRepository.findById(idFunko);
+        if (funko.isEmpty()) {
+            return new AtomicLong();
+        }
+        AtomicLong leido = new AtomicLong(funko.get().getCantidad());
+        AtomicLong anterior = disponibles.putIfAbsent(idFunko, leido);
+        return anterior != null ? anterior : leido;
+    }
+
+    private LongAdder pendiente(Long idFunko) {
+        return pendientes.computeIfAbsent(idFunko, id -> new LongAdder());
+    }
+
+    // Un administrador ha creado, cambiado o borrado el Funko en algún nodo
+    private void onNotification(NotificationEvent event) {
+        if (!event.entity().equals("FUNKOS")) {
+            return;
+        }
+        refresh(Long.valueOf(event.key()));
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Error al volcar el libro de stock a la base de datos", e);
+        }
+    }
+}
@@ -1,22 +1,42 @@
 package org.develop.rest.storage.controllers;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.develop.rest.storage.exceptions.StorageBadRequest;
+import org.develop.rest.storage.exceptions.StorageNotFound;
+import org.develop.rest.storage.models.StoredFile;
 import org.develop.rest.storage.services.StorageService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
 
 @RestController
 @Slf4j
 @RequestMapping("/storage")
 public class StorageController {
+    // Atributos con los que Tomcat envía un fichero con sendfile
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    // Por debajo de este tamaño sale más barato escribirlo directamente
+    private static final long SENDFILE_MINIMO = 48 * 1024;
+
     private final StorageService storageService;
 
     @Autowired
@@ -25,25 +45,100 @@ public class StorageController {
     }
 
 
+    /**
+     * Sirve un fichero del almacenamiento sin pasarlo por memoria.
+     * Responde 304 si el cliente ya tiene la versión actual (If-None-Match / If-Modified-Since)
+     * y 206 con el trozo pedido si la petición trae un Range de un solo intervalo, que sigue valiendo
+     * mientras coincida el If-Range. Con varios intervalos se devuelve el fichero completo.
+     * Con w se sirve la variante reducida de la imagen con ese ancho.
+     */
     @GetMapping(value = "{filename:.+}")
-    @ResponseBody
-    public ResponseEntity<Resource> serveFile(@PathVariable String filename, HttpServletRequest request) {
-        Resource file = storageService.loadAsResource(filename);
+    public void serveFile(@PathVariable String filename, @RequestParam(required = false) Integer w,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (w != null && w <= 0) {
+            throw new StorageBadRequest("El ancho de la imagen tiene que ser mayor que 0");
+        }
+        StoredFile file = w != null ? storageService.loadVariant(filename, w) : storageService.loadMetadata(filename);
+        if (file.immutable()) {
+            // El nombre cambia si cambia el contenido, el cliente no tiene que volver a preguntar
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable().getHeaderValue());
+        }
+        if (new ServletWebRequest(request, response).checkNotModified(file.etag(), file.lastModified())) {
+            return;
+        }
 
-        String contentType = null;
-        try {
-            contentType = request.getServletContext().getMimeType(file.getFile().getAbsolutePath());
-        } catch (IOException ex) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No se puede determinar el tipo de fichero");
+        long start = 0;
+        long end = file.size() - 1;
+        HttpRange range = range(request, file);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (range != null) {
+            start = range.getRangeStart(file.size());
+            end = range.getRangeEnd(file.size());
+            if (start > end) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + file.size());
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + file.size());
+        }
+        long length = end - start + 1;
+        response.setContentType(file.contentType().toString());
+        response.setContentLengthLong(length);
+        if (HttpMethod.HEAD.matches(request.getMethod()) || length == 0) {
+            return;
         }
 
-        if (contentType == null) {
-            contentType = "application/octet-stream";
+        // Tomcat envía el fichero con sendfile desde el descriptor, sin copiarlo a la JVM
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT)) && length >= SENDFILE_MINIMO) {
+            request.setAttribute(SENDFILE_FILENAME, file.path().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.path(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                position += channel.transferTo(position, end + 1 - position, out);
+            }
+        } catch (NoSuchFileException e) {
+            response.reset();
+            throw new StorageNotFound("No se puede leer fichero: " + filename);
         }
+    }
 
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .body(file);
+    /**
+     * Intervalo pedido, o null si hay que servir el fichero completo: sin Range, con un Range mal formado
+     * o de varios intervalos, o con un If-Range que no coincide con la versión actual
+     */
+    private HttpRange range(HttpServletRequest request, StoredFile file) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !ifRangeMatches(request, file)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private boolean ifRangeMatches(HttpServletRequest request, StoredFile file) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // Solo vale un ETag fuerte
+            return ifRange.equals(file.etag());
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == file.lastModified() / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
     }
 
    /* @PostMapping(value = "", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -0,0 +1,18 @@
+package org.develop.rest.storage.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Estado de una subida por trozos")
+public record UploadStatus(
+        @Schema(description = "Identificador de la subida", example = "5f0c9a3e-8d2b-4c1e-9a7f-2b6d3e4f5a6b")
+        String id,
+        @Schema(description = "Nombre original del fichero", example = "funko.png")
+        String nombre,
+        @Schema(description = "Tamaño total del fichero en bytes", example = "5242880")
+        long tamano,
+        @Schema(description = "Bytes recibidos, el offset desde el que se envía el siguiente trozo", example = "1048576")
+        long offset,
+        @Schema(description = "SHA-256 en hexadecimal de los bytes recibidos hasta el offset")
+        String sha256
+) {
+}
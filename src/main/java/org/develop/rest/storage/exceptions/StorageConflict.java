@@ -0,0 +1,16 @@
+package org.develop.rest.storage.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.io.Serial;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class StorageConflict extends StorageException {
+    @Serial
+    private static final long serialVersionUID = 43876691117560211L;
+
+    public StorageConflict(String mensaje) {
+        super(mensaje);
+    }
+}
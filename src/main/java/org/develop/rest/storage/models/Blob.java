@@ -0,0 +1,36 @@
+package org.develop.rest.storage.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Fichero guardado por su contenido y cuántos lo usan.
+ * El nombre es el SHA-256 del contenido con la extensión original
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "BLOBS")
+public class Blob {
+    @Id
+    @Column(length = 80)
+    private String nombre;
+    @Column(nullable = false)
+    private Long tamano;
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long referencias;
+    @CreationTimestamp
+    @Column(updatable = false, nullable = false, columnDefinition = "TIMESTAMP DEFAULT CURRENT_TIMESTAMP")
+    private LocalDateTime fechaCreacion;
+}
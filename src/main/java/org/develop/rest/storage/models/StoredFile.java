@@ -0,0 +1,18 @@
+package org.develop.rest.storage.models;
+
+import org.springframework.http.MediaType;
+
+import java.nio.file.Path;
+
+/**
+ * Metadatos de un fichero almacenado, lo necesario para servirlo sin volver a consultar el disco
+ *
+ * @param path         ruta del fichero
+ * @param size         tamaño en bytes
+ * @param lastModified fecha de modificación en milisegundos
+ * @param contentType  tipo MIME según la extensión
+ * @param etag         ETag fuerte del contenido
+ * @param immutable    si el contenido de ese nombre no puede cambiar nunca, el cliente lo puede cachear para siempre
+ */
+public record StoredFile(Path path, long size, long lastModified, MediaType contentType, String etag, boolean immutable) {
+}
@@ -0,0 +1,22 @@
+package org.develop.rest.storage.repositories;
+
+import org.develop.rest.storage.models.Blob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface BlobRepository extends JpaRepository<Blob, String> {
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Blob b SET b.referencias = b.referencias + 1 WHERE b.nombre = :nombre")
+    int incrementReferencias(String nombre);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Blob b SET b.referencias = b.referencias - 1 WHERE b.nombre = :nombre AND b.referencias > 0")
+    int decrementReferencias(String nombre);
+}
@@ -0,0 +1,355 @@
+package org.develop.rest.storage.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.develop.rest.storage.dto.UploadStatus;
+import org.develop.rest.storage.exceptions.StorageBadRequest;
+import org.develop.rest.storage.exceptions.StorageConflict;
+import org.develop.rest.storage.exceptions.StorageInternal;
+import org.develop.rest.storage.exceptions.StorageNotFound;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Subidas de ficheros por trozos que se pueden reanudar: se inicia la subida con el nombre y el tamaño,
+ * se envían los trozos en orden indicando el offset de cada uno y se completa.
+ * Cada trozo se lee del cuerpo de la petición con un buffer de tamaño fijo y se escribe en su posición
+ * de un fichero temporal, así la memoria usada no depende del tamaño del fichero ni de cuántas subidas haya a la vez.
+ * El SHA-256 se va calculando según llegan los bytes: el cliente puede comprobar con él cada trozo
+ * y al completar ya se sabe el nombre del fichero en el almacén por contenido sin volver a leerlo.
+ * Si un trozo falla se descarta entero y la subida sigue desde el final del anterior.
+ * Cada subida es de la imagen de un Funko y solo se encuentra con el id de ese Funko.
+ * Las subidas se guardan en memoria, las que llevan un tiempo sin recibir nada se borran.
+ */
+@Service
+@Slf4j
+public class ChunkedUploadService {
+    private static final int BUFFER = 64 * 1024;
+
+    private final StorageService storageService;
+    private final long maxSize;
+    private final Duration expiration;
+    private final Map<String, Subida> subidas = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "chunked-upload-cleanup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Una subida en curso. El digest y el offset solo cambian al terminar bien un trozo, con el cerrojo cogido
+    private static final class Subida {
+        private final String id;
+        private final Long funkoId;
+        private final String nombre;
+        private final long tamano;
+        private final Path temporal;
+        private final ReentrantLock cerrojo = new ReentrantLock();
+        private MessageDigest digest;
+        private volatile long offset;
+        private volatile String sha256;
+        private volatile long ultimoAcceso = System.currentTimeMillis();
+
+        private Subida(String id, Long funkoId, String nombre, long tamano, Path temporal, MessageDigest digest) {
+            this.id = id;
+            this.funkoId = funkoId;
+            this.nombre = nombre;
+            this.tamano = tamano;
+            this.temporal = temporal;
+            this.digest = digest;
+            this.sha256 = hex(clonar(digest));
+        }
+
+        private UploadStatus estado() {
+            return new UploadStatus(id, nombre, tamano, offset, sha256);
+        }
+    }
+
+    /**
+     * @param maxSize    tamaño máximo de un fichero subido por trozos
+     * @param expiration tiempo sin recibir trozos tras el que se borra una subida
+     */
+    public ChunkedUploadService(StorageService storageService,
+                                @Value("${upload.chunked.max-size:10MB}") DataSize maxSize,
+                                @Value("${upload.chunked.expiration:1h}") Duration expiration) {
+        this.storageService = storageService;
+        this.maxSize = maxSize.toBytes();
+        this.expiration = expiration;
+    }
+
+    /**
+     * Arranca el borrado periódico de las subidas abandonadas
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        long periodo = Math.max(1000, Math.min(expiration.toMillis(), 60_000));
+        scheduler.scheduleWithFixedDelay(this::expirarSafely, periodo, periodo, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Inicia una subida, con el fichero temporal vacío
+     *
+     * @param funkoId Funko al que va la imagen
+     * @param nombre nombre original del fichero
+     * @param tamano tamaño total en bytes
+     * @return estado de la subida, con su identificador
+     * @throws StorageBadRequest si falta el nombre o el tamaño no es válido
+     */
+    public UploadStatus iniciar(Long funkoId, String nombre, long tamano) {
+        if (!StringUtils.hasText(nombre)) {
+            throw new StorageBadRequest("Falta el nombre del fichero a subir");
+        }
+        if (tamano <= 0 || tamano > maxSize) {
+            throw new StorageBadRequest("El tamaño del fichero debe estar entre 1 y " + maxSize + " bytes: " + tamano);
+        }
+        Path temporal = storageService.createTempFile();
+        Subida subida = new Subida(UUID.randomUUID().toString(), funkoId, StringUtils.cleanPath(nombre), tamano, temporal, nuevoDigest());
+        subidas.put(subida.id, subida);
+        log.info("Iniciada la subida " + subida.id + " de " + subida.nombre + " con " + tamano + " bytes para el funko " + funkoId);
+        return subida.estado();
+    }
+
+    /**
+     * Estado de una subida, para reanudarla desde el offset
+     *
+     * @throws StorageNotFound si no existe la subida de ese Funko
+     */
+    public UploadStatus estado(Long funkoId, String id) {
+        return buscar(funkoId, id).estado();
+    }
+
+    /**
+     * Escribe un trozo de la subida leyéndolo de la entrada hasta el final. No cierra la entrada.
+     * Si falla o no coincide el SHA-256 se descarta el trozo entero
+     *
+     * @param offset posición del trozo, debe ser el offset de la subida
+     * @param sha256 SHA-256 esperado de todo lo subido hasta el final del trozo, o null para no comprobarlo
+     * @return estado de la subida con el nuevo offset
+     * @throws StorageNotFound   si no existe la subida de ese Funko
+     * @throws StorageConflict   si el offset no es el de la subida o ya se está recibiendo otro trozo
+     * @throws StorageBadRequest si el trozo pasa del tamaño de la subida o no coincide el SHA-256
+     * @throws StorageInternal   si falla la lectura del trozo o la escritura en disco
+     */
+    public UploadStatus anadir(Long funkoId, String id, long offset, InputStream in, String sha256) {
+        Subida subida = buscar(funkoId, id);
+        if (!subida.cerrojo.tryLock()) {
+            throw new StorageConflict("Ya se está recibiendo un trozo de la subida " + id);
+        }
+        try {
+            if (offset != subida.offset) {
+                throw new StorageConflict("La subida " + id + " va por el byte " + subida.offset + ", no por el " + offset);
+            }
+            MessageDigest digest = clonar(subida.digest);
+            long posicion = escribir(subida, offset, in, digest);
+            String recibido = hex(clonar(digest));
+            if (sha256 != null && !sha256.equalsIgnoreCase(recibido)) {
+                descartar(subida, offset);
+                throw new StorageBadRequest("El SHA-256 de la subida " + id + " hasta el byte " + posicion + " no coincide");
+            }
+            subida.digest = digest;
+            subida.sha256 = recibido;
+            subida.offset = posicion;
+            return subida.estado();
+        } finally {
+            subida.ultimoAcceso = System.currentTimeMillis();
+            subida.cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Completa una subida: mueve el fichero temporal al almacén y la da por terminada.
+     * Si falla el almacenamiento la subida sigue abierta y se puede volver a completar
+     *
+     * @param sha256 SHA-256 esperado del fichero entero, o null para no comprobarlo
+     * @return nombre del fichero almacenado
+     * @throws StorageNotFound   si no existe la subida de ese Funko
+     * @throws StorageConflict   si aún faltan bytes o se está recibiendo un trozo
+     * @throws StorageBadRequest si no coincide el SHA-256, la subida se cancela
+     */
+    public String completar(Long funkoId, String id, String sha256) {
+        Subida subida = buscar(funkoId, id);
+        if (!subida.cerrojo.tryLock()) {
+            throw new StorageConflict("Se está recibiendo un trozo de la subida " + id);
+        }
+        try {
+            if (subida.offset != subida.tamano) {
+                throw new StorageConflict("La subida " + id + " va por el byte " + subida.offset + " de " + subida.tamano);
+            }
+            if (sha256 != null && !sha256.equalsIgnoreCase(subida.sha256)) {
+                subidas.remove(id, subida);
+                borrar(subida);
+                throw new StorageBadRequest("El SHA-256 del fichero de la subida " + id + " no coincide, se cancela la subida");
+            }
+            String almacenado;
+            try {
+                almacenado = storageService.store(subida.temporal, subida.nombre, subida.sha256);
+            } catch (RuntimeException e) {
+                // Sin el temporal ya no se puede volver a completar
+                if (!Files.exists(subida.temporal)) {
+                    subidas.remove(id, subida);
+                }
+                throw e;
+            }
+            subidas.remove(id, subida);
+            log.info("Completada la subida " + id + " de " + subida.nombre);
+            return almacenado;
+        } finally {
+            subida.ultimoAcceso = System.currentTimeMillis();
+            subida.cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Cancela una subida y borra lo recibido
+     *
+     * @throws StorageNotFound si no existe la subida de ese Funko
+     */
+    public void cancelar(Long funkoId, String id) {
+        Subida subida = buscar(funkoId, id);
+        if (!subidas.remove(id, subida)) {
+            throw new StorageNotFound("No existe la subida " + id);
+        }
+        log.info("Cancelada la subida " + id);
+        borrarCuandoTermine(subida);
+    }
+
+    /**
+     * Borra las subidas que llevan más del tiempo de expiración sin recibir nada
+     *
+     * @return número de subidas borradas
+     */
+    public int expirar() {
+        long limite = System.currentTimeMillis() - expiration.toMillis();
+        int borradas = 0;
+        for (Subida subida : subidas.values()) {
+            if (subida.ultimoAcceso < limite && !subida.cerrojo.isLocked() && subidas.remove(subida.id, subida)) {
+                log.info("La subida " + subida.id + " de " + subida.nombre + " ha caducado");
+                borrarCuandoTermine(subida);
+                borradas++;
+            }
+        }
+        return borradas;
+    }
+
+    private long escribir(Subida subida, long offset, InputStream in, MessageDigest digest) {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER);
+        byte[] bytes = buffer.array();
+        long posicion = offset;
+        boolean escrito = false;
+        try (FileChannel channel = FileChannel.open(subida.temporal, StandardOpenOption.WRITE)) {
+            try {
+                int leidos;
+                while ((leidos = in.read(bytes)) != -1) {
+                    if (posicion + leidos > subida.tamano) {
+                        throw new StorageBadRequest("El trozo pasa del tamaño de la subida " + subida.id + ": " + subida.tamano + " bytes");
+                    }
+                    digest.update(bytes, 0, leidos);
+                    buffer.clear().limit(leidos);
+                    while (buffer.hasRemaining()) {
+                        posicion += channel.write(buffer, posicion);
+                    }
+                }
+                escrito = true;
+                return posicion;
+            } finally {
+                if (!escrito) {
+                    channel.truncate(offset);
+                }
+            }
+        } catch (IOException e) {
+            throw new StorageInternal("Fallo al recibir el trozo de la subida " + subida.id + " en el byte " + posicion + " " + e);
+        }
+    }
+
+    // Quita lo escrito de un trozo que no se acepta
+    private static void descartar(Subida subida, long offset) {
+        try (FileChannel channel = FileChannel.open(subida.temporal, StandardOpenOption.WRITE)) {
+            channel.truncate(offset);
+        } catch (IOException e) {
+            throw new StorageInternal("Fallo al descartar el trozo de la subida " + subida.id + " " + e);
+        }
+    }
+
+    // Una subida de otro Funko se trata como si no existiera
+    private Subida buscar(Long funkoId, String id) {
+        Subida subida = subidas.get(id);
+        if (subida == null || !subida.funkoId.equals(funkoId)) {
+            throw new StorageNotFound("No existe la subida " + id);
+        }
+        return subida;
+    }
+
+    // Si se está recibiendo un trozo se espera a que termine antes de borrar el temporal
+    private static void borrarCuandoTermine(Subida subida) {
+        subida.cerrojo.lock();
+        try {
+            borrar(subida);
+        } finally {
+            subida.cerrojo.unlock();
+        }
+    }
+
+    private static void borrar(Subida subida) {
+        try {
+            Files.deleteIfExists(subida.temporal);
+        } catch (IOException e) {
+            log.warn("No se ha podido borrar el fichero temporal de la subida " + subida.id + ": " + e.getMessage());
+        }
+    }
+
+    private void expirarSafely() {
+        try {
+            expirar();
+        } catch (RuntimeException e) {
+            log.warn("Fallo al borrar las subidas caducadas: " + e.getMessage());
+        }
+    }
+
+    private static MessageDigest nuevoDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new StorageInternal("SHA-256 no disponible " + e);
+        }
+    }
+
+    // Copia del estado del digest, para seguir calculando o sacar el resultado sin tocar el original
+    private static MessageDigest clonar(MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new StorageInternal("No se puede copiar el SHA-256 " + e);
+        }
+    }
+
+    private static String hex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
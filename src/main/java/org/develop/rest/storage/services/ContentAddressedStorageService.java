@@ -0,0 +1,201 @@
+package org.develop.rest.storage.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.develop.rest.storage.exceptions.StorageBadRequest;
+import org.develop.rest.storage.exceptions.StorageInternal;
+import org.develop.rest.storage.models.Blob;
+import org.develop.rest.storage.models.StoredFile;
+import org.develop.rest.storage.repositories.BlobRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Almacén por contenido: cada fichero se guarda con el SHA-256 de su contenido como nombre,
+ * así la misma imagen subida para varios funkos está una sola vez en disco y su URL no cambia nunca.
+ * Cada fichero lleva la cuenta de cuántos lo usan y solo se borra cuando deja de usarlo el último.
+ */
+@Service
+@Slf4j
+public class ContentAddressedStorageService extends FileSystemStorageService {
+    private static final Pattern NOMBRE = Pattern.compile("([0-9a-f]{64})(\\.[a-z0-9]{1,10})?");
+    private static final Pattern EXTENSION = Pattern.compile("[a-z0-9]{1,10}");
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+    // Los cambios de un mismo fichero (guardar, borrar) se hacen de uno en uno
+    private static final int CERROJOS = 64;
+
+    private final BlobRepository blobRepository;
+    private final Object[] cerrojos = new Object[CERROJOS];
+
+    public ContentAddressedStorageService(@Value("${upload.root-location}") String path, BlobRepository blobRepository, ImageVariants imageVariants) {
+        super(path, imageVariants);
+        this.blobRepository = blobRepository;
+        for (int i = 0; i < CERROJOS; i++) {
+            cerrojos[i] = new Object();
+        }
+    }
+
+    /**
+     * Almacena el fichero calculando su SHA-256 mientras se escribe, sin volver a leerlo.
+     * Si ya existe uno con el mismo contenido se descarta el nuevo y se suma una referencia al que había
+     *
+     * @return nombre del fichero almacenado: el SHA-256 y la extensión original
+     * @throws StorageBadRequest si el fichero está vacío
+     * @throws StorageInternal   si hay un error al almacenar el fichero
+     */
+    @Override
+    public String store(MultipartFile file) {
+        String filename = StringUtils.cleanPath(file.getOriginalFilename() != null ? file.getOriginalFilename() : "");
+        if (file.isEmpty()) {
+            throw new StorageBadRequest("Fichero vacío " + filename);
+        }
+        Path temporal = null;
+        try {
+            temporal = Files.createTempFile(directorioTemporal(), "subida-", ".tmp");
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            long tamano;
+            try (InputStream inputStream = new DigestInputStream(file.getInputStream(), sha256)) {
+                tamano = Files.copy(inputStream, temporal, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return guardar(temporal, filename, HexFormat.of().formatHex(sha256.digest()), tamano);
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new StorageInternal("Fallo al almacenar fichero " + filename + " " + e);
+        } finally {
+            borrarTemporal(temporal);
+        }
+    }
+
+    /**
+     * Almacena un fichero ya escrito en el directorio temporal. Si no se da su SHA-256 se calcula leyéndolo
+     *
+     * @throws StorageBadRequest si el fichero está vacío o el SHA-256 no es válido
+     * @throws StorageInternal   si el fichero no está en el directorio temporal o hay un error al moverlo
+     */
+    @Override
+    public String store(Path file, String filename, String sha256) {
+        filename = StringUtils.cleanPath(filename != null ? filename : "");
+        comprobarTemporal(file);
+        try {
+            long tamano = Files.size(file);
+            if (tamano == 0) {
+                throw new StorageBadRequest("Fichero vacío " + filename);
+            }
+            if (sha256 == null) {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                try (InputStream inputStream = new DigestInputStream(Files.newInputStream(file), digest)) {
+                    inputStream.transferTo(OutputStream.nullOutputStream());
+                }
+                sha256 = HexFormat.of().formatHex(digest.digest());
+            } else if (!SHA256.matcher(sha256).matches()) {
+                throw new StorageBadRequest("SHA-256 no válido " + sha256);
+            }
+            String nombre = guardar(file, filename, sha256, tamano);
+            // Si ya estaba almacenado no se ha movido
+            borrarTemporal(file);
+            return nombre;
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new StorageInternal("Fallo al almacenar fichero " + filename + " " + e);
+        }
+    }
+
+    // Mueve el temporal a su sitio si aún no hay otro con el mismo contenido y le suma una referencia
+    private String guardar(Path temporal, String filename, String sha256, long tamano) throws IOException {
+        String nombre = sha256 + extension(filename);
+        synchronized (cerrojo(nombre)) {
+            if (exists(nombre)) {
+                log.info("El fichero " + filename + " ya está almacenado como " + nombre);
+            } else {
+                log.info("Almacenando fichero " + filename + " como " + nombre);
+                Path destino = load(nombre);
+                Files.createDirectories(destino.getParent());
+                Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE);
+                indexar(nombre, destino);
+                programarVariantes(nombre);
+            }
+            if (blobRepository.incrementReferencias(nombre) == 0) {
+                blobRepository.save(Blob.builder().nombre(nombre).tamano(tamano).referencias(1L).build());
+            }
+        }
+        return nombre;
+    }
+
+    /**
+     * Quita una referencia al fichero y lo borra si ya no lo usa nadie.
+     * Los ficheros que no se guardaron por contenido se borran directamente
+     */
+    @Override
+    public void delete(String filename) {
+        String nombre = StringUtils.getFilename(filename);
+        if (nombre == null || !NOMBRE.matcher(nombre).matches()) {
+            super.delete(filename);
+            return;
+        }
+        synchronized (cerrojo(nombre)) {
+            blobRepository.decrementReferencias(nombre);
+            Optional<Blob> blob = blobRepository.findById(nombre);
+            if (blob.isPresent() && blob.get().getReferencias() > 0) {
+                log.info("El fichero " + nombre + " sigue en uso por " + blob.get().getReferencias() + ", no se borra");
+                return;
+            }
+            blob.ifPresent(blobRepository::delete);
+            super.delete(nombre);
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        super.deleteAll();
+        blobRepository.deleteAllInBatch();
+    }
+
+    /**
+     * Los ficheros guardados por contenido y sus variantes no cambian nunca,
+     * su ETag es el nombre sin extensión: el SHA-256 y el ancho en las variantes
+     */
+    @Override
+    protected StoredFile describir(String filename, Path file, long size, long lastModified) {
+        StoredFile stored = super.describir(filename, file, size, lastModified);
+        if (!NOMBRE.matcher(original(filename)).matches()) {
+            return stored;
+        }
+        String extension = StringUtils.getFilenameExtension(filename);
+        String etag = extension == null ? filename : filename.substring(0, filename.length() - extension.length() - 1);
+        return new StoredFile(file, size, lastModified, stored.contentType(), "\"" + etag + "\"", true);
+    }
+
+    /**
+     * Los guardados por contenido se reparten por el principio de su SHA-256, que ya está repartido
+     */
+    @Override
+    protected String prefijo(String filename) {
+        return NOMBRE.matcher(filename).matches() ? filename.substring(0, 4) : super.prefijo(filename);
+    }
+
+    // La extensión original en minúsculas, solo si es alfanumérica, para servirlo con su tipo
+    private static String extension(String filename) {
+        String extension = StringUtils.getFilenameExtension(filename);
+        if (extension == null) {
+            return "";
+        }
+        extension = extension.toLowerCase();
+        return EXTENSION.matcher(extension).matches() ? "." + extension : "";
+    }
+
+    private Object cerrojo(String nombre) {
+        return cerrojos[Math.floorMod(nombre.hashCode(), CERROJOS)];
+    }
+}
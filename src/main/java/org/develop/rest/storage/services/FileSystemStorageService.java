@@ -5,10 +5,12 @@ import org.develop.rest.storage.controllers.StorageController;
 import org.develop.rest.storage.exceptions.StorageBadRequest;
 import org.develop.rest.storage.exceptions.StorageInternal;
 import org.develop.rest.storage.exceptions.StorageNotFound;
+import org.develop.rest.storage.models.StoredFile;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
-import org.springframework.stereotype.Service;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.util.FileSystemUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
@@ -17,22 +19,55 @@ import org.springframework.web.servlet.mvc.method.annotation.MvcUriComponentsBui
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
-@Service
+/**
+ * Almacén de ficheros en un directorio, cada fichero con el nombre con el que se guardó.
+ * Los ficheros se reparten en dos niveles de subdirectorios según un hash del nombre (ab/cd/nombre),
+ * así ningún directorio crece demasiado. Los nombres, tamaños y fechas se guardan en un índice en memoria
+ * que se carga al iniciar y se mantiene al guardar y borrar: listar y comprobar si existe no recorren el disco.
+ * El que se usa es {@link ContentAddressedStorageService}, que guarda por contenido sobre este
+ */
 @Slf4j
 public class FileSystemStorageService implements StorageService {
+    // Directorio de los ficheros a medio escribir, fuera del reparto
+    private static final String TEMPORALES = "tmp";
+    // Nombre de una variante: el de la original con el ancho antes de la extensión
+    private static final Pattern VARIANTE = Pattern.compile("(.+)_w\\d+(\\.[^.]*)?");
 
     // Directorio raiz de nuestro almacén de ficheros
-    private final Path rootLocation;
+    protected final Path rootLocation;
+    // Índice de los ficheros almacenados por nombre
+    private final Map<String, Entrada> indice = new ConcurrentHashMap<>();
+    // Generador de variantes reducidas de las imágenes, null si no se generan
+    private final ImageVariants imageVariants;
 
+    // Lo que se guarda de cada fichero en el índice
+    private record Entrada(long size, long lastModified) {
+    }
 
     public FileSystemStorageService(@Value("${upload.root-location}") String path) {
+        this(path, null);
+    }
+
+    public FileSystemStorageService(String path, ImageVariants imageVariants) {
         this.rootLocation = Paths.get(path);
+        this.imageVariants = imageVariants;
     }
 
     /**
@@ -64,8 +99,11 @@ public class FileSystemStorageService implements StorageService {
 
             try (InputStream inputStream = file.getInputStream()) {
                 log.info("Almacenando fichero " + filename + " como " + storedFilename);
-                Files.copy(inputStream, this.rootLocation.resolve(storedFilename),
-                        StandardCopyOption.REPLACE_EXISTING);
+                Path destino = load(storedFilename);
+                Files.createDirectories(destino.getParent());
+                Files.copy(inputStream, destino, StandardCopyOption.REPLACE_EXISTING);
+                indexar(storedFilename, destino);
+                programarVariantes(storedFilename);
                 return storedFilename;
             }
 
@@ -75,31 +113,73 @@ public class FileSystemStorageService implements StorageService {
 
     }
 
+    @Override
+    public Path createTempFile() {
+        try {
+            return Files.createTempFile(directorioTemporal(), "subida-", ".tmp");
+        } catch (IOException e) {
+            throw new StorageInternal("No se puede crear un fichero temporal " + e);
+        }
+    }
+
     /**
-     * Método que devuelve la ruta de todos los ficheros que hay
-     * en el almacenamiento secundario del proyecto.
+     * Mueve el fichero temporal a su sitio con el mismo nombre que si se hubiera subido entero
+     *
+     * @throws StorageBadRequest si el fichero está vacío o el nombre contiene caracteres no permitidos
+     * @throws StorageInternal   si el fichero no está en el directorio temporal o hay un error al moverlo
      */
     @Override
-    public Stream<Path> loadAll() {
-        log.info("Cargando todos los ficheros almacenados");
+    public String store(Path file, String filename, String sha256) {
+        filename = StringUtils.cleanPath(filename != null ? filename : "");
+        String extension = StringUtils.getFilenameExtension(filename);
+        String storedFilename = System.currentTimeMillis() + "_" + StringUtils.stripFilenameExtension(filename)
+                + (extension != null ? "." + extension : "");
+        comprobarTemporal(file);
         try {
-            return Files.walk(this.rootLocation, 1)
-                    .filter(path -> !path.equals(this.rootLocation))
-                    .map(this.rootLocation::relativize);
+            if (Files.size(file) == 0) {
+                throw new StorageBadRequest("Fichero vacío " + filename);
+            }
+            if (filename.contains("..") || !nombreValido(storedFilename)) {
+                throw new StorageBadRequest(
+                        "No se puede almacenar un fichero con una ruta relativa fuera del directorio actual "
+                                + filename);
+            }
+            log.info("Almacenando fichero " + filename + " como " + storedFilename);
+            Path destino = load(storedFilename);
+            Files.createDirectories(destino.getParent());
+            Files.move(file, destino, StandardCopyOption.ATOMIC_MOVE);
+            indexar(storedFilename, destino);
+            programarVariantes(storedFilename);
+            return storedFilename;
         } catch (IOException e) {
-            throw new StorageInternal("Fallo al leer ficheros almacenados " + e);
+            throw new StorageInternal("Fallo al almacenar fichero " + filename + " " + e);
         }
+    }
 
+    /**
+     * Método que devuelve la ruta de todos los ficheros que hay
+     * en el almacenamiento secundario del proyecto, sacados del índice.
+     */
+    @Override
+    public Stream<Path> loadAll() {
+        log.info("Cargando todos los ficheros almacenados");
+        return indice.keySet().stream().map(Paths::get);
     }
 
     /**
      * Método que es capaz de cargar un fichero a partir de su nombre
-     * Devuelve un objeto de tipo Path
+     * Devuelve un objeto de tipo Path, dentro de su subdirectorio
      */
     @Override
     public Path load(String filename) {
-        log.info("Cargando fichero " + filename);
-        return rootLocation.resolve(filename);
+        // Las variantes van junto a su original
+        String prefijo = prefijo(original(filename));
+        return rootLocation.resolve(prefijo.substring(0, 2)).resolve(prefijo.substring(2, 4)).resolve(filename);
+    }
+
+    @Override
+    public boolean exists(String filename) {
+        return indice.containsKey(filename);
     }
 
 
@@ -111,19 +191,135 @@ public class FileSystemStorageService implements StorageService {
     public Resource loadAsResource(String filename) {
         log.info("Cargando fichero " + filename);
         try {
-            Path file = load(filename);
-            Resource resource = new UrlResource(file.toUri());
-            if (resource.exists() || resource.isReadable()) {
-                return resource;
-            } else {
+            if (!nombreValido(filename) || !exists(filename)) {
                 throw new StorageNotFound("No se puede leer fichero: " + filename);
             }
+            return new UrlResource(load(filename).toUri());
         } catch (MalformedURLException e) {
             throw new StorageNotFound("No se puede leer fichero: " + filename + " " + e);
         }
     }
 
 
+    /**
+     * Método que devuelve los metadatos de un fichero para servirlo, sacados del índice
+     *
+     * @throws StorageNotFound si el fichero no está almacenado
+     */
+    @Override
+    public StoredFile loadMetadata(String filename) {
+        Entrada entrada = nombreValido(filename) ? indice.get(filename) : null;
+        if (entrada == null) {
+            throw new StorageNotFound("No se puede leer fichero: " + filename);
+        }
+        return describir(filename, load(filename), entrada.size(), entrada.lastModified());
+    }
+
+    /**
+     * Método que devuelve los metadatos de la variante de una imagen con el ancho pedido.
+     * Si aún no existe se genera en ese momento, una sola vez. Si no es una imagen,
+     * se pide más ancho que el de la mayor variante o no se puede generar se devuelve la original
+     *
+     * @throws StorageNotFound si la imagen original no está almacenada
+     */
+    @Override
+    public StoredFile loadVariant(String filename, int width) {
+        StoredFile original = loadMetadata(filename);
+        if (imageVariants == null || !imageVariants.admite(filename)) {
+            return original;
+        }
+        Optional<Integer> ancho = imageVariants.ancho(width);
+        if (ancho.isEmpty()) {
+            return original;
+        }
+        try {
+            if (!generarVariante(filename, ancho.get())) {
+                return original;
+            }
+        } catch (StorageInternal e) {
+            // La original sirve igual, solo pesa más
+            log.warn("Se sirve la original de " + filename + ": " + e.getMessage());
+            return original;
+        }
+        return loadMetadata(variante(filename, ancho.get()));
+    }
+
+    /**
+     * Metadatos de un fichero a partir de lo que hay en el índice
+     */
+    protected StoredFile describir(String filename, Path file, long size, long lastModified) {
+        return new StoredFile(file, size, lastModified,
+                MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM),
+                "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(size) + "\"", false);
+    }
+
+    /**
+     * Los cuatro primeros caracteres hexadecimales que deciden el subdirectorio del fichero
+     */
+    protected String prefijo(String filename) {
+        return HexFormat.of().toHexDigits(filename.hashCode()).substring(0, 4);
+    }
+
+    /**
+     * Encola la generación de todas las variantes de una imagen recién guardada
+     */
+    protected void programarVariantes(String filename) {
+        if (imageVariants == null || !imageVariants.admite(filename)) {
+            return;
+        }
+        for (int ancho : imageVariants.getAnchos()) {
+            imageVariants.enSegundoPlano(() -> generarVariante(filename, ancho));
+        }
+    }
+
+    // Genera la variante si no existe, false si la original no se puede leer como imagen
+    private boolean generarVariante(String filename, int ancho) {
+        String variante = variante(filename, ancho);
+        if (exists(variante)) {
+            return true;
+        }
+        try {
+            Path destino = load(variante);
+            if (!imageVariants.generar(load(filename), destino, ancho, directorioTemporal())) {
+                return false;
+            }
+            indexar(variante, destino);
+            return true;
+        } catch (IOException e) {
+            throw new StorageInternal("No se puede generar la variante " + variante + " " + e);
+        }
+    }
+
+    /**
+     * Nombre de la variante de un fichero con ese ancho
+     */
+    protected static String variante(String filename, int ancho) {
+        String extension = StringUtils.getFilenameExtension(filename);
+        return extension == null
+                ? filename + "_w" + ancho
+                : filename.substring(0, filename.length() - extension.length() - 1) + "_w" + ancho + "." + extension;
+    }
+
+    /**
+     * Nombre del fichero original de una variante, el mismo nombre si no es una variante
+     */
+    protected static String original(String filename) {
+        Matcher matcher = VARIANTE.matcher(filename);
+        if (!matcher.matches()) {
+            return filename;
+        }
+        return matcher.group(1) + (matcher.group(2) != null ? matcher.group(2) : "");
+    }
+
+    /**
+     * Añade o actualiza un fichero recién escrito en el índice
+     */
+    protected void indexar(String filename, Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        indice.put(filename, new Entrada(attributes.size(), attributes.lastModifiedTime().toMillis()));
+    }
+
+
     /**
      * Método que elimina todos los ficheros del almacenamiento
      * secundario del proyecto.
@@ -132,30 +328,96 @@ public class FileSystemStorageService implements StorageService {
     public void deleteAll() {
         log.info("Eliminando todos los ficheros almacenados");
         FileSystemUtils.deleteRecursively(rootLocation.toFile());
+        indice.clear();
     }
 
 
     /**
      * Método que inicializa el almacenamiento secundario del proyecto
+     * y carga el índice recorriendo una vez los subdirectorios
      */
     @Override
     public void init() {
         log.info("Inicializando almacenamiento");
         try {
             Files.createDirectories(rootLocation);
+            // Lo que quedara a medio subir de una ejecución anterior
+            FileSystemUtils.deleteRecursively(rootLocation.resolve(TEMPORALES));
+            indice.clear();
+            Files.walkFileTree(rootLocation, Set.of(), 3, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    String filename = file.getFileName().toString();
+                    if (attributes.isRegularFile() && file.equals(load(filename))) {
+                        indice.put(filename, new Entrada(attributes.size(), attributes.lastModifiedTime().toMillis()));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            log.info("Índice del almacenamiento cargado con " + indice.size() + " ficheros");
         } catch (IOException e) {
             throw new StorageInternal("No se puede inicializar el almacenamiento " + e);
         }
     }
 
+    /**
+     * Mueve a su subdirectorio los ficheros que estén sueltos en la raíz, los de un almacenamiento
+     * de antes del reparto. Se puede ejecutar las veces que haga falta, solo mueve lo que falte
+     *
+     * @return número de ficheros movidos
+     */
+    @Override
+    public int migrate() {
+        List<Path> sueltos;
+        try (Stream<Path> raiz = Files.list(rootLocation)) {
+            sueltos = raiz.filter(Files::isRegularFile).toList();
+        } catch (IOException e) {
+            throw new StorageInternal("No se puede leer el almacenamiento " + e);
+        }
+        if (sueltos.isEmpty()) {
+            return 0;
+        }
+        log.info("Migrando " + sueltos.size() + " ficheros al reparto por subdirectorios");
+        int movidos = 0;
+        for (Path origen : sueltos) {
+            String filename = origen.getFileName().toString();
+            Path destino = load(filename);
+            try {
+                if (Files.exists(destino)) {
+                    log.warn("El fichero " + filename + " ya está en " + destino + ", se deja en la raíz");
+                    continue;
+                }
+                Files.createDirectories(destino.getParent());
+                Files.move(origen, destino, StandardCopyOption.ATOMIC_MOVE);
+                indexar(filename, destino);
+                movidos++;
+            } catch (IOException e) {
+                log.warn("No se ha podido migrar el fichero " + filename + ": " + e.getMessage());
+            }
+        }
+        log.info("Migrados " + movidos + " ficheros");
+        return movidos;
+    }
+
 
     @Override
     public void delete(String filename) {
         String justFilename = StringUtils.getFilename(filename);
+        if (!nombreValido(justFilename)) {
+            return;
+        }
         try {
             log.info("Eliminando fichero " + filename);
             Path file = load(justFilename);
             Files.deleteIfExists(file);
+            indice.remove(justFilename);
+            if (imageVariants != null) {
+                for (int ancho : imageVariants.getAnchos()) {
+                    String variante = variante(justFilename, ancho);
+                    Files.deleteIfExists(load(variante));
+                    indice.remove(variante);
+                }
+            }
         } catch (IOException e) {
             throw new StorageInternal("No se puede eliminar el fichero " + filename + " " + e);
         }
@@ -172,8 +434,49 @@ public class FileSystemStorageService implements StorageService {
         return MvcUriComponentsBuilder
                 // El segundo argumento es necesario solo cuando queremos obtener la imagen
                 // En este caso tan solo necesitamos obtener la URL
-                .fromMethodName(StorageController.class, "serveFile", filename, null)
+                .fromMethodName(StorageController.class, "serveFile", filename, null, null, null)
                 .build().toUriString();
     }
 
-}
\ No newline at end of file
+    /**
+     * Directorio de los ficheros a medio escribir, se vacía al iniciar
+     */
+    protected Path directorioTemporal() throws IOException {
+        return Files.createDirectories(rootLocation.resolve(TEMPORALES));
+    }
+
+    /**
+     * Solo se mueven a su sitio ficheros del directorio temporal, no cualquier ruta
+     */
+    protected void comprobarTemporal(Path file) {
+        try {
+            Path temporales = directorioTemporal().toAbsolutePath().normalize();
+            if (file != null && temporales.equals(file.toAbsolutePath().normalize().getParent()) && Files.isRegularFile(file)) {
+                return;
+            }
+        } catch (IOException e) {
+            throw new StorageInternal("Fallo al acceder al directorio temporal " + e);
+        }
+        throw new StorageInternal("El fichero " + file + " no es un temporal del almacenamiento");
+    }
+
+    /**
+     * Borra un temporal que no se ha llegado a mover a su sitio
+     */
+    protected static void borrarTemporal(Path temporal) {
+        if (temporal == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(temporal);
+        } catch (IOException e) {
+            log.warn("No se ha podido borrar el fichero temporal " + temporal + ": " + e.getMessage());
+        }
+    }
+
+    // Un nombre de fichero sin rutas, para no salir de su subdirectorio
+    private static boolean nombreValido(String filename) {
+        return filename != null && !filename.isEmpty() && !filename.equals(".") && !filename.equals("..")
+                && !filename.contains("/") && !filename.contains("\\");
+    }
+}
@@ -0,0 +1,257 @@
+package org.develop.rest.storage.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Versiones reducidas de las imágenes almacenadas, para no descargar la imagen original en los listados.
+ * Se generan en segundo plano al guardar la imagen, en un pool con una cola limitada: si la cola está llena
+ * se descartan y se generan la primera vez que se pidan. Como mucho se decodifican a la vez tantas imágenes
+ * como hilos tenga el pool, contando también las que se generan al pedirlas.
+ * Antes de decodificar se leen las dimensiones de la cabecera y las imágenes de más de maxPixeles no tienen variantes,
+ * así una imagen pequeña en bytes pero enorme en píxeles no agota la memoria.
+ */
+@Component
+@Slf4j
+public class ImageVariants {
+    // Ancho con el que se piden las imágenes en los listados del catálogo
+    public static final int ANCHO_MINIATURA = 150;
+
+    private final List<Integer> anchos;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore decodificando;
+    // Variantes que se están generando, así cada una se genera una sola vez aunque la pidan varios a la vez
+    private final Map<Path, CompletableFuture<Boolean>> enCurso = new ConcurrentHashMap<>();
+    // Ficheros con extensión de imagen que no se pueden leer o son demasiado grandes, no se vuelve a intentar.
+    // Es solo un atajo: al llenarse se vacía y como mucho se vuelve a leer su cabecera
+    private static final int MAX_SIN_VARIANTES = 10_000;
+    private final Set<Path> sinVariantes = ConcurrentHashMap.newKeySet();
+    private final long maxPixeles;
+
+    /**
+     * @param anchos        anchos de las variantes, en píxeles
+     * @param hilos         hilos que generan variantes en segundo plano
+     * @param queueCapacity variantes pendientes de generar como máximo
+     * @param maxPixeles    píxeles como máximo de una imagen para generar sus variantes
+     */
+    public ImageVariants(@Value("${upload.variants.widths:150,600}") int[] anchos,
+                         @Value("${upload.variants.threads:2}") int hilos,
+                         @Value("${upload.variants.queue-capacity:100}") int queueCapacity,
+                         @Value("${upload.variants.max-pixels:40000000}") long maxPixeles) {
+        this.anchos = Arrays.stream(anchos).sorted().distinct().boxed().toList();
+        this.maxPixeles = maxPixeles;
+        this.decodificando = new Semaphore(hilos);
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(hilos, hilos, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread thread = new Thread(r, "image-variant-" + contador.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, (tarea, pool) -> log.info("Cola de variantes llena, la variante se generará cuando se pida"));
+    }
+
+    /**
+     * URL de la variante de una imagen del almacenamiento con ese ancho, las demás URLs se dejan como están
+     */
+    public static String url(String imagen, int ancho) {
+        if (imagen == null || !imagen.contains("/storage/")) {
+            return imagen;
+        }
+        return UriComponentsBuilder.fromUriString(imagen).replaceQueryParam("w", ancho).build().toUriString();
+    }
+
+    public List<Integer> getAnchos() {
+        return anchos;
+    }
+
+    /**
+     * El ancho de variante que se sirve para el ancho pedido: el menor que no sea más pequeño.
+     * Vacío si se pide más que el mayor, entonces se sirve la original
+     */
+    public Optional<Integer> ancho(int pedido) {
+        return anchos.stream().filter(ancho -> ancho >= pedido).findFirst();
+    }
+
+    /**
+     * Si se pueden generar variantes de un fichero, según su extensión
+     */
+    public boolean admite(String filename) {
+        String extension = StringUtils.getFilenameExtension(filename);
+        return extension != null
+                && ImageIO.getImageReadersBySuffix(extension).hasNext()
+                && ImageIO.getImageWritersBySuffix(extension).hasNext();
+    }
+
+    /**
+     * Encola la generación de una variante, no espera a que termine
+     */
+    public void enSegundoPlano(Runnable tarea) {
+        executor.execute(() -> {
+            try {
+                tarea.run();
+            } catch (RuntimeException e) {
+                log.warn("No se ha podido generar la variante: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Genera la variante de una imagen con ese ancho, manteniendo la proporción.
+     * Si la imagen ya es más estrecha se copia tal cual. Si ya se está generando espera a que termine
+     *
+     * @param original    imagen original
+     * @param destino     dónde se guarda la variante
+     * @param ancho       ancho de la variante
+     * @param temporales  directorio donde se escribe antes de moverla a su sitio
+     * @return false si el fichero no se puede leer como imagen
+     */
+    public boolean generar(Path original, Path destino, int ancho, Path temporales) throws IOException {
+        CompletableFuture<Boolean> nueva = new CompletableFuture<>();
+        CompletableFuture<Boolean> enMarcha = enCurso.putIfAbsent(destino, nueva);
+        if (enMarcha != null) {
+            return enMarcha.join();
+        }
+        try {
+            boolean generada = redimensionar(original, destino, ancho, temporales);
+            nueva.complete(generada);
+            return generada;
+        } catch (IOException | RuntimeException e) {
+            nueva.complete(false);
+            throw e;
+        } finally {
+            enCurso.remove(destino);
+        }
+    }
+
+    private boolean redimensionar(Path original, Path destino, int ancho, Path temporales) throws IOException {
+        if (Files.exists(destino)) {
+            return true;
+        }
+        if (sinVariantes.contains(original)) {
+            return false;
+        }
+        try (ImageInputStream entrada = ImageIO.createImageInputStream(original.toFile())) {
+            Iterator<ImageReader> lectores = entrada == null ? null : ImageIO.getImageReaders(entrada);
+            if (lectores == null || !lectores.hasNext()) {
+                return sinVariantes(original, "no es una imagen");
+            }
+            ImageReader lector = lectores.next();
+            try {
+                lector.setInput(entrada, true, true);
+                // Solo lee la cabecera
+                long pixeles = (long) lector.getWidth(0) * lector.getHeight(0);
+                if (pixeles > maxPixeles) {
+                    return sinVariantes(original, "tiene " + pixeles + " píxeles, más de " + maxPixeles);
+                }
+                return redimensionar(lector, original, destino, ancho, temporales);
+            } catch (IIOException e) {
+                return sinVariantes(original, "no se puede leer como imagen: " + e.getMessage());
+            } finally {
+                lector.dispose();
+            }
+        }
+    }
+
+    private boolean redimensionar(ImageReader lector, Path original, Path destino, int ancho, Path temporales) throws IOException {
+        try {
+            decodificando.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrumpido esperando para generar la variante " + destino.getFileName());
+        }
+        Path temporal = null;
+        try {
+            temporal = Files.createTempFile(temporales, "variante-", ".tmp");
+            if (lector.getWidth(0) <= ancho) {
+                Files.copy(original, temporal, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                BufferedImage imagen = lector.read(0);
+                String formato = StringUtils.getFilenameExtension(destino.getFileName().toString());
+                if (!ImageIO.write(reducir(imagen, ancho, conTransparencia(formato)), formato, temporal.toFile())) {
+                    return false;
+                }
+            }
+            Files.createDirectories(destino.getParent());
+            Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Generada la variante " + destino.getFileName());
+            return true;
+        } finally {
+            decodificando.release();
+            if (temporal != null) {
+                Files.deleteIfExists(temporal);
+            }
+        }
+    }
+
+    private boolean sinVariantes(Path original, String motivo) {
+        log.warn("El fichero " + original.getFileName() + " " + motivo + ", no tiene variantes");
+        if (sinVariantes.size() >= MAX_SIN_VARIANTES) {
+            sinVariantes.clear();
+        }
+        sinVariantes.add(original);
+        return false;
+    }
+
+    // Se reduce a la mitad hasta acercarse al ancho final, con un solo paso bilineal se pierden detalles
+    private static BufferedImage reducir(BufferedImage imagen, int ancho, boolean transparencia) {
+        int alto = Math.max(1, Math.round((float) imagen.getHeight() * ancho / imagen.getWidth()));
+        int tipo = transparencia ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage actual = imagen;
+        int anchoActual = imagen.getWidth();
+        int altoActual = imagen.getHeight();
+        do {
+            anchoActual = Math.max(ancho, anchoActual / 2);
+            altoActual = Math.max(alto, altoActual / 2);
+            BufferedImage reducida = new BufferedImage(anchoActual, altoActual, tipo);
+            Graphics2D g = reducida.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(actual, 0, 0, anchoActual, altoActual, null);
+            g.dispose();
+            actual = reducida;
+        } while (anchoActual > ancho);
+        return actual;
+    }
+
+    private static boolean conTransparencia(String formato) {
+        return !"jpg".equalsIgnoreCase(formato) && !"jpeg".equalsIgnoreCase(formato) && !"bmp".equalsIgnoreCase(formato);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.develop.rest.storage.services;
 
 
+import org.develop.rest.storage.models.StoredFile;
 import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -20,6 +21,25 @@ public interface StorageService {
      */
     String store(MultipartFile file);
 
+    /**
+     * Crea un fichero vacío en el directorio temporal del almacenamiento, para escribirlo poco a poco
+     * y guardarlo después con {@link #store(Path, String, String)} sin copiarlo
+     *
+     * @return Path del fichero temporal
+     */
+    Path createTempFile();
+
+    /**
+     * Almacena un fichero ya escrito en el directorio temporal, moviéndolo a su sitio.
+     * Si se almacena el temporal deja de existir; si no, se queda para volver a intentarlo y lo borra quien lo creó
+     *
+     * @param file     fichero creado con {@link #createTempFile()}
+     * @param filename nombre original del fichero
+     * @param sha256   SHA-256 del contenido en hexadecimal si ya se conoce, o null
+     * @return nombre del fichero almacenado
+     */
+    String store(Path file, String filename, String sha256);
+
     /**
      * Devuelve un Stream de todos los ficheros almacenados
      *
@@ -35,6 +55,14 @@ public interface StorageService {
      */
     Path load(String filename);
 
+    /**
+     * Indica si hay un fichero almacenado con ese nombre
+     *
+     * @param filename nombre del fichero
+     * @return true si existe
+     */
+    boolean exists(String filename);
+
     /**
      * Devuelve un recurso del fichero
      *
@@ -43,6 +71,23 @@ public interface StorageService {
      */
     Resource loadAsResource(String filename);
 
+    /**
+     * Devuelve los metadatos del fichero para servirlo: ruta, tamaño, fecha de modificación, tipo y ETag
+     *
+     * @param filename nombre del fichero
+     * @return metadatos del fichero
+     */
+    StoredFile loadMetadata(String filename);
+
+    /**
+     * Devuelve los metadatos de la variante reducida de una imagen con el ancho pedido
+     *
+     * @param filename nombre de la imagen original
+     * @param width    ancho pedido en píxeles
+     * @return metadatos de la variante, o de la original si no hay variante
+     */
+    StoredFile loadVariant(String filename, int width);
+
     /**
      * Borra un fichero del sistema de ficheros
      *
@@ -55,6 +100,13 @@ public interface StorageService {
      */
     void deleteAll();
 
+    /**
+     * Mueve a su sitio los ficheros de un almacenamiento con la estructura anterior
+     *
+     * @return número de ficheros movidos
+     */
+    int migrate();
+
     /**
      * Devuelve la URL del fichero
      *
@@ -11,13 +11,17 @@ import org.develop.rest.users.dto.UserRequest;
 import org.develop.rest.users.dto.UserResponse;
 import org.develop.rest.users.models.User;
 import org.develop.rest.users.services.UsersService;
+import org.develop.utils.pagination.CursorPageResponse;
 import org.develop.utils.pagination.PageResponse;
+import org.develop.utils.pagination.PaginationCursorUtils;
 import org.develop.utils.pagination.PaginationLinksUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -39,12 +43,14 @@ public class UsersRestController {
     private final UsersService usersService;
     private final PedidoService pedidosService;
     private final PaginationLinksUtils paginationLinksUtils;
+    private final PaginationCursorUtils paginationCursorUtils;
 
     @Autowired
-    public UsersRestController(UsersService usersService, PedidoService pedidosService, PaginationLinksUtils paginationLinksUtils) {
+    public UsersRestController(UsersService usersService, PedidoService pedidosService, PaginationLinksUtils paginationLinksUtils, PaginationCursorUtils paginationCursorUtils) {
         this.usersService = usersService;
         this.pedidosService = pedidosService;
         this.paginationLinksUtils = paginationLinksUtils;
+        this.paginationCursorUtils = paginationCursorUtils;
     }
 
     @GetMapping
@@ -70,6 +76,51 @@ public class UsersRestController {
     }
 
 
+    @GetMapping(params = {"withTotal=false", "!after"})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<PageResponse<UserResponse>> findAllWithoutTotal(
+            @RequestParam(required = false) Optional<String> username,
+            @RequestParam(required = false) Optional<String> email,
+            @RequestParam(required = false) Optional<Boolean> isDeleted,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String direction,
+            HttpServletRequest request
+    ) {
+        log.info("findAllWithoutTotal: username: {}, email: {}, isDeleted: {}, page: {}, size: {}, sortBy: {}, direction: {}",
+                username, email, isDeleted, page, size, sortBy, direction);
+        Sort sort = direction.equalsIgnoreCase(Sort.Direction.ASC.name()) ? Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
+        UriComponentsBuilder uriBuilder = paginationLinksUtils.fromRequest(request);
+        Slice<UserResponse> sliceResult = usersService.findSlice(username, email, isDeleted, PageRequest.of(page, size, sort));
+        return ResponseEntity.ok()
+                .header("link", paginationLinksUtils.createLinkHeader(sliceResult, uriBuilder))
+                .body(PageResponse.of(sliceResult, sortBy, direction));
+    }
+
+    @GetMapping(params = "after")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<CursorPageResponse<UserResponse>> findAllByCursor(
+            @RequestParam(required = false) Optional<String> username,
+            @RequestParam(required = false) Optional<String> email,
+            @RequestParam(required = false) Optional<Boolean> isDeleted,
+            @RequestParam String after,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String direction,
+            HttpServletRequest request
+    ) {
+        log.info("findAllByCursor: username: {}, email: {}, isDeleted: {}, after: {}, size: {}, sortBy: {}, direction: {}",
+                username, email, isDeleted, after, size, sortBy, direction);
+        var position = paginationCursorUtils.decode(after, User.class);
+        Window<UserResponse> window = usersService.scroll(username, email, isDeleted, position, size, paginationCursorUtils.keysetSort(sortBy, direction));
+        var nextCursor = paginationCursorUtils.encode(window);
+        UriComponentsBuilder uriBuilder = paginationLinksUtils.fromRequest(request);
+        return ResponseEntity.ok()
+                .header("link", paginationLinksUtils.createCursorLinkHeader(nextCursor, size, uriBuilder))
+                .body(CursorPageResponse.of(window, size, nextCursor, sortBy, direction));
+    }
+
     @GetMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<UserInfoResponse> findById(@PathVariable Long id) {
@@ -3,8 +3,12 @@ package org.develop.rest.users.services;
 import org.develop.rest.users.dto.UserInfoResponse;
 import org.develop.rest.users.dto.UserRequest;
 import org.develop.rest.users.dto.UserResponse;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 
 import java.util.Optional;
 
@@ -12,6 +16,10 @@ public interface UsersService {
 
     Page<UserResponse> findAll(Optional<String> username, Optional<String> email, Optional<Boolean> isDeleted, Pageable pageable);
 
+    Slice<UserResponse> findSlice(Optional<String> username, Optional<String> email, Optional<Boolean> isDeleted, Pageable pageable);
+
+    Window<UserResponse> scroll(Optional<String> username, Optional<String> email, Optional<Boolean> isDeleted, KeysetScrollPosition position, int size, Sort sort);
+
     UserInfoResponse findById(Long id);
 
     UserResponse save(UserRequest userRequest);
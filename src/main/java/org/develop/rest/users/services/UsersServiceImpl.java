@@ -2,6 +2,7 @@ package org.develop.rest.users.services;
 
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
+import org.develop.rest.auth.services.users.UserVersionRegistry;
 import org.develop.rest.pedidos.repositories.PedidoRepository;
 import org.develop.rest.users.dto.UserInfoResponse;
 import org.develop.rest.users.dto.UserRequest;
@@ -15,8 +16,15 @@ import org.springframework.cache.annotation.CacheConfig;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
@@ -29,16 +37,38 @@ public class UsersServiceImpl implements UsersService {
     private final UsersRepository usersRepository;
     private final PedidoRepository pedidoRepository;
     private final UsersMapper usersMapper;
+    private final UserVersionRegistry userVersionRegistry;
 
-    public UsersServiceImpl(UsersRepository usersRepository, PedidoRepository pedidoRepository, UsersMapper usersMapper) {
+    public UsersServiceImpl(UsersRepository usersRepository, PedidoRepository pedidoRepository, UsersMapper usersMapper, UserVersionRegistry userVersionRegistry) {
         this.usersRepository = usersRepository;
         this.pedidoRepository = pedidoRepository;
         this.usersMapper = usersMapper;
+        this.userVersionRegistry = userVersionRegistry;
     }
 
     @Override
     public Page<UserResponse> findAll(Optional<String> username, Optional<String> email, Optional<Boolean> isDeleted, Pageable pageable) {
         log.info("Buscando todos los usuarios con username: " + username + " y borrados: " + isDeleted);
+        return usersRepository.findAll(criterio(username, email, isDeleted), pageable).map(usersMapper::toUserResponse);
+    }
+
+    @Override
+    public Slice<UserResponse> findSlice(Optional<String> username, Optional<String> email, Optional<Boolean> isDeleted, Pageable pageable) {
+        log.info("Buscando usuarios sin total con username: " + username + " y borrados: " + isDeleted);
+        // Sin COUNT: se pide un elemento más de la página para saber si hay siguiente
+        Window<User> window = usersRepository.findBy(criterio(username, email, isDeleted),
+                query -> query.sortBy(pageable.getSort()).limit(pageable.getPageSize()).scroll(ScrollPosition.offset(pageable.getOffset())));
+        return new SliceImpl<>(window.getContent(), pageable, window.hasNext()).map(usersMapper::toUserResponse);
+    }
+
+    @Override
+    public Window<UserResponse> scroll(Optional<String> username, Optional<String> email, Optional<Boolean> isDeleted, KeysetScrollPosition position, int size, Sort sort) {
+        log.info("Buscando usuarios por keyset con username: " + username + " y borrados: " + isDeleted);
+        return usersRepository.findBy(criterio(username, email, isDeleted), query -> query.sortBy(sort).limit(size).scroll(position))
+                .map(usersMapper::toUserResponse);
+    }
+
+    private Specification<User> criterio(Optional<String> username, Optional<String> email, Optional<Boolean> isDeleted) {
         Specification<User> specUsernameUser = (root, query, criteriaBuilder) ->
                 username.map(m -> criteriaBuilder.like(criteriaBuilder.lower(root.get("username")), "%" + m.toLowerCase() + "%"))
                         .orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true)));
@@ -51,11 +81,9 @@ public class UsersServiceImpl implements UsersService {
                 isDeleted.map(m -> criteriaBuilder.equal(root.get("isDeleted"), m))
                         .orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true)));
 
-        Specification<User> criterio = Specification.where(specUsernameUser)
+        return Specification.where(specUsernameUser)
                 .and(specEmailUser)
                 .and(specIsDeleted);
-
-        return usersRepository.findAll(criterio, pageable).map(usersMapper::toUserResponse);
     }
 
     @Override
@@ -78,10 +106,10 @@ public class UsersServiceImpl implements UsersService {
     }
 
     @Override
-    @CachePut(key = "#result.id")
+    @Caching(put = @CachePut(key = "#result.id"), evict = @CacheEvict(cacheNames = "userDetails", allEntries = true))
     public UserResponse update(Long id, UserRequest userRequest) {
         log.info("Actualizando usuario: " + userRequest);
-        usersRepository.findById(id).orElseThrow(() -> new UserNotFound(id));
+        User actual = usersRepository.findById(id).orElseThrow(() -> new UserNotFound(id));
         usersRepository.findByUsernameEqualsIgnoreCaseOrEmailEqualsIgnoreCase(userRequest.getUsername(), userRequest.getEmail())
                 .ifPresent(u -> {
                     if (!u.getId().equals(id)) {
@@ -89,12 +117,18 @@ public class UsersServiceImpl implements UsersService {
                         throw new UserNameOrEmailExists("Ya existe un usuario con ese username o email");
                     }
                 });
-        return usersMapper.toUserResponse(usersRepository.save(usersMapper.toUser(userRequest, id)));
+        User updated = usersRepository.save(usersMapper.toUser(userRequest, id));
+        // Todos los nodos vuelven a leer el usuario, con el nombre anterior ya no existe
+        userVersionRegistry.changed(updated.getUsername());
+        if (!actual.getUsername().equals(updated.getUsername())) {
+            userVersionRegistry.changed(actual.getUsername());
+        }
+        return usersMapper.toUserResponse(updated);
     }
 
     @Override
     @Transactional
-    @CacheEvict(key = "#id")
+    @Caching(evict = {@CacheEvict(key = "#id"), @CacheEvict(cacheNames = "userDetails", allEntries = true)})
     public void deleteById(Long id) {
         log.info("Borrando usuario por id: " + id);
         User user = usersRepository.findById(id).orElseThrow(() -> new UserNotFound(id));
@@ -105,5 +139,6 @@ public class UsersServiceImpl implements UsersService {
             log.info("Borrado físico de usuario por id: " + id);
             usersRepository.delete(user);
         }
+        userVersionRegistry.changed(user.getUsername());
     }
 }
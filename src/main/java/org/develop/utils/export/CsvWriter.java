@@ -0,0 +1,72 @@
+package org.develop.utils.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Escribe CSV fila a fila sobre un buffer, sin cerrar la salida.
+ * Los campos con comas, comillas o saltos de línea van entre comillas y sus comillas se duplican.
+ * El texto que una hoja de cálculo tomaría por una fórmula se escribe precedido de una comilla simple.
+ */
+public class CsvWriter {
+    // Primeros caracteres con los que una hoja de cálculo interpreta el campo como fórmula
+    public static final String FORMULA_CHARS = "=+-@\t\r";
+
+    private final Writer writer;
+    private boolean primero = true;
+
+    public CsvWriter(OutputStream out, String... cabecera) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        for (String columna : cabecera) {
+            field(columna);
+        }
+        endRow();
+    }
+
+    /**
+     * Añade un campo a la fila actual, null es un campo vacío
+     */
+    public CsvWriter field(Object valor) throws IOException {
+        if (!primero) {
+            writer.write(',');
+        }
+        primero = false;
+        if (valor == null) {
+            return this;
+        }
+        String texto = Objects.toString(valor);
+        // Solo el texto, un número negativo no se toca
+        if (valor instanceof CharSequence && isFormula(texto)) {
+            texto = "'" + texto;
+        }
+        if (texto.indexOf(',') >= 0 || texto.indexOf('"') >= 0 || texto.indexOf('\n') >= 0 || texto.indexOf('\r') >= 0) {
+            writer.write('"');
+            writer.write(texto.replace("\"", "\"\""));
+            writer.write('"');
+        } else {
+            writer.write(texto);
+        }
+        return this;
+    }
+
+    /**
+     * Si el texto empieza como una fórmula de hoja de cálculo
+     */
+    public static boolean isFormula(String texto) {
+        return !texto.isEmpty() && FORMULA_CHARS.indexOf(texto.charAt(0)) >= 0;
+    }
+
+    public void endRow() throws IOException {
+        writer.write('\n');
+        primero = true;
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+}
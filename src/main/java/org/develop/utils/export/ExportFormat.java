@@ -0,0 +1,51 @@
+package org.develop.utils.export;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Formatos de las exportaciones en streaming
+ */
+public enum ExportFormat {
+    NDJSON(MediaType.APPLICATION_NDJSON),
+    CSV(MediaType.parseMediaType("text/csv"));
+
+    private final MediaType mediaType;
+
+    ExportFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Nombre del fichero para la cabecera Content-Disposition
+     */
+    public String fileName(String base) {
+        return base + "." + name().toLowerCase();
+    }
+
+    /**
+     * Elige el formato por el parámetro formato y si no viene por la cabecera Accept, por defecto NDJSON
+     *
+     * @throws ResponseStatusException 400 si el parámetro no es ningún formato conocido
+     */
+    public static ExportFormat resolve(Optional<String> formato, Optional<String> accept) {
+        if (formato.isPresent()) {
+            return switch (formato.get().toLowerCase()) {
+                case "ndjson" -> NDJSON;
+                case "csv" -> CSV;
+                default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Formato de exportación no admitido: " + formato.get());
+            };
+        }
+        boolean csv = accept.map(MediaType::parseMediaTypes).orElse(List.of()).stream()
+                .anyMatch(CSV.mediaType::equalsTypeAndSubtype);
+        return csv ? CSV : NDJSON;
+    }
+}
@@ -0,0 +1,30 @@
+package org.develop.utils.export;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Escribe un objeto JSON por línea sobre un único generador, sin cerrar la salida
+ */
+public class NdjsonWriter {
+    private final ObjectMapper mapper;
+    private final JsonGenerator generator;
+
+    public NdjsonWriter(ObjectMapper mapper, OutputStream out) throws IOException {
+        this.mapper = mapper;
+        this.generator = mapper.getFactory().createGenerator(out);
+        this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    public void write(Object valor) throws IOException {
+        mapper.writeValue(generator, valor);
+        generator.writeRaw('\n');
+    }
+
+    public void flush() throws IOException {
+        generator.flush();
+    }
+}
@@ -0,0 +1,72 @@
+package org.develop.utils.http;
+
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.function.Function;
+
+/**
+ * Validadores de las peticiones condicionales: ETag fuerte y Last-Modified a partir de la fecha de actualización.
+ * Se usan con WebRequest.checkNotModified, que responde 304 a If-None-Match / If-Modified-Since
+ * y 412 a un If-Match que no coincide, antes de serializar nada.
+ */
+@Component
+public class ConditionalRequestUtils {
+
+    /**
+     * ETag de un recurso: su id y el instante de su última actualización
+     */
+    public String etag(Long id, LocalDateTime fechaActualizacion) {
+        return "\"" + id + "-" + millis(fechaActualizacion) + "\"";
+    }
+
+    /**
+     * ETag de un recurso versionado: su id, su versión y el instante de la última actualización de lo que devuelve,
+     * incluido lo que lleva embebido
+     */
+    public String etag(Long id, Long version, LocalDateTime fechaActualizacion) {
+        return "\"" + id + "-" + version + "-" + millis(fechaActualizacion) + "\"";
+    }
+
+    /**
+     * ETag de un listado: la última actualización de sus elementos, el total y un resumen de ids y fechas,
+     * así cambia si se añade, se borra, se modifica o se reordena algún elemento
+     *
+     * @param items              elementos de la página
+     * @param total              total de elementos del listado, o lo que distinga la página si no se cuenta
+     * @param id                 id de cada elemento
+     * @param fechaActualizacion fecha de actualización de cada elemento
+     */
+    public <T> String etag(Collection<T> items, long total, Function<T, Long> id, Function<T, LocalDateTime> fechaActualizacion) {
+        int resumen = 1;
+        for (T item : items) {
+            resumen = 31 * resumen + Long.hashCode(id.apply(item) == null ? 0 : id.apply(item));
+            resumen = 31 * resumen + Long.hashCode(millis(fechaActualizacion.apply(item)));
+        }
+        return "\"" + lastModified(items, fechaActualizacion) + "-" + total + "-" + Integer.toHexString(resumen) + "\"";
+    }
+
+    /**
+     * Last-Modified de un recurso, -1 si no tiene fecha
+     */
+    public long lastModified(LocalDateTime fechaActualizacion) {
+        return fechaActualizacion == null ? -1 : millis(fechaActualizacion);
+    }
+
+    /**
+     * Last-Modified de un listado: la última actualización de sus elementos, -1 si está vacío
+     */
+    public <T> long lastModified(Collection<T> items, Function<T, LocalDateTime> fechaActualizacion) {
+        return items.stream()
+                .map(fechaActualizacion)
+                .mapToLong(this::lastModified)
+                .max()
+                .orElse(-1);
+    }
+
+    private long millis(LocalDateTime fecha) {
+        return fecha == null ? 0 : fecha.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
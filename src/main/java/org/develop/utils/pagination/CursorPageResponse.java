@@ -0,0 +1,29 @@
+package org.develop.utils.pagination;
+
+import org.springframework.data.domain.Window;
+
+import java.util.List;
+
+public record CursorPageResponse<T>(
+        List<T> content,
+        int pageSize,
+        int totalPageElements,
+        boolean empty,
+        boolean last,
+        String nextCursor,
+        String sortBy,
+        String direction
+) {
+    public static <T> CursorPageResponse<T> of(Window<T> window, int pageSize, String nextCursor, String sortBy, String direction) {
+        return new CursorPageResponse<>(
+                window.getContent(),
+                pageSize,
+                window.size(),
+                window.isEmpty(),
+                window.isLast(),
+                nextCursor,
+                sortBy,
+                direction
+        );
+    }
+}
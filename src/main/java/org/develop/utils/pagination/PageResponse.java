@@ -1,13 +1,16 @@
 package org.develop.utils.pagination;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 
 import java.util.List;
 
 public record PageResponse<T>(
         List<T> content,
-        int totalPages,
-        long totalElements,
+        // Nulos cuando la consulta no ha contado los elementos (withTotal=false)
+        @JsonInclude(JsonInclude.Include.NON_NULL) Integer totalPages,
+        @JsonInclude(JsonInclude.Include.NON_NULL) Long totalElements,
         int pageSize,
         int pageNumber,
         int totalPageElements,
@@ -32,4 +35,20 @@ public record PageResponse<T>(
                 direction
         );
     }
+
+    public static <T> PageResponse<T> of(Slice<T> slice, String sortBy, String direction) {
+        return new PageResponse<>(
+                slice.getContent(),
+                null,
+                null,
+                slice.getSize(),
+                slice.getNumber(),
+                slice.getNumberOfElements(),
+                slice.isEmpty(),
+                slice.isFirst(),
+                slice.isLast(),
+                sortBy,
+                direction
+        );
+    }
 }
\ No newline at end of file
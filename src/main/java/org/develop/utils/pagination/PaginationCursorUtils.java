@@ -0,0 +1,94 @@
+package org.develop.utils.pagination;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.types.ObjectId;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Codifica y decodifica los cursores opacos de la paginación por keyset.
+ * El cursor guarda los valores de las columnas de ordenación (sortBy, id) del último elemento de la página.
+ */
+@Component
+public class PaginationCursorUtils {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Devuelve el cursor de la siguiente página o null si es la última
+     */
+    public String encode(Window<?> window) {
+        if (!window.hasNext() || window.isEmpty()) {
+            return null;
+        }
+        var position = (KeysetScrollPosition) window.positionAt(window.size() - 1);
+        Map<String, String> keys = new LinkedHashMap<>();
+        // Un valor nulo va como null en el JSON, no como el texto "null"
+        position.getKeys().forEach((key, value) -> keys.put(key, value == null ? null : String.valueOf(value)));
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(mapper.writeValueAsBytes(keys));
+        } catch (Exception e) {
+            throw new IllegalStateException("No se puede generar el cursor de paginación", e);
+        }
+    }
+
+    /**
+     * Convierte el cursor en la posición desde la que seguir leyendo.
+     * Un cursor vacío es la primera página.
+     *
+     * @param cursor cursor recibido en el parámetro after
+     * @param type   clase de la entidad, para recuperar el tipo de cada clave
+     */
+    public KeysetScrollPosition decode(String cursor, Class<?> type) {
+        if (!StringUtils.hasText(cursor)) {
+            return ScrollPosition.keyset();
+        }
+        try {
+            Map<String, String> keys = mapper.readValue(Base64.getUrlDecoder().decode(cursor), new TypeReference<>() {
+            });
+            Map<String, Object> values = new LinkedHashMap<>();
+            keys.forEach((key, value) -> values.put(key, value == null ? null : convert(type, key, value)));
+            return ScrollPosition.forward(values);
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cursor de paginación no válido: " + cursor);
+        }
+    }
+
+    /**
+     * Ordenación para keyset: se añade el id como desempate para que el orden sea único
+     */
+    public Sort keysetSort(String sortBy, String direction) {
+        Sort.Direction dir = direction.equalsIgnoreCase(Sort.Direction.ASC.name()) ? Sort.Direction.ASC : Sort.Direction.DESC;
+        Sort sort = Sort.by(dir, sortBy);
+        return sortBy.equals("id") ? sort : sort.and(Sort.by(dir, "id"));
+    }
+
+    private Object convert(Class<?> type, String key, String value) {
+        // En Mongo la clave de ordenación del id es _id
+        Field field = ReflectionUtils.findField(type, key.equals("_id") ? "id" : key);
+        if (field == null || field.getType() == String.class) {
+            return value;
+        }
+        if (field.getType() == ObjectId.class) {
+            return new ObjectId(value);
+        }
+        if (field.getType() == LocalDateTime.class) {
+            return LocalDateTime.parse(value);
+        }
+        return DefaultConversionService.getSharedInstance().convert(value, field.getType());
+    }
+}
@@ -1,12 +1,24 @@
 package org.develop.utils.pagination;
 
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Component;
 import org.springframework.web.util.UriComponentsBuilder;
 
 @Component
 public class PaginationLinksUtils {
 
+    /**
+     * URL de la petición con sus parámetros ya decodificados, para que los enlaces se codifiquen una sola vez al construirlos.
+     * Con la query string original los valores llegarían codificados y se volverían a codificar (%20 pasaría a %2520).
+     */
+    public UriComponentsBuilder fromRequest(HttpServletRequest request) {
+        UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromHttpUrl(request.getRequestURL().toString());
+        request.getParameterMap().forEach((name, values) -> uriBuilder.queryParam(name, (Object[]) values));
+        return uriBuilder;
+    }
+
     public String createLinkHeader(Page<?> page, UriComponentsBuilder uriBuilder) {
         final StringBuilder linkHeader = new StringBuilder();
 
@@ -37,6 +49,48 @@ public class PaginationLinksUtils {
         return linkHeader.toString();
     }
 
+    public String createLinkHeader(Slice<?> slice, UriComponentsBuilder uriBuilder) {
+        final StringBuilder linkHeader = new StringBuilder();
+
+        if (slice.hasNext()) {
+            String uri = constructUri(slice.getNumber() + 1, slice.getSize(), uriBuilder);
+            linkHeader.append(buildLinkHeader(uri, "next"));
+        }
+
+        if (slice.hasPrevious()) {
+            String uri = constructUri(slice.getNumber() - 1, slice.getSize(), uriBuilder);
+            appendCommaIfNecessary(linkHeader);
+            linkHeader.append(buildLinkHeader(uri, "prev"));
+        }
+
+        if (!slice.isFirst()) {
+            String uri = constructUri(0, slice.getSize(), uriBuilder);
+            appendCommaIfNecessary(linkHeader);
+            linkHeader.append(buildLinkHeader(uri, "first"));
+        }
+
+        return linkHeader.toString();
+    }
+
+    public String createCursorLinkHeader(String nextCursor, int size, UriComponentsBuilder uriBuilder) {
+        final StringBuilder linkHeader = new StringBuilder();
+
+        if (nextCursor != null) {
+            String uri = constructCursorUri(nextCursor, size, uriBuilder);
+            linkHeader.append(buildLinkHeader(uri, "next"));
+        }
+
+        String uri = constructCursorUri("", size, uriBuilder);
+        appendCommaIfNecessary(linkHeader);
+        linkHeader.append(buildLinkHeader(uri, "first"));
+
+        return linkHeader.toString();
+    }
+
+    private String constructCursorUri(String cursor, int size, UriComponentsBuilder uriBuilder) {
+        return uriBuilder.replaceQueryParam("page").replaceQueryParam("after", cursor).replaceQueryParam("size", size).build().encode().toUriString();
+    }
+
     private String constructUri(int newPageNumber, int size, UriComponentsBuilder uriBuilder) {
         return uriBuilder.replaceQueryParam("page", newPageNumber).replaceQueryParam("size", size).build().encode().toUriString();
     }
@@ -0,0 +1,135 @@
+package org.develop.auth.services;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.exceptions.SignatureVerificationException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
+import org.develop.rest.auth.services.jwt.JwtService;
+import org.develop.rest.auth.services.jwt.JwtServiceImpl;
+import org.develop.rest.auth.services.users.UserVersionRegistry;
+import org.develop.rest.users.models.Role;
+import org.develop.rest.users.models.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Base64;
+import java.util.Date;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtServiceImplTest {
+    private final User user = User.builder().id(1L).username("test").roles(Set.of(Role.USER)).build();
+    private JwtServiceImpl jwtService;
+
+    @BeforeEach
+    void setUp() {
+        jwtService = jwtService(86400L);
+    }
+
+    @Test
+    void verifyToken() {
+        // Arrange
+        String token = jwtService.generateToken(user);
+
+        // Act
+        var jwt = jwtService.verifyToken(token);
+
+        // Assert
+        assertAll(
+                () -> assertEquals("test", jwt.getSubject()),
+                () -> assertTrue(jwtService.isTokenValid(token, user))
+        );
+    }
+
+    @Test
+    void verifyToken_SegundaVezDesdeCache() {
+        // Arrange
+        String token = jwtService.generateToken(user);
+
+        // Act
+        var primera = jwtService.verifyToken(token);
+        var segunda = jwtService.verifyToken(token);
+
+        // Assert
+        assertSame(primera, segunda);
+    }
+
+    @Test
+    void verifyToken_FirmaIncorrecta() {
+        // Arrange
+        String token = JWT.create()
+                .withSubject("test")
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60000))
+                .sign(Algorithm.HMAC512("otraClave"));
+
+        // Act & Assert
+        assertAll(
+                () -> assertThrows(SignatureVerificationException.class, () -> jwtService.verifyToken(token)),
+                () -> assertFalse(jwtService.isTokenValid(token, user))
+        );
+    }
+
+    @Test
+    void verifyToken_TokenManipulado() {
+        // Arrange
+        String token = jwtService.generateToken(user);
+        String[] partes = token.split("\\.");
+        String payload = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("{\"sub\":\"admin\",\"exp\":9999999999}".getBytes());
+        String manipulado = partes[0] + "." + payload + "." + partes[2];
+
+        // Act & Assert
+        assertThrows(JWTVerificationException.class, () -> jwtService.verifyToken(manipulado));
+    }
+
+    @Test
+    void verifyToken_TokenCaducado() {
+        // Arrange
+        String token = jwtService(-60L).generateToken(user);
+
+        // Act & Assert
+        assertAll(
+                () -> assertThrows(TokenExpiredException.class, () -> jwtService.verifyToken(token)),
+                () -> assertFalse(jwtService.isTokenValid(token, user))
+        );
+    }
+
+    @Test
+    void generateToken_LlevaLaVersionPeroNoLosRoles() {
+        // Arrange
+        String token = jwtService.generateToken(user);
+
+        // Act
+        var jwt = jwtService.verifyToken(token);
+
+        // Assert
+        assertAll(
+                () -> assertEquals("test", jwt.getSubject()),
+                () -> assertEquals(UserVersionRegistry.versionOf(user), jwt.getClaim(JwtService.VERSION_CLAIM).asLong()),
+                () -> assertTrue(jwt.getClaim("roles").isMissing())
+        );
+    }
+
+    @Test
+    void isTokenValid_OtroUsuario() {
+        // Arrange
+        String token = jwtService.generateToken(user);
+        User otro = User.builder().username("otro").roles(Set.of(Role.USER)).build();
+
+        // Act & Assert
+        assertFalse(jwtService.isTokenValid(token, otro));
+    }
+
+    private JwtServiceImpl jwtService(Long expiration) {
+        JwtServiceImpl service = new JwtServiceImpl();
+        ReflectionTestUtils.setField(service, "jwtSigningKey", "MeGustanLosPeinosdeLeganesPorqueSonGrandesYHermosos!");
+        ReflectionTestUtils.setField(service, "jwtExpiration", expiration);
+        ReflectionTestUtils.setField(service, "verifiedTokenTtl", 300L);
+        ReflectionTestUtils.setField(service, "verifiedTokenMaxSize", 100);
+        ReflectionTestUtils.invokeMethod(service, "init");
+        return service;
+    }
+}
@@ -0,0 +1,116 @@
+package org.develop.auth.services;
+
+import org.develop.notifications.bus.LocalNotificationBus;
+import org.develop.notifications.bus.NotificationBus;
+import org.develop.rest.auth.repositories.AuthUsersRepository;
+import org.develop.rest.auth.services.users.UserVersionRegistry;
+import org.develop.rest.users.models.Role;
+import org.develop.rest.users.models.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserVersionRegistryTest {
+    private final User user = User.builder().id(1L).username("test").roles(Set.of(Role.USER))
+            .updatedAt(LocalDateTime.of(2023, 11, 1, 10, 0)).build();
+
+    @Mock
+    private AuthUsersRepository authUsersRepository;
+
+    private NotificationBus notificationBus;
+    private UserVersionRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        notificationBus = new LocalNotificationBus();
+        registry = new UserVersionRegistry(authUsersRepository, notificationBus, 60, 100);
+    }
+
+    @Test
+    void current_SegundaVezSinBaseDeDatos() {
+        // Arrange
+        when(authUsersRepository.findByUsername("test")).thenReturn(Optional.of(user));
+        long version = UserVersionRegistry.versionOf(user);
+
+        // Act
+        var primera = registry.current("test", version);
+        var segunda = registry.current("test", version);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(Optional.of(user), primera),
+                () -> assertEquals(Optional.of(user), segunda)
+        );
+
+        // Verify
+        verify(authUsersRepository, times(1)).findByUsername("test");
+    }
+
+    @Test
+    void current_TokenPosteriorVuelveALeer() {
+        // Arrange
+        when(authUsersRepository.findByUsername("test")).thenReturn(Optional.of(user));
+        long version = UserVersionRegistry.versionOf(user);
+        registry.current("test", version);
+
+        // Act
+        registry.current("test", version + 1000);
+
+        // Assert
+        verify(authUsersRepository, times(2)).findByUsername("test");
+    }
+
+    @Test
+    void current_UsuarioBorradoOInexistente() {
+        // Arrange
+        User borrado = User.builder().username("borrado").roles(Set.of(Role.USER)).isDeleted(true).build();
+        when(authUsersRepository.findByUsername("borrado")).thenReturn(Optional.of(borrado));
+        when(authUsersRepository.findByUsername("nadie")).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertAll(
+                () -> assertTrue(registry.current("borrado", 0L).isEmpty()),
+                () -> assertTrue(registry.current("nadie", 0L).isEmpty())
+        );
+    }
+
+    @Test
+    void current_CaducaYVuelveALeer() {
+        // Arrange
+        var sinGuardar = new UserVersionRegistry(authUsersRepository, notificationBus, 0, 100);
+        when(authUsersRepository.findByUsername("test")).thenReturn(Optional.of(user));
+
+        // Act
+        sinGuardar.current("test", 0L);
+        sinGuardar.current("test", 0L);
+
+        // Assert
+        verify(authUsersRepository, times(2)).findByUsername("test");
+    }
+
+    @Test
+    void changed_TodosLosNodosVuelvenALeer() {
+        // Arrange: dos nodos con el mismo bus
+        var otroNodo = new UserVersionRegistry(authUsersRepository, notificationBus, 60, 100);
+        User borrado = User.builder().username("test").roles(Set.of(Role.USER)).isDeleted(true).build();
+        when(authUsersRepository.findByUsername("test")).thenReturn(Optional.of(user), Optional.of(borrado));
+        assertTrue(otroNodo.current("test", 0L).isPresent());
+
+        // Act
+        registry.changed("test");
+
+        // Assert
+        assertTrue(otroNodo.current("test", 0L).isEmpty());
+        verify(authUsersRepository, times(2)).findByUsername("test");
+    }
+}
@@ -128,6 +128,30 @@ class CategoriaRestControllerTest {
         verify(categoriasService, times(1)).findById(id);
     }
 
+    @Test
+    void getCategoriaById_NotModifiedSince() throws Exception {
+        // Arrange
+        Long id = 1L;
+        String myLocalEndPoint = myEndpoint + "/1";
+
+        when(categoriasService.findById(id)).thenReturn(categoria);
+
+        String lastModified = mvc.perform(get(myLocalEndPoint).accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getHeader("Last-Modified");
+
+        MockHttpServletResponse response = mvc.perform(
+                get(myLocalEndPoint)
+                        .header("If-Modified-Since", lastModified)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse();
+
+        assertAll(
+                () -> assertNotNull(lastModified),
+                () -> assertEquals(304, response.getStatus()),
+                () -> assertEquals("", response.getContentAsString())
+        );
+    }
+
     @Test
     void getCategoriaById_idNotExist() throws Exception {
         // Arrange
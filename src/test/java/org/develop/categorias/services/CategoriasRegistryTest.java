@@ -0,0 +1,149 @@
+package org.develop.categorias.services;
+
+import org.develop.notifications.bus.LocalNotificationBus;
+import org.develop.notifications.bus.NotificationBus;
+import org.develop.notifications.bus.NotificationEvent;
+import org.develop.rest.categorias.models.Categoria;
+import org.develop.rest.categorias.repositories.CategoriasRepository;
+import org.develop.rest.categorias.services.CategoriasRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CategoriasRegistryTest {
+    private Categoria categoria1 = new Categoria(1L, "OTROS", LocalDateTime.now(), LocalDateTime.now(), true);
+    private Categoria categoria2 = new Categoria(2L, "SUPERHEROES", LocalDateTime.now(), LocalDateTime.now(), true);
+
+    @Mock
+    private CategoriasRepository categoriasRepository;
+
+    private NotificationBus notificationBus;
+    private CategoriasRegistry categoriasRegistry;
+
+    @BeforeEach
+    void setUp() {
+        notificationBus = new LocalNotificationBus();
+        categoriasRegistry = new CategoriasRegistry(categoriasRepository, notificationBus);
+    }
+
+    @Test
+    void findByNombreYId_CargaUnaSolaVez() {
+        // Arrange
+        when(categoriasRepository.findAll()).thenReturn(List.of(categoria1, categoria2));
+
+        // Act
+        categoriasRegistry.preload();
+        var porNombre = categoriasRegistry.findByNombre("superHeroes");
+        var porId = categoriasRegistry.findById(1L);
+        var noExiste = categoriasRegistry.findByNombre("DISNEY");
+
+        // Assert
+        assertAll(
+                () -> assertEquals(categoria2, porNombre.orElseThrow()),
+                () -> assertEquals(categoria1, porId.orElseThrow()),
+                () -> assertTrue(noExiste.isEmpty()),
+                () -> assertTrue(categoriasRegistry.findByNombre(null).isEmpty())
+        );
+        verify(categoriasRepository, times(1)).findAll();
+    }
+
+    @Test
+    void invalidate_VuelveACargarEnLaSiguienteLectura() {
+        // Arrange
+        when(categoriasRepository.findAll()).thenReturn(List.of(categoria1, categoria2), List.of(categoria1));
+        categoriasRegistry.preload();
+
+        // Act
+        categoriasRegistry.invalidate();
+        var borrada = categoriasRegistry.findById(2L);
+
+        // Assert
+        assertAll(
+                () -> assertTrue(borrada.isEmpty()),
+                () -> assertTrue(categoriasRegistry.findByNombre("SUPERHEROES").isEmpty()),
+                () -> assertEquals(categoria1, categoriasRegistry.findByNombre("otros").orElseThrow())
+        );
+        verify(categoriasRepository, times(2)).findAll();
+    }
+
+    @Test
+    void findByNombre_NoEstaEnMemoriaPeroSiEnLaBaseDeDatos() {
+        // Arrange: otro nodo la ha creado y el aviso no ha llegado
+        Categoria nueva = new Categoria(3L, "DISNEY", LocalDateTime.now(), LocalDateTime.now(), true);
+        when(categoriasRepository.findAll()).thenReturn(List.of(categoria1), List.of(categoria1, nueva));
+        when(categoriasRepository.findByNombreEqualsIgnoreCase("disney")).thenReturn(Optional.of(nueva));
+        categoriasRegistry.preload();
+
+        // Act
+        var encontrada = categoriasRegistry.findByNombre("disney");
+        var porId = categoriasRegistry.findById(3L);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(nueva, encontrada.orElseThrow()),
+                () -> assertEquals(nueva, porId.orElseThrow())
+        );
+        verify(categoriasRepository, times(2)).findAll();
+        verify(categoriasRepository, never()).findById(3L);
+    }
+
+    @Test
+    void invalidate_TodosLosNodosVuelvenACargar() {
+        // Arrange: dos nodos con el mismo bus
+        var otroNodo = new CategoriasRegistry(categoriasRepository, notificationBus);
+        when(categoriasRepository.findAll()).thenReturn(List.of(categoria1, categoria2), List.of(categoria1));
+        otroNodo.preload();
+
+        // Act
+        categoriasRegistry.invalidate();
+        var borrada = otroNodo.findById(2L);
+
+        // Assert
+        assertTrue(borrada.isEmpty());
+        verify(categoriasRepository, times(2)).findAll();
+    }
+
+    @Test
+    void findByNombre_NoExisteConsultaUnaSolaVez() {
+        // Arrange
+        when(categoriasRepository.findAll()).thenReturn(List.of(categoria1));
+        when(categoriasRepository.findByNombreEqualsIgnoreCase(anyString())).thenReturn(Optional.empty());
+        categoriasRegistry.preload();
+
+        // Act: las filas de una importación con una categoría que no existe
+        for (int i = 0; i < 100; i++) {
+            assertTrue(categoriasRegistry.findByNombre(i % 2 == 0 ? "DISNEY" : "disney").isEmpty());
+        }
+
+        // Assert
+        verify(categoriasRepository, times(1)).findByNombreEqualsIgnoreCase(anyString());
+    }
+
+    @Test
+    void invalidate_OlvidaLasCategoriasAusentes() {
+        // Arrange
+        Categoria nueva = new Categoria(3L, "DISNEY", LocalDateTime.now(), LocalDateTime.now(), true);
+        when(categoriasRepository.findAll()).thenReturn(List.of(categoria1), List.of(categoria1, nueva));
+        when(categoriasRepository.findById(3L)).thenReturn(Optional.empty());
+        categoriasRegistry.preload();
+        assertTrue(categoriasRegistry.findById(3L).isEmpty());
+
+        // Act: se crea en otro nodo
+        notificationBus.publish(new NotificationEvent(CategoriasRegistry.INVALIDATION_ENTITY, "", ""));
+        var creada = categoriasRegistry.findById(3L);
+
+        // Assert
+        assertEquals(nueva, creada.orElseThrow());
+        verify(categoriasRepository, times(1)).findById(3L);
+    }
+}
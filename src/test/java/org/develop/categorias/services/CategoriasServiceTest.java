@@ -5,6 +5,7 @@ import org.develop.rest.categorias.exceptions.CategoriaNotFound;
 import org.develop.rest.categorias.mappers.CategoriasMapper;
 import org.develop.rest.categorias.models.Categoria;
 import org.develop.rest.categorias.repositories.CategoriasRepository;
+import org.develop.rest.categorias.services.CategoriasRegistry;
 import org.develop.rest.categorias.services.CategoriasServiceImpl;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -29,6 +30,8 @@ class CategoriasServiceTest {
     private CategoriasRepository categoriasRepository;
     @Mock
     private CategoriasMapper categoriasMapper;
+    @Mock
+    private CategoriasRegistry categoriasRegistry;
     @InjectMocks
     private CategoriasServiceImpl categoriasService;
 
@@ -81,7 +84,7 @@ class CategoriasServiceTest {
         // Arrange
         Long id = 1L;
 
-        when(categoriasRepository.findById(1L)).thenReturn(Optional.of(categoria1));
+        when(categoriasRegistry.findById(1L)).thenReturn(Optional.of(categoria1));
 
         // Act
         Categoria res = categoriasService.findById(1L);
@@ -92,7 +95,7 @@ class CategoriasServiceTest {
                 () -> assertEquals(1L, res.getId()),
                 () -> assertEquals(categoria1, res)
         );
-        verify(categoriasRepository, times(1)).findById(1L);
+        verify(categoriasRegistry, times(1)).findById(1L);
     }
 
     @Test
@@ -100,14 +103,14 @@ class CategoriasServiceTest {
         // Arrange
         Long id = 99L;
 
-        when(categoriasRepository.findById(id)).thenReturn(Optional.empty());
+        when(categoriasRegistry.findById(id)).thenReturn(Optional.empty());
 
         // Act
         var res = assertThrows(CategoriaNotFound.class, () -> categoriasService.findById(id));
 
         assertEquals("Categoría con id 99 no encontrada", res.getMessage());
 
-        verify(categoriasRepository, times(1)).findById(id);
+        verify(categoriasRegistry, times(1)).findById(id);
     }
 
 
@@ -116,7 +119,7 @@ class CategoriasServiceTest {
         // Arrange
         String nombreCategoria = "OTROS";
 
-        when(categoriasRepository.findByNombreEqualsIgnoreCase(nombreCategoria)).thenReturn(Optional.of(categoria1));
+        when(categoriasRegistry.findByNombre(nombreCategoria)).thenReturn(Optional.of(categoria1));
 
         // Act
         Categoria res = categoriasService.findByNombre(nombreCategoria);
@@ -127,7 +130,7 @@ class CategoriasServiceTest {
                 () -> assertEquals(nombreCategoria, res.getNombre()),
                 () -> assertEquals(categoria1, res)
         );
-        verify(categoriasRepository, times(1)).findByNombreEqualsIgnoreCase(nombreCategoria);
+        verify(categoriasRegistry, times(1)).findByNombre(nombreCategoria);
     }
 
     @Test
@@ -135,14 +138,14 @@ class CategoriasServiceTest {
         // Arrange
         String nombreCategoria = "PEPE_EL_GRILLO";
 
-        when(categoriasRepository.findByNombreEqualsIgnoreCase(nombreCategoria)).thenReturn(Optional.empty());
+        when(categoriasRegistry.findByNombre(nombreCategoria)).thenReturn(Optional.empty());
 
         // Act
         var res = assertThrows(CategoriaNotFound.class, () -> categoriasService.findByNombre(nombreCategoria));
 
         assertEquals("Categoría "+nombreCategoria+" no encontrada", res.getMessage());
 
-        verify(categoriasRepository, times(1)).findByNombreEqualsIgnoreCase(nombreCategoria);
+        verify(categoriasRegistry, times(1)).findByNombre(nombreCategoria);
     }
 
     @Test
@@ -165,6 +168,7 @@ class CategoriasServiceTest {
 
         verify(categoriasRepository, times(1)).save(nuevaCategoria);
         verify(categoriasMapper, times(1)).toCategoria(categoriaDto);
+        verify(categoriasRegistry, times(1)).invalidate();
     }
 
     @Test
@@ -173,7 +177,7 @@ class CategoriasServiceTest {
         Categoria categoriaActual = categoria2;
         CategoriaDto categoriaDto = new CategoriaDto("SUPERHEROES", true);
 
-        when(categoriasRepository.findById(any(Long.class))).thenReturn(Optional.of(categoriaActual));
+        when(categoriasRegistry.findById(any(Long.class))).thenReturn(Optional.of(categoriaActual));
         when(categoriasMapper.toCategoria(categoriaDto, categoriaActual)).thenReturn(categoriaActual);
         when(categoriasRepository.save(categoriaActual)).thenReturn(categoriaActual);
 
@@ -185,6 +189,7 @@ class CategoriasServiceTest {
                 () -> assertNotNull(categoriaActualizada),
                 () -> assertEquals(categoriaActual, categoriaActualizada)
         );
+        verify(categoriasRegistry, times(1)).invalidate();
     }
 
     @Test
@@ -192,14 +197,14 @@ class CategoriasServiceTest {
         // Arrange
         CategoriaDto categoriaDto = new CategoriaDto("SUPERHEROES", true);
 
-        when(categoriasRepository.findById(2L)).thenReturn(Optional.empty());
+        when(categoriasRegistry.findById(2L)).thenReturn(Optional.empty());
 
         // Act
         var res = assertThrows(CategoriaNotFound.class, () -> categoriasService.update(2L, categoriaDto));
 
         assertEquals("Categoría con id 2 no encontrada", res.getMessage());
 
-        verify(categoriasRepository, times(1)).findById(2L);
+        verify(categoriasRegistry, times(1)).findById(2L);
     }
 
     @Test
@@ -207,12 +212,13 @@ class CategoriasServiceTest {
         // Arrange
         Long id = 1L;
 
-        when(categoriasRepository.findById(id)).thenReturn(Optional.of(categoria1));
+        when(categoriasRegistry.findById(id)).thenReturn(Optional.of(categoria1));
 
         // Act
         categoriasService.deleteById(id);
 
         verify(categoriasRepository, times(1)).deleteById(id);
+        verify(categoriasRegistry, times(1)).invalidate();
     }
 
     @Test
@@ -220,15 +226,16 @@ class CategoriasServiceTest {
         // Arrange
         Long id = 99L;
 
-        when(categoriasRepository.findById(id)).thenReturn(Optional.empty());
+        when(categoriasRegistry.findById(id)).thenReturn(Optional.empty());
 
         // Act
         var res = assertThrows(CategoriaNotFound.class, () ->  categoriasService.deleteById(id));
 
         assertEquals("Categoría con id 99 no encontrada", res.getMessage());
 
-        verify(categoriasRepository, times(1)).findById(id);
+        verify(categoriasRegistry, times(1)).findById(id);
         verify(categoriasRepository, times(0)).deleteById(id);
+        verify(categoriasRegistry, times(0)).invalidate();
     }
 
 }
@@ -0,0 +1,164 @@
+package org.develop.config.auth;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTDecodeException;
+import com.auth0.jwt.exceptions.SignatureVerificationException;
+import jakarta.servlet.FilterChain;
+import org.develop.rest.auth.services.jwt.JwtService;
+import org.develop.rest.auth.services.users.UserVersionRegistry;
+import org.develop.rest.users.models.Role;
+import org.develop.rest.users.models.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JwtAuthenticationFilterTest {
+    private final User user = User.builder().id(1L).username("test").roles(Set.of(Role.USER)).build();
+    private final String token = JWT.create().withSubject("test").sign(Algorithm.HMAC512("clave"));
+
+    @Mock
+    private JwtService jwtService;
+    @Mock
+    private UserVersionRegistry userVersionRegistry;
+    @Mock
+    private FilterChain filterChain;
+    @InjectMocks
+    private JwtAuthenticationFilter filter;
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void doFilter_TokenValidoAutentica() throws Exception {
+        // Arrange
+        var request = request("Bearer " + token);
+        var response = new MockHttpServletResponse();
+        when(jwtService.verifyToken(token)).thenReturn(JWT.decode(token));
+        when(userVersionRegistry.current("test", 0L)).thenReturn(Optional.of(user));
+
+        // Act
+        filter.doFilter(request, response, filterChain);
+
+        // Assert
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertAll(
+                () -> assertNotNull(authentication),
+                () -> assertEquals(user, authentication.getPrincipal())
+        );
+
+        // Verify: una sola verificación y una sola búsqueda del usuario por petición
+        verify(jwtService, times(1)).verifyToken(token);
+        verify(userVersionRegistry, times(1)).current("test", 0L);
+        verify(jwtService, never()).isTokenValid(any(), any());
+        verify(filterChain, times(1)).doFilter(request, response);
+    }
+
+    @Test
+    void doFilter_FirmaIncorrectaNoAutentica() throws Exception {
+        // Arrange
+        var request = request("Bearer " + token);
+        var response = new MockHttpServletResponse();
+        when(jwtService.verifyToken(token)).thenThrow(new SignatureVerificationException(Algorithm.HMAC512("clave")));
+
+        // Act
+        filter.doFilter(request, response, filterChain);
+
+        // Assert
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+
+        // Verify
+        verify(userVersionRegistry, never()).current(any(), anyLong());
+        verify(filterChain, times(1)).doFilter(request, response);
+    }
+
+    @Test
+    void doFilter_TokenMalFormado() throws Exception {
+        // Arrange
+        var request = request("Bearer basura");
+        var response = new MockHttpServletResponse();
+        when(jwtService.verifyToken("basura")).thenThrow(new JWTDecodeException("basura"));
+
+        // Act
+        filter.doFilter(request, response, filterChain);
+
+        // Assert
+        assertEquals(401, response.getStatus());
+
+        // Verify
+        verify(filterChain, never()).doFilter(any(), any());
+    }
+
+    @Test
+    void doFilter_RolesDelUsuarioNoDelToken() throws Exception {
+        // Arrange: el token dice ADMIN pero el usuario vigente solo es USER
+        String tokenConClaims = tokenConClaims(1000L);
+        var request = request("Bearer " + tokenConClaims);
+        var response = new MockHttpServletResponse();
+        when(jwtService.verifyToken(tokenConClaims)).thenReturn(JWT.decode(tokenConClaims));
+        when(userVersionRegistry.current("test", 1000L)).thenReturn(Optional.of(user));
+
+        // Act
+        filter.doFilter(request, response, filterChain);
+
+        // Assert
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertAll(
+                () -> assertEquals(user, authentication.getPrincipal()),
+                () -> assertEquals(List.of("ROLE_USER"), authentication.getAuthorities().stream().map(Object::toString).toList())
+        );
+    }
+
+    @Test
+    void doFilter_UsuarioBorradoNoSeAutentica() throws Exception {
+        // Arrange
+        String tokenConClaims = tokenConClaims(1000L);
+        var request = request("Bearer " + tokenConClaims);
+        var response = new MockHttpServletResponse();
+        when(jwtService.verifyToken(tokenConClaims)).thenReturn(JWT.decode(tokenConClaims));
+        when(userVersionRegistry.current("test", 1000L)).thenReturn(Optional.empty());
+
+        // Act
+        filter.doFilter(request, response, filterChain);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(401, response.getStatus()),
+                () -> assertNull(SecurityContextHolder.getContext().getAuthentication())
+        );
+
+        // Verify
+        verify(filterChain, never()).doFilter(any(), any());
+    }
+
+    private String tokenConClaims(long version) {
+        return JWT.create()
+                .withSubject("test")
+                .withClaim("roles", List.of("ADMIN"))
+                .withClaim(JwtService.VERSION_CLAIM, version)
+                .sign(Algorithm.HMAC512("clave"));
+    }
+
+    private MockHttpServletRequest request(String authorization) {
+        var request = new MockHttpServletRequest("GET", "/v1/funkos");
+        request.addHeader("Authorization", authorization);
+        return request;
+    }
+}
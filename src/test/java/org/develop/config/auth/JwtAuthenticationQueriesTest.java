@@ -0,0 +1,139 @@
+package org.develop.config.auth;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import jakarta.persistence.EntityManagerFactory;
+import org.develop.rest.auth.repositories.AuthUsersRepository;
+import org.develop.rest.auth.services.jwt.JwtService;
+import org.develop.rest.auth.services.users.UserVersionRegistry;
+import org.develop.rest.users.models.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Base64;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Cuenta las consultas a la base de datos que hace el filtro de autenticación por petición.
+ * Un usuario ya leído se guarda un tiempo, solo se vuelve a leer si cambia o si el token es de una versión posterior.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+class JwtAuthenticationQueriesTest {
+    private final String myEndpoint = "/v1/metrics/websockets";
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JwtService jwtService;
+    @Autowired
+    private AuthUsersRepository authUsersRepository;
+    @Autowired
+    private UserVersionRegistry userVersionRegistry;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Value("${jwt.secret}")
+    private String jwtSecret;
+
+    private Statistics statistics;
+    private User admin;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        admin = authUsersRepository.findByUsername("admin").orElseThrow();
+        statistics.clear();
+    }
+
+    @Test
+    void tokenConVersion_SoloConsultaLaPrimeraPeticion() throws Exception {
+        // Arrange
+        String token = jwtService.generateToken(admin);
+        userVersionRegistry.changed("admin");
+
+        // Act
+        int primera = peticion(token);
+        long consultasPrimera = statistics.getPrepareStatementCount();
+        statistics.clear();
+        int segunda = peticion(token);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(200, primera),
+                () -> assertTrue(consultasPrimera > 0),
+                () -> assertEquals(200, segunda),
+                () -> assertEquals(0, statistics.getPrepareStatementCount())
+        );
+    }
+
+    @Test
+    void tokenSinVersion_SeAutenticaConElUsuarioGuardado() throws Exception {
+        // Arrange: token como los que se firmaban antes de incluir la versión
+        String token = JWT.create()
+                .withSubject("admin")
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60000))
+                .sign(Algorithm.HMAC512(Base64.getEncoder().encode(jwtSecret.getBytes())));
+        peticion(token);
+        statistics.clear();
+
+        // Act
+        int status = peticion(token);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(200, status),
+                () -> assertEquals(0, statistics.getPrepareStatementCount())
+        );
+    }
+
+    @Test
+    void tokenPosteriorAlUsuarioGuardado_ConsultaElUsuario() throws Exception {
+        // Arrange
+        peticion(jwtService.generateToken(admin));
+        statistics.clear();
+        admin.setUpdatedAt(admin.getUpdatedAt().plusSeconds(1));
+        String token = jwtService.generateToken(admin);
+
+        // Act
+        int status = peticion(token);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(200, status),
+                () -> assertTrue(statistics.getPrepareStatementCount() > 0)
+        );
+    }
+
+    @Test
+    void usuarioCambiado_ConsultaElUsuario() throws Exception {
+        // Arrange
+        String token = jwtService.generateToken(admin);
+        peticion(token);
+        statistics.clear();
+        userVersionRegistry.changed("admin");
+
+        // Act
+        int status = peticion(token);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(200, status),
+                () -> assertTrue(statistics.getPrepareStatementCount() > 0)
+        );
+    }
+
+    private int peticion(String token) throws Exception {
+        return mockMvc.perform(get(myEndpoint).header("Authorization", "Bearer " + token))
+                .andReturn().getResponse().getStatus();
+    }
+}
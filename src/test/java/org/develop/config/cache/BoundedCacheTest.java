@@ -0,0 +1,231 @@
+package org.develop.config.cache;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedCacheTest {
+    private final AtomicLong reloj = new AtomicLong();
+
+    @Test
+    void put_ExpulsaLaMenosUsadaAlSuperarElMaximo() {
+        // Arrange
+        BoundedCache cache = new BoundedCache("pedidos", 2, 0, 0, reloj::get);
+        cache.put(1L, "uno");
+        cache.put(2L, "dos");
+        cache.get(1L);
+
+        // Act
+        cache.put(3L, "tres");
+
+        // Assert
+        assertAll(
+                () -> assertEquals(2, cache.size()),
+                () -> assertNotNull(cache.get(1L)),
+                () -> assertNull(cache.get(2L)),
+                () -> assertNotNull(cache.get(3L)),
+                () -> assertEquals(1, cache.stats().evictions())
+        );
+    }
+
+    @Test
+    void get_EntradaCaducada() {
+        // Arrange
+        BoundedCache cache = new BoundedCache("pedidos", 10, 1000, 0, reloj::get);
+        cache.put(1L, "uno");
+
+        // Act
+        reloj.set(999);
+        Cache.ValueWrapper antes = cache.get(1L);
+        reloj.set(1000);
+        Cache.ValueWrapper despues = cache.get(1L);
+
+        // Assert
+        assertAll(
+                () -> assertEquals("uno", antes.get()),
+                () -> assertNull(despues),
+                () -> assertEquals(0, cache.size()),
+                () -> assertEquals(1, cache.stats().hits()),
+                () -> assertEquals(1, cache.stats().misses())
+        );
+    }
+
+    @Test
+    void get_RecargaSoloUnLlamanteYElRestoLeeElValorAnterior() {
+        // Arrange
+        BoundedCache cache = new BoundedCache("categorias", 10, 0, 100, reloj::get);
+        cache.put("a", "viejo");
+        reloj.set(100);
+
+        // Act
+        Cache.ValueWrapper primero = cache.get("a");
+        Cache.ValueWrapper segundo = cache.get("a");
+        cache.put("a", "nuevo");
+        Cache.ValueWrapper tercero = cache.get("a");
+
+        // Assert
+        assertAll(
+                () -> assertNull(primero),
+                () -> assertEquals("viejo", segundo.get()),
+                () -> assertEquals("nuevo", tercero.get())
+        );
+    }
+
+    @Test
+    void get_RecargaFallidaLaPuedeReintentarOtroLlamante() {
+        // Arrange
+        BoundedCache cache = new BoundedCache("categorias", 10, 0, 100, reloj::get);
+        cache.put("a", "viejo");
+        reloj.set(100);
+
+        // Act
+        assertThrows(Cache.ValueRetrievalException.class, () -> cache.get("a", () -> {
+            throw new IllegalStateException("Base de datos caída");
+        }));
+        Cache.ValueWrapper reintento = cache.get("a");
+        Cache.ValueWrapper resto = cache.get("a");
+
+        // Assert
+        assertAll(
+                () -> assertNull(reintento),
+                () -> assertEquals("viejo", resto.get())
+        );
+    }
+
+    @Test
+    void get_RecargaQueNoLlegaLaIntentaOtroLlamante() {
+        // Arrange
+        BoundedCache cache = new BoundedCache("categorias", 10, 0, 100, reloj::get);
+        cache.put("a", "viejo");
+        reloj.set(100);
+        // Este llamante se queda con la recarga y nunca guarda el nuevo valor
+        cache.get("a");
+
+        // Act
+        reloj.set(150);
+        Cache.ValueWrapper mientras = cache.get("a");
+        reloj.set(200);
+        Cache.ValueWrapper despues = cache.get("a");
+
+        // Assert
+        assertAll(
+                () -> assertEquals("viejo", mientras.get()),
+                () -> assertNull(despues)
+        );
+    }
+
+    @Test
+    void get_ConCargadorCargaUnaSolaVezConVariosHilos() throws Exception {
+        // Arrange
+        BoundedCache cache = new BoundedCache("users", 10, 0, 0, reloj::get);
+        AtomicInteger cargas = new AtomicInteger();
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService hilos = Executors.newFixedThreadPool(8);
+        List<Future<String>> resultados = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 8; i++) {
+            resultados.add(hilos.submit(() -> {
+                salida.await();
+                return cache.get(1L, () -> {
+                    cargas.incrementAndGet();
+                    Thread.sleep(50);
+                    return "uno";
+                });
+            }));
+        }
+        salida.countDown();
+        for (Future<String> resultado : resultados) {
+            assertEquals("uno", resultado.get());
+        }
+        hilos.shutdown();
+
+        // Assert
+        assertEquals(1, cargas.get());
+    }
+
+    @Test
+    void get_ConCargadorGuardaElValor() {
+        // Arrange
+        BoundedCache cache = new BoundedCache("users", 10, 0, 0, reloj::get);
+
+        // Act
+        String cargado = cache.get(1L, () -> "uno");
+        String guardado = cache.get(1L, () -> "otro");
+
+        // Assert
+        assertAll(
+                () -> assertEquals("uno", cargado),
+                () -> assertEquals("uno", guardado),
+                () -> assertEquals(1, cache.stats().hits())
+        );
+    }
+
+    @Test
+    void put_MillonDeIdsDistintosNoSuperaElMaximo() {
+        // Arrange
+        int maximo = 10_000;
+        int ids = 1_000_000;
+        BoundedCache cache = new BoundedCache("pedidos", maximo, 0, 0, reloj::get);
+        long heapAntes = heapUsado();
+
+        // Act
+        for (int i = 0; i < ids; i++) {
+            ObjectId id = new ObjectId();
+            cache.put(id, id.toHexString());
+            cache.get(id);
+        }
+
+        // Assert
+        // Diez mil entradas ocupan unos pocos MB, el millón sin límite pasaría de 100 MB
+        long heapRetenido = heapUsado() - heapAntes;
+        assertAll(
+                () -> assertEquals(maximo, cache.size()),
+                () -> assertEquals(ids - maximo, cache.stats().evictions()),
+                () -> assertEquals(ids, cache.stats().hits()),
+                () -> assertTrue(heapRetenido < 32 * 1024 * 1024, "Heap retenido: " + heapRetenido)
+        );
+    }
+
+    @Test
+    void cacheManager_LeeLosLimitesDeCadaCache() {
+        // Arrange
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("cache.default.maximum-size", "5")
+                .withProperty("cache.pedidos.maximum-size", "2");
+        BoundedCacheManager manager = new BoundedCacheManager(environment);
+
+        // Act
+        Cache pedidos = manager.getCache("pedidos");
+        Cache users = manager.getCache("users");
+
+        // Assert
+        assertAll(
+                () -> assertSame(pedidos, manager.getCache("pedidos")),
+                () -> assertEquals(2, manager.stats().get(0).maximumSize()),
+                () -> assertEquals("pedidos", manager.stats().get(0).name()),
+                () -> assertEquals(5, manager.stats().get(1).maximumSize()),
+                () -> assertEquals(users, manager.getCache("users"))
+        );
+    }
+
+    private static long heapUsado() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,83 @@
+package org.develop.config.websockets;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebSocketCoalescerTest {
+    private final List<String> lotes = new CopyOnWriteArrayList<>();
+    private WebSocketCoalescer coalescer;
+
+    @AfterEach
+    void tearDown() {
+        coalescer.shutdown();
+    }
+
+    @Test
+    void add_AgrupaPorClaveQuedandoseConElUltimo() {
+        // Arrange
+        coalescer = new WebSocketCoalescer(60000, lotes::add);
+
+        // Act
+        coalescer.add("1", "{\"id\":1,\"v\":1}");
+        coalescer.add("2", "{\"id\":2,\"v\":1}");
+        coalescer.add("1", "{\"id\":1,\"v\":2}");
+        coalescer.flush();
+
+        // Assert
+        assertAll(
+                () -> assertEquals(1, lotes.size()),
+                () -> assertEquals("[{\"id\":2,\"v\":1},{\"id\":1,\"v\":2}]", lotes.get(0))
+        );
+    }
+
+    @Test
+    void add_EnviaAlCerrarLaVentana() throws Exception {
+        // Arrange
+        coalescer = new WebSocketCoalescer(50, lotes::add);
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            coalescer.add(String.valueOf(i % 10), "{\"id\":" + (i % 10) + "}");
+        }
+
+        // Assert
+        long limite = System.currentTimeMillis() + 5000;
+        while (lotes.isEmpty() && System.currentTimeMillis() < limite) {
+            Thread.sleep(10);
+        }
+        assertAll(
+                () -> assertEquals(1, lotes.size()),
+                () -> assertEquals(10, lotes.get(0).split(",").length)
+        );
+    }
+
+    @Test
+    void add_SinVentanaEnviaCadaNotificacion() {
+        // Arrange
+        coalescer = new WebSocketCoalescer(0, lotes::add);
+
+        // Act
+        coalescer.add("1", "{\"id\":1}");
+        coalescer.add("1", "{\"id\":1}");
+
+        // Assert
+        assertEquals(List.of("[{\"id\":1}]", "[{\"id\":1}]"), lotes);
+    }
+
+    @Test
+    void flush_SinNotificacionesNoEnviaNada() {
+        // Arrange
+        coalescer = new WebSocketCoalescer(50, lotes::add);
+
+        // Act
+        coalescer.flush();
+
+        // Assert
+        assertTrue(lotes.isEmpty());
+    }
+}
@@ -0,0 +1,246 @@
+package org.develop.config.websockets;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class WebSocketDispatcherTest {
+    private WebSocketDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void broadcast_EnviaATodasLasSesionesEnOrden() throws Exception {
+        // Arrange
+        dispatcher = new WebSocketDispatcher(100, 2, 5000, 1024, WebSocketDispatcher.OverflowPolicy.DROP);
+        List<String> recibidos1 = new CopyOnWriteArrayList<>();
+        List<String> recibidos2 = new CopyOnWriteArrayList<>();
+        dispatcher.register(session("1", recibidos1, null));
+        dispatcher.register(session("2", recibidos2, null));
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            dispatcher.broadcast("mensaje " + i);
+        }
+
+        // Assert
+        esperar(() -> recibidos1.size() == 10 && recibidos2.size() == 10);
+        List<String> esperados = IntStream.range(0, 10).mapToObj(i -> "mensaje " + i).toList();
+        assertAll(
+                () -> assertEquals(esperados, recibidos1),
+                () -> assertEquals(esperados, recibidos2),
+                () -> assertEquals(20, dispatcher.stats().sent()),
+                () -> assertEquals(0, dispatcher.stats().queueDepth())
+        );
+    }
+
+    @Test
+    void broadcast_ClienteLentoNoBloqueaAlResto() throws Exception {
+        // Arrange
+        dispatcher = new WebSocketDispatcher(100, 2, 60000, 20, WebSocketDispatcher.OverflowPolicy.DROP);
+        CountDownLatch bloqueo = new CountDownLatch(1);
+        List<String> recibidosLento = new CopyOnWriteArrayList<>();
+        List<String> recibidosRapido = new CopyOnWriteArrayList<>();
+        dispatcher.register(session("lento", recibidosLento, bloqueo));
+        dispatcher.register(session("rapido", recibidosRapido, null));
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            dispatcher.broadcast("mensaje " + i);
+        }
+
+        // Assert
+        // El rápido recibe hasta el último mensaje aunque el lento siga bloqueado
+        esperar(() -> recibidosRapido.contains("mensaje 9"));
+        esperar(() -> dispatcher.stats().droppedSlowConsumer() > 0);
+        bloqueo.countDown();
+        esperar(() -> recibidosLento.contains("mensaje 9"));
+        assertAll(
+                () -> assertTrue(recibidosLento.size() < 10),
+                () -> assertEquals(0, dispatcher.stats().closedSlowConsumer())
+        );
+    }
+
+    @Test
+    void broadcast_PoliticaCloseCierraAlClienteLento() throws Exception {
+        // Arrange
+        dispatcher = new WebSocketDispatcher(100, 2, 60000, 20, WebSocketDispatcher.OverflowPolicy.CLOSE);
+        CountDownLatch bloqueo = new CountDownLatch(1);
+        WebSocketSession lenta = session("lento", new CopyOnWriteArrayList<>(), bloqueo);
+        dispatcher.register(lenta);
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            dispatcher.broadcast("mensaje " + i);
+        }
+
+        // Assert
+        esperar(() -> dispatcher.stats().closedSlowConsumer() == 1);
+        bloqueo.countDown();
+        verify(lenta, timeout(1000).times(1)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(0, dispatcher.stats().sessions());
+    }
+
+    @Test
+    void envioBloqueado_ElVigilanteCierraLaSesionYLiberaElHilo() throws Exception {
+        // Arrange
+        // Un solo hilo de envío: si se quedara retenido el rápido no recibiría nada
+        dispatcher = new WebSocketDispatcher(100, 1, 100, 1024, WebSocketDispatcher.OverflowPolicy.DROP);
+        CountDownLatch bloqueo = new CountDownLatch(1);
+        WebSocketSession lenta = session("lento", new CopyOnWriteArrayList<>(), bloqueo);
+        List<String> recibidosRapido = new CopyOnWriteArrayList<>();
+        dispatcher.register(lenta);
+        dispatcher.register(session("rapido", recibidosRapido, null));
+
+        // Act
+        dispatcher.broadcast("mensaje");
+
+        // Assert
+        esperar(() -> recibidosRapido.contains("mensaje"));
+        verify(lenta, timeout(1000).times(1)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertAll(
+                () -> assertEquals(1, dispatcher.stats().closedSlowConsumer()),
+                () -> assertEquals(1, dispatcher.stats().sessions())
+        );
+        bloqueo.countDown();
+    }
+
+    @Test
+    void unregister_NoRecibeMasMensajes() throws Exception {
+        // Arrange
+        dispatcher = new WebSocketDispatcher(100, 2, 5000, 1024, WebSocketDispatcher.OverflowPolicy.DROP);
+        List<String> recibidos = new CopyOnWriteArrayList<>();
+        WebSocketSession session = session("1", recibidos, null);
+        dispatcher.register(session);
+
+        // Act
+        dispatcher.unregister(session);
+        dispatcher.broadcast("mensaje");
+
+        // Assert
+        esperar(() -> dispatcher.stats().queueDepth() == 0);
+        assertAll(
+                () -> assertTrue(recibidos.isEmpty()),
+                () -> assertEquals(0, dispatcher.stats().sessions())
+        );
+    }
+
+    @Test
+    void broadcast_CodificaUnaVezParaTodasLasSesiones() throws Exception {
+        // Arrange
+        dispatcher = new WebSocketDispatcher(100, 4, 5000, 1024, WebSocketDispatcher.OverflowPolicy.DROP);
+        // Se guarda la identidad de cada frame recibido, no su contenido
+        Set<Integer> frames = ConcurrentHashMap.newKeySet();
+        AtomicInteger recibidos = new AtomicInteger();
+        int sesiones = 10_000;
+        for (int i = 0; i < sesiones; i++) {
+            WebSocketSession session = mock(WebSocketSession.class, withSettings().stubOnly());
+            when(session.getId()).thenReturn(String.valueOf(i));
+            when(session.isOpen()).thenReturn(true);
+            doAnswer(invocation -> {
+                frames.add(System.identityHashCode(invocation.getArgument(0)));
+                recibidos.incrementAndGet();
+                return null;
+            }).when(session).sendMessage(any());
+            dispatcher.register(session);
+        }
+
+        // Act
+        dispatcher.broadcast("{\"entity\":\"FUNKOS\"}");
+
+        // Assert
+        esperar(() -> recibidos.get() == sesiones);
+        assertAll(
+                () -> assertEquals(1, frames.size()),
+                () -> assertEquals(sesiones, dispatcher.stats().sent())
+        );
+    }
+
+    @Test
+    void heartbeat_SoloParaSesionesSinMensajesPendientes() throws Exception {
+        // Arrange
+        dispatcher = new WebSocketDispatcher(100, 2, 60000, 1024, WebSocketDispatcher.OverflowPolicy.DROP);
+        CountDownLatch bloqueo = new CountDownLatch(1);
+        List<String> recibidosLento = new CopyOnWriteArrayList<>();
+        List<String> recibidosRapido = new CopyOnWriteArrayList<>();
+        dispatcher.register(session("lento", recibidosLento, bloqueo));
+        dispatcher.register(session("rapido", recibidosRapido, null));
+        dispatcher.broadcast("mensaje 0");
+        dispatcher.broadcast("mensaje 1");
+        esperar(() -> recibidosRapido.size() == 2);
+
+        // Act
+        dispatcher.heartbeat("latido");
+
+        // Assert
+        esperar(() -> recibidosRapido.contains("latido"));
+        bloqueo.countDown();
+        esperar(() -> recibidosLento.size() == 2);
+        assertEquals(List.of("mensaje 0", "mensaje 1"), recibidosLento);
+    }
+
+    @Test
+    void broadcastBatch_SoloParaSesionesConSubprotocoloDeLotes() throws Exception {
+        // Arrange
+        dispatcher = new WebSocketDispatcher(100, 2, 5000, 1024, WebSocketDispatcher.OverflowPolicy.DROP);
+        List<String> recibidosEventos = new CopyOnWriteArrayList<>();
+        List<String> recibidosLotes = new CopyOnWriteArrayList<>();
+        WebSocketSession sessionLotes = session("lotes", recibidosLotes, null);
+        when(sessionLotes.getAcceptedProtocol()).thenReturn(WebSocketHandler.BATCH_SUBPROTOCOL);
+        dispatcher.register(session("eventos", recibidosEventos, null));
+        dispatcher.register(sessionLotes);
+
+        // Act
+        dispatcher.broadcast("{\"id\":1}");
+        dispatcher.broadcast("{\"id\":2}");
+        dispatcher.broadcastBatch("[{\"id\":1},{\"id\":2}]");
+
+        // Assert
+        esperar(() -> recibidosEventos.size() == 2 && recibidosLotes.size() == 1);
+        assertAll(
+                () -> assertEquals(List.of("{\"id\":1}", "{\"id\":2}"), recibidosEventos),
+                () -> assertEquals(List.of("[{\"id\":1},{\"id\":2}]"), recibidosLotes)
+        );
+    }
+
+    private WebSocketSession session(String id, List<String> recibidos, CountDownLatch bloqueo) throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        lenient().when(session.isOpen()).thenReturn(true);
+        lenient().doAnswer(invocation -> {
+            if (bloqueo != null) {
+                bloqueo.await(10, TimeUnit.SECONDS);
+            }
+            recibidos.add(((TextMessage) invocation.getArgument(0)).getPayload());
+            return null;
+        }).when(session).sendMessage(any());
+        return session;
+    }
+
+    private void esperar(BooleanSupplier condicion) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 5000;
+        while (!condicion.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < limite, "Tiempo de espera agotado");
+            Thread.sleep(10);
+        }
+    }
+}
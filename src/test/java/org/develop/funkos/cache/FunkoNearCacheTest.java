@@ -0,0 +1,125 @@
+package org.develop.funkos.cache;
+
+import org.develop.notifications.bus.LocalNotificationBus;
+import org.develop.notifications.bus.NotificationBus;
+import org.develop.notifications.bus.NotificationEvent;
+import org.develop.rest.funkos.cache.FunkoNearCache;
+import org.develop.rest.funkos.cache.FunkoSharedCache;
+import org.develop.rest.funkos.cache.LocalFunkoSharedCache;
+import org.develop.rest.funkos.models.Funko;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FunkoNearCacheTest {
+    private final Funko funko1 = Funko.builder().id(1L).nombre("Funko 1").cantidad(10).precio(19.99).build();
+    private final Funko funko2 = Funko.builder().id(2L).nombre("Funko 2").cantidad(5).precio(14.99).build();
+
+    private NotificationBus notificationBus;
+    private FunkoSharedCache shared;
+    private FunkoNearCache funkoCache;
+    private final AtomicInteger lecturas = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        notificationBus = new LocalNotificationBus();
+        shared = new LocalFunkoSharedCache();
+        funkoCache = new FunkoNearCache(new ConcurrentMapCacheManager(), notificationBus, shared);
+    }
+
+    @Test
+    void findById_LeeUnaVezYGuardaEnLosDosNiveles() {
+        // Act
+        Optional<Funko> primera = funkoCache.findById(1L, this::leer);
+        Optional<Funko> segunda = funkoCache.findById(1L, this::leer);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(funko1, primera.orElseThrow()),
+                () -> assertSame(primera.orElseThrow(), segunda.orElseThrow()),
+                () -> assertTrue(shared.get(1L).isPresent()),
+                () -> assertEquals(1, lecturas.get())
+        );
+    }
+
+    @Test
+    void findById_OtroNodoLeeDelNivelCompartido() {
+        // Arrange
+        funkoCache.findById(1L, this::leer);
+        FunkoNearCache otroNodo = new FunkoNearCache(new ConcurrentMapCacheManager(), notificationBus, shared);
+
+        // Act
+        Optional<Funko> res = otroNodo.findById(1L, this::leer);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(funko1, res.orElseThrow()),
+                () -> assertEquals(1, lecturas.get())
+        );
+    }
+
+    @Test
+    void invalidate_DescartaEnTodosLosNodos() {
+        // Arrange
+        FunkoNearCache otroNodo = new FunkoNearCache(new ConcurrentMapCacheManager(), notificationBus, null);
+        funkoCache.findById(1L, this::leer);
+        otroNodo.findById(1L, this::leer);
+
+        // Act
+        funkoCache.invalidate(1L);
+        otroNodo.findById(1L, this::leer);
+
+        // Assert
+        assertAll(
+                () -> assertTrue(shared.get(1L).isEmpty()),
+                () -> assertEquals(3, lecturas.get())
+        );
+    }
+
+    @Test
+    void findById_NoGuardaLoLeidoAntesDeUnaInvalidacion() {
+        // Act
+        // La invalidación llega mientras se está leyendo de la base de datos
+        Optional<Funko> leido = funkoCache.findById(1L, id -> {
+            notificationBus.publish(new NotificationEvent(FunkoNearCache.INVALIDATION_ENTITY, "1", ""));
+            return leer(id);
+        });
+        funkoCache.findById(1L, this::leer);
+
+        // Assert
+        assertAll(
+                () -> assertTrue(leido.isPresent()),
+                () -> assertEquals(2, lecturas.get())
+        );
+    }
+
+    @Test
+    void findAllById_SoloLeeLosQueFaltan() {
+        // Arrange
+        funkoCache.findById(1L, this::leer);
+        AtomicInteger pedidos = new AtomicInteger();
+
+        // Act
+        List<Funko> res = funkoCache.findAllById(List.of(1L, 2L), ids -> {
+            pedidos.addAndGet(ids.size());
+            return ids.stream().map(this::leer).flatMap(Optional::stream).toList();
+        });
+
+        // Assert
+        assertAll(
+                () -> assertEquals(List.of(funko1, funko2), res),
+                () -> assertEquals(1, pedidos.get())
+        );
+    }
+
+    private Optional<Funko> leer(Long id) {
+        lecturas.incrementAndGet();
+        return id == 1L ? Optional.of(funko1) : id == 2L ? Optional.of(funko2) : Optional.empty();
+    }
+}
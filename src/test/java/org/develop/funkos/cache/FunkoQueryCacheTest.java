@@ -0,0 +1,110 @@
+package org.develop.funkos.cache;
+
+import org.develop.notifications.bus.LocalNotificationBus;
+import org.develop.notifications.bus.NotificationBus;
+import org.develop.rest.categorias.models.Categoria;
+import org.develop.rest.funkos.cache.FunkoNearCache;
+import org.develop.rest.funkos.cache.FunkoQuery;
+import org.develop.rest.funkos.cache.FunkoQueryCache;
+import org.develop.rest.funkos.models.Funko;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FunkoQueryCacheTest {
+    private final Categoria otros = new Categoria(1L, "OTROS", LocalDateTime.now(), LocalDateTime.now(), true);
+    private final Categoria disney = new Categoria(2L, "DISNEY", LocalDateTime.now(), LocalDateTime.now(), true);
+    private final Funko funko1 = Funko.builder().id(1L).nombre("Funko 1").cantidad(10).categoria(otros).build();
+    private final Funko funko2 = Funko.builder().id(2L).nombre("Funko 2").cantidad(5).categoria(disney).build();
+    private final Pageable pageable = PageRequest.of(0, 10, Sort.by("id"));
+
+    private NotificationBus notificationBus;
+    private FunkoQueryCache queryCache;
+    private final AtomicInteger consultas = new AtomicInteger();
+    private final AtomicInteger lecturas = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        notificationBus = new LocalNotificationBus();
+        FunkoNearCache funkoCache = new FunkoNearCache(new ConcurrentMapCacheManager(), notificationBus, null);
+        queryCache = new FunkoQueryCache(new ConcurrentMapCacheManager(), funkoCache, notificationBus, 30000, 0);
+    }
+
+    @Test
+    void findAll_SegundaConsultaSinBaseDeDatos() {
+        // Arrange
+        FunkoQuery query = FunkoQuery.of(1L, Optional.of("Funko"), Optional.empty(), Optional.empty(), Optional.of(true), pageable);
+
+        // Act
+        queryCache.findAll(query, () -> consultar(funko1), this::leer);
+        Page<Funko> res = queryCache.findAll(FunkoQuery.of(1L, Optional.of("FUNKO"), Optional.empty(), Optional.empty(), Optional.of(true), pageable),
+                () -> consultar(funko1), this::leer);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(List.of(funko1), res.getContent()),
+                () -> assertEquals(1, consultas.get()),
+                () -> assertEquals(0, lecturas.get())
+        );
+    }
+
+    @Test
+    void invalidate_SoloLasConsultasDeLaCategoria() {
+        // Arrange
+        FunkoQuery deOtros = FunkoQuery.of(1L, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), pageable);
+        FunkoQuery deDisney = FunkoQuery.of(2L, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), pageable);
+        FunkoQuery todas = FunkoQuery.of(null, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), pageable);
+        queryCache.findAll(deOtros, () -> consultar(funko1), this::leer);
+        queryCache.findAll(deDisney, () -> consultar(funko2), this::leer);
+        queryCache.findAll(todas, () -> consultar(funko1, funko2), this::leer);
+
+        // Act
+        queryCache.invalidate(List.of(2L));
+        queryCache.findAll(deOtros, () -> consultar(funko1), this::leer);
+        queryCache.findAll(deDisney, () -> consultar(funko2), this::leer);
+        queryCache.findAll(todas, () -> consultar(funko1, funko2), this::leer);
+
+        // Assert
+        // Se repiten la de DISNEY y la de todas las categorías
+        assertEquals(5, consultas.get());
+    }
+
+    @Test
+    void findAll_ConsultasPorStockCaducanAntes() {
+        // Arrange
+        FunkoQuery porStock = FunkoQuery.of(null, Optional.empty(), Optional.empty(), Optional.of(10), Optional.empty(), pageable);
+
+        // Act
+        queryCache.findAll(porStock, () -> consultar(funko1), this::leer);
+        queryCache.findAll(porStock, () -> consultar(funko1), this::leer);
+
+        // Assert
+        assertAll(
+                () -> assertTrue(porStock.dependeDelStock()),
+                () -> assertEquals(2, consultas.get())
+        );
+    }
+
+    private Page<Funko> consultar(Funko... funkos) {
+        consultas.incrementAndGet();
+        return new PageImpl<>(List.of(funkos), pageable, funkos.length);
+    }
+
+    private List<Funko> leer(Collection<Long> ids) {
+        lecturas.incrementAndGet();
+        return List.of(funko1, funko2).stream().filter(f -> ids.contains(f.getId())).toList();
+    }
+}
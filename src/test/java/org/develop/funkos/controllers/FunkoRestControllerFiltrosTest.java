@@ -0,0 +1,87 @@
+package org.develop.funkos.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.develop.rest.categorias.models.Categoria;
+import org.develop.rest.categorias.repositories.CategoriasRepository;
+import org.develop.rest.funkos.models.Funko;
+import org.develop.rest.funkos.repositories.FunkosRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Filtros del catálogo contra la base de datos, sin simular el servicio:
+ * los tres listados tienen que devolver los mismos Funkos para los mismos filtros.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@WithMockUser(username = "admin", password = "admin", roles = {"ADMIN", "USER"})
+class FunkoRestControllerFiltrosTest {
+    private final String myEndpoint = "/v1/funkos";
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Autowired
+    private MockMvc mockMv;
+    @Autowired
+    private FunkosRepository funkosRepository;
+    @Autowired
+    private CategoriasRepository categoriasRepository;
+
+    private List<Funko> funkos;
+
+    @BeforeEach
+    void setUp() {
+        Categoria categoria = categoriasRepository.findById(1L).orElseThrow();
+        funkos = funkosRepository.saveAll(List.of(
+                new Funko(null, "FILTRO-12", 9.99, 12, "test.jpg", LocalDateTime.now(), LocalDateTime.now(), true, categoria),
+                new Funko(null, "FILTRO-50", 9.99, 50, "test.jpg", LocalDateTime.now(), LocalDateTime.now(), true, categoria),
+                new Funko(null, "FILTRO-75", 9.99, 75, "test.jpg", LocalDateTime.now(), LocalDateTime.now(), true, categoria)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        funkosRepository.deleteAll(funkos);
+    }
+
+    @Test
+    void getAllFunkos_CantidadMinEsElMinimoIncluido() throws Exception {
+        // Act
+        List<JsonNode> paginado = contenido(myEndpoint + "?nombre=filtro-&cantidadMin=50");
+        List<JsonNode> sinTotal = contenido(myEndpoint + "?nombre=filtro-&cantidadMin=50&withTotal=false");
+        List<JsonNode> porCursor = contenido(myEndpoint + "?nombre=filtro-&cantidadMin=50&after=");
+
+        // Assert
+        List<String> nombres = nombres(paginado);
+        assertAll(
+                () -> assertEquals(List.of("FILTRO-50", "FILTRO-75"), nombres, "50 está incluido y 12 por debajo del mínimo"),
+                () -> assertEquals(nombres, nombres(sinTotal)),
+                () -> assertEquals(nombres, nombres(porCursor))
+        );
+    }
+
+    private List<JsonNode> contenido(String url) throws Exception {
+        var response = mockMv.perform(get(url).accept(MediaType.APPLICATION_JSON)).andReturn().getResponse();
+        assertEquals(200, response.getStatus(), url);
+        List<JsonNode> contenido = new ArrayList<>();
+        mapper.readTree(response.getContentAsString()).get("content").forEach(contenido::add);
+        return contenido;
+    }
+
+    private static List<String> nombres(List<JsonNode> funkos) {
+        return funkos.stream().map(funko -> funko.get("nombre").asText()).toList();
+    }
+}
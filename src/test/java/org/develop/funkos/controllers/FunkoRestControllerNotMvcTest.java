@@ -7,19 +7,24 @@ import org.develop.rest.funkos.dto.FunkoUpdateDto;
 import org.develop.rest.funkos.exceptions.FunkoNotFound;
 import org.develop.rest.funkos.models.Funko;
 import org.develop.rest.funkos.services.FunkosService;
+import org.develop.utils.http.ConditionalRequestUtils;
 import org.develop.utils.pagination.PageResponse;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -35,11 +40,14 @@ import static org.mockito.Mockito.*;
 class FunkoRestControllerNotMvcTest {
     @Mock
     private FunkosService funkoService;
+    @Spy
+    private ConditionalRequestUtils conditionalRequestUtils = new ConditionalRequestUtils();
     @InjectMocks
     private FunkoRestController funkoController;
     private final Categoria categoria = new Categoria(1L, "OTROS", LocalDateTime.now(), LocalDateTime.now(), true);
     private final Funko funko1 = new Funko(1L, "TEST-1", 19.99, 100, "test1.jpg", LocalDateTime.now(), LocalDateTime.now(), true, categoria);
     private final Funko funko2 = new Funko(2L, "TEST-2", 14.99, 59, "test2.jpg", LocalDateTime.now(), LocalDateTime.now(), true, categoria);
+    private final ServletWebRequest request = new ServletWebRequest(new MockHttpServletRequest(), new MockHttpServletResponse());
 
     @Test
     void getAllProducts() {
@@ -51,7 +59,7 @@ class FunkoRestControllerNotMvcTest {
         when(funkoService.findAll(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(),  pageable)).thenReturn(page);
 
 
-        ResponseEntity<PageResponse<Funko>> responseEntity  = funkoController.getAllFunks(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), 0 , 10, "id", "asc");
+        ResponseEntity<PageResponse<Funko>> responseEntity  = funkoController.getAllFunks(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), 0 , 10, "id", "asc", request);
 
         // Assert
         assertEquals(200, responseEntity.getStatusCode().value());
@@ -73,7 +81,7 @@ class FunkoRestControllerNotMvcTest {
         when(funkoService.findAll(nombre, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(),  pageable)).thenReturn(page);
 
 
-        ResponseEntity<PageResponse<Funko>> responseEntity  = funkoController.getAllFunks(nombre, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), 0 , 10, "id", "asc");
+        ResponseEntity<PageResponse<Funko>> responseEntity  = funkoController.getAllFunks(nombre, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), 0 , 10, "id", "asc", request);
 
         // Assert
         assertEquals(200, responseEntity.getStatusCode().value());
@@ -92,7 +100,7 @@ class FunkoRestControllerNotMvcTest {
 
         when(funkoService.findById(id)).thenReturn(funko2);
 
-        ResponseEntity<Funko> responseEntity = funkoController.getFunkoById(id);
+        ResponseEntity<Funko> responseEntity = funkoController.getFunkoById(id, request);
 
         // Assert
         assertAll(
@@ -114,7 +122,7 @@ class FunkoRestControllerNotMvcTest {
         when(funkoService.findById(id)).thenThrow(new FunkoNotFound(id));
 
         // Act
-        var result = assertThrows(FunkoNotFound.class, () -> funkoController.getFunkoById(id));
+        var result = assertThrows(FunkoNotFound.class, () -> funkoController.getFunkoById(id, request));
         assertEquals("Funko con id 100 no encontrado", result.getMessage());
 
         // Verify
@@ -163,7 +171,7 @@ class FunkoRestControllerNotMvcTest {
         when(funkoService.update(2L, funkoUpdateDto)).thenReturn(funko2);
 
         // Act
-        ResponseEntity<Funko> result = funkoController.updateFunko(funko2.getId(), funkoUpdateDto);
+        ResponseEntity<Funko> result = funkoController.updateFunko(funko2.getId(), funkoUpdateDto, request);
 
         // Assert
         assertAll(
@@ -203,7 +211,7 @@ class FunkoRestControllerNotMvcTest {
         // Arrange
         when(funkoService.update(1L, funkoUpdateDto)).thenReturn(funko1);
 
-        ResponseEntity<Funko> responseEntity = funkoController.updateFunko(1L, funkoUpdateDto);
+        ResponseEntity<Funko> responseEntity = funkoController.updateFunko(1L, funkoUpdateDto, request);
 
         // Assert
         assertAll(
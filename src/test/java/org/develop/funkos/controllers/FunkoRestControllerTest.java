@@ -5,14 +5,23 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.develop.rest.categorias.models.Categoria;
 import org.develop.rest.funkos.dto.FunkoCreateDto;
+import org.develop.rest.funkos.dto.FunkoImportResult;
 import org.develop.rest.funkos.dto.FunkoUpdateDto;
 import org.develop.rest.funkos.exceptions.FunkoNotFound;
 import org.develop.rest.funkos.models.Funko;
+import org.develop.rest.funkos.services.FunkoExportService;
+import org.develop.rest.funkos.services.FunkoImportService;
+import org.develop.utils.export.ExportFormat;
 import org.develop.rest.funkos.services.FunkosService;
+import org.develop.rest.storage.dto.UploadStatus;
+import org.develop.rest.storage.exceptions.StorageConflict;
+import org.develop.rest.storage.services.ChunkedUploadService;
+import org.develop.utils.pagination.CursorPageResponse;
 import org.develop.utils.pagination.PageResponse;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.json.AutoConfigureJsonTesters;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -21,17 +30,30 @@ import org.springframework.boot.test.json.JacksonTester;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -47,10 +69,17 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 class FunkoRestControllerTest {
     private final String myEndpoint = "/v1/funkos";
     private final ObjectMapper mapper = new ObjectMapper();
+    private final CountDownLatch peticionTerminada = new CountDownLatch(1);
     @Autowired
     MockMvc mockMv;
     @MockBean
     private FunkosService funkoService;
+    @MockBean
+    private FunkoImportService funkoImportService;
+    @MockBean
+    private FunkoExportService funkoExportService;
+    @MockBean
+    private ChunkedUploadService chunkedUploadService;
     @Autowired
     private JacksonTester<FunkoCreateDto> jsonFunkoCreateDto;
     @Autowired
@@ -93,6 +122,169 @@ class FunkoRestControllerTest {
         verify(funkoService, times(1)).findAll(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), pageable);
     }
 
+    @Test
+    void getAllFunkos_ConMiniatura() throws Exception {
+        var pageable = PageRequest.of(0, 10, Sort.by("id").ascending());
+        Funko conImagen = Funko.builder().id(3L).nombre("TEST-3").imagen("http://localhost/storage/abc.png").isActivo(true).build();
+
+        // Arrange
+        when(funkoService.findAll(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), pageable))
+                .thenReturn(new PageImpl<>(List.of(conImagen)));
+
+        MockHttpServletResponse response = mockMv.perform(
+                        get(myEndpoint)
+                                .accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse();
+
+        var funko = mapper.readTree(response.getContentAsString()).get("content").get(0);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(200, response.getStatus()),
+                () -> assertEquals("http://localhost/storage/abc.png", funko.get("imagen").asText()),
+                () -> assertEquals("http://localhost/storage/abc.png?w=150", funko.get("miniatura").asText())
+        );
+    }
+
+    @Test
+    void getAllFunkos_WithoutTotal() throws Exception {
+        var pageable = PageRequest.of(0, 10, Sort.by("id").ascending());
+        var slice = new SliceImpl<>(List.of(funko1, funko2), pageable, false);
+
+        // Arrange
+        when(funkoService.findSlice(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), pageable)).thenReturn(slice);
+
+        MockHttpServletResponse response = mockMv.perform(
+                        get(myEndpoint + "?withTotal=false")
+                                .accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse();
+
+        PageResponse<Funko> res = mapper.readValue(response.getContentAsString(), new TypeReference<>() {
+        });
+
+        // Assert
+        assertAll(
+                () -> assertEquals(200, response.getStatus()),
+                () -> assertEquals(2, res.content().size()),
+                () -> assertTrue(res.last()),
+                () -> assertNull(res.totalElements()),
+                () -> assertFalse(response.getContentAsString().contains("totalPages"))
+        );
+
+        // Verify
+        verify(funkoService, never()).findAll(any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void getAllFunkos_ByCursor() throws Exception {
+        List<Funko> listaFunkos = List.of(funko1, funko2);
+        var sort = Sort.by(Sort.Direction.ASC, "id");
+        Window<Funko> window = Window.from(listaFunkos, i -> ScrollPosition.forward(Map.of("id", listaFunkos.get(i).getId())), true);
+        Window<Funko> ultima = Window.from(List.of(), i -> ScrollPosition.keyset());
+
+        // Arrange
+        when(funkoService.scroll(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), ScrollPosition.keyset(), 2, sort)).thenReturn(window);
+        when(funkoService.scroll(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), ScrollPosition.forward(Map.of("id", 2L)), 2, sort)).thenReturn(ultima);
+
+        MockHttpServletResponse response = mockMv.perform(
+                        get(myEndpoint + "?after=&size=2")
+                                .accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse();
+
+        CursorPageResponse<Funko> res = mapper.readValue(response.getContentAsString(), new TypeReference<>() {
+        });
+
+        MockHttpServletResponse responseSiguiente = mockMv.perform(
+                        get(myEndpoint + "?after=" + res.nextCursor() + "&size=2")
+                                .accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse();
+
+        CursorPageResponse<Funko> resSiguiente = mapper.readValue(responseSiguiente.getContentAsString(), new TypeReference<>() {
+        });
+
+        // Assert
+        assertAll(
+                () -> assertEquals(200, response.getStatus()),
+                () -> assertEquals(2, res.content().size()),
+                () -> assertNotNull(res.nextCursor()),
+                () -> assertTrue(response.getHeader("link").contains("after=" + res.nextCursor())),
+                () -> assertEquals(200, responseSiguiente.getStatus()),
+                () -> assertTrue(resSiguiente.last()),
+                () -> assertNull(resSiguiente.nextCursor())
+        );
+
+        // Verify
+        verify(funkoService, never()).findAll(any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void getAllFunkos_ByCursorNoValido() throws Exception {
+        MockHttpServletResponse response = mockMv.perform(
+                        get(myEndpoint + "?after=no-es-un-cursor")
+                                .accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse();
+
+        // Assert
+        assertEquals(400, response.getStatus());
+    }
+
+    @Test
+    void getAllFunkos_ByCursor_EnlacesCodificadosUnaVez() throws Exception {
+        Window<Funko> ultima = Window.from(List.of(), i -> ScrollPosition.keyset());
+
+        // Arrange
+        when(funkoService.scroll(eq(Optional.of("Funko Pop")), any(), any(), any(), any(), any(), anyInt(), any())).thenReturn(ultima);
+
+        MockHttpServletResponse response = mockMv.perform(
+                        get(URI.create(myEndpoint + "?nombre=Funko%20Pop&after=&size=2"))
+                                .accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse();
+
+        // Assert
+        assertAll(
+                () -> assertEquals(200, response.getStatus()),
+                () -> assertTrue(response.getHeader("link").contains("nombre=Funko%20Pop")),
+                () -> assertFalse(response.getHeader("link").contains("%25"))
+        );
+    }
+
+    @Test
+    void getAllFunkos_ByCursorConValorNulo() throws Exception {
+        List<Funko> listaFunkos = List.of(funko1, funko2);
+        var sort = Sort.by(Sort.Direction.ASC, "precio").and(Sort.by(Sort.Direction.ASC, "id"));
+        Map<String, Object> claves = new HashMap<>();
+        claves.put("precio", null);
+        claves.put("id", 2L);
+        Window<Funko> window = Window.from(listaFunkos, i -> ScrollPosition.forward(claves), true);
+        Window<Funko> ultima = Window.from(List.of(), i -> ScrollPosition.keyset());
+
+        // Arrange
+        when(funkoService.scroll(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), ScrollPosition.keyset(), 2, sort)).thenReturn(window);
+        when(funkoService.scroll(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), ScrollPosition.forward(claves), 2, sort)).thenReturn(ultima);
+
+        MockHttpServletResponse response = mockMv.perform(
+                        get(myEndpoint + "?after=&size=2&sortBy=precio")
+                                .accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse();
+
+        CursorPageResponse<Funko> res = mapper.readValue(response.getContentAsString(), new TypeReference<>() {
+        });
+
+        MockHttpServletResponse responseSiguiente = mockMv.perform(
+                        get(myEndpoint + "?after=" + res.nextCursor() + "&size=2&sortBy=precio")
+                                .accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse();
+
+        // Assert
+        assertAll(
+                () -> assertEquals(200, response.getStatus()),
+                () -> assertEquals(200, responseSiguiente.getStatus())
+        );
+
+        // Verify
+        verify(funkoService, times(1)).scroll(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), ScrollPosition.forward(claves), 2, sort);
+    }
+
     @Test
     void getAllFunkos_ByNombre() throws Exception {
         List<Funko> listaFunkos = List.of(funko1);
@@ -274,6 +466,56 @@ class FunkoRestControllerTest {
         );
     }
 
+    @Test
+    void getFunkoById_NotModified() throws Exception {
+        // Arrange
+        String localEndPoint = myEndpoint + "/1";
+
+        when(funkoService.findById(1L)).thenReturn(funko1);
+
+        String etag = mockMv.perform(get(localEndPoint).accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // Consulto el endpoint con el ETag recibido
+        MockHttpServletResponse response = mockMv.perform(
+                        get(localEndPoint)
+                                .header("If-None-Match", etag)
+                                .accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse();
+
+        // Assert
+        assertAll(
+                () -> assertNotNull(etag),
+                () -> assertEquals(304, response.getStatus()),
+                () -> assertEquals(etag, response.getHeader("ETag")),
+                () -> assertEquals("", response.getContentAsString())
+        );
+    }
+
+    @Test
+    void getAllFunkos_NotModified() throws Exception {
+        var pageable = PageRequest.of(0, 10, Sort.by("id").ascending());
+        var page = new PageImpl<>(List.of(funko1, funko2));
+
+        // Arrange
+        when(funkoService.findAll(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), pageable)).thenReturn(page);
+
+        String etag = mockMv.perform(get(myEndpoint).accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getHeader("ETag");
+
+        MockHttpServletResponse response = mockMv.perform(
+                        get(myEndpoint)
+                                .header("If-None-Match", etag)
+                                .accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse();
+
+        // Assert
+        assertAll(
+                () -> assertNotNull(etag),
+                () -> assertEquals(304, response.getStatus())
+        );
+    }
+
     @Test
     void getFunkoById_idNotExists() throws Exception {
         // Arrange
@@ -295,6 +537,116 @@ class FunkoRestControllerTest {
     }
 
 
+    @Test
+    void exportFunkos_CsvPorAccept() throws Exception {
+        // Arrange
+        when(funkoExportService.exportar(any(), eq(ExportFormat.CSV))).thenAnswer(trasLaPeticion(invocation -> {
+            OutputStream out = invocation.getArgument(0);
+            out.write("id,nombre\n1,TEST-1\n".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        }));
+
+        MockHttpServletResponse response = exportar(get(myEndpoint + "/export").accept("text/csv"));
+
+        // Assert
+        assertAll(
+                () -> assertEquals(200, response.getStatus()),
+                () -> assertEquals("text/csv", response.getContentType()),
+                () -> assertEquals("id,nombre\n1,TEST-1\n", response.getContentAsString())
+        );
+
+        // Verify
+        verify(funkoExportService, times(1)).exportar(any(), eq(ExportFormat.CSV));
+    }
+
+    @Test
+    void exportFunkos_NdjsonPorDefecto() throws Exception {
+        // Arrange
+        when(funkoExportService.exportar(any(), any())).thenAnswer(trasLaPeticion(invocation -> 0L));
+
+        MockHttpServletResponse response = exportar(get(myEndpoint + "/export"));
+
+        // Assert
+        assertAll(
+                () -> assertEquals(200, response.getStatus()),
+                () -> assertEquals(MediaType.APPLICATION_NDJSON_VALUE, response.getContentType())
+        );
+
+        // Verify
+        verify(funkoExportService, times(1)).exportar(any(), eq(ExportFormat.NDJSON));
+    }
+
+    @Test
+    void exportFunkos_FormatoConAcceptJson() throws Exception {
+        // Arrange
+        when(funkoExportService.exportar(any(), any())).thenAnswer(trasLaPeticion(invocation -> 0L));
+
+        MockHttpServletResponse response = exportar(get(myEndpoint + "/export").param("formato", "csv")
+                .accept(MediaType.APPLICATION_JSON));
+
+        // Assert
+        assertAll(
+                () -> assertEquals(200, response.getStatus()),
+                () -> assertEquals("text/csv", response.getContentType())
+        );
+
+        // Verify
+        verify(funkoExportService, times(1)).exportar(any(), eq(ExportFormat.CSV));
+    }
+
+    @Test
+    void exportFunkos_FormatoNoAdmitido() throws Exception {
+        MockHttpServletResponse response = mockMv.perform(get(myEndpoint + "/export").param("formato", "xls"))
+                .andReturn().getResponse();
+
+        // Assert
+        assertEquals(400, response.getStatus());
+
+        // Verify
+        verify(funkoExportService, never()).exportar(any(), any());
+    }
+
+    @Test
+    void importFunkos() throws Exception {
+        // Arrange
+        String csv = "nombre,precio,cantidad,imagen,categoria\nFunkoTest3,16.99,9,,DISNEY\n";
+        var result = new FunkoImportResult(1, 1, 0, 5, List.of());
+        when(funkoImportService.importar(any(), eq(MediaType.parseMediaType("text/csv")))).thenReturn(result);
+
+        MockHttpServletResponse response = mockMv.perform(
+                        post(myEndpoint + "/import")
+                                .contentType("text/csv")
+                                .content(csv)
+                                .accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse();
+
+        FunkoImportResult res = mapper.readValue(response.getContentAsString(), FunkoImportResult.class);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(200, response.getStatus()),
+                () -> assertEquals(result, res)
+        );
+
+        // Verify
+        verify(funkoImportService, times(1)).importar(any(), eq(MediaType.parseMediaType("text/csv")));
+    }
+
+    @Test
+    void importFunkos_FormatoNoAdmitido() throws Exception {
+        MockHttpServletResponse response = mockMv.perform(
+                        post(myEndpoint + "/import")
+                                .contentType(MediaType.APPLICATION_XML)
+                                .content("<funkos/>"))
+                .andReturn().getResponse();
+
+        // Assert
+        assertEquals(415, response.getStatus());
+
+        // Verify
+        verify(funkoImportService, never()).importar(any(), any());
+    }
+
     @Test
     void createFunko() throws Exception{
         // Arrange
@@ -464,6 +816,99 @@ class FunkoRestControllerTest {
         verify(funkoService, times(1)).update(1L, funkoUpdateDto);
     }
 
+    @Test
+    void updateFunko_IfMatchNoCoincide() throws Exception {
+        // Arrange
+        String myLocalEndpoint = myEndpoint + "/1";
+        FunkoUpdateDto funkoUpdateDto = FunkoUpdateDto.builder()
+                .nombre("FunkoTest3")
+                .precio(16.99)
+                .cantidad(9)
+                .imagen("funkotest3.jpg")
+                .categoria("OTROS")
+                .build();
+
+        when(funkoService.findById(1L)).thenReturn(funko1);
+
+        MockHttpServletResponse response = mockMv.perform(
+                        put(myLocalEndpoint)
+                                .header("If-Match", "\"1-0\"")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(jsonFunkoUpdateDto.write(funkoUpdateDto).getJson())
+                                .accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse();
+
+        // Assert
+        assertEquals(412, response.getStatus());
+
+        // Verify
+        verify(funkoService, never()).update(any(), any());
+        verify(funkoService, never()).update(any(), any(), any());
+    }
+
+    @Test
+    void updateFunko_IfMatchCoincide_GuardaConLaVersionComprobada() throws Exception {
+        // Arrange
+        String myLocalEndpoint = myEndpoint + "/1";
+        FunkoUpdateDto funkoUpdateDto = FunkoUpdateDto.builder()
+                .nombre("FunkoTest3")
+                .precio(16.99)
+                .cantidad(9)
+                .imagen("funkotest3.jpg")
+                .categoria("OTROS")
+                .build();
+        Funko leido = new Funko(1L, "TEST-1", 19.99, 100, "test1.jpg", LocalDateTime.now(), LocalDateTime.now(), true, categoria, 3L);
+
+        when(funkoService.findById(1L)).thenReturn(leido);
+        when(funkoService.update(1L, funkoUpdateDto, 3L)).thenReturn(funko2);
+        String etag = mockMv.perform(get(myLocalEndpoint).accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // Act
+        MockHttpServletResponse response = mockMv.perform(
+                        put(myLocalEndpoint)
+                                .header("If-Match", etag)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(jsonFunkoUpdateDto.write(funkoUpdateDto).getJson())
+                                .accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse();
+
+        // Assert
+        assertEquals(200, response.getStatus());
+
+        // Verify
+        verify(funkoService, times(1)).update(1L, funkoUpdateDto, 3L);
+        verify(funkoService, never()).update(any(), any());
+    }
+
+    @Test
+    void getFunkoById_CambiaLaCategoria_CambiaElETag() throws Exception {
+        // Arrange
+        String localEndPoint = myEndpoint + "/1";
+        LocalDateTime fecha = LocalDateTime.of(2023, 11, 1, 10, 0);
+        Categoria antes = new Categoria(1L, "OTROS", fecha, fecha, true);
+        Categoria despues = new Categoria(1L, "SERIE", fecha, fecha.plusDays(1), true);
+        when(funkoService.findById(1L)).thenReturn(
+                new Funko(1L, "TEST-1", 19.99, 100, "test1.jpg", fecha, fecha, true, antes, 0L),
+                new Funko(1L, "TEST-1", 19.99, 100, "test1.jpg", fecha, fecha, true, despues, 0L));
+
+        String etag = mockMv.perform(get(localEndPoint).accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // Act
+        MockHttpServletResponse response = mockMv.perform(
+                        get(localEndPoint)
+                                .header("If-None-Match", etag)
+                                .accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse();
+
+        // Assert
+        assertAll(
+                () -> assertEquals(200, response.getStatus()),
+                () -> assertNotEquals(etag, response.getHeader("ETag"))
+        );
+    }
+
     @Test
     void updateFunkoNotFound() throws Exception {
         String myLocalEndpoint = myEndpoint + "/1";
@@ -728,4 +1173,132 @@ class FunkoRestControllerTest {
         verify(funkoService, times(1)).updateImage(anyLong(), any(MultipartFile.class));
     }
 
+    @Test
+    void initImageUpload() throws Exception {
+        var myLocalEndpoint = myEndpoint + "/imagen/1/subidas";
+
+        // Arrange
+        when(funkoService.findById(1L)).thenReturn(funko1);
+        when(chunkedUploadService.iniciar(1L, "funko.png", 6L)).thenReturn(new UploadStatus("abc", "funko.png", 6, 0, null));
+
+        MockHttpServletResponse response = mockMv.perform(
+                post(myLocalEndpoint + "?nombre=funko.png&tamano=6")
+        ).andReturn().getResponse();
+
+        UploadStatus res = mapper.readValue(response.getContentAsString(), UploadStatus.class);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(201, response.getStatus()),
+                () -> assertEquals("http://localhost" + myLocalEndpoint + "/abc", response.getHeader("Location")),
+                () -> assertEquals("abc", res.id()),
+                () -> assertEquals(0, res.offset())
+        );
+    }
+
+    @Test
+    void initImageUpload_FunkoNotFound() throws Exception {
+        // Arrange
+        when(funkoService.findById(99L)).thenThrow(new FunkoNotFound(99L));
+
+        MockHttpServletResponse response = mockMv.perform(
+                post(myEndpoint + "/imagen/99/subidas?nombre=funko.png&tamano=6")
+        ).andReturn().getResponse();
+
+        // Assert
+        assertEquals(404, response.getStatus());
+
+        // Verify
+        verify(chunkedUploadService, never()).iniciar(anyLong(), anyString(), anyLong());
+    }
+
+    @Test
+    void appendImageUpload() throws Exception {
+        // Arrange
+        when(chunkedUploadService.anadir(eq(1L), eq("abc"), eq(3L), any(), eq("sha"))).thenAnswer(invocation -> {
+            byte[] trozo = invocation.getArgument(3, InputStream.class).readAllBytes();
+            return new UploadStatus("abc", "funko.png", 6, 3 + trozo.length, "sha");
+        });
+
+        MockHttpServletResponse response = mockMv.perform(
+                put(myEndpoint + "/imagen/1/subidas/abc?offset=3")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .header("X-Upload-Sha256", "sha")
+                        .content("gen".getBytes(StandardCharsets.UTF_8))
+        ).andReturn().getResponse();
+
+        UploadStatus res = mapper.readValue(response.getContentAsString(), UploadStatus.class);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(200, response.getStatus()),
+                () -> assertEquals(6, res.offset())
+        );
+    }
+
+    @Test
+    void appendImageUpload_OffsetNoCoincide() throws Exception {
+        // Arrange
+        when(chunkedUploadService.anadir(eq(1L), eq("abc"), eq(0L), any(), isNull()))
+                .thenThrow(new StorageConflict("La subida abc va por el byte 3, no por el 0"));
+
+        MockHttpServletResponse response = mockMv.perform(
+                put(myEndpoint + "/imagen/1/subidas/abc?offset=0")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content("ima".getBytes(StandardCharsets.UTF_8))
+        ).andReturn().getResponse();
+
+        // Assert
+        assertEquals(409, response.getStatus());
+    }
+
+    @Test
+    void completeImageUpload() throws Exception {
+        // Arrange
+        when(chunkedUploadService.completar(1L, "abc", "sha")).thenReturn("sha.png");
+        when(funkoService.updateImage(1L, "sha.png")).thenReturn(funko1);
+
+        MockHttpServletResponse response = mockMv.perform(
+                post(myEndpoint + "/imagen/1/subidas/abc/completar?sha256=sha")
+        ).andReturn().getResponse();
+
+        Funko res = mapper.readValue(response.getContentAsString(), Funko.class);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(200, response.getStatus()),
+                () -> assertEquals(funko1, res)
+        );
+
+        // Verify
+        verify(funkoService, times(1)).updateImage(1L, "sha.png");
+    }
+
+    @Test
+    void cancelImageUpload() throws Exception {
+        MockHttpServletResponse response = mockMv.perform(
+                delete(myEndpoint + "/imagen/1/subidas/abc")
+        ).andReturn().getResponse();
+
+        // Assert
+        assertEquals(204, response.getStatus());
+
+        // Verify
+        verify(chunkedUploadService, times(1)).cancelar(1L, "abc");
+    }
+
+    // El cuerpo de la exportación se escribe en otro hilo: se retiene hasta que la petición ha pasado los filtros,
+    // si no los dos escriben a la vez las cabeceras de la respuesta simulada, que no admite varios hilos
+    private <T> Answer<T> trasLaPeticion(Answer<T> answer) {
+        return invocation -> {
+            assertTrue(peticionTerminada.await(5, TimeUnit.SECONDS));
+            return answer.answer(invocation);
+        };
+    }
+
+    private MockHttpServletResponse exportar(MockHttpServletRequestBuilder peticion) throws Exception {
+        MvcResult result = mockMv.perform(peticion).andReturn();
+        peticionTerminada.countDown();
+        return mockMv.perform(asyncDispatch(result)).andReturn().getResponse();
+    }
 }
@@ -87,10 +87,24 @@ class FunkoMapperTest {
                 () -> assertEquals(funko.getPrecio(), funkoResponseDto.getPrecio()),
                 () -> assertEquals(funko.getCantidad(), funkoResponseDto.getCantidad()),
                 () -> assertEquals(funko.getImagen(), funkoResponseDto.getImagen()),
+                // No es del almacenamiento, no tiene variantes
+                () -> assertEquals(funko.getImagen(), funkoResponseDto.getMiniatura()),
                 () -> assertEquals(funko.getCategoria().getNombre(), funkoResponseDto.getCategoria()),
                 () -> assertEquals(funko.getId(), funkoResponseDto.getId()),
                 () -> assertEquals(funko.getFechaCreacion(), funkoResponseDto.getFechaCreacion()),
                 () -> assertEquals(funko.getFechaActualizacion(), funkoResponseDto.getFechaActualizacion())
         );
     }
+
+    @Test
+    void toResponseDto_MiniaturaDeImagenAlmacenada() {
+        // Arrange
+        Funko funko = new Funko(1L, "FunkoTest4", 23.88, 20, "http://localhost:3000/storage/imagen.png", LocalDateTime.now(), LocalDateTime.now(), true, categoria1);
+
+        // Act
+        FunkoResponseDto funkoResponseDto = funkosMapper.toFunkoResponseDto(funko);
+
+        // Assert
+        assertEquals("http://localhost:3000/storage/imagen.png?w=150", funkoResponseDto.getMiniatura());
+    }
 }
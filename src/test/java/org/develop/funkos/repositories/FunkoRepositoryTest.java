@@ -3,11 +3,19 @@ package org.develop.funkos.repositories;
 import org.develop.rest.categorias.models.Categoria;
 import org.develop.rest.funkos.models.Funko;
 import org.develop.rest.funkos.repositories.FunkosRepository;
+import org.develop.rest.funkos.repositories.FunkosSpecifications;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.mapping.PropertyReferenceException;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.TestPropertySource;
 
@@ -125,7 +133,9 @@ class FunkoRepositoryTest {
 
     @Test
     void save_alreadyExist(){
-        Funko nuevoFunko =  new Funko(1L, "NUEVO-FUNKO", 17.99, 33, "nuevofunko.jpg", LocalDateTime.now(), LocalDateTime.now(), true, categoria);
+        // Sobrescribir un Funko existente exige partir de su version actual
+        Long version = funkosRepository.findById(1L).orElseThrow().getVersion();
+        Funko nuevoFunko =  new Funko(1L, "NUEVO-FUNKO", 17.99, 33, "nuevofunko.jpg", LocalDateTime.now(), LocalDateTime.now(), true, categoria, version);
 
         // Act
         Funko savedFunko = funkosRepository.save(nuevoFunko);
@@ -133,7 +143,9 @@ class FunkoRepositoryTest {
 
         // Assert
         assertAll("save",
-                () -> assertEquals(nuevoFunko, savedFunko),
+                () -> assertEquals(nuevoFunko.getNombre(), savedFunko.getNombre()),
+                () -> assertEquals(nuevoFunko.getCantidad(), savedFunko.getCantidad()),
+                () -> assertEquals(version + 1, savedFunko.getVersion()),
                 () -> assertNotNull(savedFunko),
                 () -> assertTrue(funkosRepository.existsById(savedFunko.getId())),
                 () -> assertTrue(listaFunko.size() >= 2)
@@ -152,4 +164,121 @@ class FunkoRepositoryTest {
                 () -> assertFalse(listaFunkos.isEmpty())
         );
     }
+
+    @Test
+    void findAll_Specifications(){
+        // Act
+        Long idCategoria = funkosRepository.findAll().get(0).getCategoria().getId();
+        Page<Funko> porCategoria = funkosRepository.findAll(FunkosSpecifications.categoriaIgual(idCategoria), PageRequest.of(0, 10));
+        Page<Funko> porNombreYPrecio = funkosRepository.findAll(
+                Specification.allOf(List.of(FunkosSpecifications.nombreContiene("test"), FunkosSpecifications.precioMaximo(15.0))),
+                PageRequest.of(0, 10));
+        Page<Funko> sinCriterios = funkosRepository.findAll(Specification.allOf(List.of()), PageRequest.of(0, 10));
+
+        // Assert
+        assertAll(
+                () -> assertEquals(2, porCategoria.getTotalElements()),
+                () -> assertEquals(1, porNombreYPrecio.getTotalElements()),
+                () -> assertEquals("TEST-2", porNombreYPrecio.getContent().get(0).getNombre()),
+                () -> assertEquals(2, sinCriterios.getTotalElements())
+        );
+    }
+
+    @Test
+    void findAll_CantidadMinima(){
+        // Act
+        Page<Funko> conCantidad = funkosRepository.findAll(FunkosSpecifications.cantidadMinima(100), PageRequest.of(0, 10));
+
+        // Assert
+        assertAll(
+                () -> assertEquals(1, conCantidad.getTotalElements()),
+                () -> assertEquals("TEST-1", conCantidad.getContent().get(0).getNombre())
+        );
+    }
+
+    @Test
+    void buscar(){
+        // Arrange
+        Long idCategoria = funkosRepository.findAll().get(0).getCategoria().getId();
+
+        // Act
+        Page<Funko> porCategoria = funkosRepository.buscar(idCategoria, null, null, null, null, PageRequest.of(0, 10));
+        Page<Funko> porNombreYPrecio = funkosRepository.buscar(null, "TEST", 15.0, null, true, PageRequest.of(0, 10, Sort.by("nombre")));
+        Page<Funko> porCantidad = funkosRepository.buscar(null, null, null, 100, null, PageRequest.of(0, 10));
+        Page<Funko> ordenados = funkosRepository.buscar(null, null, null, null, null, PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, "precio")));
+
+        // Assert
+        assertAll(
+                () -> assertEquals(2, porCategoria.getTotalElements()),
+                () -> assertEquals(1, porNombreYPrecio.getTotalElements()),
+                () -> assertEquals("TEST-2", porNombreYPrecio.getContent().get(0).getNombre()),
+                () -> assertEquals(1, porCantidad.getTotalElements()),
+                () -> assertEquals("TEST-1", porCantidad.getContent().get(0).getNombre()),
+                () -> assertEquals(2, ordenados.getTotalElements()),
+                () -> assertEquals("TEST-1", ordenados.getContent().get(0).getNombre())
+        );
+    }
+
+    @Test
+    void buscarYCriterios_FiltranIgual(){
+        // Arrange
+        Long idCategoria = funkosRepository.findAll().get(0).getCategoria().getId();
+        List<Object[]> combinaciones = List.of(
+                new Object[]{null, "test-1", null, null, null},
+                new Object[]{idCategoria, null, 15.0, null, null},
+                new Object[]{null, null, null, 59, null},
+                new Object[]{null, null, null, 100, true},
+                new Object[]{idCategoria, "TEST", 19.99, 100, true}
+        );
+
+        // Act & Assert
+        for (Object[] filtros : combinaciones) {
+            List<Long> compilada = funkosRepository.buscar((Long) filtros[0], (String) filtros[1], (Double) filtros[2], (Integer) filtros[3], (Boolean) filtros[4],
+                    PageRequest.of(0, 10, Sort.by("id"))).map(Funko::getId).getContent();
+            List<Long> criterios = funkosRepository.findAll(FunkosSpecifications.filtros((Long) filtros[0], (String) filtros[1], (Double) filtros[2], (Integer) filtros[3], (Boolean) filtros[4]),
+                    Sort.by("id")).stream().map(Funko::getId).toList();
+            assertEquals(compilada, criterios);
+        }
+    }
+
+    @Test
+    void buscar_OrdenPorPropiedadQueNoExiste(){
+        // Act & Assert
+        assertThrows(PropertyReferenceException.class,
+                () -> funkosRepository.buscar(null, null, null, null, null, PageRequest.of(0, 10, Sort.by("nombre; DROP TABLE FUNKOS"))));
+    }
+
+    @Test
+    void findBy_Keyset(){
+        // Act
+        Sort sort = Sort.by(Sort.Direction.DESC, "precio").and(Sort.by(Sort.Direction.DESC, "id"));
+        Window<Funko> primera = funkosRepository.findBy(Specification.allOf(List.of()),
+                query -> query.sortBy(sort).limit(1).scroll(ScrollPosition.keyset()));
+        Window<Funko> segunda = funkosRepository.findBy(Specification.allOf(List.of()),
+                query -> query.sortBy(sort).limit(1).scroll(primera.positionAt(0)));
+
+        // Assert
+        assertAll(
+                () -> assertEquals(1, primera.size()),
+                () -> assertTrue(primera.hasNext()),
+                () -> assertEquals("TEST-1", primera.getContent().get(0).getNombre()),
+                () -> assertEquals(1, segunda.size()),
+                () -> assertFalse(segunda.hasNext()),
+                () -> assertEquals("TEST-2", segunda.getContent().get(0).getNombre())
+        );
+    }
+
+    @Test
+    void adjustStock_NoDejaLaCantidadEnNegativo(){
+        // Act
+        int sinStock = funkosRepository.adjustStock(1L, -101);
+        int conStock = funkosRepository.adjustStock(1L, -100);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(0, sinStock),
+                () -> assertEquals(1, conStock),
+                () -> assertEquals(0, funkosRepository.findById(1L).orElseThrow().getCantidad())
+        );
+    }
 }
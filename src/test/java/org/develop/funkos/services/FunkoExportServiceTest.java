@@ -0,0 +1,144 @@
+package org.develop.funkos.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.develop.rest.funkos.services.FunkoExportService;
+import org.develop.rest.funkos.services.FunkoImportService;
+import org.develop.utils.export.ExportFormat;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class FunkoExportServiceTest {
+    private static final int FILAS = 20_000;
+
+    @Autowired
+    private FunkoExportService funkoExportService;
+    @Autowired
+    private FunkoImportService funkoImportService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private ObjectMapper mapper;
+
+    private int total;
+
+    @BeforeEach
+    void setUp() {
+        StringBuilder csv = new StringBuilder("nombre,precio,cantidad,imagen,categoria\n");
+        csv.append("\"EXPORT-0, \"\"con comillas\"\"\",1.5,3,,DISNEY\n");
+        for (int i = 1; i < FILAS; i++) {
+            csv.append("EXPORT-").append(i).append(",9.99,").append(i % 10).append(",,SERIE\n");
+        }
+        funkoImportService.importar(new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)), MediaType.parseMediaType("text/csv"));
+        total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM FUNKOS", Integer.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM FUNKOS WHERE nombre LIKE 'EXPORT-%'");
+    }
+
+    @Test
+    void exportar_NdjsonNoAcumulaEntidadesEnMemoria() throws Exception {
+        // Arrange
+        // Mientras se escribe se mira cuántas entidades tiene el contexto de persistencia de la exportación
+        int[] maximoEntidades = {0};
+        long[] lineas = {0};
+        OutputStream out = new OutputStream() {
+            @Override
+            public void write(int b) {
+                contar(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                contar(b, off, len);
+            }
+
+            private void contar(byte[] b, int off, int len) {
+                for (int i = off; i < off + len; i++) {
+                    if (b[i] == '\n') {
+                        lineas[0]++;
+                    }
+                }
+                int entidades = entityManager.unwrap(Session.class).getStatistics().getEntityCount();
+                maximoEntidades[0] = Math.max(maximoEntidades[0], entidades);
+            }
+        };
+
+        // Act
+        long exportados = funkoExportService.exportar(out, ExportFormat.NDJSON);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(total, exportados),
+                () -> assertEquals(total, lineas[0]),
+                // Solo las categorías y el funko que se está escribiendo
+                () -> assertTrue(maximoEntidades[0] < 20, "Entidades en el contexto: " + maximoEntidades[0])
+        );
+    }
+
+    @Test
+    void exportar_NdjsonUnFunkoPorLinea() throws Exception {
+        // Arrange
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        funkoExportService.exportar(out, ExportFormat.NDJSON);
+
+        // Assert
+        List<String> lineas = out.toString(StandardCharsets.UTF_8).lines().toList();
+        JsonNode primero = mapper.readTree(lineas.get(0));
+        JsonNode exportado = lineas.stream().map(this::leer).filter(n -> n.get("nombre").asText().startsWith("EXPORT-0")).findFirst().orElseThrow();
+        assertAll(
+                () -> assertEquals(total, lineas.size()),
+                () -> assertEquals(1, primero.get("id").asLong()),
+                () -> assertEquals("EXPORT-0, \"con comillas\"", exportado.get("nombre").asText()),
+                () -> assertEquals("DISNEY", exportado.get("categoria").asText())
+        );
+    }
+
+    @Test
+    void exportar_CsvConCabeceraYCamposEscapados() throws Exception {
+        // Arrange
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        funkoExportService.exportar(out, ExportFormat.CSV);
+
+        // Assert
+        List<String> lineas = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertAll(
+                () -> assertEquals(total + 1, lineas.size()),
+                () -> assertEquals("id,nombre,precio,cantidad,imagen,categoria,fechaCreacion,fechaActualizacion", lineas.get(0)),
+                () -> assertTrue(lineas.get(1).startsWith("1,")),
+                () -> assertTrue(lineas.stream().anyMatch(l -> l.contains(",\"EXPORT-0, \"\"con comillas\"\"\",1.5,3,")))
+        );
+    }
+
+    private JsonNode leer(String linea) {
+        try {
+            return mapper.readTree(linea);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.develop.funkos.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.develop.rest.funkos.dto.FunkoImportResult;
+import org.develop.rest.funkos.services.FunkoImportService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Mide la importación masiva contra la base de datos de desarrollo.
+ * No se ejecuta con el resto de tests, solo con -Pfunkos.import.benchmark=true.
+ * Por defecto importa 200.000 funkos, con -Pfunkos.import.benchmark.filas=1000000 se prueba el millón.
+ * El CSV se genera según se lee, así la memoria usada es la de la importación y no la de la entrada.
+ */
+@SpringBootTest
+@Slf4j
+@EnabledIfSystemProperty(named = "funkos.import.benchmark", matches = "true")
+class FunkoImportBenchmarkTest {
+    private static final int FILAS = Integer.getInteger("funkos.import.benchmark.filas", 200_000);
+
+    @Autowired
+    private FunkoImportService funkoImportService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM FUNKOS WHERE nombre LIKE 'BENCH-%'");
+    }
+
+    @Test
+    void importar_Benchmark() {
+        // Act
+        FunkoImportResult result = funkoImportService.importar(new CsvGenerado(FILAS), MediaType.parseMediaType("text/csv"));
+
+        // Assert
+        long porSegundo = result.importadas() * 1000 / Math.max(1, result.milisegundos());
+        log.info("Importados " + result.importadas() + " funkos en " + result.milisegundos() + " ms, " + porSegundo + " funkos/s");
+        Integer enBaseDeDatos = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM FUNKOS WHERE nombre LIKE 'BENCH-%'", Integer.class);
+        assertAll(
+                () -> assertEquals(FILAS, result.importadas()),
+                () -> assertEquals(0, result.fallidas()),
+                () -> assertEquals(FILAS, enBaseDeDatos)
+        );
+    }
+
+    // Devuelve las líneas del CSV una a una, sin tenerlo nunca entero en memoria
+    private static class CsvGenerado extends InputStream {
+        private static final String[] CATEGORIAS = {"SERIE", "DISNEY", "SUPERHEROES", "PELICULAS", "OTROS"};
+        private final int filas;
+        private int fila;
+        private byte[] linea = "nombre,precio,cantidad,imagen,categoria\n".getBytes(StandardCharsets.UTF_8);
+        private int posicion;
+
+        private CsvGenerado(int filas) {
+            this.filas = filas;
+        }
+
+        @Override
+        public int read() {
+            if (!siguiente()) {
+                return -1;
+            }
+            return linea[posicion++];
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!siguiente()) {
+                return -1;
+            }
+            int n = Math.min(len, linea.length - posicion);
+            System.arraycopy(linea, posicion, b, off, n);
+            posicion += n;
+            return n;
+        }
+
+        private boolean siguiente() {
+            if (posicion < linea.length) {
+                return true;
+            }
+            if (fila == filas) {
+                return false;
+            }
+            fila++;
+            linea = ("BENCH-" + fila + "," + (fila % 100) + ".99," + (fila % 50) + ",," + CATEGORIAS[fila % CATEGORIAS.length] + "\n")
+                    .getBytes(StandardCharsets.UTF_8);
+            posicion = 0;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package org.develop.funkos.services;
+
+import org.develop.rest.funkos.dto.FunkoImportResult;
+import org.develop.rest.funkos.services.FunkoImportService;
+import org.develop.utils.export.CsvWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "funkos.import.chunk-size=2")
+class FunkoImportServiceTest {
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
+    @Autowired
+    private FunkoImportService funkoImportService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM FUNKOS WHERE nombre LIKE 'IMPORT-%' OR nombre LIKE '=IMPORT-%'");
+    }
+
+    @Test
+    void importar_CsvConCabeceraDescartaLasFilasNoValidas() {
+        // Arrange
+        String csv = """
+                categoria,nombre,precio,cantidad
+                DISNEY,IMPORT-1,10.5,3
+                DISNEY,IMPORT-2,-1,3
+                DISNEY,"IMPORT-3, con coma",abc,3
+
+                NOEXISTE,IMPORT-4,1,1
+                OTROS,IMPORT-5,2,
+                """;
+
+        // Act
+        FunkoImportResult result = funkoImportService.importar(stream(csv), TEXT_CSV);
+
+        // Assert
+        List<Long> filasConError = result.errores().stream().map(FunkoImportResult.Error::fila).toList();
+        assertAll(
+                () -> assertEquals(5, result.leidas()),
+                () -> assertEquals(2, result.importadas()),
+                () -> assertEquals(3, result.fallidas()),
+                () -> assertEquals(List.of(3L, 4L, 6L), filasConError),
+                () -> assertEquals("El precio no puede ser negativo", result.errores().get(0).motivo()),
+                () -> assertEquals(0, cantidad("IMPORT-5")),
+                () -> assertEquals(2, contar())
+        );
+    }
+
+    @Test
+    void importar_CsvSinCabecera() {
+        // Arrange
+        String csv = "IMPORT-1,10.5,3,imagen.jpg,DISNEY\nIMPORT-2,1,1,,OTROS\n";
+
+        // Act
+        FunkoImportResult result = funkoImportService.importar(stream(csv), TEXT_CSV);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(2, result.importadas()),
+                () -> assertEquals(0, result.fallidas()),
+                () -> assertEquals(2, contar())
+        );
+    }
+
+    @Test
+    void importar_CsvEscritoPorLaExportacion() throws IOException {
+        // Arrange: un salto de línea dentro de un campo y una fórmula protegida
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CsvWriter writer = new CsvWriter(out, "id", "nombre", "precio", "cantidad", "imagen", "categoria");
+        writer.field(1L).field("IMPORT-1\ncon \"salto\"").field(10.5).field(3).field(null).field("DISNEY");
+        writer.endRow();
+        writer.field(2L).field("=IMPORT-2+1").field(1.0).field(1).field(null).field("OTROS");
+        writer.endRow();
+        writer.field(3L).field("IMPORT-3").field(2.0).field(-1).field(null).field("SERIE");
+        writer.endRow();
+        writer.flush();
+        String csv = out.toString(StandardCharsets.UTF_8);
+
+        // Act
+        FunkoImportResult result = funkoImportService.importar(stream(csv), TEXT_CSV);
+
+        // Assert
+        assertAll(
+                () -> assertTrue(csv.contains(",'=IMPORT-2+1,")),
+                () -> assertTrue(csv.contains(",-1,")),
+                () -> assertEquals(3, result.leidas()),
+                () -> assertEquals(2, result.importadas()),
+                // La primera fila ocupa dos líneas, la de la cantidad negativa es la quinta
+                () -> assertEquals(5L, result.errores().get(0).fila()),
+                () -> assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM FUNKOS WHERE nombre = ?", Integer.class, "IMPORT-1\ncon \"salto\"")),
+                () -> assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM FUNKOS WHERE nombre = ?", Integer.class, "=IMPORT-2+1"))
+        );
+    }
+
+    @Test
+    void importar_Ndjson() {
+        // Arrange
+        String ndjson = """
+                {"nombre":"IMPORT-1","precio":1.5,"cantidad":2,"categoria":"DISNEY"}
+                {"nombre":"IMPORT-2","precio":"mucho","cantidad":2,"categoria":"DISNEY"}
+                {"nombre":"IMPORT-3","precio":1.5,"cantidad":2,"categoria":"SERIE"}
+                """;
+
+        // Act
+        FunkoImportResult result = funkoImportService.importar(stream(ndjson), MediaType.APPLICATION_NDJSON);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(3, result.leidas()),
+                () -> assertEquals(2, result.importadas()),
+                () -> assertEquals(2, result.errores().get(0).fila()),
+                () -> assertEquals(2, contar())
+        );
+    }
+
+    @Test
+    void importar_ArrayJsonRotoGuardaLoLeido() {
+        // Arrange
+        String json = """
+                [{"nombre":"IMPORT-1","precio":1.5,"cantidad":2,"categoria":"DISNEY"},
+                 {"nombre":"IMPORT-2","precio":[],"cantidad":2,"categoria":"DISNEY"},
+                 {"nombre":"IMPORT-3","precio":1.5,"cantidad":2,"categoria":"DISNEY"},
+                 {"nombre":"IMPORT-4",
+                """;
+
+        // Act
+        FunkoImportResult result = funkoImportService.importar(stream(json), MediaType.APPLICATION_JSON);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(2, result.importadas()),
+                () -> assertEquals(2, result.errores().size()),
+                () -> assertTrue(result.errores().get(1).motivo().startsWith("Entrada no válida")),
+                () -> assertEquals(2, contar())
+        );
+    }
+
+    @Test
+    void importar_SiFallaUnBloqueSoloSeDescartaEseBloque() {
+        // Arrange
+        // El nombre no cabe en la columna, falla el segundo bloque de dos filas
+        String csv = "IMPORT-1,1,1,,DISNEY\nIMPORT-2,1,1,,DISNEY\nIMPORT-" + "X".repeat(300) + ",1,1,,DISNEY\nIMPORT-4,1,1,,DISNEY\nIMPORT-5,1,1,,DISNEY\n";
+
+        // Act
+        FunkoImportResult result = funkoImportService.importar(stream(csv), TEXT_CSV);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(5, result.leidas()),
+                () -> assertEquals(3, result.importadas()),
+                () -> assertEquals(2, result.fallidas()),
+                () -> assertEquals(3, result.errores().get(0).fila()),
+                () -> assertEquals(4, result.errores().get(0).hasta()),
+                () -> assertEquals(3, contar())
+        );
+    }
+
+    @Test
+    void importar_FormatoNoAdmitido() {
+        assertThrows(IllegalArgumentException.class,
+                () -> funkoImportService.importar(stream(""), MediaType.APPLICATION_XML));
+    }
+
+    private static InputStream stream(String contenido) {
+        return new ByteArrayInputStream(contenido.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int contar() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM FUNKOS WHERE nombre LIKE 'IMPORT-%'", Integer.class);
+    }
+
+    private int cantidad(String nombre) {
+        return jdbcTemplate.queryForObject("SELECT cantidad FROM FUNKOS WHERE nombre = ?", Integer.class, nombre);
+    }
+}
@@ -0,0 +1,119 @@
+package org.develop.funkos.services;
+
+import org.develop.rest.categorias.repositories.CategoriasRepository;
+import org.develop.rest.funkos.dto.FunkoUpdateDto;
+import org.develop.rest.funkos.exceptions.FunkoConflict;
+import org.develop.rest.funkos.models.Funko;
+import org.develop.rest.funkos.repositories.FunkosRepository;
+import org.develop.rest.funkos.services.FunkosService;
+import org.develop.rest.pedidos.models.LineaPedido;
+import org.develop.rest.pedidos.models.Pedido;
+import org.develop.rest.pedidos.repositories.PedidoRepository;
+import org.develop.rest.pedidos.services.PedidoService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Ediciones de administración y pedidos a la vez sobre el mismo Funko:
+ * ninguna edición puede devolver el stock a un valor leído antes de un pedido.
+ */
+@SpringBootTest
+class FunkoServiceConcurrencyTest {
+    private static final int STOCK = 1000;
+    private static final int PEDIDOS = 200;
+    private static final int EDICIONES = 100;
+
+    @Autowired
+    private FunkosService funkosService;
+    @Autowired
+    private PedidoService pedidoService;
+    @Autowired
+    private FunkosRepository funkosRepository;
+    @Autowired
+    private CategoriasRepository categoriasRepository;
+    @MockBean
+    private PedidoRepository pedidoRepository;
+
+    private Funko funko;
+
+    @BeforeEach
+    void setUp() {
+        funko = funkosRepository.save(new Funko(null, "TEST-VERSION", 9.99, STOCK, "test.jpg",
+                LocalDateTime.now(), LocalDateTime.now(), true, categoriasRepository.findById(1L).orElseThrow()));
+        when(pedidoRepository.save(any(Pedido.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        funkosRepository.deleteById(funko.getId());
+    }
+
+    @Test
+    void update_EdicionesYPedidosEnParaleloNoPierdenStock() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch salida = new CountDownLatch(1);
+        AtomicInteger guardados = new AtomicInteger();
+        AtomicInteger editados = new AtomicInteger();
+        AtomicInteger conflictos = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < PEDIDOS; i++) {
+            futures.add(executor.submit(() -> {
+                Pedido pedido = new Pedido();
+                pedido.setIdUsuario(1L);
+                pedido.setLineasPedido(List.of(LineaPedido.builder()
+                        .idFunko(funko.getId())
+                        .cantidad(1)
+                        .precioFunko(funko.getPrecio())
+                        .build()));
+                salida.await();
+                pedidoService.save(pedido);
+                guardados.incrementAndGet();
+                return null;
+            }));
+        }
+        for (int i = 0; i < EDICIONES; i++) {
+            String nombre = "TEST-VERSION-" + i;
+            futures.add(executor.submit(() -> {
+                salida.await();
+                try {
+                    funkosService.update(funko.getId(), FunkoUpdateDto.builder().nombre(nombre).build());
+                    editados.incrementAndGet();
+                } catch (FunkoConflict e) {
+                    conflictos.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        salida.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Funko funkoFinal = funkosRepository.findById(funko.getId()).orElseThrow();
+        assertAll(
+                () -> assertEquals(PEDIDOS, guardados.get()),
+                () -> assertEquals(EDICIONES, editados.get() + conflictos.get()),
+                () -> assertTrue(editados.get() > 0),
+                () -> assertEquals(STOCK - PEDIDOS, funkoFinal.getCantidad()),
+                () -> assertTrue(funkoFinal.getNombre().startsWith("TEST-VERSION-")),
+                () -> assertTrue(funkoFinal.getVersion() >= PEDIDOS + editados.get())
+        );
+    }
+}
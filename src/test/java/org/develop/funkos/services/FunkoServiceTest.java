@@ -3,14 +3,20 @@ package org.develop.funkos.services;
 import org.develop.rest.categorias.exceptions.CategoriaNotFound;
 import org.develop.rest.categorias.models.Categoria;
 import org.develop.rest.categorias.services.CategoriasService;
+import org.develop.rest.funkos.cache.FunkoNearCache;
+import org.develop.rest.funkos.cache.FunkoQueryCache;
 import org.develop.rest.funkos.dto.FunkoCreateDto;
 import org.develop.rest.funkos.dto.FunkoUpdateDto;
+import org.develop.rest.funkos.exceptions.FunkoConflict;
 import org.develop.rest.funkos.exceptions.FunkoNotFound;
+import org.develop.rest.funkos.exceptions.FunkoPreconditionFailed;
 import org.develop.rest.funkos.mappers.FunkoMapper;
 import org.develop.rest.funkos.models.Funko;
 import org.develop.rest.funkos.repositories.FunkosRepository;
 import org.develop.config.websockets.WebSocketConfig;
 import org.develop.config.websockets.WebSocketHandler;
+import org.develop.notifications.bus.LocalNotificationBus;
+import org.develop.notifications.bus.NotificationBus;
 import org.develop.notifications.mappers.FunkoNotificationMapper;
 import org.develop.notifications.models.Notificacion;
 import org.develop.rest.funkos.services.FunkosServiceImpl;
@@ -20,9 +26,13 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
@@ -51,6 +61,12 @@ class FunkoServiceTest {
     private WebSocketConfig webSocketConfig;
     @Mock
     private FunkoNotificationMapper funkoNotificationMapper;
+    @Spy
+    private NotificationBus notificationBus = new LocalNotificationBus();
+    @Spy
+    private FunkoNearCache funkoCache = new FunkoNearCache(new ConcurrentMapCacheManager(), notificationBus, null);
+    @Spy
+    private FunkoQueryCache funkoQueryCache = new FunkoQueryCache(new ConcurrentMapCacheManager(), funkoCache, notificationBus, 30000, 2000);
     @InjectMocks
     private FunkosServiceImpl funkosService;
 
@@ -68,7 +84,7 @@ class FunkoServiceTest {
         Pageable pageable = PageRequest.of(0, 10, Sort.by("id").ascending());
         Page<Funko> page = new PageImpl<>(listaFunkos);
 
-        when(funkoRepository.findAll(any(Specification.class), any(Pageable.class))).thenReturn(page);
+        when(funkoRepository.buscar(any(), any(), any(), any(), any(), any(Pageable.class))).thenReturn(page);
 
         // Act
         Page<Funko> actualPage = funkosService.findAll(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), pageable);
@@ -80,7 +96,68 @@ class FunkoServiceTest {
                 () -> assertEquals(page, actualPage)
         );
 
-        verify(funkoRepository, times(1)).findAll(any(Specification.class), any(Pageable.class));
+        verify(funkoRepository, times(1)).buscar(any(), any(), any(), any(), any(), any(Pageable.class));
+    }
+
+    @Test
+    void findAll_SegundaConsultaDesdeCache(){
+        // Arrange
+        Pageable pageable = PageRequest.of(0, 10, Sort.by("id").ascending());
+        Page<Funko> page = new PageImpl<>(List.of(funko1, funko2), pageable, 2);
+
+        when(funkoRepository.buscar(any(), any(), any(), any(), any(), any(Pageable.class))).thenReturn(page);
+
+        // Act
+        funkosService.findAll(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(true), pageable);
+        Page<Funko> actualPage = funkosService.findAll(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(true), pageable);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(List.of(funko1, funko2), actualPage.getContent()),
+                () -> assertEquals(2, actualPage.getTotalElements()),
+                () -> assertEquals(pageable, actualPage.getPageable())
+        );
+
+        verify(funkoRepository, times(1)).buscar(any(), any(), any(), any(), any(), any(Pageable.class));
+        verify(funkoRepository, never()).findAllById(any());
+    }
+
+    @Test
+    void findAll_ByCategoriaNoExiste(){
+        // Arrange
+        Pageable pageable = PageRequest.of(0, 10, Sort.by("id").ascending());
+
+        when(categoriasService.findByNombre("NO-EXISTE")).thenThrow(new CategoriaNotFound("NO-EXISTE"));
+
+        // Act
+        Page<Funko> actualPage = funkosService.findAll(Optional.empty(), Optional.of("NO-EXISTE"), Optional.empty(), Optional.empty(), Optional.empty(), pageable);
+
+        // Assert
+        assertTrue(actualPage.isEmpty());
+
+        verify(funkoRepository, never()).buscar(any(), any(), any(), any(), any(), any(Pageable.class));
+    }
+
+    @Test
+    void findSlice(){
+        // Arrange
+        Pageable pageable = PageRequest.of(0, 1, Sort.by("id").ascending());
+        Window<Funko> window = Window.from(List.of(funko1), i -> ScrollPosition.offset(i + 1), true);
+
+        when(funkoRepository.findBy(any(Specification.class), any())).thenReturn(window);
+
+        // Act
+        Slice<Funko> actualSlice = funkosService.findSlice(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), pageable);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(List.of(funko1), actualSlice.getContent()),
+                () -> assertTrue(actualSlice.hasNext()),
+                () -> assertEquals(pageable, actualSlice.getPageable())
+        );
+
+        verify(funkoRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+        verify(funkoRepository, never()).count(any(Specification.class));
     }
 
     @Test
@@ -91,7 +168,7 @@ class FunkoServiceTest {
         Pageable pageable = PageRequest.of(0, 10, Sort.by("id").ascending());
         Page<Funko> page = new PageImpl<>(listaFunkos);
 
-        when(funkoRepository.findAll(any(Specification.class), any(Pageable.class))).thenReturn(page);
+        when(funkoRepository.buscar(any(), any(), any(), any(), any(), any(Pageable.class))).thenReturn(page);
 
         // Act
         Page<Funko> actualPage = funkosService.findAll(nombre, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), pageable);
@@ -103,21 +180,21 @@ class FunkoServiceTest {
                 () -> assertEquals(page, actualPage)
         );
 
-        verify(funkoRepository, times(1)).findAll(any(Specification.class), any(Pageable.class));
+        verify(funkoRepository, times(1)).buscar(any(), any(), any(), any(), any(), any(Pageable.class));
     }
 
     @Test
     void findAll_ByCategoria(){
         // Arrange
-        Optional<String> categoria = Optional.of("OTROS");
         List<Funko> listaFunkos = List.of(funko1, funko2);
         Pageable pageable = PageRequest.of(0, 10, Sort.by("id").ascending());
         Page<Funko> page = new PageImpl<>(listaFunkos);
 
-        when(funkoRepository.findAll(any(Specification.class), any(Pageable.class))).thenReturn(page);
+        when(categoriasService.findByNombre("OTROS")).thenReturn(categoria);
+        when(funkoRepository.buscar(any(), any(), any(), any(), any(), any(Pageable.class))).thenReturn(page);
 
         // Act
-        Page<Funko> actualPage = funkosService.findAll(Optional.empty(), categoria, Optional.empty(), Optional.empty(), Optional.empty(), pageable);
+        Page<Funko> actualPage = funkosService.findAll(Optional.empty(), Optional.of("OTROS"), Optional.empty(), Optional.empty(), Optional.empty(), pageable);
 
         // Assert
         assertAll(
@@ -126,7 +203,8 @@ class FunkoServiceTest {
                 () -> assertEquals(page, actualPage)
         );
 
-        verify(funkoRepository, times(1)).findAll(any(Specification.class), any(Pageable.class));
+        verify(categoriasService, times(1)).findByNombre("OTROS");
+        verify(funkoRepository, times(1)).buscar(any(), any(), any(), any(), any(), any(Pageable.class));
     }
 
     @Test
@@ -137,7 +215,7 @@ class FunkoServiceTest {
         Pageable pageable = PageRequest.of(0, 10, Sort.by("id").ascending());
         Page<Funko> page = new PageImpl<>(listaFunkos);
 
-        when(funkoRepository.findAll(any(Specification.class), any(Pageable.class))).thenReturn(page);
+        when(funkoRepository.buscar(any(), any(), any(), any(), any(), any(Pageable.class))).thenReturn(page);
 
         // Act
         Page<Funko> actualPage = funkosService.findAll(Optional.empty(), Optional.empty(), precioMax, Optional.empty(), Optional.empty(), pageable);
@@ -149,7 +227,7 @@ class FunkoServiceTest {
                 () -> assertEquals(page, actualPage)
         );
 
-        verify(funkoRepository, times(1)).findAll(any(Specification.class), any(Pageable.class));
+        verify(funkoRepository, times(1)).buscar(any(), any(), any(), any(), any(), any(Pageable.class));
     }
 
 
@@ -161,7 +239,7 @@ class FunkoServiceTest {
         Pageable pageable = PageRequest.of(0, 10, Sort.by("id").ascending());
         Page<Funko> page = new PageImpl<>(listaFunkos);
 
-        when(funkoRepository.findAll(any(Specification.class), any(Pageable.class))).thenReturn(page);
+        when(funkoRepository.buscar(isNull(), isNull(), isNull(), eq(100), isNull(), any(Pageable.class))).thenReturn(page);
 
         // Act
         Page<Funko> actualPage = funkosService.findAll(Optional.empty(), Optional.empty(), Optional.empty(), cantidadMin, Optional.empty(), pageable);
@@ -173,7 +251,7 @@ class FunkoServiceTest {
                 () -> assertEquals(page, actualPage)
         );
 
-        verify(funkoRepository, times(1)).findAll(any(Specification.class), any(Pageable.class));
+        verify(funkoRepository, times(1)).buscar(isNull(), isNull(), isNull(), eq(100), isNull(), any(Pageable.class));
     }
 
     @Test
@@ -184,7 +262,7 @@ class FunkoServiceTest {
         Pageable pageable = PageRequest.of(0, 10, Sort.by("id").ascending());
         Page<Funko> page = new PageImpl<>(listaFunkos);
 
-        when(funkoRepository.findAll(any(Specification.class), any(Pageable.class))).thenReturn(page);
+        when(funkoRepository.buscar(any(), any(), any(), any(), any(), any(Pageable.class))).thenReturn(page);
 
         // Act
         Page<Funko> actualPage = funkosService.findAll(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), isActivo, pageable);
@@ -196,7 +274,7 @@ class FunkoServiceTest {
                 () -> assertEquals(page, actualPage)
         );
 
-        verify(funkoRepository, times(1)).findAll(any(Specification.class), any(Pageable.class));
+        verify(funkoRepository, times(1)).buscar(any(), any(), any(), any(), any(), any(Pageable.class));
     }
 
     @Test
@@ -227,6 +305,26 @@ class FunkoServiceTest {
         verify(funkoRepository, times(1)).findById(id);
     }
 
+    @Test
+    void findById_SegundaLecturaDesdeCache(){
+        // Arrange
+        Long id = 1L;
+
+        when(funkoRepository.findById(id)).thenReturn(Optional.of(funko1));
+
+        // Act
+        Funko primera = funkosService.findById(id);
+        Funko segunda = funkosService.findById(id);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(funko1, primera),
+                () -> assertSame(primera, segunda)
+        );
+
+        verify(funkoRepository, times(1)).findById(id);
+    }
+
     @Test
     void findById_idNotExist(){
         // Arrange
@@ -256,7 +354,7 @@ class FunkoServiceTest {
         when(funkoRepository.save(funko)).thenReturn(funko);
         when(categoriasService.findByNombre(funkoCreateDto.getCategoria())).thenReturn(categoria);
         when(funkoMapper.toFunko(funkoCreateDto, categoria)).thenReturn(funko);
-        doNothing().when(webSocketHandlerMock).sendMessage(any());
+        doNothing().when(webSocketHandlerMock).sendMessage(anyString(), any());
 
         // Act
         Funko savedFunko = funkosService.save(funkoCreateDto);
@@ -308,7 +406,7 @@ class FunkoServiceTest {
         when(funkoRepository.save(funko1)).thenReturn(funko1);
         when(funkoMapper.toFunko(funkoUpdateDto, funko1, categoria)).thenReturn(funko1);
         when(categoriasService.findByNombre(funkoUpdateDto.getCategoria())).thenReturn(categoria);
-        doNothing().when(webSocketHandlerMock).sendMessage(any());
+        doNothing().when(webSocketHandlerMock).sendMessage(anyString(), any());
 
         // Act
         Funko funkoActualizado = funkosService.update(id, funkoUpdateDto);
@@ -325,6 +423,90 @@ class FunkoServiceTest {
         verify(funkoMapper, times(1)).toFunko(funkoUpdateDto, funko1, categoria);
     }
 
+    @Test
+    void update_ConflictoDeVersionSeReintenta() {
+        // Arrange
+        Long id = 1L;
+        FunkoUpdateDto funkoUpdateDto = FunkoUpdateDto.builder()
+                .nombre("FunkoActualizado")
+                .build();
+
+        when(funkoRepository.findById(id)).thenReturn(Optional.of(funko1));
+        when(funkoMapper.toFunko(eq(funkoUpdateDto), any(Funko.class), eq(funko1.getCategoria()))).thenReturn(funko1);
+        when(funkoRepository.save(funko1))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Funko.class, id))
+                .thenReturn(funko1);
+
+        // Act
+        Funko funkoActualizado = funkosService.update(id, funkoUpdateDto);
+
+        // Assert
+        assertEquals(funko1, funkoActualizado);
+
+        // La segunda vez se vuelve a leer de la base de datos, no de la cache
+        verify(funkoRepository, times(2)).findById(id);
+        verify(funkoRepository, times(2)).save(funko1);
+    }
+
+    @Test
+    void update_ConflictoDeVersionAgotaLosIntentos() throws IOException {
+        // Arrange
+        Long id = 1L;
+        FunkoUpdateDto funkoUpdateDto = FunkoUpdateDto.builder()
+                .nombre("FunkoActualizado")
+                .build();
+
+        when(funkoRepository.findById(id)).thenReturn(Optional.of(funko1));
+        when(funkoMapper.toFunko(eq(funkoUpdateDto), any(Funko.class), eq(funko1.getCategoria()))).thenReturn(funko1);
+        when(funkoRepository.save(funko1)).thenThrow(new ObjectOptimisticLockingFailureException(Funko.class, id));
+
+        // Act
+        var res = assertThrows(FunkoConflict.class, () -> funkosService.update(id, funkoUpdateDto));
+
+        // Assert
+        assertTrue(res.getMessage().contains(String.valueOf(id)));
+
+        verify(funkoRepository, times(5)).save(funko1);
+        verify(webSocketHandlerMock, never()).sendMessage(anyString(), any());
+    }
+
+    @Test
+    void update_ConVersion_OtraVersionNoGuarda() {
+        // Arrange
+        Long id = 1L;
+        FunkoUpdateDto funkoUpdateDto = FunkoUpdateDto.builder()
+                .nombre("FunkoActualizado")
+                .build();
+        Funko leido = new Funko(1L, "TEST-1", 19.99, 100, "test1.jpg", LocalDateTime.now(), LocalDateTime.now(), true, categoria, 4L);
+
+        when(funkoRepository.findById(id)).thenReturn(Optional.of(leido));
+
+        // Act & Assert
+        assertThrows(FunkoPreconditionFailed.class, () -> funkosService.update(id, funkoUpdateDto, 3L));
+
+        verify(funkoRepository, never()).save(any());
+    }
+
+    @Test
+    void update_ConVersion_ConflictoEnLaBaseDeDatosNoSeReintenta() throws IOException {
+        // Arrange
+        Long id = 1L;
+        FunkoUpdateDto funkoUpdateDto = FunkoUpdateDto.builder()
+                .nombre("FunkoActualizado")
+                .build();
+        Funko leido = new Funko(1L, "TEST-1", 19.99, 100, "test1.jpg", LocalDateTime.now(), LocalDateTime.now(), true, categoria, 3L);
+
+        when(funkoRepository.findById(id)).thenReturn(Optional.of(leido));
+        when(funkoMapper.toFunko(funkoUpdateDto, leido, categoria)).thenReturn(leido);
+        when(funkoRepository.save(leido)).thenThrow(new ObjectOptimisticLockingFailureException(Funko.class, id));
+
+        // Act & Assert
+        assertThrows(FunkoPreconditionFailed.class, () -> funkosService.update(id, funkoUpdateDto, 3L));
+
+        verify(funkoRepository, times(1)).save(leido);
+        verify(webSocketHandlerMock, never()).sendMessage(anyString(), any());
+    }
+
     @Test
     void update_idNotExist(){
         // Arrange
@@ -377,7 +559,7 @@ class FunkoServiceTest {
         Long id = 2L;
 
         when(funkoRepository.findById(id)).thenReturn(Optional.of(funko2));
-        doNothing().when(webSocketHandlerMock).sendMessage(any());
+        doNothing().when(webSocketHandlerMock).sendMessage(anyString(), any());
 
         // Act
         funkosService.deleteById(id);
@@ -403,7 +585,7 @@ class FunkoServiceTest {
     @Test
     void onChange() throws IOException {
         // Arrange
-        doNothing().when(webSocketHandlerMock).sendMessage(any(String.class));
+        doNothing().when(webSocketHandlerMock).sendMessage(anyString(), any(String.class));
 
         // Act
         funkosService.onChange(Notificacion.Tipo.CREATE, any(Funko.class));
@@ -419,7 +601,7 @@ class FunkoServiceTest {
         when(funkoRepository.findById(funko1.getId())).thenReturn(Optional.of(funko1));
         when(storageService.store(multipartFile)).thenReturn(imageUrl);
         when(funkoRepository.save(any(Funko.class))).thenReturn(funko1);
-        doNothing().when(webSocketHandlerMock).sendMessage(anyString());
+        doNothing().when(webSocketHandlerMock).sendMessage(anyString(), anyString());
 
         // Act
         Funko updatedFunko = funkosService.updateImage(funko1.getId(), multipartFile);
@@ -430,4 +612,69 @@ class FunkoServiceTest {
         verify(storageService, times(1)).delete(funko1.getImagen());
         verify(storageService, times(1)).store(multipartFile);
     }
+
+    @Test
+    void updateImage_Almacenada() throws IOException {
+        // Arrange
+        String imageStored = "3559fb35e3328cffef7f38fb08562f74bee14e53c17302479714634ecac7f129.png";
+
+        when(funkoRepository.findById(funko1.getId())).thenReturn(Optional.of(funko1));
+        when(storageService.getUrl(imageStored)).thenReturn("http://localhost/storage/" + imageStored);
+        when(funkoRepository.save(any(Funko.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        doNothing().when(webSocketHandlerMock).sendMessage(anyString(), anyString());
+
+        // Act
+        Funko updatedFunko = funkosService.updateImage(funko1.getId(), imageStored);
+
+        // Assert
+        assertEquals("http://localhost/storage/" + imageStored, updatedFunko.getImagen());
+        verify(storageService, times(1)).delete(funko1.getImagen());
+        verify(storageService, never()).store(any(MultipartFile.class));
+    }
+
+    @Test
+    void updateImage_Almacenada_FunkoNotFound() {
+        // Arrange
+        String imageStored = "3559fb35e3328cffef7f38fb08562f74bee14e53c17302479714634ecac7f129.png";
+        when(funkoRepository.findById(99L)).thenReturn(Optional.empty());
+
+        // Act
+        assertThrows(FunkoNotFound.class, () -> funkosService.updateImage(99L, imageStored));
+
+        // Assert
+        verify(storageService, times(1)).delete(imageStored);
+        verify(funkoRepository, never()).save(any(Funko.class));
+    }
+
+    @Test
+    void updateImage_FallaElGuardado_SueltaLaImagenNueva() throws IOException {
+        // Arrange
+        MultipartFile multipartFile = mock(MultipartFile.class);
+        when(funkoRepository.findById(funko1.getId())).thenReturn(Optional.of(funko1));
+        when(storageService.store(multipartFile)).thenReturn("nueva.png");
+        when(funkoRepository.save(any(Funko.class))).thenThrow(new DataIntegrityViolationException("fallo"));
+
+        // Act
+        assertThrows(DataIntegrityViolationException.class, () -> funkosService.updateImage(funko1.getId(), multipartFile));
+
+        // Assert
+        verify(storageService, times(1)).delete("nueva.png");
+        verify(storageService, never()).delete(funko1.getImagen());
+        verify(webSocketHandlerMock, never()).sendMessage(anyString(), any());
+    }
+
+    @Test
+    void updateImage_Almacenada_ConflictosAgotados_SueltaLaImagen() {
+        // Arrange
+        String imageStored = "3559fb35e3328cffef7f38fb08562f74bee14e53c17302479714634ecac7f129.png";
+        when(funkoRepository.findById(funko1.getId())).thenReturn(Optional.of(funko1));
+        when(funkoRepository.save(any(Funko.class))).thenThrow(new ObjectOptimisticLockingFailureException(Funko.class, funko1.getId()));
+
+        // Act
+        assertThrows(FunkoConflict.class, () -> funkosService.updateImage(funko1.getId(), imageStored));
+
+        // Assert
+        verify(storageService, times(1)).delete(imageStored);
+        verify(storageService, never()).delete(funko1.getImagen());
+    }
 }
@@ -0,0 +1,118 @@
+package org.develop.notifications.bus;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MongoNotificationBusTest {
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    // Hace de colección capped: lo insertado se lee en el mismo orden
+    private final List<Document> coleccion = new ArrayList<>();
+    private MongoNotificationBus nodoA;
+    private MongoNotificationBus nodoB;
+
+    @BeforeEach
+    void setUp() {
+        nodoA = new MongoNotificationBus(mongoTemplate, "notificaciones", 1024, Duration.ofSeconds(5));
+        nodoB = new MongoNotificationBus(mongoTemplate, "notificaciones", 1024, Duration.ofSeconds(5));
+        lenient().doAnswer(invocation -> {
+            coleccion.add(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        }).when(mongoTemplate).insert(any(Document.class), eq("notificaciones"));
+    }
+
+    @Test
+    void publish_InsertaEnLaColeccion() {
+        // Act
+        nodoA.publish(new NotificationEvent("FUNKOS", "1", "{\"id\":1}"));
+
+        // Assert
+        ArgumentCaptor<Document> captor = ArgumentCaptor.forClass(Document.class);
+        verify(mongoTemplate, times(1)).insert(captor.capture(), eq("notificaciones"));
+        assertAll(
+                () -> assertEquals("FUNKOS", captor.getValue().getString("entity")),
+                () -> assertEquals("1", captor.getValue().getString("key")),
+                () -> assertEquals("{\"id\":1}", captor.getValue().getString("payload")),
+                () -> assertNotNull(captor.getValue().getObjectId("_id"))
+        );
+    }
+
+    @Test
+    void deliver_TodosLosNodosRecibenCadaEventoUnaVezYEnOrden() {
+        // Arrange
+        List<NotificationEvent> recibidosA = new ArrayList<>();
+        List<NotificationEvent> recibidosB = new ArrayList<>();
+        nodoA.subscribe(recibidosA::add);
+        nodoB.subscribe(recibidosB::add);
+
+        nodoA.publish(new NotificationEvent("FUNKOS", "1", "{\"v\":1}"));
+        nodoB.publish(new NotificationEvent("FUNKOS", "1", "{\"v\":2}"));
+        nodoA.publish(new NotificationEvent("FUNKOS", "2", "{\"v\":1}"));
+
+        // Act: cada nodo sigue la colección y el de A reabre el cursor y vuelve a leerla
+        coleccion.forEach(nodoA::deliver);
+        coleccion.forEach(nodoB::deliver);
+        coleccion.forEach(nodoA::deliver);
+
+        // Assert
+        List<String> esperados = List.of("{\"v\":1}", "{\"v\":2}", "{\"v\":1}");
+        assertAll(
+                () -> assertEquals(esperados, recibidosA.stream().map(NotificationEvent::payload).toList()),
+                () -> assertEquals(esperados, recibidosB.stream().map(NotificationEvent::payload).toList()),
+                () -> assertEquals(List.of("1", "1", "2"), recibidosB.stream().map(NotificationEvent::key).toList())
+        );
+    }
+
+    @Test
+    void primerId_IncluyeTodosLosIdsDelMismoSegundo() {
+        // Arrange
+        Instant ahora = Instant.now();
+        ObjectId desde = MongoNotificationBus.primerId(ahora);
+
+        // Act & Assert
+        // El contador y la parte aleatoria de un id de ese segundo pueden ser cualquiera
+        assertAll(
+                () -> assertTrue(desde.compareTo(new ObjectId(Date.from(ahora))) <= 0),
+                () -> assertTrue(desde.compareTo(new ObjectId(Date.from(ahora), 0)) <= 0),
+                () -> assertTrue(desde.compareTo(new ObjectId(Date.from(ahora.minusSeconds(1)))) > 0),
+                () -> assertEquals(ahora.getEpochSecond(), desde.getTimestamp())
+        );
+    }
+
+    @Test
+    void deliver_UnSuscriptorQueFallaNoAfectaAlResto() {
+        // Arrange
+        List<NotificationEvent> recibidos = new ArrayList<>();
+        nodoA.subscribe(event -> {
+            throw new IllegalStateException("fallo");
+        });
+        nodoA.subscribe(recibidos::add);
+        nodoA.publish(new NotificationEvent("FUNKOS", "1", "{}"));
+
+        // Act
+        coleccion.forEach(nodoA::deliver);
+
+        // Assert
+        assertEquals(1, recibidos.size());
+    }
+}
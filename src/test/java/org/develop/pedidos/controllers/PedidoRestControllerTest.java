@@ -7,11 +7,14 @@ import org.develop.rest.pedidos.models.Cliente;
 import org.develop.rest.pedidos.models.Direccion;
 import org.develop.rest.pedidos.models.LineaPedido;
 import org.develop.rest.pedidos.models.Pedido;
+import org.develop.rest.pedidos.services.PedidoExportService;
 import org.develop.rest.pedidos.services.PedidoService;
+import org.develop.utils.export.ExportFormat;
 import org.develop.utils.pagination.PageResponse;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -25,11 +28,21 @@ import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.test.context.support.WithAnonymousUser;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import com.fasterxml.jackson.core.type.TypeReference;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 
@@ -40,6 +53,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 class PedidoRestControllerTest {
     private final String myEndpoint = "/v1/pedidos";
     private final ObjectMapper mapper = new ObjectMapper();
+    private final CountDownLatch peticionTerminada = new CountDownLatch(1);
     private final Pedido pedido = Pedido.builder()
             .id(new ObjectId("5f9f1a3b9d6b6d2e3c1d6f1a"))
             .idUsuario(1L)
@@ -58,6 +72,8 @@ class PedidoRestControllerTest {
     MockMvc mockMvc;
     @MockBean
     private PedidoService pedidosService;
+    @MockBean
+    private PedidoExportService pedidoExportService;
 
     @Autowired
     public PedidoRestControllerTest(PedidoService pedidosService) {
@@ -187,4 +203,81 @@ class PedidoRestControllerTest {
 
         verify(pedidosService, times(1)).deleteById(any(ObjectId.class));
     }
+
+    @Test
+    void exportPedidos_CsvConFiltros() throws Exception {
+        // Arrange
+        var desde = LocalDateTime.of(2023, 1, 1, 0, 0);
+        var hasta = LocalDateTime.of(2024, 1, 1, 0, 0);
+        when(pedidoExportService.exportar(any(), eq(ExportFormat.CSV), eq(Optional.of(1L)), eq(Optional.of(desde)), eq(Optional.of(hasta))))
+                .thenAnswer(trasLaPeticion(invocation -> {
+                    OutputStream out = invocation.getArgument(0);
+                    out.write("idPedido,idUsuario\n5f9f1a3b9d6b6d2e3c1d6f1a,1\n".getBytes(StandardCharsets.UTF_8));
+                    return 1L;
+                }));
+
+        MockHttpServletResponse response = exportar(get(myEndpoint + "/export")
+                .param("formato", "csv")
+                .param("idUsuario", "1")
+                .param("desde", "2023-01-01T00:00:00")
+                .param("hasta", "2024-01-01T00:00:00")
+                // El parámetro manda aunque el cliente pida JSON
+                .accept(MediaType.APPLICATION_JSON));
+
+        // Assert
+        assertAll(
+                () -> assertEquals(200, response.getStatus()),
+                () -> assertEquals("text/csv", response.getContentType()),
+                () -> assertEquals("attachment; filename=pedidos.csv", response.getHeader("Content-Disposition")),
+                () -> assertEquals("idPedido,idUsuario\n5f9f1a3b9d6b6d2e3c1d6f1a,1\n", response.getContentAsString())
+        );
+
+        // Verify
+        verify(pedidoExportService, times(1)).exportar(any(), eq(ExportFormat.CSV), eq(Optional.of(1L)), eq(Optional.of(desde)), eq(Optional.of(hasta)));
+    }
+
+    @Test
+    void exportPedidos_NdjsonPorDefecto() throws Exception {
+        // Arrange
+        when(pedidoExportService.exportar(any(), any(), any(), any(), any())).thenAnswer(trasLaPeticion(invocation -> 0L));
+
+        MockHttpServletResponse response = exportar(get(myEndpoint + "/export"));
+
+        // Assert
+        assertAll(
+                () -> assertEquals(200, response.getStatus()),
+                () -> assertEquals(MediaType.APPLICATION_NDJSON_VALUE, response.getContentType())
+        );
+
+        // Verify
+        verify(pedidoExportService, times(1)).exportar(any(), eq(ExportFormat.NDJSON), eq(Optional.empty()), eq(Optional.empty()), eq(Optional.empty()));
+    }
+
+    @Test
+    void exportPedidos_FormatoNoAdmitido() throws Exception {
+        // Act
+        MockHttpServletResponse response = mockMvc.perform(get(myEndpoint + "/export").param("formato", "xml"))
+                .andReturn().getResponse();
+
+        // Assert
+        assertEquals(400, response.getStatus());
+
+        // Verify
+        verify(pedidoExportService, never()).exportar(any(), any(), any(), any(), any());
+    }
+
+    // El cuerpo de la exportación se escribe en otro hilo: se retiene hasta que la petición ha pasado los filtros,
+    // si no los dos escriben a la vez las cabeceras de la respuesta simulada, que no admite varios hilos
+    private <T> Answer<T> trasLaPeticion(Answer<T> answer) {
+        return invocation -> {
+            assertTrue(peticionTerminada.await(5, TimeUnit.SECONDS));
+            return answer.answer(invocation);
+        };
+    }
+
+    private MockHttpServletResponse exportar(MockHttpServletRequestBuilder peticion) throws Exception {
+        MvcResult result = mockMvc.perform(peticion).andReturn();
+        peticionTerminada.countDown();
+        return mockMvc.perform(asyncDispatch(result)).andReturn().getResponse();
+    }
 }
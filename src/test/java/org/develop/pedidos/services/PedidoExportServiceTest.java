@@ -0,0 +1,147 @@
+package org.develop.pedidos.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.develop.rest.pedidos.models.Cliente;
+import org.develop.rest.pedidos.models.Direccion;
+import org.develop.rest.pedidos.models.LineaPedido;
+import org.develop.rest.pedidos.models.Pedido;
+import org.develop.rest.pedidos.services.PedidoExportService;
+import org.develop.utils.export.ExportFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PedidoExportServiceTest {
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final Pedido pedido = Pedido.builder()
+            .id(new ObjectId("5f9f1a3b9d6b6d2e3c1d6f1a"))
+            .idUsuario(1L)
+            .cliente(new Cliente("MiguelZanotto", "migzanotto18@hotmail.com", "722663185",
+                    new Direccion("Avenida", "73", "Leganes", "Madrid", "Espana", "28916")))
+            .fechaCreacion(LocalDateTime.of(2023, 5, 1, 10, 0))
+            .lineasPedido(List.of(
+                    LineaPedido.builder().idFunko(1L).cantidad(2).precioFunko(10.0).total(20.0).build(),
+                    LineaPedido.builder().idFunko(2L).cantidad(1).precioFunko(5.5).total(5.5).build()))
+            .build();
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private IndexOperations indexOperations;
+
+    private PedidoExportService pedidoExportService;
+
+    @BeforeEach
+    void setUp() {
+        pedidoExportService = new PedidoExportService(mongoTemplate, mapper, 250);
+        lenient().when(mongoTemplate.indexOps(Pedido.class)).thenReturn(indexOperations);
+    }
+
+    @Test
+    void exportar_CsvUnaFilaPorLineaYSinDatosDelCliente() throws Exception {
+        // Arrange
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        when(mongoTemplate.stream(any(Query.class), eq(Pedido.class))).thenReturn(Stream.of(pedido));
+
+        // Act
+        long exportados = pedidoExportService.exportar(out, ExportFormat.CSV, Optional.empty(), Optional.empty(), Optional.empty());
+
+        // Assert
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(query.capture(), eq(Pedido.class));
+        List<String> lineas = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertAll(
+                () -> assertEquals(1, exportados),
+                () -> assertEquals(3, lineas.size()),
+                () -> assertEquals("idPedido,idUsuario,fechaCreacion,isActivo,totalItems,total,idFunko,cantidad,precioFunko,totalLinea", lineas.get(0)),
+                () -> assertTrue(lineas.get(1).startsWith("5f9f1a3b9d6b6d2e3c1d6f1a,1,2023-05-01T10:00,")),
+                () -> assertTrue(lineas.get(1).endsWith(",1,2,10.0,20.0")),
+                () -> assertTrue(lineas.get(2).endsWith(",2,1,5.5,5.5")),
+                () -> assertFalse(query.getValue().getFieldsObject().containsKey("cliente")),
+                () -> assertEquals(1, query.getValue().getFieldsObject().get("lineasPedido")),
+                () -> assertEquals(250, query.getValue().getMeta().getCursorBatchSize())
+        );
+    }
+
+    @Test
+    void exportar_NdjsonUnPedidoPorLineaYSinDatosDelCliente() throws Exception {
+        // Arrange
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        when(mongoTemplate.stream(any(Query.class), eq(Pedido.class))).thenReturn(Stream.of(pedido, pedido));
+
+        // Act
+        long exportados = pedidoExportService.exportar(out, ExportFormat.NDJSON, Optional.empty(), Optional.empty(), Optional.empty());
+
+        // Assert
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(query.capture(), eq(Pedido.class));
+        List<String> lineas = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertAll(
+                () -> assertEquals(2, exportados),
+                () -> assertEquals(2, lineas.size()),
+                () -> assertEquals("5f9f1a3b9d6b6d2e3c1d6f1a", mapper.readTree(lineas.get(0)).get("id").asText()),
+                () -> assertEquals(1, mapper.readTree(lineas.get(0)).get("idUsuario").asLong()),
+                () -> assertEquals(2, mapper.readTree(lineas.get(0)).get("lineasPedido").size()),
+                () -> assertFalse(mapper.readTree(lineas.get(0)).has("cliente")),
+                () -> assertFalse(query.getValue().getFieldsObject().containsKey("cliente")),
+                () -> assertEquals(1, query.getValue().getFieldsObject().get("lineasPedido")),
+                () -> assertEquals(new Document("fechaCreacion", 1).append("id", 1), query.getValue().getSortObject())
+        );
+    }
+
+    @Test
+    void exportar_FiltraPorUsuarioYFechas() throws Exception {
+        // Arrange
+        var desde = LocalDateTime.of(2023, 1, 1, 0, 0);
+        var hasta = LocalDateTime.of(2024, 1, 1, 0, 0);
+        when(mongoTemplate.stream(any(Query.class), eq(Pedido.class))).thenReturn(Stream.empty());
+
+        // Act
+        long exportados = pedidoExportService.exportar(new ByteArrayOutputStream(), ExportFormat.NDJSON,
+                Optional.of(1L), Optional.of(desde), Optional.of(hasta));
+
+        // Assert
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(query.capture(), eq(Pedido.class));
+        Document filtro = query.getValue().getQueryObject();
+        assertAll(
+                () -> assertEquals(0, exportados),
+                () -> assertEquals(1L, filtro.get("idUsuario")),
+                () -> assertEquals(new Document("$gte", desde).append("$lt", hasta), filtro.get("fechaCreacion"))
+        );
+    }
+
+    @Test
+    void exportar_CreaLosIndicesSoloLaPrimeraVez() throws Exception {
+        // Arrange
+        when(mongoTemplate.stream(any(Query.class), eq(Pedido.class))).thenReturn(Stream.empty(), Stream.empty());
+
+        // Act
+        pedidoExportService.exportar(new ByteArrayOutputStream(), ExportFormat.CSV, Optional.empty(), Optional.empty(), Optional.empty());
+        pedidoExportService.exportar(new ByteArrayOutputStream(), ExportFormat.CSV, Optional.empty(), Optional.empty(), Optional.empty());
+
+        // Verify
+        verify(indexOperations, times(2)).ensureIndex(any(IndexDefinition.class));
+    }
+}
@@ -0,0 +1,97 @@
+package org.develop.pedidos.services;
+
+import org.develop.rest.categorias.repositories.CategoriasRepository;
+import org.develop.rest.funkos.models.Funko;
+import org.develop.rest.funkos.repositories.FunkosRepository;
+import org.develop.rest.pedidos.exceptions.FunkoNotStock;
+import org.develop.rest.pedidos.models.LineaPedido;
+import org.develop.rest.pedidos.models.Pedido;
+import org.develop.rest.pedidos.repositories.PedidoRepository;
+import org.develop.rest.pedidos.services.PedidoService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+class PedidoServiceConcurrencyTest {
+    private static final int STOCK = 10;
+    private static final int PEDIDOS = 40;
+
+    @Autowired
+    private PedidoService pedidoService;
+    @Autowired
+    private FunkosRepository funkosRepository;
+    @Autowired
+    private CategoriasRepository categoriasRepository;
+    @MockBean
+    private PedidoRepository pedidoRepository;
+
+    private Funko funko;
+
+    @BeforeEach
+    void setUp() {
+        funko = funkosRepository.save(new Funko(null, "TEST-CONCURRENCIA", 9.99, STOCK, "test.jpg",
+                LocalDateTime.now(), LocalDateTime.now(), true, categoriasRepository.findById(1L).orElseThrow()));
+        when(pedidoRepository.save(any(Pedido.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        funkosRepository.deleteById(funko.getId());
+    }
+
+    @Test
+    void save_PedidosEnParaleloNoVendenMasDelStock() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch salida = new CountDownLatch(1);
+        AtomicInteger guardados = new AtomicInteger();
+        AtomicInteger sinStock = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < PEDIDOS; i++) {
+            futures.add(executor.submit(() -> {
+                Pedido pedido = new Pedido();
+                pedido.setIdUsuario(1L);
+                pedido.setLineasPedido(List.of(LineaPedido.builder()
+                        .idFunko(funko.getId())
+                        .cantidad(1)
+                        .precioFunko(funko.getPrecio())
+                        .build()));
+                salida.await();
+                try {
+                    pedidoService.save(pedido);
+                    guardados.incrementAndGet();
+                } catch (FunkoNotStock e) {
+                    sinStock.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        salida.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Funko funkoFinal = funkosRepository.findById(funko.getId()).orElseThrow();
+        assertAll(
+                () -> assertEquals(STOCK, guardados.get()),
+                () -> assertEquals(PEDIDOS - STOCK, sinStock.get()),
+                () -> assertEquals(0, funkoFinal.getCantidad())
+        );
+    }
+}
@@ -1,8 +1,12 @@
 package org.develop.pedidos.services;
 
 import org.bson.types.ObjectId;
+import org.develop.notifications.bus.LocalNotificationBus;
+import org.develop.rest.funkos.cache.FunkoNearCache;
+import org.develop.rest.funkos.exceptions.FunkoNotFound;
 import org.develop.rest.funkos.models.Funko;
 import org.develop.rest.funkos.repositories.FunkosRepository;
+import org.develop.rest.pedidos.exceptions.FunkoNotStock;
 import org.develop.rest.pedidos.exceptions.PedidoNotFound;
 import org.develop.rest.pedidos.models.LineaPedido;
 import org.develop.rest.pedidos.models.Pedido;
@@ -12,7 +16,9 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -30,6 +36,8 @@ public class PedidosServiceImplTest {
     private PedidoRepository pedidoRepository;
     @Mock
     private FunkosRepository funkosRepository;
+    @Spy
+    private FunkoNearCache funkoCache = new FunkoNearCache(new ConcurrentMapCacheManager(), new LocalNotificationBus(), null);
     @InjectMocks
     private PedidoServiceImpl pedidosService;
 
@@ -97,7 +105,8 @@ public class PedidosServiceImplTest {
         pedidoToSave.setLineasPedido(List.of(lineaPedido));
 
         when(pedidoRepository.save(any(Pedido.class))).thenReturn(pedidoToSave);
-        when(funkosRepository.findById(anyLong())).thenReturn(Optional.of(funko));
+        when(funkosRepository.findAllById(anyIterable())).thenReturn(List.of(funko));
+        when(funkosRepository.decrementStock(1L, 10)).thenReturn(1);
 
         Pedido actualPedido = pedidosService.save(pedido);
 
@@ -108,7 +117,66 @@ public class PedidosServiceImplTest {
         );
 
         verify(pedidoRepository).save(any(Pedido.class));
-        verify(funkosRepository, times(2)).findById(anyLong());
+        verify(funkosRepository, times(1)).findAllById(anyIterable());
+        verify(funkosRepository, times(1)).decrementStock(1L, 10);
+        verify(funkosRepository, never()).save(any(Funko.class));
+    }
+
+    @Test
+    void save_AgrupaLineasDelMismoFunko(){
+        Funko funko = Funko.builder()
+                .id(1L)
+                .cantidad(20)
+                .precio(19.99)
+                .build();
+
+        Pedido pedido = new Pedido();
+        pedido.setLineasPedido(List.of(
+                LineaPedido.builder().idFunko(1L).cantidad(5).precioFunko(19.99).build(),
+                LineaPedido.builder().idFunko(1L).cantidad(7).precioFunko(19.99).build()
+        ));
+
+        when(pedidoRepository.save(any(Pedido.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(funkosRepository.findAllById(anyIterable())).thenReturn(List.of(funko));
+        when(funkosRepository.decrementStock(1L, 12)).thenReturn(1);
+
+        Pedido actualPedido = pedidosService.save(pedido);
+
+        assertEquals(12, actualPedido.getTotalItems());
+
+        verify(funkosRepository, times(1)).decrementStock(1L, 12);
+    }
+
+    @Test
+    void save_SinStockAlReservar(){
+        Funko funko = Funko.builder()
+                .id(1L)
+                .cantidad(20)
+                .precio(19.99)
+                .build();
+
+        Pedido pedido = new Pedido();
+        pedido.setLineasPedido(List.of(LineaPedido.builder().idFunko(1L).cantidad(10).precioFunko(19.99).build()));
+
+        when(funkosRepository.findAllById(anyIterable())).thenReturn(List.of(funko));
+        when(funkosRepository.decrementStock(1L, 10)).thenReturn(0);
+
+        assertThrows(FunkoNotStock.class, () -> pedidosService.save(pedido));
+
+        verify(pedidoRepository, never()).save(any(Pedido.class));
+    }
+
+    @Test
+    void save_FunkoNotFound(){
+        Pedido pedido = new Pedido();
+        pedido.setLineasPedido(List.of(LineaPedido.builder().idFunko(99L).cantidad(1).precioFunko(19.99).build()));
+
+        when(funkosRepository.findAllById(anyIterable())).thenReturn(List.of());
+
+        assertThrows(FunkoNotFound.class, () -> pedidosService.save(pedido));
+
+        verify(funkosRepository, never()).decrementStock(anyLong(), anyInt());
+        verify(pedidoRepository, never()).save(any(Pedido.class));
     }
 
     @Test
@@ -145,7 +213,8 @@ public class PedidosServiceImplTest {
 
         when(pedidoRepository.findById(idPedido)).thenReturn(Optional.of(pedidoToUpdate));
         when(pedidoRepository.save(any(Pedido.class))).thenReturn(pedidoToUpdate);
-        when(funkosRepository.findById(anyLong())).thenReturn(Optional.of(funko));
+        when(funkosRepository.findAllById(anyIterable())).thenReturn(List.of(funko));
+        when(funkosRepository.decrementStock(1L, 10)).thenReturn(1);
 
         Pedido actualPedido = pedidosService.update(idPedido, pedido);
 
@@ -157,7 +226,9 @@ public class PedidosServiceImplTest {
 
         verify(pedidoRepository).findById(idPedido);
         verify(pedidoRepository).save(any(Pedido.class));
-        verify(funkosRepository, times(3)).findById(anyLong());
+        verify(funkosRepository, times(1)).incrementStock(1L, 10);
+        verify(funkosRepository, times(1)).findAllById(anyIterable());
+        verify(funkosRepository, times(1)).decrementStock(1L, 10);
     }
 
 }
@@ -0,0 +1,193 @@
+package org.develop.pedidos.services;
+
+import org.develop.notifications.bus.LocalNotificationBus;
+import org.develop.notifications.bus.NotificationEvent;
+import org.develop.rest.funkos.cache.FunkoNearCache;
+import org.develop.rest.funkos.models.Funko;
+import org.develop.rest.funkos.repositories.FunkosRepository;
+import org.develop.rest.pedidos.exceptions.FunkoNotStock;
+import org.develop.rest.pedidos.services.StockLedger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockLedgerTest {
+    private final Funko funko1 = Funko.builder().id(1L).cantidad(10).precio(19.99).build();
+    private final Funko funko2 = Funko.builder().id(2L).cantidad(5).precio(14.99).build();
+
+    @Mock
+    private FunkosRepository funkosRepository;
+    @Mock
+    private FunkoNearCache funkoCache;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final LocalNotificationBus notificationBus = new LocalNotificationBus();
+    private StockLedger stockLedger;
+
+    @BeforeEach
+    void setUp() {
+        stockLedger = new StockLedger(funkosRepository, funkoCache, notificationBus, transactionManager, 1000, 100);
+        when(funkosRepository.findAll()).thenReturn(List.of(funko1, funko2));
+        stockLedger.reconcile();
+    }
+
+    @Test
+    void reserve() {
+        stockLedger.reserve(Map.of(1L, 4));
+
+        assertEquals(6, stockLedger.available(1L));
+        verify(funkosRepository, never()).decrementStock(anyLong(), anyInt());
+    }
+
+    @Test
+    void reserve_SinStockNoReservaNada() {
+        Map<Long, Integer> cantidades = new TreeMap<>(Map.of(1L, 4, 2L, 6));
+
+        assertThrows(FunkoNotStock.class, () -> stockLedger.reserve(cantidades));
+
+        assertAll(
+                () -> assertEquals(10, stockLedger.available(1L)),
+                () -> assertEquals(5, stockLedger.available(2L))
+        );
+    }
+
+    @Test
+    void reserve_FunkoNoCargadoSeLeeDeLaBaseDeDatos() {
+        when(funkosRepository.findById(3L)).thenReturn(Optional.of(Funko.builder().id(3L).cantidad(2).build()));
+
+        stockLedger.reserve(Map.of(3L, 2));
+
+        assertEquals(0, stockLedger.available(3L));
+        verify(funkosRepository, times(1)).findById(3L);
+    }
+
+    @Test
+    void reserve_FunkoQueNoExisteNoSeGuarda() {
+        when(funkosRepository.findById(3L)).thenReturn(Optional.empty())
+                .thenReturn(Optional.of(Funko.builder().id(3L).cantidad(2).build()));
+
+        assertThrows(FunkoNotStock.class, () -> stockLedger.reserve(Map.of(3L, 1)));
+        stockLedger.reserve(Map.of(3L, 1));
+
+        assertEquals(1, stockLedger.available(3L));
+    }
+
+    @Test
+    void restore_ReservaAunqueNoHayaStock() {
+        stockLedger.reserve(Map.of(2L, 5));
+
+        stockLedger.restore(Map.of(2L, 2));
+
+        assertEquals(-2, stockLedger.available(2L));
+    }
+
+    @Test
+    void cambioDeUnAdministrador_VuelcaYRecargaElFunko() {
+        stockLedger.reserve(Map.of(1L, 4));
+        when(funkosRepository.findById(1L)).thenReturn(Optional.of(Funko.builder().id(1L).cantidad(50).build()));
+
+        notificationBus.publish(new NotificationEvent("FUNKOS", "1", "{}"));
+
+        assertAll(
+                () -> assertEquals(50, stockLedger.available(1L)),
+                () -> assertEquals(5, stockLedger.available(2L))
+        );
+        verify(funkosRepository, times(1)).adjustStock(1L, -4);
+    }
+
+    @Test
+    void release() {
+        stockLedger.reserve(Map.of(1L, 4));
+        stockLedger.release(Map.of(1L, 4));
+
+        assertEquals(10, stockLedger.available(1L));
+    }
+
+    @Test
+    void flush_VuelcaElNetoAcumulado() {
+        stockLedger.reserve(Map.of(1L, 4));
+        stockLedger.reserve(Map.of(1L, 3));
+        stockLedger.release(Map.of(1L, 2));
+        stockLedger.reserve(Map.of(2L, 1));
+        stockLedger.release(Map.of(2L, 1));
+        when(funkosRepository.adjustStock(1L, -5)).thenReturn(1);
+
+        stockLedger.flush();
+        stockLedger.flush();
+
+        verify(funkosRepository, times(1)).adjustStock(1L, -5);
+        verify(funkosRepository, never()).adjustStock(eq(2L), anyInt());
+        verify(funkoCache, times(1)).invalidate(Set.of(1L));
+    }
+
+    @Test
+    void flush_SiFallaNoPierdeLosCambios() {
+        stockLedger.reserve(Map.of(1L, 4));
+        when(funkosRepository.adjustStock(1L, -4)).thenThrow(new RuntimeException("BD caida")).thenReturn(1);
+
+        assertThrows(RuntimeException.class, () -> stockLedger.flush());
+        stockLedger.flush();
+
+        verify(funkosRepository, times(2)).adjustStock(1L, -4);
+    }
+
+    @Test
+    void flush_SinStockEnLaBaseDeDatos_RecargaElFunko() {
+        // Otro nodo ha vendido antes las unidades
+        stockLedger.reserve(Map.of(1L, 4));
+        when(funkosRepository.adjustStock(1L, -4)).thenReturn(0);
+        when(funkosRepository.findById(1L)).thenReturn(Optional.of(Funko.builder().id(1L).cantidad(1).build()));
+
+        stockLedger.flush();
+        stockLedger.flush();
+
+        assertEquals(1, stockLedger.available(1L));
+        verify(funkosRepository, times(1)).adjustStock(1L, -4);
+    }
+
+    @Test
+    void reserve_EnParaleloNoVendeMasDelStock() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch salida = new CountDownLatch(1);
+        AtomicInteger reservados = new AtomicInteger();
+
+        for (int i = 0; i < 100; i++) {
+            executor.submit(() -> {
+                salida.await();
+                try {
+                    stockLedger.reserve(Map.of(1L, 1));
+                    reservados.incrementAndGet();
+                } catch (FunkoNotStock ignored) {
+                }
+                return null;
+            });
+        }
+        salida.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertAll(
+                () -> assertEquals(10, reservados.get()),
+                () -> assertEquals(0, stockLedger.available(1L))
+        );
+    }
+}
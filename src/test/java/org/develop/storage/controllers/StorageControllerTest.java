@@ -0,0 +1,223 @@
+package org.develop.storage.controllers;
+
+import org.develop.rest.storage.services.StorageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.head;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class StorageControllerTest {
+    private final String myEndpoint = "/storage/";
+    private final String contenido = "0123456789abcdefghij";
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private StorageService storageService;
+
+    private String filename;
+
+    @BeforeEach
+    void setUp() {
+        filename = storageService.store(new MockMultipartFile("file", "imagen.png", "image/png", contenido.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        storageService.delete(filename);
+    }
+
+    @Test
+    void serveFile() throws Exception {
+        // Act
+        MockHttpServletResponse response = mockMvc.perform(get(myEndpoint + filename)).andReturn().getResponse();
+
+        // Assert
+        assertAll(
+                () -> assertEquals(200, response.getStatus()),
+                () -> assertEquals("image/png", response.getContentType()),
+                () -> assertEquals(20, response.getContentLengthLong()),
+                () -> assertEquals("bytes", response.getHeader("Accept-Ranges")),
+                () -> assertEquals("\"" + filename.substring(0, 64) + "\"", response.getHeader("ETag")),
+                () -> assertEquals("max-age=31536000, public, immutable", response.getHeader("Cache-Control")),
+                () -> assertNotNull(response.getHeader("Last-Modified")),
+                () -> assertEquals(contenido, response.getContentAsString())
+        );
+    }
+
+    @Test
+    void serveFile_NotFound() throws Exception {
+        // Act
+        MockHttpServletResponse response = mockMvc.perform(get(myEndpoint + "noexiste.png")).andReturn().getResponse();
+
+        // Assert
+        assertEquals(404, response.getStatus());
+    }
+
+    @Test
+    void serveFile_NotModifiedPorEtag() throws Exception {
+        // Arrange
+        String etag = mockMvc.perform(get(myEndpoint + filename)).andReturn().getResponse().getHeader("ETag");
+
+        // Act
+        MockHttpServletResponse response = mockMvc.perform(get(myEndpoint + filename).header("If-None-Match", etag))
+                .andReturn().getResponse();
+
+        // Assert
+        assertAll(
+                () -> assertEquals(304, response.getStatus()),
+                () -> assertEquals(0, response.getContentAsByteArray().length)
+        );
+    }
+
+    @Test
+    void serveFile_NotModifiedPorFecha() throws Exception {
+        // Arrange
+        String lastModified = mockMvc.perform(get(myEndpoint + filename)).andReturn().getResponse().getHeader("Last-Modified");
+
+        // Act
+        MockHttpServletResponse response = mockMvc.perform(get(myEndpoint + filename).header("If-Modified-Since", lastModified))
+                .andReturn().getResponse();
+
+        // Assert
+        assertEquals(304, response.getStatus());
+    }
+
+    @Test
+    void serveFile_Range() throws Exception {
+        // Act
+        MockHttpServletResponse response = mockMvc.perform(get(myEndpoint + filename).header("Range", "bytes=5-9"))
+                .andReturn().getResponse();
+
+        // Assert
+        assertAll(
+                () -> assertEquals(206, response.getStatus()),
+                () -> assertEquals("bytes 5-9/20", response.getHeader("Content-Range")),
+                () -> assertEquals(5, response.getContentLengthLong()),
+                () -> assertEquals("56789", response.getContentAsString())
+        );
+    }
+
+    @Test
+    void serveFile_RangeSufijo() throws Exception {
+        // Act
+        MockHttpServletResponse response = mockMvc.perform(get(myEndpoint + filename).header("Range", "bytes=-3"))
+                .andReturn().getResponse();
+
+        // Assert
+        assertAll(
+                () -> assertEquals(206, response.getStatus()),
+                () -> assertEquals("bytes 17-19/20", response.getHeader("Content-Range")),
+                () -> assertEquals("hij", response.getContentAsString())
+        );
+    }
+
+    @Test
+    void serveFile_RangeNoSatisfacible() throws Exception {
+        // Act
+        MockHttpServletResponse response = mockMvc.perform(get(myEndpoint + filename).header("Range", "bytes=50-"))
+                .andReturn().getResponse();
+
+        // Assert
+        assertAll(
+                () -> assertEquals(416, response.getStatus()),
+                () -> assertEquals("bytes */20", response.getHeader("Content-Range"))
+        );
+    }
+
+    @Test
+    void serveFile_IfRangeCoincide() throws Exception {
+        // Arrange
+        String etag = mockMvc.perform(get(myEndpoint + filename)).andReturn().getResponse().getHeader("ETag");
+
+        // Act
+        MockHttpServletResponse response = mockMvc.perform(get(myEndpoint + filename)
+                        .header("Range", "bytes=10-")
+                        .header("If-Range", etag))
+                .andReturn().getResponse();
+
+        // Assert
+        assertAll(
+                () -> assertEquals(206, response.getStatus()),
+                () -> assertEquals("abcdefghij", response.getContentAsString())
+        );
+    }
+
+    @Test
+    void serveFile_IfRangeNoCoincideDevuelveElFicheroCompleto() throws Exception {
+        // Act
+        MockHttpServletResponse response = mockMvc.perform(get(myEndpoint + filename)
+                        .header("Range", "bytes=10-")
+                        .header("If-Range", "\"otra-version\""))
+                .andReturn().getResponse();
+
+        // Assert
+        assertAll(
+                () -> assertEquals(200, response.getStatus()),
+                () -> assertNull(response.getHeader("Content-Range")),
+                () -> assertEquals(contenido, response.getContentAsString())
+        );
+    }
+
+    @Test
+    void serveFile_Head() throws Exception {
+        // Act
+        MockHttpServletResponse response = mockMvc.perform(head(myEndpoint + filename)).andReturn().getResponse();
+
+        // Assert
+        assertAll(
+                () -> assertEquals(200, response.getStatus()),
+                () -> assertEquals(20, response.getContentLengthLong()),
+                () -> assertEquals(0, response.getContentAsByteArray().length)
+        );
+    }
+
+    @Test
+    void serveFile_Variante() throws Exception {
+        // Arrange
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(1200, 600, BufferedImage.TYPE_INT_RGB), "png", png);
+        String imagen = storageService.store(new MockMultipartFile("file", "grande.png", "image/png", png.toByteArray()));
+
+        // Act
+        MockHttpServletResponse response = mockMvc.perform(get(myEndpoint + imagen).param("w", "150")).andReturn().getResponse();
+
+        // Assert
+        BufferedImage variante = ImageIO.read(new ByteArrayInputStream(response.getContentAsByteArray()));
+        assertAll(
+                () -> assertEquals(200, response.getStatus()),
+                () -> assertEquals("image/png", response.getContentType()),
+                () -> assertEquals(150, variante.getWidth()),
+                () -> assertEquals("\"" + imagen.substring(0, 64) + "_w150\"", response.getHeader("ETag")),
+                () -> assertEquals("max-age=31536000, public, immutable", response.getHeader("Cache-Control"))
+        );
+
+        storageService.delete(imagen);
+    }
+
+    @Test
+    void serveFile_VarianteAnchoNoValido() throws Exception {
+        // Act
+        MockHttpServletResponse response = mockMvc.perform(get(myEndpoint + filename).param("w", "0")).andReturn().getResponse();
+
+        // Assert
+        assertEquals(400, response.getStatus());
+    }
+}
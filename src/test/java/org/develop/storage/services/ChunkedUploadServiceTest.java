@@ -0,0 +1,307 @@
+package org.develop.storage.services;
+
+import org.develop.rest.storage.dto.UploadStatus;
+import org.develop.rest.storage.exceptions.StorageBadRequest;
+import org.develop.rest.storage.exceptions.StorageConflict;
+import org.develop.rest.storage.exceptions.StorageInternal;
+import org.develop.rest.storage.exceptions.StorageNotFound;
+import org.develop.rest.storage.repositories.BlobRepository;
+import org.develop.rest.storage.services.ChunkedUploadService;
+import org.develop.rest.storage.services.ContentAddressedStorageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChunkedUploadServiceTest {
+    // SHA-256 de "imagen"
+    private static final String SHA256 = "3559fb35e3328cffef7f38fb08562f74bee14e53c17302479714634ecac7f129";
+    // SHA-256 de "ima"
+    private static final String SHA256_PRIMER_TROZO = "e83cf5374a8521b7fd38db26bf0e51a0c98797947c6be2d5614d75ab5e127d5a";
+    private static final Long FUNKO = 1L;
+
+    @TempDir
+    Path directorio;
+    @Mock
+    private BlobRepository blobRepository;
+
+    private ChunkedUploadService uploadService;
+
+    @BeforeEach
+    void setUp() {
+        var storageService = new ContentAddressedStorageService(directorio.toString(), blobRepository, null);
+        uploadService = new ChunkedUploadService(storageService, DataSize.ofBytes(100), Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        uploadService.shutdown();
+    }
+
+    @Test
+    void subidaPorTrozos_GuardaPorContenido() throws Exception {
+        // Arrange
+        when(blobRepository.incrementReferencias(SHA256 + ".png")).thenReturn(1);
+        UploadStatus subida = uploadService.iniciar(FUNKO, "foto.PNG", 6);
+
+        // Act
+        UploadStatus primero = uploadService.anadir(FUNKO, subida.id(), 0, trozo("ima"), null);
+        UploadStatus segundo = uploadService.anadir(FUNKO, subida.id(), 3, trozo("gen"), SHA256);
+        String nombre = uploadService.completar(FUNKO, subida.id(), SHA256);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(0, subida.offset()),
+                () -> assertEquals(3, primero.offset()),
+                () -> assertEquals(6, segundo.offset()),
+                () -> assertEquals(SHA256, segundo.sha256()),
+                () -> assertEquals(SHA256 + ".png", nombre),
+                () -> assertEquals("imagen", Files.readString(directorio.resolve("35").resolve("59").resolve(nombre))),
+                // El temporal se ha movido y la subida ya no existe
+                () -> assertEquals(0, Files.list(directorio.resolve("tmp")).count()),
+                () -> assertThrows(StorageNotFound.class, () -> uploadService.estado(FUNKO, subida.id()))
+        );
+
+        // Verify
+        verify(blobRepository, times(1)).incrementReferencias(SHA256 + ".png");
+    }
+
+    @Test
+    void anadir_OffsetNoEsElDeLaSubida() {
+        // Arrange
+        UploadStatus subida = uploadService.iniciar(FUNKO, "foto.png", 6);
+        uploadService.anadir(FUNKO, subida.id(), 0, trozo("ima"), null);
+
+        // Act
+        var res = assertThrows(StorageConflict.class, () -> uploadService.anadir(FUNKO, subida.id(), 0, trozo("ima"), null));
+
+        // Assert
+        assertAll(
+                () -> assertTrue(res.getMessage().contains("va por el byte 3")),
+                () -> assertEquals(3, uploadService.estado(FUNKO, subida.id()).offset())
+        );
+    }
+
+    @Test
+    void anadir_Sha256NoCoincide_DescartaElTrozo() throws Exception {
+        // Arrange
+        UploadStatus subida = uploadService.iniciar(FUNKO, "foto.png", 6);
+        uploadService.anadir(FUNKO, subida.id(), 0, trozo("ima"), SHA256_PRIMER_TROZO);
+
+        // Act
+        assertThrows(StorageBadRequest.class, () -> uploadService.anadir(FUNKO, subida.id(), 3, trozo("gem"), SHA256));
+        UploadStatus reintento = uploadService.anadir(FUNKO, subida.id(), 3, trozo("gen"), SHA256);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(6, reintento.offset()),
+                () -> assertEquals(SHA256, reintento.sha256()),
+                () -> assertEquals("imagen", Files.readString(temporal()))
+        );
+    }
+
+    @Test
+    void anadir_FallaLaLectura_DescartaElTrozo() throws Exception {
+        // Arrange
+        UploadStatus subida = uploadService.iniciar(FUNKO, "foto.png", 6);
+        uploadService.anadir(FUNKO, subida.id(), 0, trozo("ima"), null);
+        InputStream cortado = new SequenceInputStream(trozo("ge"), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Conexión cerrada");
+            }
+        });
+
+        // Act
+        assertThrows(StorageInternal.class, () -> uploadService.anadir(FUNKO, subida.id(), 3, cortado, null));
+
+        // Assert
+        UploadStatus estado = uploadService.estado(FUNKO, subida.id());
+        assertAll(
+                () -> assertEquals(3, estado.offset()),
+                () -> assertEquals(SHA256_PRIMER_TROZO, estado.sha256()),
+                () -> assertEquals("ima", Files.readString(temporal()))
+        );
+    }
+
+    @Test
+    void anadir_PasaDelTamano() throws Exception {
+        // Arrange
+        UploadStatus subida = uploadService.iniciar(FUNKO, "foto.png", 6);
+
+        // Act
+        assertThrows(StorageBadRequest.class, () -> uploadService.anadir(FUNKO, subida.id(), 0, trozo("imagenes"), null));
+
+        // Assert
+        assertAll(
+                () -> assertEquals(0, uploadService.estado(FUNKO, subida.id()).offset()),
+                () -> assertEquals(0, Files.size(temporal()))
+        );
+    }
+
+    @Test
+    void anadir_SubidaNoExiste() {
+        // Act & Assert
+        assertThrows(StorageNotFound.class, () -> uploadService.anadir(FUNKO, "no-existe", 0, trozo("ima"), null));
+    }
+
+    @Test
+    void subidaDeOtroFunko_NoSeEncuentra() {
+        // Arrange
+        UploadStatus subida = uploadService.iniciar(FUNKO, "foto.png", 6);
+        uploadService.anadir(FUNKO, subida.id(), 0, trozo("imagen"), null);
+
+        // Act & Assert
+        assertAll(
+                () -> assertThrows(StorageNotFound.class, () -> uploadService.estado(2L, subida.id())),
+                () -> assertThrows(StorageNotFound.class, () -> uploadService.anadir(2L, subida.id(), 6, trozo("x"), null)),
+                () -> assertThrows(StorageNotFound.class, () -> uploadService.completar(2L, subida.id(), null)),
+                () -> assertThrows(StorageNotFound.class, () -> uploadService.cancelar(2L, subida.id())),
+                () -> assertEquals(6, uploadService.estado(FUNKO, subida.id()).offset())
+        );
+        verifyNoInteractions(blobRepository);
+    }
+
+    @Test
+    void completar_FallaElAlmacenamiento_SeVuelveACompletar() throws Exception {
+        // Arrange
+        when(blobRepository.incrementReferencias(SHA256 + ".png")).thenReturn(1);
+        UploadStatus subida = uploadService.iniciar(FUNKO, "foto.png", 6);
+        uploadService.anadir(FUNKO, subida.id(), 0, trozo("imagen"), null);
+        // Un fichero donde tiene que ir el directorio de la imagen
+        Path bloqueo = Files.writeString(directorio.resolve("35"), "");
+
+        // Act
+        assertThrows(StorageInternal.class, () -> uploadService.completar(FUNKO, subida.id(), SHA256));
+        UploadStatus trasElFallo = uploadService.estado(FUNKO, subida.id());
+        Files.delete(bloqueo);
+        String nombre = uploadService.completar(FUNKO, subida.id(), SHA256);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(6, trasElFallo.offset()),
+                () -> assertEquals(SHA256 + ".png", nombre),
+                () -> assertThrows(StorageNotFound.class, () -> uploadService.estado(FUNKO, subida.id()))
+        );
+    }
+
+    @Test
+    void completar_FallaTrasMoverElTemporal_QuitaLaSubida() {
+        // Arrange
+        when(blobRepository.incrementReferencias(SHA256 + ".png")).thenThrow(new IllegalStateException("Base de datos caída"));
+        UploadStatus subida = uploadService.iniciar(FUNKO, "foto.png", 6);
+        uploadService.anadir(FUNKO, subida.id(), 0, trozo("imagen"), null);
+
+        // Act
+        assertThrows(IllegalStateException.class, () -> uploadService.completar(FUNKO, subida.id(), SHA256));
+
+        // Assert
+        // Sin el temporal no se puede volver a completar
+        assertThrows(StorageNotFound.class, () -> uploadService.estado(FUNKO, subida.id()));
+    }
+
+    @Test
+    void iniciar_TamanoNoValido() {
+        // Act & Assert
+        assertAll(
+                () -> assertThrows(StorageBadRequest.class, () -> uploadService.iniciar(FUNKO, "foto.png", 0)),
+                () -> assertThrows(StorageBadRequest.class, () -> uploadService.iniciar(FUNKO, "foto.png", 101)),
+                () -> assertThrows(StorageBadRequest.class, () -> uploadService.iniciar(FUNKO, " ", 6))
+        );
+    }
+
+    @Test
+    void completar_FaltanBytes() {
+        // Arrange
+        UploadStatus subida = uploadService.iniciar(FUNKO, "foto.png", 6);
+        uploadService.anadir(FUNKO, subida.id(), 0, trozo("ima"), null);
+
+        // Act
+        assertThrows(StorageConflict.class, () -> uploadService.completar(FUNKO, subida.id(), null));
+
+        // Assert
+        assertEquals(3, uploadService.estado(FUNKO, subida.id()).offset());
+        verifyNoInteractions(blobRepository);
+    }
+
+    @Test
+    void completar_Sha256NoCoincide_CancelaLaSubida() throws Exception {
+        // Arrange
+        UploadStatus subida = uploadService.iniciar(FUNKO, "foto.png", 6);
+        uploadService.anadir(FUNKO, subida.id(), 0, trozo("imagen"), null);
+
+        // Act
+        assertThrows(StorageBadRequest.class, () -> uploadService.completar(FUNKO, subida.id(), SHA256_PRIMER_TROZO));
+
+        // Assert
+        assertAll(
+                () -> assertThrows(StorageNotFound.class, () -> uploadService.estado(FUNKO, subida.id())),
+                () -> assertEquals(0, Files.list(directorio.resolve("tmp")).count())
+        );
+        verifyNoInteractions(blobRepository);
+    }
+
+    @Test
+    void cancelar_BorraLoRecibido() throws Exception {
+        // Arrange
+        UploadStatus subida = uploadService.iniciar(FUNKO, "foto.png", 6);
+        uploadService.anadir(FUNKO, subida.id(), 0, trozo("ima"), null);
+
+        // Act
+        uploadService.cancelar(FUNKO, subida.id());
+
+        // Assert
+        assertAll(
+                () -> assertThrows(StorageNotFound.class, () -> uploadService.estado(FUNKO, subida.id())),
+                () -> assertEquals(0, Files.list(directorio.resolve("tmp")).count())
+        );
+    }
+
+    @Test
+    void expirar_BorraLasSubidasAbandonadas() throws Exception {
+        // Arrange
+        var storageService = new ContentAddressedStorageService(directorio.toString(), blobRepository, null);
+        var caducan = new ChunkedUploadService(storageService, DataSize.ofBytes(100), Duration.ZERO);
+        UploadStatus subida = caducan.iniciar(FUNKO, "foto.png", 6);
+        Thread.sleep(5);
+
+        // Act
+        int borradas = caducan.expirar();
+
+        // Assert
+        assertAll(
+                () -> assertEquals(1, borradas),
+                () -> assertThrows(StorageNotFound.class, () -> caducan.estado(FUNKO, subida.id())),
+                () -> assertEquals(0, Files.list(directorio.resolve("tmp")).count())
+        );
+        caducan.shutdown();
+    }
+
+    private static InputStream trozo(String contenido) {
+        return new ByteArrayInputStream(contenido.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // El único temporal de la subida en curso
+    private Path temporal() throws IOException {
+        try (var ficheros = Files.list(directorio.resolve("tmp"))) {
+            return ficheros.findFirst().orElseThrow();
+        }
+    }
+}
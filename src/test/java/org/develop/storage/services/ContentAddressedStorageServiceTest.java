@@ -0,0 +1,163 @@
+package org.develop.storage.services;
+
+import org.develop.rest.storage.exceptions.StorageBadRequest;
+import org.develop.rest.storage.models.Blob;
+import org.develop.rest.storage.models.StoredFile;
+import org.develop.rest.storage.repositories.BlobRepository;
+import org.develop.rest.storage.services.ContentAddressedStorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ContentAddressedStorageServiceTest {
+    // SHA-256 de "imagen"
+    private static final String SHA256 = "3559fb35e3328cffef7f38fb08562f74bee14e53c17302479714634ecac7f129";
+
+    @TempDir
+    Path directorio;
+    @Mock
+    private BlobRepository blobRepository;
+
+    private ContentAddressedStorageService storageService;
+
+    @BeforeEach
+    void setUp() {
+        storageService = new ContentAddressedStorageService(directorio.toString(), blobRepository, null);
+    }
+
+    @Test
+    void store_GuardaPorContenido() throws Exception {
+        // Arrange
+        when(blobRepository.incrementReferencias(SHA256 + ".png")).thenReturn(0);
+
+        // Act
+        String nombre = storageService.store(imagen("foto.PNG", "imagen"));
+
+        // Assert
+        ArgumentCaptor<Blob> blob = ArgumentCaptor.forClass(Blob.class);
+        verify(blobRepository).save(blob.capture());
+        assertAll(
+                () -> assertEquals(SHA256 + ".png", nombre),
+                () -> assertEquals("imagen", Files.readString(directorio.resolve("35").resolve("59").resolve(nombre))),
+                () -> assertEquals(1L, blob.getValue().getReferencias()),
+                () -> assertEquals(6L, blob.getValue().getTamano()),
+                // No quedan temporales
+                () -> assertEquals(0, Files.list(directorio.resolve("tmp")).count())
+        );
+    }
+
+    @Test
+    void store_MismoContenidoSeGuardaUnaVez() throws Exception {
+        // Arrange
+        when(blobRepository.incrementReferencias(SHA256 + ".png")).thenReturn(0, 1);
+
+        // Act
+        String primero = storageService.store(imagen("uno.png", "imagen"));
+        String segundo = storageService.store(imagen("dos.png", "imagen"));
+
+        // Assert
+        assertAll(
+                () -> assertEquals(primero, segundo),
+                () -> assertEquals(1, Files.list(directorio.resolve("35").resolve("59")).count()),
+                () -> assertEquals(0, Files.list(directorio.resolve("tmp")).count())
+        );
+
+        // Verify
+        verify(blobRepository, times(2)).incrementReferencias(SHA256 + ".png");
+        verify(blobRepository, times(1)).save(any(Blob.class));
+    }
+
+    @Test
+    void store_FicheroVacio() {
+        assertThrows(StorageBadRequest.class, () -> storageService.store(imagen("vacio.png", "")));
+    }
+
+    @Test
+    void delete_ConReferenciasNoBorraElFichero() throws Exception {
+        // Arrange
+        String nombre = storageService.store(imagen("foto.png", "imagen"));
+        when(blobRepository.findById(nombre)).thenReturn(Optional.of(Blob.builder().nombre(nombre).tamano(6L).referencias(1L).build()));
+
+        // Act
+        storageService.delete("http://localhost:3000/storage/" + nombre);
+
+        // Assert
+        assertTrue(storageService.exists(nombre));
+
+        // Verify
+        verify(blobRepository, times(1)).decrementReferencias(nombre);
+        verify(blobRepository, never()).delete(any(Blob.class));
+    }
+
+    @Test
+    void delete_SinReferenciasBorraElFichero() throws Exception {
+        // Arrange
+        String nombre = storageService.store(imagen("foto.png", "imagen"));
+        Blob blob = Blob.builder().nombre(nombre).tamano(6L).referencias(0L).build();
+        when(blobRepository.findById(nombre)).thenReturn(Optional.of(blob));
+
+        // Act
+        storageService.delete("http://localhost:3000/storage/" + nombre);
+
+        // Assert
+        assertAll(
+                () -> assertFalse(storageService.exists(nombre)),
+                () -> assertFalse(Files.exists(storageService.load(nombre)))
+        );
+
+        // Verify
+        verify(blobRepository, times(1)).delete(blob);
+    }
+
+    @Test
+    void delete_FicheroAntiguoSeBorraDirectamente() throws Exception {
+        // Arrange
+        Path antiguo = storageService.load("1700000000000_foto.png");
+        Files.createDirectories(antiguo.getParent());
+        Files.writeString(antiguo, "imagen");
+
+        // Act
+        storageService.delete("http://localhost:3000/storage/1700000000000_foto.png");
+
+        // Assert
+        assertFalse(Files.exists(antiguo));
+
+        // Verify
+        verifyNoInteractions(blobRepository);
+    }
+
+    @Test
+    void loadMetadata_PorContenidoEsInmutable() {
+        // Arrange
+        String nombre = storageService.store(imagen("foto.png", "imagen"));
+
+        // Act
+        StoredFile stored = storageService.loadMetadata(nombre);
+
+        // Assert
+        assertAll(
+                () -> assertTrue(stored.immutable()),
+                () -> assertEquals("\"" + SHA256 + "\"", stored.etag()),
+                () -> assertEquals("image/png", stored.contentType().toString()),
+                () -> assertEquals(6, stored.size())
+        );
+    }
+
+    private static MockMultipartFile imagen(String nombre, String contenido) {
+        return new MockMultipartFile("file", nombre, "image/png", contenido.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,159 @@
+package org.develop.storage.services;
+
+import org.develop.rest.storage.exceptions.StorageInternal;
+import org.develop.rest.storage.exceptions.StorageNotFound;
+import org.develop.rest.storage.models.StoredFile;
+import org.develop.rest.storage.services.FileSystemStorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileSystemStorageServiceTest {
+    @TempDir
+    Path directorio;
+
+    private FileSystemStorageService storageService;
+
+    @BeforeEach
+    void setUp() {
+        storageService = new FileSystemStorageService(directorio.toString());
+        storageService.init();
+    }
+
+    @Test
+    void store_SeRepartePorSubdirectorios() {
+        // Act
+        String nombre = storageService.store(new MockMultipartFile("file", "foto.png", "image/png", "imagen".getBytes(StandardCharsets.UTF_8)));
+
+        // Assert
+        Path ruta = storageService.load(nombre);
+        assertAll(
+                () -> assertTrue(Files.exists(ruta)),
+                () -> assertEquals(directorio, ruta.getParent().getParent().getParent()),
+                () -> assertTrue(ruta.getParent().getFileName().toString().matches("[0-9a-f]{2}")),
+                () -> assertTrue(storageService.exists(nombre)),
+                () -> assertEquals(6, storageService.loadMetadata(nombre).size())
+        );
+    }
+
+    @Test
+    void storeTemporal_MueveElFicheroASuSitio() throws Exception {
+        // Arrange
+        Path temporal = storageService.createTempFile();
+        Files.writeString(temporal, "imagen");
+
+        // Act
+        String nombre = storageService.store(temporal, "foto.png", null);
+
+        // Assert
+        assertAll(
+                () -> assertTrue(nombre.endsWith("_foto.png")),
+                () -> assertEquals("imagen", Files.readString(storageService.load(nombre))),
+                () -> assertFalse(Files.exists(temporal)),
+                () -> assertTrue(storageService.exists(nombre))
+        );
+    }
+
+    @Test
+    void storeTemporal_FueraDelDirectorioTemporal() throws Exception {
+        // Arrange
+        Path fuera = Files.writeString(directorio.resolve("fuera.png"), "imagen");
+
+        // Act
+        assertThrows(StorageInternal.class, () -> storageService.store(fuera, "fuera.png", null));
+
+        // Assert
+        assertTrue(Files.exists(fuera));
+    }
+
+    @Test
+    void init_CargaElIndiceDeLoQueHayEnDisco() throws Exception {
+        // Arrange
+        Path ruta = storageService.load("existente.png");
+        Files.createDirectories(ruta.getParent());
+        Files.writeString(ruta, "imagen");
+
+        // Act
+        storageService.init();
+
+        // Assert
+        StoredFile stored = storageService.loadMetadata("existente.png");
+        assertAll(
+                () -> assertTrue(storageService.exists("existente.png")),
+                () -> assertEquals(6, stored.size()),
+                () -> assertEquals(Files.getLastModifiedTime(ruta).toMillis(), stored.lastModified()),
+                () -> assertEquals(Set.of("existente.png"), nombres())
+        );
+    }
+
+    @Test
+    void init_NoVeLosCambiosFueraDelServicio() throws Exception {
+        // Arrange
+        Path ruta = storageService.load("nuevo.png");
+        Files.createDirectories(ruta.getParent());
+        Files.writeString(ruta, "imagen");
+
+        // Act & Assert
+        assertAll(
+                () -> assertFalse(storageService.exists("nuevo.png")),
+                () -> assertThrows(StorageNotFound.class, () -> storageService.loadMetadata("nuevo.png"))
+        );
+    }
+
+    @Test
+    void delete_QuitaDelIndice() {
+        // Arrange
+        String nombre = storageService.store(new MockMultipartFile("file", "foto.png", "image/png", "imagen".getBytes(StandardCharsets.UTF_8)));
+
+        // Act
+        storageService.delete("http://localhost:3000/storage/" + nombre);
+
+        // Assert
+        assertAll(
+                () -> assertFalse(storageService.exists(nombre)),
+                () -> assertFalse(Files.exists(storageService.load(nombre))),
+                () -> assertTrue(nombres().isEmpty())
+        );
+    }
+
+    @Test
+    void migrate_MueveLosFicherosSueltos() throws Exception {
+        // Arrange
+        Files.writeString(directorio.resolve("1700000000000_uno.png"), "uno");
+        Files.writeString(directorio.resolve("1700000000001_dos.png"), "dos");
+
+        // Act
+        int movidos = storageService.migrate();
+
+        // Assert
+        assertAll(
+                () -> assertEquals(2, movidos),
+                () -> assertEquals("uno", Files.readString(storageService.load("1700000000000_uno.png"))),
+                () -> assertFalse(Files.exists(directorio.resolve("1700000000000_uno.png"))),
+                () -> assertEquals(Set.of("1700000000000_uno.png", "1700000000001_dos.png"), nombres()),
+                // Otra vez no hay nada que mover
+                () -> assertEquals(0, storageService.migrate())
+        );
+    }
+
+    @Test
+    void loadMetadata_NombreConRuta() {
+        assertAll(
+                () -> assertThrows(StorageNotFound.class, () -> storageService.loadMetadata("..")),
+                () -> assertThrows(StorageNotFound.class, () -> storageService.loadMetadata("../application.properties"))
+        );
+    }
+
+    private Set<String> nombres() {
+        return storageService.loadAll().map(Path::toString).collect(Collectors.toSet());
+    }
+}
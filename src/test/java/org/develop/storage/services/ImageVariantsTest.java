@@ -0,0 +1,222 @@
+package org.develop.storage.services;
+
+import org.develop.rest.storage.models.StoredFile;
+import org.develop.rest.storage.services.FileSystemStorageService;
+import org.develop.rest.storage.services.ImageVariants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageVariantsTest {
+    @TempDir
+    Path directorio;
+
+    private ImageVariants imageVariants;
+    private FileSystemStorageService storageService;
+
+    @BeforeEach
+    void setUp() {
+        // Sin cola para las variantes en segundo plano: se generan al pedirlas
+        imageVariants = new ImageVariants(new int[]{600, 150}, 1, 1, 1_000_000);
+        storageService = new FileSystemStorageService(directorio.toString(), imageVariants);
+        storageService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageVariants.shutdown();
+    }
+
+    @Test
+    void ancho_SeRedondeaAlSiguienteAnchoDeVariante() {
+        assertAll(
+                () -> assertEquals(Optional.of(150), imageVariants.ancho(100)),
+                () -> assertEquals(Optional.of(150), imageVariants.ancho(150)),
+                () -> assertEquals(Optional.of(600), imageVariants.ancho(151)),
+                () -> assertEquals(Optional.empty(), imageVariants.ancho(1000))
+        );
+    }
+
+    @Test
+    void url_SoloImagenesDelAlmacenamiento() {
+        assertAll(
+                () -> assertEquals("http://localhost:3000/storage/a.png?w=150", ImageVariants.url("http://localhost:3000/storage/a.png", 150)),
+                () -> assertEquals("http://localhost:3000/storage/a.png?w=600", ImageVariants.url("http://localhost:3000/storage/a.png?w=150", 600)),
+                () -> assertEquals("https://via.placeholder.com/150", ImageVariants.url("https://via.placeholder.com/150", 150)),
+                () -> assertNull(ImageVariants.url(null, 150))
+        );
+    }
+
+    @Test
+    void loadVariant_SeGeneraAlPedirlaYJuntoALaOriginal() throws Exception {
+        // Arrange
+        String nombre = storageService.store(png("foto.png", 1200, 800));
+
+        // Act
+        StoredFile variante = storageService.loadVariant(nombre, 100);
+
+        // Assert
+        BufferedImage imagen = ImageIO.read(variante.path().toFile());
+        assertAll(
+                () -> assertEquals(150, imagen.getWidth()),
+                () -> assertEquals(100, imagen.getHeight()),
+                () -> assertEquals(storageService.load(nombre).getParent(), variante.path().getParent()),
+                () -> assertEquals("image/png", variante.contentType().toString()),
+                () -> assertTrue(variante.size() < storageService.loadMetadata(nombre).size())
+        );
+    }
+
+    @Test
+    void loadVariant_SeGeneraUnaSolaVez() throws Exception {
+        // Arrange
+        String nombre = storageService.store(png("foto.png", 1200, 800));
+        StoredFile primera = storageService.loadVariant(nombre, 600);
+        long modificada = Files.getLastModifiedTime(primera.path()).toMillis();
+        Thread.sleep(20);
+
+        // Act
+        StoredFile segunda = storageService.loadVariant(nombre, 600);
+
+        // Assert
+        assertAll(
+                () -> assertEquals(primera.path(), segunda.path()),
+                () -> assertEquals(modificada, Files.getLastModifiedTime(segunda.path()).toMillis())
+        );
+    }
+
+    @Test
+    void loadVariant_ImagenMasEstrechaSeCopia() throws Exception {
+        // Arrange
+        String nombre = storageService.store(png("foto.png", 100, 50));
+
+        // Act
+        StoredFile variante = storageService.loadVariant(nombre, 150);
+
+        // Assert
+        assertArrayEquals(Files.readAllBytes(storageService.load(nombre)), Files.readAllBytes(variante.path()));
+    }
+
+    @Test
+    void loadVariant_MasAnchoQueLaMayorDevuelveLaOriginal() {
+        // Arrange
+        String nombre = storageService.store(png("foto.png", 1200, 800));
+
+        // Act
+        StoredFile variante = storageService.loadVariant(nombre, 1000);
+
+        // Assert
+        assertEquals(storageService.load(nombre), variante.path());
+    }
+
+    @Test
+    void loadVariant_NoEsUnaImagenDevuelveLaOriginal() {
+        // Arrange
+        String nombre = storageService.store(new MockMultipartFile("file", "roto.png", "image/png", "no es un png".getBytes(StandardCharsets.UTF_8)));
+
+        // Act
+        StoredFile variante = storageService.loadVariant(nombre, 150);
+
+        // Assert
+        assertEquals(storageService.load(nombre), variante.path());
+    }
+
+    @Test
+    void loadVariant_DemasiadosPixelesDevuelveLaOriginalSinDecodificarla() {
+        // Arrange
+        ImageVariants limitado = new ImageVariants(new int[]{150}, 1, 1, 100_000);
+        FileSystemStorageService conLimite = new FileSystemStorageService(directorio.resolve("limite").toString(), limitado);
+        conLimite.init();
+        String nombre = conLimite.store(png("foto.png", 1200, 800));
+
+        // Act
+        StoredFile variante = conLimite.loadVariant(nombre, 150);
+
+        // Assert
+        limitado.shutdown();
+        assertAll(
+                () -> assertEquals(conLimite.load(nombre), variante.path()),
+                () -> assertFalse(conLimite.exists(nombre.substring(0, nombre.length() - 4) + "_w150.png"))
+        );
+    }
+
+    @Test
+    void loadVariant_ImagenCortadaDevuelveLaOriginal() throws Exception {
+        // Arrange: la cabecera se lee pero los datos están cortados
+        byte[] completa = png("foto.png", 1200, 800).getBytes();
+        String nombre = storageService.store(new MockMultipartFile("file", "cortada.png", "image/png", Arrays.copyOf(completa, 200)));
+
+        // Act
+        StoredFile variante = storageService.loadVariant(nombre, 150);
+
+        // Assert
+        assertEquals(storageService.load(nombre), variante.path());
+    }
+
+    @Test
+    void store_GeneraLasVariantesEnSegundoPlano() throws Exception {
+        // Arrange
+        ImageVariants conCola = new ImageVariants(new int[]{150, 600}, 1, 10, 1_000_000);
+        FileSystemStorageService conVariantes = new FileSystemStorageService(directorio.resolve("otro").toString(), conCola);
+        conVariantes.init();
+
+        // Act
+        String nombre = conVariantes.store(png("foto.png", 1200, 800));
+
+        // Assert
+        Path dir = conVariantes.load(nombre).getParent();
+        String base = nombre.substring(0, nombre.length() - 4);
+        for (int i = 0; i < 100 && !(conVariantes.exists(base + "_w150.png") && conVariantes.exists(base + "_w600.png")); i++) {
+            Thread.sleep(50);
+        }
+        conCola.shutdown();
+        assertAll(
+                () -> assertTrue(Files.exists(dir.resolve(base + "_w150.png"))),
+                () -> assertTrue(Files.exists(dir.resolve(base + "_w600.png")))
+        );
+    }
+
+    @Test
+    void delete_BorraTambienLasVariantes() {
+        // Arrange
+        String nombre = storageService.store(png("foto.png", 1200, 800));
+        StoredFile variante = storageService.loadVariant(nombre, 150);
+
+        // Act
+        storageService.delete(nombre);
+
+        // Assert
+        assertAll(
+                () -> assertFalse(Files.exists(variante.path())),
+                () -> assertEquals(0, storageService.loadAll().count())
+        );
+    }
+
+    private static MockMultipartFile png(String nombre, int ancho, int alto) {
+        try {
+            BufferedImage imagen = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+            for (int x = 0; x < ancho; x++) {
+                for (int y = 0; y < alto; y++) {
+                    imagen.setRGB(x, y, (x * 31 + y * 17) & 0xFFFFFF);
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(imagen, "png", out);
+            return new MockMultipartFile("file", nombre, "image/png", out.toByteArray());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
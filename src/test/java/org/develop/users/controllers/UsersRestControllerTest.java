@@ -27,6 +27,7 @@ import org.springframework.security.test.context.support.WithUserDetails;
 import org.springframework.test.web.servlet.MockMvc;
 
 
+import java.net.URI;
 import java.util.List;
 import java.util.Optional;
 
@@ -121,6 +122,27 @@ class UsersRestControllerTest {
         verify(userService, times(1)).findAll(Optional.empty(), Optional.empty(), Optional.empty(), pageable);
    }
 
+    @Test
+    void findAllUsers_WithoutTotal_EnlacesCodificadosUnaVez() throws Exception {
+        Pageable pageable = PageRequest.of(0, 10, Sort.by("id").ascending());
+        Slice<UserResponse> slice = new SliceImpl<>(List.of(userResponse), pageable, true);
+
+        when(userService.findSlice(Optional.of("test perez"), Optional.empty(), Optional.empty(), pageable)).thenReturn(slice);
+
+        MockHttpServletResponse response = mockMvc.perform(
+                get(URI.create(myEndPoint + "?username=test%20perez&withTotal=false"))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse();
+
+        assertAll(
+                () -> assertEquals(200, response.getStatus()),
+                () -> assertTrue(response.getHeader("link").contains("username=test%20perez")),
+                () -> assertFalse(response.getHeader("link").contains("%25"))
+        );
+
+        verify(userService, never()).findAll(any(), any(), any(), any());
+    }
+
     @Test
     void findById() throws Exception {
         String myLocalEndPoint = myEndPoint + "/1";
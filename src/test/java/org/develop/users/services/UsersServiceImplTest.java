@@ -1,6 +1,7 @@
 package org.develop.users.services;
 
 import org.develop.rest.pedidos.repositories.PedidoRepository;
+import org.develop.rest.auth.services.users.UserVersionRegistry;
 import org.develop.rest.users.dto.UserInfoResponse;
 import org.develop.rest.users.dto.UserRequest;
 import org.develop.rest.users.dto.UserResponse;
@@ -40,6 +41,8 @@ public class UsersServiceImplTest {
     private PedidoRepository pedidoRepository;
     @Mock
     private UsersMapper usersMapper;
+    @Mock
+    private UserVersionRegistry userVersionRegistry;
     @InjectMocks
     private UsersServiceImpl usersService;
 
@@ -145,6 +148,7 @@ public class UsersServiceImplTest {
         verify(usersRepository, times(1)).findById(userId);
         verify(usersRepository, times(1)).findByUsernameEqualsIgnoreCaseOrEmailEqualsIgnoreCase(any(String.class), any(String.class));
         verify(usersMapper, times(1)).toUser(userRequest, userId);
+        verify(userVersionRegistry, times(1)).changed(user.getUsername());
     }
 
     @Test
@@ -177,6 +181,7 @@ public class UsersServiceImplTest {
 
         verify(usersRepository, times(1)).findById(userId);
         verify(pedidoRepository, times(1)).existsByIdUsuario(userId);
+        verify(userVersionRegistry, times(1)).changed("test");
     }
 
     @Test